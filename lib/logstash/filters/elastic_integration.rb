@@ -98,10 +98,59 @@ class LogStash::Filters::ElasticIntegration < LogStash::Filters::Base
   # A directory containing one or more Maxmind Database files in *.mmdb format
   config :geoip_database_directory, :validate => :path
 
+  # the number of geoip lookup results to cache for each database, so that addresses that
+  # recur frequently are not looked up in the database again (0 disables)
+  config :geoip_lookup_cache_size, :validate => :number, :default => 0
+
+  # whether geoip databases are memory-mapped or loaded onto the heap; either way, each
+  # version of a database file is opened once and shared by every pipeline in the process
+  config :geoip_database_file_mode, :validate => %w(memory_mapped heap), :default => "memory_mapped"
+
+  # the number of decoded database nodes to cache for each geoip database (0 disables)
+  config :geoip_node_cache_size, :validate => :number, :default => 10000
+
+  # the number of IPv4 networks without data to index for each geoip database, so that
+  # lookups of addresses in those networks do not reach the database (0 disables)
+  config :geoip_empty_range_index_size, :validate => :number, :default => 0
+
   # a sprintf template for resolving the pipeline name; when this template does
   # not fully-resolve no pipeline will be run.
   config :pipeline_name, :validate => :string
 
+  # data stream names (such as `logs-nginx.access-default`) whose default pipelines
+  # are fetched and compiled while the plugin is being registered
+  config :warmup_datastreams, :validate => :string, :list => true
+
+  # pipeline names that are fetched and compiled while the plugin is being registered
+  config :warmup_pipelines, :validate => :string, :list => true
+
+  # when true, data stream names are discovered from the `logs-*` and `metrics-*` index
+  # templates in Elasticsearch, and their default pipelines are warmed up
+  config :warmup_discover_datastreams, :validate => :boolean, :default => false
+
+  # the maximum number of seconds to spend warming up pipelines during registration
+  config :warmup_timeout, :validate => :number, :default => 60
+
+  # the number of times that each warmed-up or reloaded pipeline is executed against a
+  # sample document before it is used, so that its code paths are JIT-compiled (0 disables)
+  config :warmup_iterations, :validate => :number, :default => 0
+
+  # the sample document that pipelines are executed against when `warmup_iterations` is set,
+  # in place of a synthetic access-log document
+  config :warmup_document, :validate => :hash
+
+  # when true, each processor of each pipeline is timed, its metrics are published
+  # under this plugin's `processors` namespace, and the slowest are periodically logged
+  config :processor_profiling, :validate => :boolean, :default => false
+
+  # the number of seconds after which the processing of a single event is considered
+  # slow, and is logged along with the pipelines it was routed through (0 disables)
+  config :slowlog_threshold, :validate => :number, :default => 0
+
+  # the maximum number of characters of a slow event to include when it is logged
+  # (0 omits the event)
+  config :slowlog_max_event_length, :validate => :number, :default => 0
+
   ##
   # Validates that this plugin can be initialized BEFORE loading dependencies
   # and delegating to super, so that when this plugin CANNOT be run the process
@@ -132,6 +181,9 @@ class LogStash::Filters::ElasticIntegration < LogStash::Filters::Base
     validate_ssl_settings!
     validate_auth_settings!
     validate_and_normalize_hosts
+    validate_warmup_settings!
+    validate_slowlog_settings!
+    validate_geoip_settings!
 
     initialize_elasticsearch_rest_client!
     initialize_geoip_database_provider!
@@ -210,6 +262,24 @@ class LogStash::Filters::ElasticIntegration < LogStash::Filters::Base
     end.freeze
   end
 
+  def validate_warmup_settings!
+    raise_config_error! "`warmup_timeout` must be a positive number of seconds" unless @warmup_timeout > 0
+    raise_config_error! "`warmup_iterations` must be a non-negative integer" unless @warmup_iterations >= 0 && @warmup_iterations == @warmup_iterations.to_i
+    raise_config_error! "Empty `warmup_document` is not allowed" if @warmup_document && @warmup_document.empty?
+  end
+
+  def validate_slowlog_settings!
+    raise_config_error! "`slowlog_threshold` must be a non-negative number of seconds" unless @slowlog_threshold >= 0
+    raise_config_error! "`slowlog_threshold` must be 0 or at least 1 microsecond (0.000001)" if @slowlog_threshold > 0 && (@slowlog_threshold * 1_000_000).round == 0
+    raise_config_error! "`slowlog_max_event_length` must be a non-negative integer" unless @slowlog_max_event_length >= 0 && @slowlog_max_event_length == @slowlog_max_event_length.to_i
+  end
+
+  def validate_geoip_settings!
+    raise_config_error! "`geoip_lookup_cache_size` must be a non-negative integer" unless @geoip_lookup_cache_size >= 0 && @geoip_lookup_cache_size == @geoip_lookup_cache_size.to_i
+    raise_config_error! "`geoip_node_cache_size` must be a non-negative integer" unless @geoip_node_cache_size >= 0 && @geoip_node_cache_size == @geoip_node_cache_size.to_i
+    raise_config_error! "`geoip_empty_range_index_size` must be a non-negative integer" unless @geoip_empty_range_index_size >= 0 && @geoip_empty_range_index_size == @geoip_empty_range_index_size.to_i
+  end
+
   def validate_auth_settings!
     @cloud_auth           = @cloud_auth&.freeze
     @api_key              = @api_key&.freeze
@@ -341,6 +411,19 @@ class LogStash::Filters::ElasticIntegration < LogStash::Filters::Base
       # pipeline resolving
       builder.setPipelineNameTemplate @pipeline_name
 
+      # pipeline warmup
+      builder.setWarmupDatastreams @warmup_datastreams
+      builder.setWarmupPipelines @warmup_pipelines
+      builder.setWarmupDiscoverDatastreams @warmup_discover_datastreams
+      builder.setWarmupTimeoutMillis((@warmup_timeout * 1000).to_i)
+      builder.setWarmupIterations(@warmup_iterations.to_i)
+      builder.setWarmupDocument(@warmup_document) unless @warmup_document.nil?
+
+      # diagnostics
+      builder.setProcessorProfiling @processor_profiling
+      builder.setSlowlogThresholdMicros((@slowlog_threshold * 1_000_000).round)
+      builder.setSlowlogMaxEventLength(@slowlog_max_event_length.to_i)
+
     end.build
   end
 
@@ -370,14 +453,31 @@ class LogStash::Filters::ElasticIntegration < LogStash::Filters::Base
     java_import('co.elastic.logstash.filters.elasticintegration.EventProcessorBuilder')
     java_import('org.elasticsearch.logstashbridge.geoip.GeoIpProcessorFactoryBridge')
 
-    @event_processor = EventProcessorBuilder.fromElasticsearch(@elasticsearch_rest_client, extract_immutable_config)
-                                            .setFilterMatchListener(method(:filter_matched_java).to_proc)
-                                            .addProcessor("geoip") { GeoIpProcessorFactoryBridge::create(@geoip_database_provider) }
-                                            .build(@plugin_context)
+    event_processor_builder = EventProcessorBuilder.fromElasticsearch(@elasticsearch_rest_client, extract_immutable_config)
+                                                   .setFilterMatchListener(method(:filter_matched_java).to_proc)
+                                                   .addProcessor("geoip") { GeoIpProcessorFactoryBridge::create(@geoip_database_provider) }
+                                                   .addBatchScope(@geoip_database_provider.getBatchScope)
+                                                   .addMetricsSource("geoip", @geoip_database_provider)
+    plugin_metric = java_plugin_metric
+    event_processor_builder.setPluginMetric(plugin_metric) unless plugin_metric.nil?
+
+    @event_processor = event_processor_builder.build(@plugin_context)
   rescue => exception
     raise_config_error!("configuration did not produce an EventProcessor: #{exception}")
   end
 
+  ##
+  # Adapts this plugin's metric namespace to the Java plugin API, so that the
+  # event processor can publish its metrics under this plugin's id.
+  # @return [co.elastic.logstash.api.NamespacedMetric, nil]: nil when metrics are disabled
+  def java_plugin_metric
+    return nil unless metric.kind_of?(LogStash::Instrument::NamespacedMetric)
+
+    require 'jruby'
+    java_import('org.logstash.plugins.NamespacedMetricImpl')
+    NamespacedMetricImpl.new(JRuby.runtime.current_context, metric)
+  end
+
   def perform_preflight_check!
     connected_es_version_info
     check_user_privileges!
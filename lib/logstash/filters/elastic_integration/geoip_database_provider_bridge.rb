@@ -21,10 +21,15 @@ module LogStash::Filters::ElasticIntegration::GeoipDatabaseProviderBridge
 
   def initialize_geoip_database_provider!
     java_import('co.elastic.logstash.filters.elasticintegration.geoip.IpDatabaseProvider')
+    database_options = IpDatabaseOptions.new(geoip_lookup_cache_size.to_i,
+                                             geoip_node_cache_size.to_i,
+                                             IpDatabaseOptions::FileMode.valueOf(geoip_database_file_mode.upcase),
+                                             geoip_empty_range_index_size.to_i)
     @geoip_database_provider ||= IpDatabaseProvider::Builder.new.tap do |builder|
+      builder.setDatabaseOptions(database_options)
       if geoip_database_directory
         logger.debug("discovering geoip databases from #{geoip_database_directory}")
-        builder.discoverDatabases(java.io.File.new(geoip_database_directory))
+        builder.discoverAndWatchDatabases(java.io.File.new(geoip_database_directory), @plugin_context.newNamedThreadFactory("geoip-database-watcher"))
       else
         geoip_database_manager = load_geoip_database_manager!
         if :UNAVAILABLE == geoip_database_manager
@@ -36,7 +41,7 @@ module LogStash::Filters::ElasticIntegration::GeoipDatabaseProviderBridge
 
           geoip_database_manager.supported_database_types.each do |type|
             logger.debug("subscribing to managed geoip database #{type}")
-            builder.setDatabaseHolder("GeoLite2-#{type}.mmdb", ObservingDatabaseHolder.new(type, eula_manager: geoip_database_manager, logger: logger))
+            builder.setDatabaseHolder("GeoLite2-#{type}.mmdb", ObservingDatabaseHolder.new(type, eula_manager: geoip_database_manager, options: database_options, logger: logger))
           end
         elsif geoip_database_directory.nil?
           logger.warn("Geoip Database Management is disabled; #{GUIDANCE}")
@@ -53,10 +58,11 @@ module LogStash::Filters::ElasticIntegration::GeoipDatabaseProviderBridge
     :UNAVAILABLE
   end
 
+  java_import('co.elastic.logstash.filters.elasticintegration.geoip.IpDatabaseOptions')
   java_import('co.elastic.logstash.filters.elasticintegration.geoip.ManagedIpDatabaseHolder')
   class ObservingDatabaseHolder < ManagedIpDatabaseHolder
-    def initialize(simple_database_type, eula_manager:, logger: nil)
-      super("GeoLite2-#{simple_database_type}")
+    def initialize(simple_database_type, eula_manager:, options: IpDatabaseOptions::DEFAULT, logger: nil)
+      super("GeoLite2-#{simple_database_type}", options)
 
       @simple_database_type = simple_database_type
       @logger = logger
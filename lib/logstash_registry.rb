@@ -0,0 +1,25 @@
+# encoding: utf-8
+
+########################################################################
+# Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+# under one or more contributor license agreements. Licensed under the
+# Elastic License 2.0; you may not use this file except in compliance
+# with the Elastic License 2.0.
+########################################################################
+
+##
+# Logstash executes this hook for every installed plugin gem when it boots.
+#
+# Registering the native-Java entry point requires loading this plugin's jars,
+# which the ruby `elastic_integration` plugin otherwise defers until it is used,
+# so `elastic_integration_java` is only registered when it has been enabled
+# with the `elastic_integration.java_plugin` JVM system property, and only when
+# the running Logstash and JVM can run it.
+if java.lang.System.getProperty("elastic_integration.java_plugin", "false") == "true" &&
+   !(defined?(LogStash::OSS) && LogStash::OSS) &&
+   java.lang.Runtime.version.feature >= 21
+  require_relative "logstash/filters/elastic_integration/jar_dependencies"
+
+  LogStash::PLUGIN_REGISTRY.add(:filter, "elastic_integration_java",
+                                Java::CoElasticLogstashFiltersElasticintegration::ElasticIntegrationFilter)
+end
@@ -735,6 +735,138 @@ describe LogStash::Filters::ElasticIntegration do
       end
     end
 
+    describe "warmup settings" do
+      let(:config) { super().merge("hosts" => %w[http://my-es-cluster:1111], "ssl_enabled" => false) }
+
+      context "with warmup iterations over a sample document" do
+        let(:config) { super().merge("warmup_iterations" => 3, "warmup_document" => { "message" => "warmup" }) }
+
+        it "accepts" do
+          expect{ registered_plugin }.not_to raise_error
+        end
+      end
+
+      [0, -5].each do |warmup_timeout|
+        context "with `warmup_timeout` of #{warmup_timeout}" do
+          let(:config) { super().merge("warmup_timeout" => warmup_timeout) }
+
+          it "raises an error" do
+            expected_message = "`warmup_timeout` must be a positive number of seconds"
+            expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+          end
+        end
+      end
+
+      [-1, 1.5].each do |warmup_iterations|
+        context "with `warmup_iterations` of #{warmup_iterations}" do
+          let(:config) { super().merge("warmup_iterations" => warmup_iterations) }
+
+          it "raises an error" do
+            expected_message = "`warmup_iterations` must be a non-negative integer"
+            expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+          end
+        end
+      end
+
+      context "with an empty `warmup_document`" do
+        let(:config) { super().merge("warmup_document" => {}) }
+
+        it "raises an error" do
+          expected_message = "Empty `warmup_document` is not allowed"
+          expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+        end
+      end
+    end
+
+    describe "slowlog settings" do
+      let(:config) { super().merge("hosts" => %w[http://my-es-cluster:1111], "ssl_enabled" => false) }
+
+      context "with a sub-millisecond `slowlog_threshold`" do
+        let(:config) { super().merge("slowlog_threshold" => 0.0005) }
+
+        it "accepts" do
+          expect{ registered_plugin }.not_to raise_error
+        end
+      end
+
+      context "with a negative `slowlog_threshold`" do
+        let(:config) { super().merge("slowlog_threshold" => -1) }
+
+        it "raises an error" do
+          expected_message = "`slowlog_threshold` must be a non-negative number of seconds"
+          expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+        end
+      end
+
+      context "with a sub-microsecond `slowlog_threshold`" do
+        let(:config) { super().merge("slowlog_threshold" => 0.0000001) }
+
+        it "raises an error" do
+          expected_message = "`slowlog_threshold` must be 0 or at least 1 microsecond (0.000001)"
+          expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+        end
+      end
+
+      context "with an unparsable `slowlog_threshold`" do
+        let(:config) { super().merge("slowlog_threshold" => "abc") }
+
+        # the config is rejected when the plugin is initialized, before it can be registered
+        subject(:plugin) { double("plugin").as_null_object }
+
+        it "raises an error" do
+          expect{ described_class.new(config) }.to raise_error(LogStash::ConfigurationError)
+        end
+      end
+
+      context "with a negative `slowlog_max_event_length`" do
+        let(:config) { super().merge("slowlog_max_event_length" => -1) }
+
+        it "raises an error" do
+          expected_message = "`slowlog_max_event_length` must be a non-negative integer"
+          expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+        end
+      end
+    end
+
+    describe "geoip settings" do
+      let(:config) { super().merge("hosts" => %w[http://my-es-cluster:1111], "ssl_enabled" => false) }
+
+      context "with heap-resident databases and every cache enabled" do
+        let(:config) { super().merge("geoip_database_file_mode" => "heap",
+                                     "geoip_lookup_cache_size" => 1000,
+                                     "geoip_node_cache_size" => 0,
+                                     "geoip_empty_range_index_size" => 500) }
+
+        it "accepts" do
+          expect{ registered_plugin }.not_to raise_error
+        end
+      end
+
+      %w[geoip_lookup_cache_size geoip_node_cache_size geoip_empty_range_index_size].each do |setting|
+        [-1, 1.5].each do |size|
+          context "with `#{setting}` of #{size}" do
+            let(:config) { super().merge(setting => size) }
+
+            it "raises an error" do
+              expected_message = "`#{setting}` must be a non-negative integer"
+              expect{ registered_plugin }.to raise_error(LogStash::ConfigurationError).with_message(expected_message)
+            end
+          end
+        end
+      end
+
+      context "with an invalid `geoip_database_file_mode`" do
+        let(:config) { super().merge("geoip_database_file_mode" => "on_disk") }
+
+        # the config is rejected when the plugin is initialized, before it can be registered
+        subject(:plugin) { double("plugin").as_null_object }
+
+        it "raises an error" do
+          expect{ described_class.new(config) }.to raise_error(LogStash::ConfigurationError)
+        end
+      end
+    end
+
     describe "plugin vs connected ES versions compatibility" do
       let(:config) { super().merge("hosts" => %w[127.0.0.2:9300]) }
       let(:plugin_major_version) { version.split('.').first.to_i }
@@ -0,0 +1,277 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
+import org.logstash.plugins.BasicEventFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static co.elastic.logstash.filters.elasticintegration.util.LocalPipelinesUtil.getPreparedPipelinesResourcePath;
+
+/**
+ * Measures end-to-end processing of batches of events by an {@link EventProcessor} that is built
+ * with {@link EventProcessorBuilder} from pipelines in a local directory, so that no Elasticsearch
+ * cluster is needed.
+ *
+ * <ul>
+ *     <li>In {@link Mode#Throughput} mode, the {@code events} counter reports events per second, and
+ *         the {@code failures} counter reports how many of them were tagged with a pipeline failure;</li>
+ *     <li>In {@link Mode#SampleTime} mode, the percentiles (such as {@code p0.50} and {@code p0.99})
+ *         are of the latency of a whole batch;</li>
+ *     <li>The gc profiler's {@code gc.alloc.rate.norm} is the number of bytes allocated per batch,
+ *         which can be divided by {@code batchSize} for the bytes allocated per event. Because each
+ *         batch is made of fresh copies of the events, it includes the allocations of copying them,
+ *         which are measured on their own by the {@link #copyEvents} baseline and should be subtracted
+ *         from those of {@link #processEvents}.</li>
+ * </ul>
+ *
+ * <p>The number of concurrent workers is controlled with JMH's {@code -t} option, and each worker
+ * processes its own batches through the shared {@link EventProcessor}. Pipelines other than the ones
+ * used by the tests can be benchmarked with the {@link Workload#CORPUS} workload, by providing the
+ * path to a directory of pipeline definitions (such as those of an integration package) as the
+ * {@code corpusPath} parameter.</p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class EventProcessorBenchmark {
+
+    public enum Workload {
+        /**
+         * a single pipeline of mutating processors, which fails for one event in three
+         */
+        SIMPLE_MUTATE {
+            @Override
+            EventProcessorBuilder builder(final Path corpusPath) {
+                return EventProcessor.builder()
+                        .setEventPipelineNameResolver((event, exceptionHandler) -> Optional.of("simple-mutate"))
+                        .setEventIndexNameResolver((event, exceptionHandler) -> Optional.empty())
+                        .setIndexNamePipelineNameResolver((indexName, exceptionHandler) -> Optional.empty())
+                        .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath(EventProcessor.class, "simple-mutate-pipelines")));
+            }
+
+            @Override
+            List<Event> templates(final Path corpusPath) {
+                return List.of(
+                        newEvent(Map.of("toplevel", "ok", "id", "first", "required-field-to-remove", "present", "nested", Map.of("field-to-lowercase", "sIlLyCaSe3", "field-to-remove", "nope", "field-to-keep", "ok")), Map.of()),
+                        newEvent(Map.of("toplevel", "ok", "id", "second", "nested", Map.of("field-to-lowercase", "sIlLyCaSe3", "field-to-remove", "nope", "field-to-keep", "ok")), Map.of()),
+                        newEvent(Map.of("toplevel", "ok", "id", "third", "required-field-to-remove", "present", "nested", Map.of("field-to-remove", "nope", "field-to-keep", "ok")), Map.of()));
+            }
+        },
+
+        /**
+         * data stream events whose default pipeline reroutes most of them to other pipelines
+         */
+        REROUTE {
+            @Override
+            EventProcessorBuilder builder(final Path corpusPath) {
+                return EventProcessor.builder()
+                        .setEventIndexNameResolver(new DatastreamEventToIndexNameResolver())
+                        .setIndexNamePipelineNameResolver((indexName, exceptionHandler) -> indexName.contains("none") ? Optional.empty() : Optional.of(indexName + "-pipeline"))
+                        .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath(EventProcessor.class, "reroute-pipelines")));
+            }
+
+            @Override
+            List<Event> templates(final Path corpusPath) {
+                return Stream.of("no-reroute", "reroute-hardcoded-downstream", "reroute-dataset-verify", "reroute-namespace-fire")
+                        .map((id) -> newEvent(Map.of("toplevel", "ok", "id", id, "data_stream", Map.of("type", "logs", "dataset", "test", "namespace", "smoke")), Map.of()))
+                        .toList();
+            }
+        },
+
+        /**
+         * a pipeline that executes another pipeline with the `pipeline` processor
+         */
+        NESTING {
+            @Override
+            EventProcessorBuilder builder(final Path corpusPath) {
+                return EventProcessor.builder()
+                        .setEventPipelineNameResolver(new FieldValueEventToPipelineNameResolver("[@metadata][ingest_pipeline]"))
+                        .setEventIndexNameResolver((event, exceptionHandler) -> Optional.empty())
+                        .setIndexNamePipelineNameResolver((indexName, exceptionHandler) -> Optional.empty())
+                        .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath(EventProcessor.class, "nesting-pipelines")));
+            }
+
+            @Override
+            List<Event> templates(final Path corpusPath) {
+                return List.of(
+                        newEvent(Map.of("toplevel", "ok", "id", "outer", "ignore_missing", true), Map.of("ingest_pipeline", "outer")),
+                        newEvent(Map.of("toplevel", "ok", "id", "inner", "ignore_missing", true), Map.of("ingest_pipeline", "inner")));
+            }
+        },
+
+        /**
+         * a pipeline whose painless script processor calls ingest-common processors
+         */
+        SCRIPT {
+            @Override
+            EventProcessorBuilder builder(final Path corpusPath) {
+                return EventProcessor.builder()
+                        .setEventPipelineNameResolver((event, exceptionHandler) -> Optional.of("pipeline"))
+                        .setEventIndexNameResolver((event, exceptionHandler) -> Optional.empty())
+                        .setIndexNamePipelineNameResolver((indexName, exceptionHandler) -> Optional.empty())
+                        .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath(EventProcessor.class, "script-processor-pipelines")));
+            }
+
+            @Override
+            List<Event> templates(final Path corpusPath) {
+                return List.of(newEvent(Map.of("id", "baseline", "lower", "lower", "mixed", "MiXeD"), Map.of()));
+            }
+        },
+
+        /**
+         * each of the pipelines in the directory at {@code corpusPath}, in turn, with a generic log event;
+         * because that event may not have the shape that a pipeline expects, its failures are counted
+         */
+        CORPUS {
+            @Override
+            EventProcessorBuilder builder(final Path corpusPath) {
+                return EventProcessor.builder()
+                        .setEventPipelineNameResolver(new FieldValueEventToPipelineNameResolver("[@metadata][ingest_pipeline]"))
+                        .setEventIndexNameResolver((event, exceptionHandler) -> Optional.empty())
+                        .setIndexNamePipelineNameResolver((indexName, exceptionHandler) -> Optional.empty())
+                        .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(corpusPath));
+            }
+
+            @Override
+            List<Event> templates(final Path corpusPath) throws IOException {
+                try (Stream<Path> pipelineFiles = Files.list(corpusPath)) {
+                    return pipelineFiles.map((pipelineFile) -> pipelineFile.getFileName().toString())
+                            .filter((fileName) -> fileName.endsWith(".json"))
+                            .sorted()
+                            .map((fileName) -> fileName.substring(0, fileName.length() - ".json".length()))
+                            .map((pipelineName) -> newEvent(Map.of(
+                                    "message", "Mar 12 01:17:38 web-01 sshd[4321]: Accepted publickey for deploy from 89.160.20.128 port 52311 ssh2",
+                                    "host", Map.of("name", "web-01"),
+                                    "event", Map.of("original", "Mar 12 01:17:38 web-01 sshd[4321]: Accepted publickey for deploy from 89.160.20.128 port 52311 ssh2")),
+                                    Map.of("ingest_pipeline", pipelineName)))
+                            .toList();
+                }
+            }
+        };
+
+        abstract EventProcessorBuilder builder(Path corpusPath);
+
+        abstract List<Event> templates(Path corpusPath) throws IOException;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Processor {
+        @Param
+        public Workload workload;
+
+        @Param({"125"})
+        public int batchSize;
+
+        @Param({""})
+        public String corpusPath;
+
+        EventProcessor eventProcessor;
+        List<Event> templates;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            final Path corpus = corpusPath.isEmpty() ? null : Paths.get(corpusPath);
+            if (workload == Workload.CORPUS && corpus == null) {
+                throw new IllegalArgumentException("the CORPUS workload requires a `corpusPath` parameter");
+            }
+            templates = workload.templates(corpus);
+            eventProcessor = workload.builder(corpus).build(new PluginContext("benchmark", workload.name()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            eventProcessor.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        List<Event> events;
+
+        @Setup(Level.Invocation)
+        public void setup(final Processor processor) {
+            // processing mutates and replaces events, so each batch is made of fresh copies
+            final List<Event> batch = new ArrayList<>(processor.batchSize);
+            for (int i = 0; i < processor.batchSize; i++) {
+                batch.add(processor.templates.get(i % processor.templates.size()).clone());
+            }
+            events = batch;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long events;
+        public long failures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+            failures = 0;
+        }
+    }
+
+    /**
+     * A baseline that only makes the copies of the events that each batch is made of, since
+     * JMH includes the allocations of per-invocation setup in those of the benchmark.
+     */
+    @Benchmark
+    public Collection<Event> copyEvents(final Batch batch) {
+        return batch.events;
+    }
+
+    @Benchmark
+    public Collection<Event> processEvents(final Processor processor, final Batch batch, final Counters counters) throws Exception {
+        final Collection<Event> processed = processor.eventProcessor.processEvents(batch.events);
+        counters.events += batch.events.size();
+        for (Event event : processed) {
+            if (event.includes("[@metadata][_ingest_pipeline_failure]")) {
+                counters.failures++;
+            }
+        }
+        return processed;
+    }
+
+    private static Event newEvent(final Map<String, Object> data, final Map<String, Object> metadata) {
+        final Map<String, Object> intermediate = new HashMap<>(data);
+        intermediate.put("@metadata", metadata);
+        return BasicEventFactory.INSTANCE.newEvent(Map.copyOf(intermediate));
+    }
+}
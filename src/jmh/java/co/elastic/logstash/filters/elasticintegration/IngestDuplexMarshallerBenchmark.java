@@ -0,0 +1,163 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Event;
+import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
+import org.jruby.RubyBignum;
+import org.jruby.RubyFloat;
+import org.jruby.ext.bigdecimal.RubyBigDecimal;
+import org.logstash.RubyUtil;
+import org.logstash.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static co.elastic.logstash.filters.elasticintegration.util.EventTestUtil.eventFromMap;
+
+/**
+ * Measures the cost of marshalling events of representative shapes between Logstash
+ * {@link Event}s and {@link IngestDocumentBridge}s, in both directions.
+ * Neither direction mutates its input, so each benchmark reuses a single input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestDuplexMarshallerBenchmark {
+
+    public enum Shape {
+        /**
+         * a handful of top-level string and numeric fields, like a lightly-parsed log line
+         */
+        FLAT_SMALL(() -> eventFromMap(Map.of(
+                "message", "127.0.0.1 - - [12/Mar/2023:01:17:38 +0000] \"GET / HTTP/1.1\" 200 612",
+                "host", Map.of("name", "web-01"),
+                "status", 200,
+                "bytes", 612L))),
+
+        /**
+         * a fully-parsed ECS event with several levels of nesting and metadata
+         */
+        NESTED_ECS(() -> {
+            final Event event = eventFromMap(Map.of(
+                    "message", "GET /index.html 200",
+                    "data_stream", Map.of("type", "logs", "dataset", "nginx.access", "namespace", "default"),
+                    "ecs", Map.of("version", "8.11.0"),
+                    "event", Map.of("category", List.of("web"), "type", List.of("access"), "outcome", "success", "duration", 1_250_000L),
+                    "http", Map.of(
+                            "request", Map.of("method", "GET", "referrer", "https://www.elastic.co/", "bytes", 312),
+                            "response", Map.of("status_code", 200, "body", Map.of("bytes", 612)),
+                            "version", "1.1"),
+                    "url", Map.of("original", "/index.html?q=logstash", "path", "/index.html", "query", "q=logstash"),
+                    "user_agent", Map.of("original", "Mozilla/5.0", "os", Map.of("name", "Mac OS X", "version", "13.2"), "device", Map.of("name", "Mac")),
+                    "source", Map.of("ip", "89.160.20.128", "geo", Map.of("country_iso_code", "SE", "location", Map.of("lat", 58.4167, "lon", 15.6167))),
+                    "agent", Map.of("type", "filebeat", "version", "8.11.0", "id", "0b7f4c3e-5c0a-4d6b-9c5e-0d1a2b3c4d5e")));
+            event.setField("[@metadata][input][beats][host][ip]", "10.0.0.12");
+            return event;
+        }),
+
+        /**
+         * arrays of scalars and of objects, like those produced by splitting or aggregating
+         */
+        LARGE_ARRAYS(() -> {
+            final List<String> tags = new ArrayList<>();
+            final List<Long> samples = new ArrayList<>();
+            final List<Map<String, Object>> spans = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                tags.add("tag-" + i);
+                samples.add((long) i * 31);
+                spans.add(Map.of("id", "span-" + i, "duration", Map.of("us", i * 17), "name", "operation"));
+            }
+            return eventFromMap(Map.of("message", "arrays", "labels", tags, "samples", samples, "spans", spans));
+        }),
+
+        /**
+         * values of types that are produced by Ruby plugins, which require conversion
+         */
+        RUBY_VALUES(() -> {
+            final Event event = eventFromMap(Map.of("message", "ruby"));
+            event.setField("[ruby][symbol]", RubyUtil.RUBY.newSymbol("symbolic"));
+            event.setField("[ruby][bignum]", RubyBignum.newBignum(RubyUtil.RUBY, new BigInteger("123456789012345678901234567890")));
+            event.setField("[ruby][float]", RubyFloat.newFloat(RubyUtil.RUBY, 3.14159));
+            event.setField("[ruby][decimal]", new RubyBigDecimal(RubyUtil.RUBY, new BigDecimal("1234.5678")));
+            event.setField("[ruby][string]", RubyUtil.RUBY.newString("string"));
+            return event;
+        }),
+
+        /**
+         * many timestamp values, each of which is converted to a string
+         */
+        TIMESTAMP_HEAVY(() -> {
+            final Map<String, Object> timestamps = new HashMap<>();
+            final Instant base = Instant.parse("2023-03-12T01:17:38.135792468Z");
+            for (int i = 0; i < 20; i++) {
+                timestamps.put("t" + i, new Timestamp(base.plusMillis(i * 1_001L)));
+            }
+            final Event event = eventFromMap(Map.of("message", "timestamps", "timestamps", timestamps));
+            event.setField("[event][created]", new Timestamp(base));
+            event.setField("[event][ingested]", new Timestamp(base.plusSeconds(1)));
+            return event;
+        });
+
+        private final Supplier<Event> eventSupplier;
+
+        Shape(final Supplier<Event> eventSupplier) {
+            this.eventSupplier = eventSupplier;
+        }
+    }
+
+    @Param
+    public Shape shape;
+
+    private final IngestDuplexMarshaller marshaller = IngestDuplexMarshaller.defaultInstance();
+
+    private Event event;
+    private IngestDocumentBridge ingestDocument;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        event = shape.eventSupplier.get();
+        ingestDocument = marshaller.toIngestDocument(event);
+    }
+
+    @Benchmark
+    public IngestDocumentBridge toIngestDocument() {
+        return marshaller.toIngestDocument(event);
+    }
+
+    @Benchmark
+    public Event toLogstashEvent() {
+        return marshaller.toLogstashEvent(ingestDocument);
+    }
+
+    @Benchmark
+    public Event roundTrip() {
+        return marshaller.toLogstashEvent(marshaller.toIngestDocument(event));
+    }
+}
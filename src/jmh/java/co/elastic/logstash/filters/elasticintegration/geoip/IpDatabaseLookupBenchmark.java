@@ -0,0 +1,279 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import co.elastic.logstash.filters.elasticintegration.util.IngestDocumentUtil;
+import co.elastic.logstash.filters.elasticintegration.util.ResourcesUtil;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.CHMCache;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.NoCache;
+import org.elasticsearch.logstashbridge.common.ProjectIdBridge;
+import org.elasticsearch.logstashbridge.geoip.GeoIpProcessorFactoryBridge;
+import org.elasticsearch.logstashbridge.geoip.IpDatabaseBridge;
+import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
+import org.elasticsearch.logstashbridge.ingest.ProcessorBridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures geoip lookups against the GeoLite2 databases that are used by the tests, through the
+ * geoip processor that is created from an {@link IpDatabaseProvider}, as each event's lookups are.
+ *
+ * <ul>
+ *     <li>{@code geoip} looks up addresses through a provider whose database has a node cache
+ *         of {@code nodeCacheSize} entries ({@code 0} for none; the default is {@code 10000});</li>
+ *     <li>{@code holderAccess} only checks the validity of a database and gets it from its
+ *         {@link IpDatabaseHolder}, as the geoip processor does before each lookup, and
+ *         {@code holderGeoip} looks up addresses through that holder, which together isolate the
+ *         cost of the {@link ManagedIpDatabaseHolder}'s locking from the lookup itself.</li>
+ * </ul>
+ *
+ * <p>Addresses are drawn from a fixed population of {@code populationSize} distinct public addresses,
+ * either {@link Distribution#UNIFORM uniformly} or from a {@link Distribution#ZIPFIAN Zipfian} hot set,
+ * with a mix of IPv4 and IPv6 addresses given by {@code addressMix}. The number of concurrent threads
+ * is controlled with JMH's {@code -t} option.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class IpDatabaseLookupBenchmark {
+
+    private static final String CITY_DATABASE = "GeoLite2-City.mmdb";
+
+    public enum Holder {
+        CONSTANT {
+            @Override
+            IpDatabaseHolder newHolder(final Path databasePath) throws IOException {
+                return new ConstantIpDatabaseHolder(IpDatabaseAdapter.defaultForPath(databasePath));
+            }
+        },
+        MANAGED {
+            @Override
+            IpDatabaseHolder newHolder(final Path databasePath) {
+                final String databaseFileName = databasePath.getFileName().toString();
+                return new ManagedIpDatabaseHolder(databaseFileName.substring(0, databaseFileName.length() - ".mmdb".length()), databasePath);
+            }
+        };
+
+        abstract IpDatabaseHolder newHolder(Path databasePath) throws IOException;
+    }
+
+    public enum Distribution {
+        /**
+         * every address in the population is equally likely
+         */
+        UNIFORM {
+            @Override
+            double[] cumulativeWeights(final int populationSize) {
+                final double[] cumulativeWeights = new double[populationSize];
+                for (int i = 0; i < populationSize; i++) {
+                    cumulativeWeights[i] = (i + 1.0) / populationSize;
+                }
+                return cumulativeWeights;
+            }
+        },
+
+        /**
+         * the n-th address of the population is looked up in proportion to 1/n, like the
+         * clients of a service in which a few addresses account for most of the traffic
+         */
+        ZIPFIAN {
+            @Override
+            double[] cumulativeWeights(final int populationSize) {
+                final double[] cumulativeWeights = new double[populationSize];
+                double total = 0;
+                for (int i = 0; i < populationSize; i++) {
+                    total += 1.0 / (i + 1);
+                    cumulativeWeights[i] = total;
+                }
+                for (int i = 0; i < populationSize; i++) {
+                    cumulativeWeights[i] /= total;
+                }
+                return cumulativeWeights;
+            }
+        };
+
+        abstract double[] cumulativeWeights(int populationSize);
+    }
+
+    public enum AddressMix {
+        IPV4(0.0),
+        MIXED(0.2),
+        IPV6(1.0);
+
+        private final double ipv6Ratio;
+
+        AddressMix(final double ipv6Ratio) {
+            this.ipv6Ratio = ipv6Ratio;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Processors {
+        @Param({CITY_DATABASE, "GeoLite2-ASN.mmdb"})
+        public String database;
+
+        @Param({"0", "10000", "100000"})
+        public int nodeCacheSize;
+
+        IpDatabaseProvider provider;
+        ProcessorBridge processor;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            final IpDatabaseAdapter adapter = new IpDatabaseAdapter.Builder(databasePath(database).toFile())
+                    .setCache(nodeCacheSize == 0 ? NoCache.getInstance() : new CHMCache(nodeCacheSize))
+                    .build();
+            provider = new IpDatabaseProvider.Builder().setDatabaseHolder(database, new ConstantIpDatabaseHolder(adapter)).build();
+            processor = newGeoipProcessor(provider, database);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            provider.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Holders {
+        @Param
+        public Holder holder;
+
+        IpDatabaseProvider provider;
+        ProcessorBridge processor;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            provider = new IpDatabaseProvider.Builder().setDatabaseHolder(CITY_DATABASE, holder.newHolder(databasePath(CITY_DATABASE))).build();
+            processor = newGeoipProcessor(provider, CITY_DATABASE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            provider.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Population {
+        @Param
+        public Distribution distribution;
+
+        @Param
+        public AddressMix addressMix;
+
+        @Param({"100000"})
+        public int populationSize;
+
+        String[] addresses;
+        double[] cumulativeWeights;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // the same population is generated for every trial, so that results are comparable
+            final SplittableRandom random = new SplittableRandom(42);
+            addresses = new String[populationSize];
+            for (int i = 0; i < populationSize; i++) {
+                addresses[i] = random.nextDouble() < addressMix.ipv6Ratio ? randomIpv6(random) : randomIpv4(random);
+            }
+            cumulativeWeights = distribution.cumulativeWeights(populationSize);
+        }
+
+        private static String randomIpv4(final SplittableRandom random) {
+            while (true) {
+                final int firstOctet = random.nextInt(1, 224);
+                // skip the blocks that hold the private and loopback ranges, whose lookups are not representative
+                if (firstOctet != 10 && firstOctet != 127 && firstOctet != 172 && firstOctet != 192) {
+                    return String.format("%d.%d.%d.%d", firstOctet, random.nextInt(256), random.nextInt(256), random.nextInt(1, 255));
+                }
+            }
+        }
+
+        private static String randomIpv6(final SplittableRandom random) {
+            // global unicast addresses, in 2000::/3
+            return String.format("%x:%x:%x:%x:%x:%x:%x:%x",
+                    0x2000 + random.nextInt(0x2000), random.nextInt(0x10000), random.nextInt(0x10000), random.nextInt(0x10000),
+                    random.nextInt(0x10000), random.nextInt(0x10000), random.nextInt(0x10000), random.nextInt(0x10000));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lookups {
+        private static final int SEQUENCE_LENGTH = 65536;
+
+        // each thread looks up its own pre-computed sequence of addresses, so that choosing an address is cheap
+        private final String[] addresses = new String[SEQUENCE_LENGTH];
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setup(final Population population) {
+            final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                final int index = Arrays.binarySearch(population.cumulativeWeights, random.nextDouble());
+                addresses[i] = population.addresses[Math.min(index < 0 ? -(index + 1) : index, population.populationSize - 1)];
+            }
+        }
+
+        IngestDocumentBridge nextDocument() {
+            final String address = addresses[cursor];
+            cursor = (cursor + 1) & (SEQUENCE_LENGTH - 1);
+            return IngestDocumentUtil.createIngestDocument(Map.of("input", address));
+        }
+    }
+
+    /**
+     * Looks up an address with the geoip processor, in a new document like the one of each event.
+     */
+    @Benchmark
+    public IngestDocumentBridge geoip(final Processors processors, final Lookups lookups) throws Exception {
+        return processors.processor.execute(lookups.nextDocument());
+    }
+
+    @Benchmark
+    public IpDatabaseBridge holderAccess(final Holders holders) {
+        return holders.provider.isValid(CITY_DATABASE) ? holders.provider.getDatabase(CITY_DATABASE) : null;
+    }
+
+    @Benchmark
+    public IngestDocumentBridge holderGeoip(final Holders holders, final Lookups lookups) throws Exception {
+        return holders.processor.execute(lookups.nextDocument());
+    }
+
+    private static Path databasePath(final String database) throws IOException {
+        return ResourcesUtil.getResourcePath(IpDatabaseProviderTest.class, "databases").orElseThrow().resolve(database).toRealPath();
+    }
+
+    private static ProcessorBridge newGeoipProcessor(final IpDatabaseProvider provider, final String database) throws Exception {
+        final ProcessorBridge processor = GeoIpProcessorFactoryBridge.create(provider)
+                .create(Map.of(), null, null, Map.of("field", "input", "database_file", database), ProjectIdBridge.getDefault());
+        if (processor.isAsync()) {
+            throw new IllegalStateException("the geoip processor is expected to be synchronous");
+        }
+        return processor;
+    }
+}
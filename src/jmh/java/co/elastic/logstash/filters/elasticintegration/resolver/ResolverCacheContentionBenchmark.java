@@ -0,0 +1,233 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.resolver;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Measures lookups through a {@link ResolverCache} that is shared by many threads, as the caches
+ * of pipeline names and of pipelines are shared by all of a Logstash pipeline's workers.
+ *
+ * <ul>
+ *     <li>{@code hitRatio} is the fraction of lookups that are for keys that resolve to a value;
+ *         the remaining lookups are for keys that resolve to nothing, which a cache that does not
+ *         retain misses must load again through its loader each time;</li>
+ *     <li>{@code loaderDelayMicros} is how long the loader takes to resolve a single key, like
+ *         a request to Elasticsearch, during which the key is locked by the cache;</li>
+ *     <li>{@code reloading} determines whether the cache's {@link CacheReloader#reloadOnce()}
+ *         is run back-to-back on a background thread while lookups are being measured, which is
+ *         a worst case of the periodic reloads of the {@link CacheReloadService}; the reload passes
+ *         that complete are reported as the {@code reloadPasses} secondary result.</li>
+ * </ul>
+ *
+ * <p>The number of concurrent threads looking up keys is controlled with JMH's {@code -t} option,
+ * and other {@link ResolverCache} implementations can be compared by adding an {@link Implementation}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ResolverCacheContentionBenchmark {
+
+    public enum Implementation {
+        /**
+         * the default cache, which retains values until cleared and never retains misses
+         */
+        SIMPLE_PERMANENT {
+            @Override
+            ResolverCache<String, String> newCache() {
+                return new SimpleResolverCache<>("benchmark", SimpleResolverCache.Configuration.PERMANENT);
+            }
+        },
+
+        /**
+         * a cache whose values and misses expire quickly, so that lookups regularly contend with expirations
+         */
+        SIMPLE_EXPIRING {
+            @Override
+            ResolverCache<String, String> newCache() {
+                return new SimpleResolverCache<>("benchmark", new SimpleResolverCache.Configuration(Duration.ofSeconds(1), Duration.ofMillis(100)));
+            }
+        };
+
+        abstract ResolverCache<String, String> newCache();
+    }
+
+    public enum Reloading {
+        NONE,
+        CONTINUOUS,
+    }
+
+    private static final Consumer<Exception> RETHROWING_EXCEPTION_HANDLER = (e) -> { throw new IllegalStateException(e); };
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+        @Param
+        public Implementation implementation;
+
+        @Param({"64"})
+        public int keyCount;
+
+        @Param({"1.0", "0.9"})
+        public double hitRatio;
+
+        @Param({"0", "500"})
+        public long loaderDelayMicros;
+
+        @Param
+        public Reloading reloading;
+
+        ResolverCache<String, String> cache;
+        CacheableResolver.Ephemeral<String, String> loader;
+
+        // the first keyCount keys resolve to a value, and the remaining keyCount keys resolve to nothing
+        String[] keys;
+        ResolverHandle<String>[] handles;
+
+        final AtomicLong reloadPasses = new AtomicLong();
+        private volatile boolean stopped;
+        private Thread reloadThread;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setup() {
+            final long loaderDelayNanos = TimeUnit.MICROSECONDS.toNanos(loaderDelayMicros);
+            loader = (key, exceptionHandler) -> {
+                if (loaderDelayNanos > 0) {
+                    LockSupport.parkNanos(loaderDelayNanos);
+                }
+                return key.startsWith("hit-") ? Optional.of("value-of-" + key) : Optional.empty();
+            };
+
+            cache = implementation.newCache();
+            keys = new String[keyCount * 2];
+            handles = new ResolverHandle[keyCount * 2];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = "hit-" + i;
+                keys[keyCount + i] = "miss-" + i;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                handles[i] = cache.bind(keys[i], loader);
+                cache.resolve(keys[i], loader, RETHROWING_EXCEPTION_HANDLER);
+            }
+
+            if (reloading == Reloading.CONTINUOUS) {
+                final CacheReloader reloader = cache.getReloader(loader);
+                stopped = false;
+                reloadThread = new Thread(() -> {
+                    while (!stopped) {
+                        reloader.reloadOnce();
+                        reloadPasses.incrementAndGet();
+                    }
+                }, "benchmark-reloader");
+                reloadThread.setDaemon(true);
+                reloadThread.start();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            stopped = true;
+            if (Objects.nonNull(reloadThread)) {
+                reloadThread.join();
+            }
+            cache.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Lookups {
+        private static final int SEQUENCE_LENGTH = 4096;
+
+        // each thread looks up its own pre-computed sequence of keys, so that choosing a key is cheap
+        private final int[] sequence = new int[SEQUENCE_LENGTH];
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setup(final Cache cache) {
+            final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                final int key = random.nextInt(cache.keyCount);
+                sequence[i] = random.nextDouble() < cache.hitRatio ? key : cache.keyCount + key;
+            }
+        }
+
+        int next() {
+            final int index = sequence[cursor];
+            cursor = (cursor + 1) & (SEQUENCE_LENGTH - 1);
+            return index;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Reloads {
+        // JMH sums the counters of all threads, so only the first thread reports the passes that complete during its iteration;
+        // the shared count is only ever read, so that no thread's iteration can reset it during another's
+        public long reloadPasses;
+
+        private boolean reporting;
+        private long reloadPassesAtStart;
+
+        @Setup(Level.Iteration)
+        public void start(final Cache cache, final ThreadParams threadParams) {
+            reporting = threadParams.getThreadIndex() == 0;
+            reloadPasses = 0;
+            reloadPassesAtStart = cache.reloadPasses.get();
+        }
+
+        @TearDown(Level.Iteration)
+        public void collect(final Cache cache) {
+            if (reporting) {
+                reloadPasses = cache.reloadPasses.get() - reloadPassesAtStart;
+            }
+        }
+    }
+
+    /**
+     * Looks up a key with {@link ResolverCache#resolve}, as a {@link CachingResolver} does for each key it resolves.
+     */
+    @Benchmark
+    public Optional<String> resolve(final Cache cache, final Lookups lookups, final Reloads reloads) {
+        return cache.cache.resolve(cache.keys[lookups.next()], cache.loader, RETHROWING_EXCEPTION_HANDLER);
+    }
+
+    /**
+     * Looks up a key through a {@link ResolverHandle} that was bound with {@link ResolverCache#bind},
+     * as the pipelines that are referenced by the {@code pipeline} processor are.
+     */
+    @Benchmark
+    public Optional<String> resolveBound(final Cache cache, final Lookups lookups, final Reloads reloads) {
+        return cache.handles[lookups.next()].resolve(RETHROWING_EXCEPTION_HANDLER);
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+/**
+ * A {@link BatchScope} is notified when an {@link EventProcessor} begins and ends processing
+ * a batch of events, so that a component can hold state that is only valid within a single batch.
+ *
+ * <p>Both notifications are made on the thread that processes the batch, and {@link #end()} is
+ * called even when processing fails. Work that a pipeline performs asynchronously may continue
+ * on other threads, so state that is scoped this way is only visible to the processing thread.</p>
+ */
+public interface BatchScope {
+    void begin();
+
+    void end();
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Configuration;
+import co.elastic.logstash.api.Context;
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.api.Filter;
+import co.elastic.logstash.api.FilterMatchListener;
+import co.elastic.logstash.api.LogstashPlugin;
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.api.Password;
+import co.elastic.logstash.api.PluginConfigSpec;
+import co.elastic.logstash.api.PluginHelper;
+import co.elastic.logstash.filters.elasticintegration.geoip.IpDatabaseOptions;
+import co.elastic.logstash.filters.elasticintegration.geoip.IpDatabaseProvider;
+import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.logstashbridge.core.IOUtilsBridge;
+import org.elasticsearch.logstashbridge.geoip.GeoIpProcessorFactoryBridge;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * The {@link ElasticIntegrationFilter} is a native-Java entry point to this plugin, implementing
+ * the Logstash Java plugin API. It accepts the same configuration as the ruby plugin, validates it
+ * equivalently, and hands each batch of events directly to the {@link EventProcessor} along with
+ * Logstash's {@link FilterMatchListener}, so that no event crosses the JRuby event bridge.
+ *
+ * <p>It is registered as {@code elastic_integration_java} by the gem's plugin registry hook, so
+ * that it does not collide with the ruby plugin, but only when it is enabled with the
+ * {@code elastic_integration.java_plugin} system property, since registering it loads the plugin's
+ * dependencies into every Logstash process. Because Geoip Database Management is only available
+ * to ruby plugins, geoip databases can only be provided to this entry point with
+ * {@code geoip_database_directory}.</p>
+ */
+@LogstashPlugin(name = ElasticIntegrationFilter.PLUGIN_NAME)
+public class ElasticIntegrationFilter implements Filter {
+
+    private static final Logger LOGGER = LogManager.getLogger(ElasticIntegrationFilter.class);
+
+    static final String PLUGIN_NAME = "elastic_integration_java";
+
+    static final int ELASTICSEARCH_DEFAULT_PORT = 9200;
+    static final String ELASTICSEARCH_DEFAULT_PATH = "/";
+    static final String HTTP_PROTOCOL = "http";
+    static final String HTTPS_PROTOCOL = "https";
+    static final String ELASTIC_API_VERSION = "2023-10-31";
+
+    static final String GEOIP_GUIDANCE = "integrations that rely on the Geoip Processor will be unable to enrich " +
+            "events with geo data unless you provide your own databases with `geoip_database_directory`.";
+
+    // elasticsearch: connection target
+    static final PluginConfigSpec<List<Object>> HOSTS = PluginConfigSpec.arraySetting("hosts");
+    static final PluginConfigSpec<String> PROXY = PluginConfigSpec.stringSetting("proxy");
+    static final PluginConfigSpec<String> CLOUD_ID = PluginConfigSpec.stringSetting("cloud_id");
+
+    // elasticsearch: ssl
+    static final PluginConfigSpec<Boolean> SSL_ENABLED = PluginConfigSpec.booleanSetting("ssl_enabled");
+    static final PluginConfigSpec<String> SSL_VERIFICATION_MODE = PluginConfigSpec.stringSetting("ssl_verification_mode");
+    static final PluginConfigSpec<String> SSL_TRUSTSTORE_PATH = PluginConfigSpec.stringSetting("ssl_truststore_path");
+    static final PluginConfigSpec<Password> SSL_TRUSTSTORE_PASSWORD = PluginConfigSpec.passwordSetting("ssl_truststore_password");
+    static final PluginConfigSpec<List<Object>> SSL_CERTIFICATE_AUTHORITIES = PluginConfigSpec.arraySetting("ssl_certificate_authorities");
+    static final PluginConfigSpec<String> SSL_CERTIFICATE = PluginConfigSpec.stringSetting("ssl_certificate");
+    static final PluginConfigSpec<String> SSL_KEY = PluginConfigSpec.stringSetting("ssl_key");
+    static final PluginConfigSpec<Password> SSL_KEY_PASSPHRASE = PluginConfigSpec.passwordSetting("ssl_key_passphrase");
+    static final PluginConfigSpec<String> SSL_KEYSTORE_PATH = PluginConfigSpec.stringSetting("ssl_keystore_path");
+    static final PluginConfigSpec<Password> SSL_KEYSTORE_PASSWORD = PluginConfigSpec.passwordSetting("ssl_keystore_password");
+
+    // elasticsearch: request auth
+    static final PluginConfigSpec<String> USERNAME = PluginConfigSpec.stringSetting("username");
+    static final PluginConfigSpec<Password> PASSWORD = PluginConfigSpec.passwordSetting("password");
+    static final PluginConfigSpec<Password> CLOUD_AUTH = PluginConfigSpec.passwordSetting("cloud_auth");
+    static final PluginConfigSpec<Password> API_KEY = PluginConfigSpec.passwordSetting("api_key");
+
+    // geoip
+    static final PluginConfigSpec<String> GEOIP_DATABASE_DIRECTORY = PluginConfigSpec.stringSetting("geoip_database_directory");
+    static final PluginConfigSpec<Long> GEOIP_LOOKUP_CACHE_SIZE = PluginConfigSpec.numSetting("geoip_lookup_cache_size", 0);
+    static final PluginConfigSpec<String> GEOIP_DATABASE_FILE_MODE = PluginConfigSpec.stringSetting("geoip_database_file_mode", "memory_mapped");
+    static final PluginConfigSpec<Long> GEOIP_NODE_CACHE_SIZE = PluginConfigSpec.numSetting("geoip_node_cache_size", IpDatabaseOptions.DEFAULT_NODE_CACHE_SIZE);
+    static final PluginConfigSpec<Long> GEOIP_EMPTY_RANGE_INDEX_SIZE = PluginConfigSpec.numSetting("geoip_empty_range_index_size", 0);
+
+    // pipeline resolving
+    static final PluginConfigSpec<String> PIPELINE_NAME = PluginConfigSpec.stringSetting("pipeline_name");
+
+    // pipeline warmup
+    static final PluginConfigSpec<List<Object>> WARMUP_DATASTREAMS = PluginConfigSpec.arraySetting("warmup_datastreams");
+    static final PluginConfigSpec<List<Object>> WARMUP_PIPELINES = PluginConfigSpec.arraySetting("warmup_pipelines");
+    static final PluginConfigSpec<Boolean> WARMUP_DISCOVER_DATASTREAMS = PluginConfigSpec.booleanSetting("warmup_discover_datastreams", false);
+    static final PluginConfigSpec<Double> WARMUP_TIMEOUT = PluginConfigSpec.floatSetting("warmup_timeout", 60);
+    static final PluginConfigSpec<Long> WARMUP_ITERATIONS = PluginConfigSpec.numSetting("warmup_iterations", 0);
+    static final PluginConfigSpec<Map<String, Object>> WARMUP_DOCUMENT = PluginConfigSpec.hashSetting("warmup_document");
+
+    // diagnostics
+    static final PluginConfigSpec<Boolean> PROCESSOR_PROFILING = PluginConfigSpec.booleanSetting("processor_profiling", false);
+    static final PluginConfigSpec<Double> SLOWLOG_THRESHOLD = PluginConfigSpec.floatSetting("slowlog_threshold", 0);
+    static final PluginConfigSpec<Long> SLOWLOG_MAX_EVENT_LENGTH = PluginConfigSpec.numSetting("slowlog_max_event_length", 0);
+
+    static final List<PluginConfigSpec<?>> CONFIG_SPECS = List.of(
+            HOSTS, PROXY, CLOUD_ID,
+            SSL_ENABLED, SSL_VERIFICATION_MODE, SSL_TRUSTSTORE_PATH, SSL_TRUSTSTORE_PASSWORD, SSL_CERTIFICATE_AUTHORITIES,
+            SSL_CERTIFICATE, SSL_KEY, SSL_KEY_PASSPHRASE, SSL_KEYSTORE_PATH, SSL_KEYSTORE_PASSWORD,
+            USERNAME, PASSWORD, CLOUD_AUTH, API_KEY,
+            GEOIP_DATABASE_DIRECTORY, GEOIP_LOOKUP_CACHE_SIZE, GEOIP_DATABASE_FILE_MODE, GEOIP_NODE_CACHE_SIZE, GEOIP_EMPTY_RANGE_INDEX_SIZE,
+            PIPELINE_NAME,
+            WARMUP_DATASTREAMS, WARMUP_PIPELINES, WARMUP_DISCOVER_DATASTREAMS, WARMUP_TIMEOUT, WARMUP_ITERATIONS, WARMUP_DOCUMENT,
+            PROCESSOR_PROFILING, SLOWLOG_THRESHOLD, SLOWLOG_MAX_EVENT_LENGTH
+    );
+
+    private final String id;
+
+    private final RestClient elasticsearchRestClient;
+    private final IpDatabaseProvider geoipDatabaseProvider;
+    private final EventProcessor eventProcessor;
+
+    public ElasticIntegrationFilter(final String id, final Configuration config, final Context context) {
+        this.id = id;
+        LOGGER.debug(() -> String.format("Registering `filter-elastic_integration` plugin `%s` (java)", id));
+
+        final PluginConfiguration pluginConfiguration = extractPluginConfiguration(id, config);
+        final IpDatabaseOptions geoipDatabaseOptions = extractGeoipDatabaseOptions(config);
+        final NamespacedMetric pluginMetric = context.getMetric(this);
+        final PluginContext pluginContext = new PluginContext(extractPipelineId(pluginMetric), id);
+
+        final List<Closeable> resources = new ArrayList<>();
+        try {
+            final RestClient initialRestClient = elasticsearchRestClient(pluginConfiguration, (builder) -> {});
+            resources.add(initialRestClient);
+            final Map<String, String> elasticsearchVersionInfo = new PreflightCheck(initialRestClient).getElasticsearchVersionInfo();
+
+            // serverless requires that requests declare the version of the API that they expect
+            if (Objects.equals(elasticsearchVersionInfo.get("build_flavor"), "serverless")) {
+                resources.remove(initialRestClient);
+                IOUtilsBridge.closeWhileHandlingException(initialRestClient);
+                this.elasticsearchRestClient = elasticsearchRestClient(pluginConfiguration, (builder) -> {
+                    builder.configureElasticApi(elasticApi -> elasticApi.setApiVersion(ELASTIC_API_VERSION));
+                });
+                resources.add(this.elasticsearchRestClient);
+            } else {
+                this.elasticsearchRestClient = initialRestClient;
+            }
+
+            this.geoipDatabaseProvider = initializeGeoipDatabaseProvider(config, geoipDatabaseOptions, pluginContext);
+            resources.add(this.geoipDatabaseProvider);
+
+            this.eventProcessor = initializeEventProcessor(pluginConfiguration, pluginContext, pluginMetric);
+            resources.add(this.eventProcessor);
+
+            final PreflightCheck preflightCheck = new PreflightCheck(this.elasticsearchRestClient);
+            checkUserPrivileges(preflightCheck, pluginConfiguration);
+            preflightCheck.checkLicense();
+
+            checkVersionsAlignment(elasticsearchVersionInfo);
+        } catch (PreflightCheck.Failure e) {
+            IOUtilsBridge.closeWhileHandlingException(resources);
+            throw new IllegalArgumentException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            IOUtilsBridge.closeWhileHandlingException(resources);
+            throw e;
+        }
+    }
+
+    @Override
+    public Collection<Event> filter(final Collection<Event> events, final FilterMatchListener filterMatchListener) {
+        try {
+            return eventProcessor.processEvents(events, filterMatchListener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while processing events", e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Collection<PluginConfigSpec<?>> configSchema() {
+        return PluginHelper.commonFilterSettings(CONFIG_SPECS);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void close() {
+        IOUtilsBridge.closeWhileHandlingException(elasticsearchRestClient, geoipDatabaseProvider, eventProcessor);
+    }
+
+    /**
+     * Validates the provided configuration in the same way as the ruby plugin, and builds
+     * a {@link PluginConfiguration} from it.
+     *
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    static PluginConfiguration extractPluginConfiguration(final String id, final Configuration config) {
+        final List<URI> hosts = config.contains(HOSTS) ? parseHosts(config.get(HOSTS)) : null;
+        final String cloudId = config.get(CLOUD_ID);
+
+        // connection
+        if (Objects.nonNull(hosts) && Objects.nonNull(cloudId)) { throw new IllegalArgumentException("`hosts` and `cloud_id` cannot be used together."); }
+        if (Objects.isNull(hosts) && Objects.isNull(cloudId)) { throw new IllegalArgumentException("Either `hosts` or `cloud_id` is required"); }
+        if (Objects.nonNull(cloudId) && cloudId.isEmpty()) { throw new IllegalArgumentException("Empty `cloud_id` is not allowed"); }
+        if (Objects.nonNull(hosts) && hosts.isEmpty()) { throw new IllegalArgumentException("Empty `hosts` is not allowed"); }
+
+        final boolean sslEnabled = config.contains(SSL_ENABLED) ? config.get(SSL_ENABLED) : inferSslFromConnectionSettings(cloudId, hosts);
+        final String sslVerificationMode = validateSslSettings(config, sslEnabled);
+        validateAuthSettings(config, sslEnabled);
+        final List<String> normalizedHosts = Objects.isNull(hosts) ? null : normalizeHosts(hosts, sslEnabled);
+
+        // warmup
+        final double warmupTimeout = config.get(WARMUP_TIMEOUT);
+        if (!(warmupTimeout > 0)) { throw new IllegalArgumentException("`warmup_timeout` must be a positive number of seconds"); }
+        final long warmupIterations = config.get(WARMUP_ITERATIONS);
+        if (warmupIterations < 0) { throw new IllegalArgumentException("`warmup_iterations` must be a non-negative integer"); }
+        final Map<String, Object> warmupDocument = config.get(WARMUP_DOCUMENT);
+        if (Objects.nonNull(warmupDocument) && warmupDocument.isEmpty()) { throw new IllegalArgumentException("Empty `warmup_document` is not allowed"); }
+
+        // slowlog
+        final double slowlogThreshold = config.get(SLOWLOG_THRESHOLD);
+        if (!(slowlogThreshold >= 0)) { throw new IllegalArgumentException("`slowlog_threshold` must be a non-negative number of seconds"); }
+        final long slowlogThresholdMicros = Math.round(slowlogThreshold * 1_000_000);
+        if (slowlogThreshold > 0 && slowlogThresholdMicros == 0) { throw new IllegalArgumentException("`slowlog_threshold` must be 0 or at least 1 microsecond (0.000001)"); }
+        final long slowlogMaxEventLength = config.get(SLOWLOG_MAX_EVENT_LENGTH);
+        if (slowlogMaxEventLength < 0) { throw new IllegalArgumentException("`slowlog_max_event_length` must be a non-negative integer"); }
+
+        return PluginConfiguration.builder()
+                .setId(id)
+                .setHosts(normalizedHosts)
+                .setCloudId(cloudId)
+                .setProxy(config.get(PROXY))
+                .setSslEnabled(sslEnabled)
+                // ssl trust
+                .setSslVerificationMode(sslVerificationMode)
+                .setSslTruststorePath(config.get(SSL_TRUSTSTORE_PATH))
+                .setSslTruststorePassword(config.get(SSL_TRUSTSTORE_PASSWORD))
+                .setSslCertificateAuthorities(stringList(config, SSL_CERTIFICATE_AUTHORITIES))
+                // ssl identity
+                .setSslKeystorePath(config.get(SSL_KEYSTORE_PATH))
+                .setSslKeystorePassword(config.get(SSL_KEYSTORE_PASSWORD))
+                .setSslCertificate(config.get(SSL_CERTIFICATE))
+                .setSslKey(config.get(SSL_KEY))
+                .setSslKeyPassphrase(config.get(SSL_KEY_PASSPHRASE))
+                // request auth
+                .setAuthBasicUsername(config.get(USERNAME))
+                .setAuthBasicPassword(config.get(PASSWORD))
+                .setCloudAuth(config.get(CLOUD_AUTH))
+                .setApiKey(config.get(API_KEY))
+                // pipeline resolving
+                .setPipelineNameTemplate(config.get(PIPELINE_NAME))
+                // pipeline warmup
+                .setWarmupDatastreams(stringList(config, WARMUP_DATASTREAMS))
+                .setWarmupPipelines(stringList(config, WARMUP_PIPELINES))
+                .setWarmupDiscoverDatastreams(config.get(WARMUP_DISCOVER_DATASTREAMS))
+                .setWarmupTimeoutMillis((long) (warmupTimeout * 1000))
+                .setWarmupIterations(Math.toIntExact(warmupIterations))
+                .setWarmupDocument(warmupDocument)
+                // diagnostics
+                .setProcessorProfiling(config.get(PROCESSOR_PROFILING))
+                .setSlowlogThresholdMicros(slowlogThresholdMicros)
+                .setSlowlogMaxEventLength(Math.toIntExact(slowlogMaxEventLength))
+                .build();
+    }
+
+    /**
+     * The Java plugin API does not expose the id of the pipeline that a plugin belongs to, but the
+     * namespace of the metric that Logstash provides to the plugin includes it, as in
+     * {@code [stats, pipelines, <pipeline id>, plugins, filters, <plugin id>]}.
+     *
+     * @return the id of the pipeline, or {@code UNDEF} if the namespace does not include it
+     */
+    static String extractPipelineId(final NamespacedMetric pluginMetric) {
+        final List<String> namespaceName = Objects.isNull(pluginMetric) ? List.of() : pluginMetric.namespaceName();
+        final int pipelinesIndex = namespaceName.indexOf("pipelines");
+        if (pipelinesIndex < 0 || pipelinesIndex + 1 >= namespaceName.size()) {
+            return "UNDEF";
+        }
+        return namespaceName.get(pipelinesIndex + 1);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the geoip configuration is invalid
+     */
+    static IpDatabaseOptions extractGeoipDatabaseOptions(final Configuration config) {
+        final long lookupCacheSize = config.get(GEOIP_LOOKUP_CACHE_SIZE);
+        if (lookupCacheSize < 0) { throw new IllegalArgumentException("`geoip_lookup_cache_size` must be a non-negative integer"); }
+        final long nodeCacheSize = config.get(GEOIP_NODE_CACHE_SIZE);
+        if (nodeCacheSize < 0) { throw new IllegalArgumentException("`geoip_node_cache_size` must be a non-negative integer"); }
+        final long emptyRangeIndexSize = config.get(GEOIP_EMPTY_RANGE_INDEX_SIZE);
+        if (emptyRangeIndexSize < 0) { throw new IllegalArgumentException("`geoip_empty_range_index_size` must be a non-negative integer"); }
+
+        final String fileMode = config.get(GEOIP_DATABASE_FILE_MODE);
+        if (!Set.of("memory_mapped", "heap").contains(fileMode)) {
+            throw new IllegalArgumentException(String.format("`geoip_database_file_mode` must be one of [memory_mapped, heap], got `%s`", fileMode));
+        }
+
+        return new IpDatabaseOptions(Math.toIntExact(lookupCacheSize),
+                                     Math.toIntExact(nodeCacheSize),
+                                     IpDatabaseOptions.FileMode.valueOf(fileMode.toUpperCase(Locale.ROOT)),
+                                     Math.toIntExact(emptyRangeIndexSize));
+    }
+
+    private static List<URI> parseHosts(final List<Object> hosts) {
+        final List<URI> parsed = new ArrayList<>(hosts.size());
+        for (Object host : hosts) {
+            final String hostString = Objects.toString(host, "").trim();
+            try {
+                // like the ruby plugin's `uri` settings, entries without a scheme are parsed as network paths
+                final URI uri = new URI(hostString.contains("://") ? hostString : "//" + hostString);
+                if (Objects.isNull(uri.getHost())) { throw new IllegalArgumentException("no host"); }
+                parsed.add(uri);
+            } catch (Exception e) {
+                throw new IllegalArgumentException(String.format("Invalid `hosts` entry `%s`: %s", hostString, e.getMessage()), e);
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean inferSslFromConnectionSettings(final String cloudId, final List<URI> hosts) {
+        if (Objects.nonNull(cloudId)) { return true; }
+        if (hosts.stream().allMatch(host -> Objects.isNull(host.getScheme()))) { return true; }
+        if (hosts.stream().allMatch(host -> HTTPS_PROTOCOL.equals(host.getScheme()))) { return true; }
+        if (hosts.stream().allMatch(host -> HTTP_PROTOCOL.equals(host.getScheme()))) { return false; }
+
+        throw new IllegalArgumentException("`hosts` contains entries with mixed protocols, which are unsupported; when any entry includes a protocol, the protocols of all must match each other");
+    }
+
+    private static List<String> normalizeHosts(final List<URI> hosts, final boolean sslEnabled) {
+        final String firstPath = hosts.get(0).getRawPath();
+        final String rootPath = Objects.isNull(firstPath) || firstPath.isEmpty() ? ELASTICSEARCH_DEFAULT_PATH : firstPath;
+        final String scheme = sslEnabled ? HTTPS_PROTOCOL : HTTP_PROTOCOL;
+
+        final List<String> normalized = new ArrayList<>(hosts.size());
+        for (URI host : hosts) {
+            final int port = host.getPort() == -1 ? ELASTICSEARCH_DEFAULT_PORT : host.getPort();
+            final String path = Objects.isNull(host.getRawPath()) || host.getRawPath().isEmpty() ? ELASTICSEARCH_DEFAULT_PATH : host.getRawPath();
+            if (!path.equals(rootPath)) { throw new IllegalArgumentException("All hosts must use same path."); }
+
+            final String hostScheme = Objects.requireNonNullElse(host.getScheme(), scheme);
+            if (!hostScheme.equals(scheme)) {
+                throw new IllegalArgumentException(String.format("All hosts must agree with %s schema when%s using `ssl_enabled`.", scheme, sslEnabled ? "" : " NOT"));
+            }
+
+            final StringBuilder uri = new StringBuilder(hostScheme).append("://");
+            if (Objects.nonNull(host.getRawUserInfo())) {
+                uri.append(host.getRawUserInfo()).append('@');
+            }
+            uri.append(host.getHost()).append(':').append(port).append(path);
+            if (Objects.nonNull(host.getRawQuery())) {
+                uri.append('?').append(host.getRawQuery());
+            }
+            normalized.add(uri.toString());
+        }
+        return List.copyOf(normalized);
+    }
+
+    /**
+     * @return the effective {@code ssl_verification_mode}
+     */
+    private static String validateSslSettings(final Configuration config, final boolean sslEnabled) {
+        String sslVerificationMode = config.get(SSL_VERIFICATION_MODE);
+        if (Objects.nonNull(sslVerificationMode) && !Set.of("full", "certificate", "none").contains(sslVerificationMode)) {
+            throw new IllegalArgumentException(String.format("`ssl_verification_mode` must be one of [full, certificate, none], got `%s`", sslVerificationMode));
+        }
+
+        if (!sslEnabled) {
+            // disabled SSL does not allow SSL-related configs to be set
+            final List<String> sslConfigProvided = config.allKeys().stream()
+                    .filter(key -> (key.startsWith("ssl_") || key.startsWith("cloud_id")) && !key.equals("ssl_enabled"))
+                    .sorted()
+                    .toList();
+            if (!sslConfigProvided.isEmpty()) {
+                throw new IllegalArgumentException(String.format("When SSL is disabled, the following provided parameters are not allowed: %s", sslConfigProvided));
+            }
+            return sslVerificationMode;
+        }
+
+        // when SSL is enabled, the default ssl_verification_mode is "full"
+        if (Objects.isNull(sslVerificationMode)) {
+            sslVerificationMode = "full";
+        }
+
+        final String sslCertificate = config.get(SSL_CERTIFICATE);
+        final String sslKey = config.get(SSL_KEY);
+        final Password sslKeyPassphrase = config.get(SSL_KEY_PASSPHRASE);
+        final String sslKeystorePath = config.get(SSL_KEYSTORE_PATH);
+        final Password sslKeystorePassword = config.get(SSL_KEYSTORE_PASSWORD);
+        final String sslTruststorePath = config.get(SSL_TRUSTSTORE_PATH);
+        final Password sslTruststorePassword = config.get(SSL_TRUSTSTORE_PASSWORD);
+        final List<String> sslCertificateAuthorities = stringList(config, SSL_CERTIFICATE_AUTHORITIES);
+
+        // optional: presenting our identity
+        if (Objects.nonNull(sslCertificate) && Objects.nonNull(sslKeystorePath)) { throw new IllegalArgumentException("`ssl_certificate` and `ssl_keystore_path` cannot be used together."); }
+        if (Objects.nonNull(sslCertificate) && Objects.isNull(sslKey)) { throw new IllegalArgumentException("`ssl_certificate` requires `ssl_key`"); }
+        if (Objects.nonNull(sslCertificate)) { ensureReadableAndNonWritable("ssl_certificate", sslCertificate); }
+
+        if (Objects.nonNull(sslKey) && Objects.isNull(sslCertificate)) { throw new IllegalArgumentException("`ssl_key` is not allowed unless `ssl_certificate` is specified"); }
+        if (Objects.nonNull(sslKey) && Objects.isNull(sslKeyPassphrase)) { throw new IllegalArgumentException("`ssl_key` requires `ssl_key_passphrase`"); }
+        if (Objects.nonNull(sslKey)) { ensureReadableAndNonWritable("ssl_key", sslKey); }
+
+        if (Objects.nonNull(sslKeyPassphrase) && Objects.isNull(sslKey)) { throw new IllegalArgumentException("`ssl_key_passphrase` is not allowed unless `ssl_key` is specified"); }
+        if (isEmpty(sslKeyPassphrase)) { throw new IllegalArgumentException("`ssl_key_passphrase` cannot be empty"); }
+
+        if (Objects.nonNull(sslKeystorePath) && Objects.isNull(sslKeystorePassword)) { throw new IllegalArgumentException("`ssl_keystore_path` requires `ssl_keystore_password`"); }
+        if (Objects.nonNull(sslKeystorePassword) && Objects.isNull(sslKeystorePath)) { throw new IllegalArgumentException("`ssl_keystore_password` is not allowed unless `ssl_keystore_path` is specified"); }
+        if (isEmpty(sslKeystorePassword)) { throw new IllegalArgumentException("`ssl_keystore_password` cannot be empty"); }
+        if (Objects.nonNull(sslKeystorePath)) { ensureReadableAndNonWritable("ssl_keystore_path", sslKeystorePath); }
+
+        // establishing trust of the server we connect to
+        // system-provided trust requires verification mode enabled
+        if (sslVerificationMode.equals("none")) {
+            if (Objects.nonNull(sslTruststorePath)) { throw new IllegalArgumentException("`ssl_truststore_path` requires `ssl_verification_mode` to be either `full` or `certificate`"); }
+            if (Objects.nonNull(sslTruststorePassword)) { throw new IllegalArgumentException("`ssl_truststore_password` requires `ssl_truststore_path` and `ssl_verification_mode` (either `full` or `certificate`)"); }
+            if (Objects.nonNull(sslCertificateAuthorities)) { throw new IllegalArgumentException("`ssl_certificate_authorities` requires `ssl_verification_mode` to be either `full` or `certificate`"); }
+        }
+
+        if (Objects.nonNull(sslTruststorePath) && Objects.nonNull(sslCertificateAuthorities)) { throw new IllegalArgumentException("`ssl_truststore_path` and `ssl_certificate_authorities` cannot be used together."); }
+        if (Objects.nonNull(sslTruststorePath) && Objects.isNull(sslTruststorePassword)) { throw new IllegalArgumentException("`ssl_truststore_path` requires `ssl_truststore_password`"); }
+        if (Objects.nonNull(sslTruststorePath)) { ensureReadableAndNonWritable("ssl_truststore_path", sslTruststorePath); }
+
+        if (Objects.isNull(sslTruststorePath) && Objects.nonNull(sslTruststorePassword)) { throw new IllegalArgumentException("`ssl_truststore_password` is not allowed unless `ssl_truststore_path` is specified"); }
+        if (isEmpty(sslTruststorePassword)) { throw new IllegalArgumentException("`ssl_truststore_password` cannot be empty"); }
+
+        if (Objects.isNull(sslTruststorePath) && Objects.nonNull(sslCertificateAuthorities) && sslCertificateAuthorities.isEmpty()) {
+            throw new IllegalArgumentException("`ssl_certificate_authorities` cannot be empty");
+        }
+        if (Objects.nonNull(sslCertificateAuthorities)) {
+            sslCertificateAuthorities.forEach(certificateAuthority -> ensureReadableAndNonWritable("ssl_certificate_authorities", certificateAuthority));
+        }
+
+        return sslVerificationMode;
+    }
+
+    private static void validateAuthSettings(final Configuration config, final boolean sslEnabled) {
+        final String username = config.get(USERNAME);
+        final Password password = config.get(PASSWORD);
+        final Password cloudAuth = config.get(CLOUD_AUTH);
+        final Password apiKey = config.get(API_KEY);
+
+        if (Objects.nonNull(username) && Objects.isNull(password)) { throw new IllegalArgumentException("`username` requires `password`"); }
+        if (Objects.isNull(username) && Objects.nonNull(password)) { throw new IllegalArgumentException("`password` is not allowed unless `username` is specified"); }
+        if (Objects.nonNull(username) && (username.isEmpty() || isEmpty(password))) { throw new IllegalArgumentException("Empty `username` or `password` is not allowed"); }
+
+        final List<String> possibleAuthOptions = config.allKeys().stream()
+                .filter(Set.of("password", "cloud_auth", "api_key")::contains)
+                .sorted()
+                .toList();
+        if (possibleAuthOptions.size() > 1) {
+            throw new IllegalArgumentException(String.format("Multiple authentication %s options cannot be used together. Please provide ONLY one.", possibleAuthOptions));
+        }
+
+        if (isEmpty(cloudAuth)) { throw new IllegalArgumentException("Empty `cloud_auth` is not allowed"); }
+        if (isEmpty(apiKey)) { throw new IllegalArgumentException("Empty `api_key` is not allowed"); }
+
+        if (possibleAuthOptions.size() == 1 && !sslEnabled) {
+            LOGGER.warn("Credentials are being sent over unencrypted HTTP. This may bring security risk.");
+        }
+    }
+
+    private static void ensureReadableAndNonWritable(final String name, final String path) {
+        final Path resolvedPath = Path.of(path);
+        if (!Files.isReadable(resolvedPath)) { throw new IllegalArgumentException(String.format("Specified %s %s path must be readable.", name, path)); }
+        if (Files.isWritable(resolvedPath)) { throw new IllegalArgumentException(String.format("Specified %s %s path must not be writable.", name, path)); }
+    }
+
+    private static boolean isEmpty(final Password password) {
+        return Objects.nonNull(password) && (Objects.isNull(password.getValue()) || password.getValue().isEmpty());
+    }
+
+    private static List<String> stringList(final Configuration config, final PluginConfigSpec<List<Object>> spec) {
+        if (!config.contains(spec)) { return null; }
+
+        return config.get(spec).stream().map(Objects::toString).toList();
+    }
+
+    private static RestClient elasticsearchRestClient(final PluginConfiguration pluginConfiguration,
+                                                      final Consumer<ElasticsearchRestClientBuilder> builderInterceptor) {
+        final ElasticsearchRestClientBuilder builder = ElasticsearchRestClientBuilder.fromPluginConfiguration(pluginConfiguration)
+                .orElseThrow(() -> new IllegalArgumentException("configuration did not produce an Elasticsearch client"));
+        builder.setUserAgentHeaderValue(String.format("Logstash/v%s (ElasticIntegration/v%s)",
+                implementationVersion(Filter.class).orElse("unknown"),
+                implementationVersion(ElasticIntegrationFilter.class).orElse("unknown")));
+        builderInterceptor.accept(builder);
+        return builder.build();
+    }
+
+    private static IpDatabaseProvider initializeGeoipDatabaseProvider(final Configuration config,
+                                                                      final IpDatabaseOptions databaseOptions,
+                                                                      final PluginContext pluginContext) {
+        final IpDatabaseProvider.Builder builder = new IpDatabaseProvider.Builder().setDatabaseOptions(databaseOptions);
+
+        final String databaseDirectory = config.get(GEOIP_DATABASE_DIRECTORY);
+        if (Objects.nonNull(databaseDirectory)) {
+            LOGGER.debug(() -> String.format("discovering geoip databases from %s", databaseDirectory));
+            try {
+                builder.discoverAndWatchDatabases(new File(databaseDirectory), pluginContext.newNamedThreadFactory("geoip-database-watcher"));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(String.format("failed to discover geoip databases from %s: %s", databaseDirectory, e.getMessage()), e);
+            }
+        } else {
+            LOGGER.warn(String.format("Geoip Database Management is not available to the java entry point of this plugin; %s", GEOIP_GUIDANCE));
+        }
+        return builder.build();
+    }
+
+    private EventProcessor initializeEventProcessor(final PluginConfiguration pluginConfiguration,
+                                                    final PluginContext pluginContext,
+                                                    final NamespacedMetric pluginMetric) {
+        try {
+            final EventProcessorBuilder eventProcessorBuilder = EventProcessorBuilder.fromElasticsearch(this.elasticsearchRestClient, pluginConfiguration)
+                    .addProcessor("geoip", () -> GeoIpProcessorFactoryBridge.create(this.geoipDatabaseProvider))
+                    .addBatchScope(this.geoipDatabaseProvider.getBatchScope())
+                    .addMetricsSource("geoip", this.geoipDatabaseProvider);
+            if (Objects.nonNull(pluginMetric)) {
+                eventProcessorBuilder.setPluginMetric(pluginMetric);
+            }
+            return eventProcessorBuilder.build(pluginContext);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(String.format("configuration did not produce an EventProcessor: %s", e), e);
+        }
+    }
+
+    private static void checkUserPrivileges(final PreflightCheck preflightCheck, final PluginConfiguration pluginConfiguration) {
+        try {
+            preflightCheck.checkUserPrivileges();
+        } catch (PreflightCheck.Failure e) {
+            if (Objects.isNull(e.getMessage()) || !e.getMessage().contains("no handler found for uri [/_security/user/_has_privileges]")) {
+                throw e;
+            }
+
+            final Optional<String> credentialsDescription;
+            if (pluginConfiguration.authBasicPassword().isPresent()) {
+                credentialsDescription = Optional.of("`username` and `password`");
+            } else if (pluginConfiguration.cloudAuth().isPresent()) {
+                credentialsDescription = Optional.of("`cloud_auth`");
+            } else if (pluginConfiguration.apiKey().isPresent()) {
+                credentialsDescription = Optional.of("`api_key`");
+            } else {
+                credentialsDescription = Optional.empty();
+            }
+
+            if (credentialsDescription.isPresent()) {
+                throw new PreflightCheck.Failure(String.format("The Elasticsearch cluster does not have security features enabled but request credentials were provided. " +
+                        "Either enable security in Elasticsearch (recommended!) or remove the %s request credentials. %s", credentialsDescription.get(), e.getMessage()), e);
+            }
+            // Elasticsearch cluster security disabled, auth also isn't provided, running plugin unsecurely
+            LOGGER.warn("`elastic_integration` plugin is unable to verify user privileges. It has started with unsafe mode which may cause unexpected failure. " +
+                    "Enabling security in Elasticsearch and using user authentication is recommended.");
+        }
+    }
+
+    /**
+     * Compares this plugin's version with the version of the connected Elasticsearch, and logs
+     * a warning when the plugin is behind or ahead of it.
+     */
+    private static void checkVersionsAlignment(final Map<String, String> elasticsearchVersionInfo) {
+        final Optional<String> pluginVersion = implementationVersion(ElasticIntegrationFilter.class);
+        if (pluginVersion.isEmpty()) {
+            LOGGER.debug("plugin version is not known; skipping version alignment check");
+            return;
+        }
+        final String version = pluginVersion.get();
+        final String esFullVersion = elasticsearchVersionInfo.get("number");
+
+        final int[] pluginMajorMinor = majorMinor(version);
+        final int[] esMajorMinor = majorMinor(esFullVersion);
+
+        LOGGER.info(String.format("This %s version of plugin embedded Ingest node components from Elasticsearch %s.%s", version, pluginMajorMinor[0], pluginMajorMinor[1]));
+
+        if (esMajorMinor[0] > pluginMajorMinor[0]) {
+            LOGGER.warn(String.format("This plugin v%s is connected to a newer MAJOR version of Elasticsearch v%s, and may " +
+                    "have trouble loading or running pipelines that use new features; for the best experience, update this plugin " +
+                    "to at least v%s.%s.", version, esFullVersion, esMajorMinor[0], esMajorMinor[1]));
+        } else if (esMajorMinor[0] < pluginMajorMinor[0]) {
+            LOGGER.warn(String.format("This plugin v%s is connected to an older MAJOR version of Elasticsearch v%s, and may " +
+                    "have trouble loading or running pipelines that use features that were deprecated before Elasticsearch " +
+                    "v%s.0; for the best experience, align major/minor versions across the Elastic Stack.", version, esFullVersion, pluginMajorMinor[0]));
+        } else if (esMajorMinor[1] > pluginMajorMinor[1]) {
+            LOGGER.warn(String.format("This plugin v%s is connected to a newer MINOR version of Elasticsearch v%s, and may " +
+                    "have trouble loading or running pipelines that use new features; for the best experience, update this plugin to " +
+                    "at least v%s.%s.", version, esFullVersion, esMajorMinor[0], esMajorMinor[1]));
+        } else if (esMajorMinor[1] < pluginMajorMinor[1]) {
+            LOGGER.info(String.format("This plugin v%s is connected to an older MINOR version of Elasticsearch v%s; for the best experience, " +
+                    "align major/minor versions across the Elastic Stack.", version, esFullVersion));
+        } else {
+            LOGGER.debug(() -> String.format("This plugin v%s is connected to the same MAJOR/MINOR version of Elasticsearch v%s.", version, esFullVersion));
+        }
+    }
+
+    private static int[] majorMinor(final String version) {
+        final String[] parts = version.split("[.-]");
+        return new int[]{Integer.parseInt(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0};
+    }
+
+    private static Optional<String> implementationVersion(final Class<?> type) {
+        return Optional.ofNullable(type.getPackage()).map(Package::getImplementationVersion);
+    }
+}
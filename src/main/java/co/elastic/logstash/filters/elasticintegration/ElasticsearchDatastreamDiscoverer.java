@@ -0,0 +1,105 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An {@link ElasticsearchDatastreamDiscoverer} is a {@link PipelineWarmup.IndexNameDiscoverer} that
+ * discovers data stream names from the index patterns of Elasticsearch's {@code logs-*} and {@code metrics-*}
+ * index templates, such as those that are installed by integrations.
+ *
+ * <p>An index template with the pattern {@code logs-nginx.access-*} produces the data stream name
+ * {@code logs-nginx.access-default}, matching events in the {@code default} namespace.
+ * Patterns that contain any other wildcard cannot be resolved to a single data stream, and are skipped.</p>
+ */
+public class ElasticsearchDatastreamDiscoverer implements PipelineWarmup.IndexNameDiscoverer {
+    private static final Logger LOGGER = LogManager.getLogger(ElasticsearchDatastreamDiscoverer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final List<String> DEFAULT_TEMPLATE_PATTERNS = List.of("logs-*", "metrics-*");
+    static final String DEFAULT_NAMESPACE = "default";
+
+    private final ElasticsearchRequestExecutor elasticsearchRequestExecutor;
+    private final List<String> templatePatterns;
+
+    public ElasticsearchDatastreamDiscoverer(final ElasticsearchRequestExecutor elasticsearchRequestExecutor) {
+        this(elasticsearchRequestExecutor, DEFAULT_TEMPLATE_PATTERNS);
+    }
+
+    ElasticsearchDatastreamDiscoverer(final ElasticsearchRequestExecutor elasticsearchRequestExecutor,
+                                      final List<String> templatePatterns) {
+        this.elasticsearchRequestExecutor = elasticsearchRequestExecutor;
+        this.templatePatterns = List.copyOf(templatePatterns);
+    }
+
+    @Override
+    public Collection<String> discoverIndexNames() throws Exception {
+        final Set<String> datastreamNames = new LinkedHashSet<>();
+        for (String templatePattern : templatePatterns) {
+            final Request request = new Request("GET", URLEncodedUtils.formatSegments("_index_template", templatePattern));
+            final Response response;
+            try {
+                response = elasticsearchRequestExecutor.performRequest(request);
+            } catch (ResponseException re) {
+                if (re.getResponse().getStatusLine().getStatusCode() == 404) {
+                    LOGGER.debug(() -> String.format("no index templates match `%s`", templatePattern));
+                    continue;
+                }
+                throw re;
+            }
+
+            final String responseBody = new String(response.getEntity().getContent().readAllBytes(), StandardCharsets.UTF_8);
+            for (JsonNode indexTemplate : MAPPER.readTree(responseBody).path("index_templates")) {
+                final JsonNode template = indexTemplate.path("index_template");
+                if (template.path("data_stream").isMissingNode()) {
+                    continue;
+                }
+                for (JsonNode indexPattern : template.path("index_patterns")) {
+                    final String datastreamName = datastreamName(indexPattern.asText());
+                    if (Objects.isNull(datastreamName)) {
+                        LOGGER.trace(() -> String.format("skipping index pattern `%s` of template `%s`", indexPattern.asText(), indexTemplate.path("name").asText()));
+                    } else {
+                        datastreamNames.add(datastreamName);
+                    }
+                }
+            }
+        }
+        LOGGER.debug(() -> String.format("discovered %s data streams from index templates matching %s", datastreamNames.size(), templatePatterns));
+        return datastreamNames;
+    }
+
+    /**
+     * @param indexPattern an index pattern of the form {@code <type>-<dataset>-*}
+     * @return the name of the data stream in the default namespace, or {@code null}
+     *         if the pattern does not identify exactly one type and dataset
+     */
+    static String datastreamName(final String indexPattern) {
+        if (!indexPattern.endsWith("-*")) {
+            return null;
+        }
+        final String typeAndDataset = indexPattern.substring(0, indexPattern.length() - 2);
+        if (typeAndDataset.contains("*") || typeAndDataset.indexOf('-') <= 0) {
+            return null;
+        }
+        return String.format("%s-%s", typeAndDataset, DEFAULT_NAMESPACE);
+    }
+}
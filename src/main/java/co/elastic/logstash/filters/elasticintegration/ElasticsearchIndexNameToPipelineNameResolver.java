@@ -7,6 +7,7 @@
 package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.filters.elasticintegration.resolver.AbstractSimpleCacheableResolver;
+import co.elastic.logstash.filters.elasticintegration.util.CircuitBreaker;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.client.utils.URLEncodedUtils;
@@ -28,10 +29,14 @@ public class ElasticsearchIndexNameToPipelineNameResolver
     private static final Logger LOGGER = LogManager.getLogger();
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    private final RestClient elasticsearchRestClient;
+    private final ElasticsearchRequestExecutor elasticsearchRequestExecutor;
 
     public ElasticsearchIndexNameToPipelineNameResolver(final RestClient elasticsearchRestClient) {
-        this.elasticsearchRestClient = elasticsearchRestClient;
+        this(ElasticsearchRequestExecutor.direct(elasticsearchRestClient));
+    }
+
+    public ElasticsearchIndexNameToPipelineNameResolver(final ElasticsearchRequestExecutor elasticsearchRequestExecutor) {
+        this.elasticsearchRequestExecutor = elasticsearchRequestExecutor;
     }
 
     @Override
@@ -41,7 +46,7 @@ public class ElasticsearchIndexNameToPipelineNameResolver
             Request request = new Request(
                     "POST",
                     URLEncodedUtils.formatSegments("_index_template", "_simulate_index", indexName));
-            Response response = elasticsearchRestClient.performRequest(request);
+            Response response = elasticsearchRequestExecutor.performRequest(request);
 
             final String responseBody = new String(response.getEntity().getContent().readAllBytes(), StandardCharsets.UTF_8);
             final JsonNode templateSettingsIndex = MAPPER.readTree(responseBody)
@@ -63,6 +68,9 @@ public class ElasticsearchIndexNameToPipelineNameResolver
             });
 
             return defaultPipeline;
+        } catch (CircuitBreaker.OpenException e) {
+            LOGGER.debug(() -> String.format("skipped fetching template for index `%s`: %s", indexName, e.getMessage()));
+            throw e;
         } catch (IOException e) {
             LOGGER.error(() -> String.format("error determining pipeline for datastream `%s` [%s]", indexName, describeThrowableWithCause(e)));
             throw e;
@@ -7,6 +7,7 @@
 package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.filters.elasticintegration.resolver.AbstractSimpleResolver;
+import co.elastic.logstash.filters.elasticintegration.util.CircuitBreaker;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
@@ -17,7 +18,14 @@ import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.logstashbridge.ingest.PipelineConfigurationBridge;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * An {@code ElasticsearchPipelineConfigurationResolver} is a {@link PipelineConfigurationResolver}
@@ -26,13 +34,20 @@ import java.util.Optional;
 public class ElasticsearchPipelineConfigurationResolver
         extends AbstractSimpleResolver<String, PipelineConfigurationBridge>
         implements PipelineConfigurationResolver {
-    private final RestClient elasticsearchRestClient;
+    private final ElasticsearchRequestExecutor elasticsearchRequestExecutor;
     private final PipelineConfigurationFactory pipelineConfigurationFactory;
 
     private static final Logger LOGGER = LogManager.getLogger(ElasticsearchPipelineConfigurationResolver.class);
 
+    // keeps the request line of a bulk fetch comfortably below common http line-length limits
+    static final int MAX_PIPELINES_PER_REQUEST = 50;
+
     public ElasticsearchPipelineConfigurationResolver(final RestClient elasticsearchRestClient) {
-        this.elasticsearchRestClient = elasticsearchRestClient;
+        this(ElasticsearchRequestExecutor.direct(elasticsearchRestClient));
+    }
+
+    public ElasticsearchPipelineConfigurationResolver(final ElasticsearchRequestExecutor elasticsearchRequestExecutor) {
+        this.elasticsearchRequestExecutor = elasticsearchRequestExecutor;
         this.pipelineConfigurationFactory = PipelineConfigurationFactory.getInstance();
     }
 
@@ -41,7 +56,7 @@ public class ElasticsearchPipelineConfigurationResolver
         final Response response;
         try {
             final Request request = new Request("GET", URLEncodedUtils.formatSegments("_ingest", "pipeline", pipelineName));
-            response = elasticsearchRestClient.performRequest(request);
+            response = elasticsearchRequestExecutor.performRequest(request);
             final String jsonEncodedPayload = EntityUtils.toString(response.getEntity());
             final PipelineConfigurationBridge pipelineConfiguration = pipelineConfigurationFactory.parseNamedObject(jsonEncodedPayload);
             return Optional.of(pipelineConfiguration);
@@ -52,10 +67,71 @@ public class ElasticsearchPipelineConfigurationResolver
                 LOGGER.error(String.format("failed to fetch pipeline: `%s`", pipelineName), re);
                 throw re;
             }
+        } catch (CircuitBreaker.OpenException oe) {
+            LOGGER.debug(() -> String.format("skipped fetching pipeline `%s`: %s", pipelineName, oe.getMessage()));
+            throw oe;
         } catch (Exception ex) {
             LOGGER.error(String.format("failed to fetch pipeline: `%s`", pipelineName), ex);
             throw ex;
         }
         return Optional.empty();
     }
+
+    /**
+     * Resolves many pipelines using as few requests as possible, by asking Elasticsearch
+     * for up to {@value #MAX_PIPELINES_PER_REQUEST} comma-separated pipeline names at a time.
+     *
+     * <p>Names that Elasticsearch would not treat literally in a comma-separated list, because they
+     * contain a comma or a wildcard, are resolved individually, and only pipelines that were asked
+     * for by name are included in the result.</p>
+     */
+    @Override
+    public Map<String, PipelineConfigurationBridge> resolveAll(final Collection<String> pipelineNames,
+                                                               final Consumer<Exception> exceptionHandler) {
+        final Map<String, PipelineConfigurationBridge> resolved = new LinkedHashMap<>();
+        final List<String> remaining = new ArrayList<>(pipelineNames.size());
+        for (String pipelineName : pipelineNames) {
+            if (isListSafe(pipelineName)) {
+                remaining.add(pipelineName);
+            } else {
+                resolve(pipelineName, exceptionHandler)
+                        .filter((pipelineConfiguration) -> pipelineConfiguration.getId().equals(pipelineName))
+                        .ifPresent((pipelineConfiguration) -> resolved.put(pipelineName, pipelineConfiguration));
+            }
+        }
+        for (int i = 0; i < remaining.size(); i += MAX_PIPELINES_PER_REQUEST) {
+            final List<String> chunk = remaining.subList(i, Math.min(i + MAX_PIPELINES_PER_REQUEST, remaining.size()));
+            final Set<String> requested = Set.copyOf(chunk);
+            try {
+                final Request request = new Request("GET", URLEncodedUtils.formatSegments("_ingest", "pipeline", String.join(",", chunk)));
+                final Response response = elasticsearchRequestExecutor.performRequest(request);
+                final String jsonEncodedPayload = EntityUtils.toString(response.getEntity());
+                for (PipelineConfigurationBridge pipelineConfiguration : pipelineConfigurationFactory.parseNamedObjects(jsonEncodedPayload)) {
+                    if (requested.contains(pipelineConfiguration.getId())) {
+                        resolved.put(pipelineConfiguration.getId(), pipelineConfiguration);
+                    } else {
+                        LOGGER.debug(() -> String.format("ignoring pipeline `%s` that was not requested", pipelineConfiguration.getId()));
+                    }
+                }
+            } catch (ResponseException re) {
+                if (re.getResponse().getStatusLine().getStatusCode() == 404) {
+                    LOGGER.debug(() -> String.format("none of %s pipelines found: `%s`", chunk.size(), chunk));
+                } else {
+                    LOGGER.error(String.format("failed to fetch %s pipelines", chunk.size()), re);
+                    exceptionHandler.accept(re);
+                }
+            } catch (CircuitBreaker.OpenException oe) {
+                LOGGER.debug(() -> String.format("skipped fetching %s pipelines: %s", chunk.size(), oe.getMessage()));
+                exceptionHandler.accept(oe);
+            } catch (Exception ex) {
+                LOGGER.error(String.format("failed to fetch %s pipelines", chunk.size()), ex);
+                exceptionHandler.accept(ex);
+            }
+        }
+        return resolved;
+    }
+
+    private static boolean isListSafe(final String pipelineName) {
+        return pipelineName.indexOf(',') < 0 && pipelineName.indexOf('*') < 0;
+    }
 }
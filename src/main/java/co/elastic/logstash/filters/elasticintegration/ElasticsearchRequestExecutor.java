@@ -0,0 +1,131 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.filters.elasticintegration.util.CircuitBreaker;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An {@link ElasticsearchRequestExecutor} performs requests on behalf of the Elasticsearch-backed
+ * resolvers. When guarded, each request is bounded by a deadline and is performed through a
+ * {@link CircuitBreaker}, so that an unavailable or overloaded cluster causes cache-miss lookups
+ * to fail fast instead of stalling the workers that are waiting on them.
+ */
+public class ElasticsearchRequestExecutor {
+    private final RestClient restClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Duration requestDeadline;
+
+    private ElasticsearchRequestExecutor(final RestClient restClient,
+                                         final CircuitBreaker circuitBreaker,
+                                         final Duration requestDeadline) {
+        this.restClient = Objects.requireNonNull(restClient, "restClient");
+        this.circuitBreaker = circuitBreaker;
+        this.requestDeadline = requestDeadline;
+    }
+
+    /**
+     * @param restClient the client to perform requests with
+     * @return an executor that performs requests directly, with neither a deadline nor a circuit breaker
+     */
+    public static ElasticsearchRequestExecutor direct(final RestClient restClient) {
+        return new ElasticsearchRequestExecutor(restClient, null, null);
+    }
+
+    /**
+     * @param restClient the client to perform requests with
+     * @param circuitBreaker the circuit breaker to perform requests through
+     * @param requestDeadline the maximum duration of each request, including time spent
+     *                        waiting for a connection and reading the response
+     * @return an executor that performs requests through the provided circuit breaker,
+     *         bounding each request with the provided deadline
+     */
+    public static ElasticsearchRequestExecutor guarded(final RestClient restClient,
+                                                       final CircuitBreaker circuitBreaker,
+                                                       final Duration requestDeadline) {
+        return new ElasticsearchRequestExecutor(restClient,
+                                                Objects.requireNonNull(circuitBreaker, "circuitBreaker"),
+                                                Objects.requireNonNull(requestDeadline, "requestDeadline"));
+    }
+
+    /**
+     * This method "quacks like" its counterpart in {@link RestClient#performRequest(Request)}.
+     *
+     * @param request the request to perform
+     * @return the response
+     * @throws IOException as {@link RestClient#performRequest(Request)}, or when the request deadline is exceeded
+     * @throws CircuitBreaker.OpenException when the request is rejected by an open circuit breaker
+     */
+    public Response performRequest(final Request request) throws IOException {
+        if (Objects.isNull(circuitBreaker)) {
+            return restClient.performRequest(request);
+        }
+        return circuitBreaker.execute(() -> performRequestWithDeadline(request), ElasticsearchRequestExecutor::isFailure);
+    }
+
+    private Response performRequestWithDeadline(final Request request) throws IOException {
+        final CompletableFuture<Response> futureResponse = new CompletableFuture<>();
+        final Cancellable cancellable = restClient.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(final Response response) {
+                futureResponse.complete(response);
+            }
+
+            @Override
+            public void onFailure(final Exception exception) {
+                futureResponse.completeExceptionally(exception);
+            }
+        });
+
+        try {
+            return futureResponse.get(requestDeadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            cancellable.cancel();
+            throw new IOException(String.format("request `%s %s` exceeded its deadline of %s", request.getMethod(), request.getEndpoint(), requestDeadline), e);
+        } catch (InterruptedException e) {
+            cancellable.cancel();
+            Thread.currentThread().interrupt();
+            final InterruptedIOException interruptedIOException = new InterruptedIOException(String.format("interrupted while awaiting request `%s %s`", request.getMethod(), request.getEndpoint()));
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A well-formed error response is not a failure of the cluster unless it indicates
+     * that the cluster is unavailable or is shedding load.
+     */
+    static boolean isFailure(final Exception exception) {
+        if (exception instanceof ResponseException responseException) {
+            final int statusCode = responseException.getResponse().getStatusLine().getStatusCode();
+            return statusCode >= 500 || statusCode == 429;
+        }
+        return true;
+    }
+}
@@ -8,9 +8,13 @@ package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.api.Event;
 import co.elastic.logstash.api.FilterMatchListener;
+import co.elastic.logstash.filters.elasticintegration.EventProcessorMetrics.Stage;
+import co.elastic.logstash.filters.elasticintegration.jfr.BatchProcessingEvent;
+import co.elastic.logstash.filters.elasticintegration.jfr.PipelineExecutionEvent;
 import co.elastic.logstash.filters.elasticintegration.resolver.Resolver;
 import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.logstashbridge.core.IOUtilsBridge;
@@ -51,6 +55,10 @@ public class EventProcessor implements Closeable {
     private final EventToIndexNameResolver eventToIndexNameResolver;
     private final IndexNameToPipelineNameResolver indexNameToPipelineNameResolver;
     private final IngestDuplexMarshaller eventMarshaller;
+    private final EventProcessorMetrics metrics;
+    private final SlowEventLog slowEventLog;
+    private final FailureReporter failureReporter;
+    private final List<BatchScope> batchScopes;
 
     private final List<Closeable> resourcesToClose;
 
@@ -65,16 +73,29 @@ public class EventProcessor implements Closeable {
                    final EventToPipelineNameResolver eventToPipelineNameResolver,
                    final EventToIndexNameResolver eventToIndexNameResolver,
                    final IndexNameToPipelineNameResolver indexNameToPipelineNameResolver,
+                   final EventProcessorMetrics metrics,
+                   final SlowEventLog slowEventLog,
+                   final FailureReporter failureReporter,
+                   final Collection<BatchScope> batchScopes,
                    final Collection<Closeable> resourcesToClose) {
         this.filterMatchListener = filterMatchListener;
         this.internalPipelineProvider = internalPipelineProvider;
         this.eventToIndexNameResolver = eventToIndexNameResolver;
         this.eventToPipelineNameResolver = eventToPipelineNameResolver;
         this.indexNameToPipelineNameResolver = indexNameToPipelineNameResolver;
+        this.metrics = metrics;
+        this.slowEventLog = slowEventLog;
+        this.failureReporter = failureReporter;
+        this.batchScopes = List.copyOf(batchScopes);
         this.resourcesToClose = List.copyOf(resourcesToClose);
         this.eventMarshaller = IngestDuplexMarshaller.defaultInstance();
     }
 
+    // visible for test
+    EventProcessorMetrics getMetrics() {
+        return metrics;
+    }
+
     public static EventProcessorBuilder builder() {
         return new EventProcessorBuilder();
     }
@@ -89,30 +110,66 @@ public class EventProcessor implements Closeable {
      * @return the outgoing batch, which <em>may</em> contain cancelled events
      */
     public Collection<Event> processEvents(final Collection<Event> incomingEvents) throws InterruptedException, TimeoutException {
-        final CountDownLatch latch = new CountDownLatch(1);
-        final IntegrationBatch batch = new IntegrationBatch(incomingEvents);
+        return processEvents(incomingEvents, this.filterMatchListener);
+    }
 
-        try (RefCountingRunnableBridge ref = RefCountingRunnableBridge.create(latch::countDown)) {
-            batch.eachRequest(ref::acquire, this::processRequest);
-        }
+    /**
+     * Processes a collection of events, returning the resulting collection
+     * @param incomingEvents the incoming batch
+     * @param filterMatchListener the listener to notify of each event that is transformed by a pipeline,
+     *                            in place of the one this processor was built with
+     * @return the outgoing batch, which <em>may</em> contain cancelled events
+     */
+    public Collection<Event> processEvents(final Collection<Event> incomingEvents,
+                                           final FilterMatchListener filterMatchListener) throws InterruptedException, TimeoutException {
+        final BatchProcessingEvent batchProcessingEvent = new BatchProcessingEvent();
+        batchProcessingEvent.begin();
+        String outcome = "failure";
+        batchScopes.forEach(BatchScope::begin);
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final IntegrationBatch batch = new IntegrationBatch(incomingEvents);
 
-        // await on work that has gone async
-        if (!latch.await(300, TimeUnit.SECONDS)) {
-            // because the work is async and we have no way of identifying or recovering
-            // stuck resources, a failure to complete a batch is catastrophic and SHOULD
-            // result in a crash of the pipeline.
-            throw new TimeoutException("breaker: catastrophic batch limit reached");
-        };
+            try (RefCountingRunnableBridge ref = RefCountingRunnableBridge.create(latch::countDown)) {
+                batch.eachRequest(ref::acquire, request -> processRequest(request, filterMatchListener));
+            }
 
-        return batch.events;
+            // await on work that has gone async
+            if (!latch.await(300, TimeUnit.SECONDS)) {
+                // because the work is async and we have no way of identifying or recovering
+                // stuck resources, a failure to complete a batch is catastrophic and SHOULD
+                // result in a crash of the pipeline.
+                outcome = "timeout";
+                throw new TimeoutException("breaker: catastrophic batch limit reached");
+            };
+
+            outcome = "success";
+            return batch.events;
+        } finally {
+            batchScopes.forEach(BatchScope::end);
+            batchProcessingEvent.end();
+            if (batchProcessingEvent.shouldCommit()) {
+                batchProcessingEvent.eventCount = incomingEvents.size();
+                batchProcessingEvent.outcome = outcome;
+                batchProcessingEvent.commit();
+            }
+        }
     }
 
     /**
      * Processes a singular incoming integration request, resulting in {@code IntegrationRequest#complete}.
      */
-    void processRequest(final IntegrationRequest request) {
+    void processRequest(final IntegrationRequest incomingRequest, final FilterMatchListener filterMatchListener) {
+        final IntegrationRequest request = Objects.isNull(slowEventLog) ? incomingRequest : slowEventLog.tracing(incomingRequest);
+
+        // the stage in progress and when it began, so that a failure can be attributed to it
+        Stage stage = Stage.RESOLVE_INDEX_NAME;
+        long stageStartNanos = System.nanoTime();
         try {
             final Optional<String> resolvedIndexName = eventToIndexNameResolver.resolve(request.event(), EventProcessor::throwingHandler);
+            stageStartNanos = recordStage(request, stage, stageStartNanos, true);
+
+            stage = Stage.RESOLVE_PIPELINE_NAME;
 
             final Optional<String> resolvedPipelineName;
             if (Objects.nonNull(eventToPipelineNameResolver)) {
@@ -124,6 +181,7 @@ public class EventProcessor implements Closeable {
             } else {
                 resolvedPipelineName = Optional.empty();
             }
+            stageStartNanos = recordStage(request, stage, stageStartNanos, true);
 
             if (resolvedPipelineName.isEmpty()) {
                 LOGGER.debug(() -> String.format("No pipeline resolved for event %s", serializeEventForLog(LOGGER, request.event())));
@@ -138,7 +196,9 @@ public class EventProcessor implements Closeable {
                 return;
             }
 
+            stage = Stage.RESOLVE_PIPELINE;
             final Optional<IngestPipeline> loadedPipeline = resolve(pipelineName, internalPipelineProvider);
+            stageStartNanos = recordStage(request, stage, stageStartNanos, loadedPipeline.isPresent());
             if (loadedPipeline.isEmpty()) {
                 LOGGER.warn(() -> String.format("Pipeline `%s` could not be loaded", pipelineName));
                 request.complete(incomingEvent -> {
@@ -149,16 +209,23 @@ public class EventProcessor implements Closeable {
 
             final IngestPipeline ingestPipeline = loadedPipeline.get();
             LOGGER.trace(() -> String.format("Using loaded pipeline `%s` (%s)", pipelineName, System.identityHashCode(ingestPipeline)));
+            stage = Stage.TO_INGEST_DOCUMENT;
             final IngestDocumentBridge ingestDocument = eventMarshaller.toIngestDocument(request.event());
 
             resolvedIndexName.ifPresent(indexName -> {
                 ingestDocument.getMetadata().setIndex(indexName);
                 ingestDocument.updateIndexHistory(indexName);
             });
+            recordStage(request, stage, stageStartNanos, true);
 
-            executePipeline(ingestDocument, ingestPipeline, request);
+            // pipeline executions record their own metrics
+            stage = null;
+            executePipeline(ingestDocument, ingestPipeline, request, filterMatchListener);
         } catch (Exception e) {
-            LOGGER.error(() -> String.format("exception processing event: %s", e.getMessage()));
+            if (Objects.nonNull(stage)) {
+                recordStage(request, stage, stageStartNanos, false);
+            }
+            failureReporter.report(Level.ERROR, String.format("processing event (stage: %s)", Objects.isNull(stage) ? Stage.EXECUTE_PIPELINE.metricName : stage.metricName), e);
             request.complete(incomingEvent -> {
                 annotateIngestPipelineFailure(incomingEvent, "UNKNOWN", Map.of(
                         "message", e.getMessage(),
@@ -168,14 +235,39 @@ public class EventProcessor implements Closeable {
         }
     }
 
-    private void executePipeline(final IngestDocumentBridge ingestDocument, final IngestPipeline ingestPipeline, final IntegrationRequest request) {
+    private void executePipeline(final IngestDocumentBridge ingestDocument,
+                                 final IngestPipeline ingestPipeline,
+                                 final IntegrationRequest request,
+                                 final FilterMatchListener filterMatchListener) {
         final String pipelineName = ingestPipeline.getId();
         final String originalIndex = ingestDocument.getMetadata().getIndex();
+        final PipelineExecutionEvent pipelineExecutionEvent = new PipelineExecutionEvent();
+        pipelineExecutionEvent.begin();
+        final long executeStartNanos = System.nanoTime();
         ingestPipeline.execute(ingestDocument, (resultIngestDocument, ingestPipelineException) -> {
+            final long executeElapsedNanos = System.nanoTime() - executeStartNanos;
+            pipelineExecutionEvent.end();
+            if (pipelineExecutionEvent.shouldCommit()) {
+                pipelineExecutionEvent.pipelineId = pipelineName;
+                if (Objects.nonNull(ingestPipelineException)) {
+                    pipelineExecutionEvent.outcome = "failure";
+                    pipelineExecutionEvent.exceptionClass = ingestPipelineException.getClass().getName();
+                } else {
+                    pipelineExecutionEvent.outcome = Objects.isNull(resultIngestDocument) ? "dropped" : "success";
+                }
+                pipelineExecutionEvent.commit();
+            }
+            metrics.stage(Stage.EXECUTE_PIPELINE).recordDuration(executeElapsedNanos, Objects.isNull(ingestPipelineException));
+            metrics.pipeline(pipelineName).recordDuration(executeElapsedNanos, Objects.isNull(ingestPipelineException));
+            if (request instanceof SlowEventLog.TracedRequest tracedRequest) {
+                tracedRequest.recordStage(Stage.EXECUTE_PIPELINE, executeElapsedNanos);
+                tracedRequest.recordPipeline(pipelineName, originalIndex, executeElapsedNanos);
+            }
+
             // If no exception, then the original event is to be _replaced_ by the result
             if (Objects.nonNull(ingestPipelineException)) {
                 // If we had an exception in the IngestPipeline, tag and emit the original Event
-                LOGGER.warn(() -> String.format("ingest pipeline `%s` failed", pipelineName), ingestPipelineException);
+                failureReporter.report(Level.WARN, String.format("ingest pipeline `%s`", pipelineName), ingestPipelineException);
                 request.complete(incomingEvent -> {
                     annotateIngestPipelineFailure(incomingEvent, pipelineName, Map.of(
                             "message", ingestPipelineException.getMessage(),
@@ -221,7 +313,7 @@ public class EventProcessor implements Closeable {
                                                         reroutePipelineName.get())));
                             });
                         } else {
-                            executePipeline(resultIngestDocument, reroutePipeline.get(), request);
+                            executePipeline(resultIngestDocument, reroutePipeline.get(), request, filterMatchListener);
                         }
                         return;
                     }
@@ -229,7 +321,15 @@ public class EventProcessor implements Closeable {
 
 
                 request.complete(incomingEvent -> {
-                    final Event resultEvent = eventMarshaller.toLogstashEvent(resultIngestDocument);
+                    final long toLogstashEventStartNanos = System.nanoTime();
+                    final Event resultEvent;
+                    try {
+                        resultEvent = eventMarshaller.toLogstashEvent(resultIngestDocument);
+                    } catch (RuntimeException e) {
+                        recordStage(request, Stage.TO_LOGSTASH_EVENT, toLogstashEventStartNanos, false);
+                        throw e;
+                    }
+                    recordStage(request, Stage.TO_LOGSTASH_EVENT, toLogstashEventStartNanos, true);
                     // provide downstream ES output with hint to avoid re-running the same pipelines
                     resultEvent.setField(TARGET_PIPELINE_FIELD, PIPELINE_MAGIC_NONE);
                     filterMatchListener.filterMatched(resultEvent);
@@ -243,6 +343,18 @@ public class EventProcessor implements Closeable {
         });
     }
 
+    /**
+     * Records the completion of a stage of the provided request's processing
+     * @return the time at which the stage completed, which is when the next stage begins
+     */
+    private long recordStage(final IntegrationRequest request, final Stage stage, final long stageStartNanos, final boolean isSuccess) {
+        final long stageEndNanos = metrics.stage(stage).record(stageStartNanos, isSuccess);
+        if (request instanceof SlowEventLog.TracedRequest tracedRequest) {
+            tracedRequest.recordStage(stage, stageEndNanos - stageStartNanos);
+        }
+        return stageEndNanos;
+    }
+
     static private void annotateIngestPipelineFailure(final Event event, final String pipelineName, Map<String,String> meta) {
         event.tag("_ingest_pipeline_failure");
         event.setField(String.format(METADATA_FAILURE_TEMPLATE, "pipeline"), pipelineName);
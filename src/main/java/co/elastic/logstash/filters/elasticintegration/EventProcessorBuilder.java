@@ -8,11 +8,16 @@ package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.api.Event;
 import co.elastic.logstash.api.FilterMatchListener;
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.ingest.ProcessorProfiler;
 import co.elastic.logstash.filters.elasticintegration.ingest.SingleProcessorIngestPlugin;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsPublishingService;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
 import co.elastic.logstash.filters.elasticintegration.resolver.CacheReloadService;
 import co.elastic.logstash.filters.elasticintegration.resolver.CachingResolver;
 import co.elastic.logstash.filters.elasticintegration.resolver.SimpleResolverCache;
 import co.elastic.logstash.filters.elasticintegration.resolver.ResolverCache;
+import co.elastic.logstash.filters.elasticintegration.util.CircuitBreaker;
 import co.elastic.logstash.filters.elasticintegration.util.Exceptions;
 import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
 import com.google.common.util.concurrent.Service;
@@ -33,6 +38,7 @@ import org.elasticsearch.logstashbridge.threadpool.ThreadPoolBridge;
 import java.io.Closeable;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,6 +61,9 @@ public class EventProcessorBuilder {
 
     static final Duration CACHE_MAXIMUM_AGE = Duration.ofHours(24);
     static final Duration CACHE_RELOAD_FREQUENCY = Duration.ofSeconds(60);
+    static final Duration ELASTICSEARCH_REQUEST_DEADLINE = Duration.ofSeconds(10);
+    static final Duration METRICS_PUBLISH_FREQUENCY = Duration.ofSeconds(5);
+    static final Duration PROCESSOR_PROFILE_REPORT_FREQUENCY = Duration.ofSeconds(60);
 
     private static <K,V> Supplier<ResolverCache<K,V>> defaultCacheSupplier(final String description) {
         return () -> new SimpleResolverCache<>(description, SimpleResolverCache.Configuration.PERMANENT);
@@ -67,15 +76,50 @@ public class EventProcessorBuilder {
             builder.setEventPipelineNameResolver(SprintfTemplateEventToPipelineNameResolver.from(pluginConfiguration.pipelineNameTemplate().get()));
         }
 
+        // both elasticsearch-backed resolvers share a circuit breaker, so that when the cluster is unavailable
+        // cache-miss lookups fail fast instead of holding up workers for the full request timeout.
+        final CircuitBreaker circuitBreaker = new CircuitBreaker("elasticsearch", CircuitBreaker.Configuration.DEFAULT);
+        final ElasticsearchRequestExecutor requestExecutor = ElasticsearchRequestExecutor.guarded(elasticsearchRestClient, circuitBreaker, ELASTICSEARCH_REQUEST_DEADLINE);
+
         builder.setEventIndexNameResolver(new DatastreamEventToIndexNameResolver());
-        builder.setIndexNamePipelineNameResolver(new ElasticsearchIndexNameToPipelineNameResolver(elasticsearchRestClient));
+        builder.setIndexNamePipelineNameResolver(new ElasticsearchIndexNameToPipelineNameResolver(requestExecutor));
         builder.setPipelineNameResolverCacheConfig(CACHE_MAXIMUM_AGE, CACHE_MAXIMUM_AGE);
 
-        builder.setPipelineConfigurationResolver(new ElasticsearchPipelineConfigurationResolver(elasticsearchRestClient));
+        builder.setPipelineConfigurationResolver(new ElasticsearchPipelineConfigurationResolver(requestExecutor));
         builder.setIngestPipelineResolverCacheConfig(CACHE_MAXIMUM_AGE, CACHE_MAXIMUM_AGE);
+
+        warmupFromPluginConfiguration(pluginConfiguration, requestExecutor).ifPresent(builder::setPipelineWarmup);
+        pluginConfiguration.warmupIterations().filter((iterations) -> iterations > 0).ifPresent((iterations) -> {
+            final Map<String, Object> warmupDocument = pluginConfiguration.warmupDocument().orElse(IngestPipelineWarmer.SYNTHETIC_DOCUMENT);
+            builder.setIngestPipelineWarmer(new IngestPipelineWarmer(iterations, List.of(warmupDocument), IngestPipelineWarmer.DEFAULT_TIME_BUDGET));
+        });
+        pluginConfiguration.processorProfiling().ifPresent(builder::setProcessorProfilingEnabled);
+        pluginConfiguration.slowlogThreshold().filter(Duration::isPositive).ifPresent((threshold) -> {
+            final int maxEventLength = pluginConfiguration.slowlogMaxEventLength().orElse(SlowEventLog.Configuration.DEFAULT_MAX_EVENT_LENGTH);
+            builder.setSlowEventLogConfiguration(new SlowEventLog.Configuration(threshold, SlowEventLog.Configuration.DEFAULT_MAX_ENTRIES_PER_MINUTE, maxEventLength));
+        });
         return builder;
     }
 
+    private static Optional<PipelineWarmup> warmupFromPluginConfiguration(final PluginConfiguration pluginConfiguration,
+                                                                          final ElasticsearchRequestExecutor requestExecutor) {
+        final List<String> datastreams = pluginConfiguration.warmupDatastreams().orElse(List.of());
+        final List<String> pipelines = pluginConfiguration.warmupPipelines().orElse(List.of());
+        final boolean discoverDatastreams = pluginConfiguration.warmupDiscoverDatastreams().orElse(false);
+        if (datastreams.isEmpty() && pipelines.isEmpty() && !discoverDatastreams) {
+            return Optional.empty();
+        }
+
+        final PipelineWarmup.Builder warmupBuilder = PipelineWarmup.builder()
+                .addIndexNames(datastreams)
+                .addPipelineNames(pipelines);
+        if (discoverDatastreams) {
+            warmupBuilder.addIndexNameDiscoverer(new ElasticsearchDatastreamDiscoverer(requestExecutor));
+        }
+        pluginConfiguration.warmupTimeout().ifPresent(warmupBuilder::setTimeout);
+        return Optional.of(warmupBuilder.build());
+    }
+
     public EventProcessorBuilder() {
         this.addProcessorsFromPlugin(IngestCommonPluginBridge::new, Set.of(
                 IngestCommonPluginBridge.APPEND_PROCESSOR_TYPE,
@@ -135,8 +179,29 @@ public class EventProcessorBuilder {
     // filer match listener
     private FilterMatchListener filterMatchListener;
 
+    // optional eager population of the resolver caches
+    private PipelineWarmup pipelineWarmup;
+
+    // optional warming of newly-compiled pipelines
+    private IngestPipelineWarmer ingestPipelineWarmer;
+
+    // optional publishing of metrics to the plugin's metric namespace
+    private NamespacedMetric pluginMetric;
+    private int maxTrackedPipelineMetrics = EventProcessorMetrics.DEFAULT_MAX_TRACKED_PIPELINES;
+
+    // optional profiling of each pipeline's processors
+    private ProcessorProfiler processorProfiler;
+
+    // optional logging of events that are slow to process
+    private SlowEventLog.Configuration slowEventLogConfiguration;
+
     private final List<Supplier<IngestPluginBridge>> ingestPlugins = new ArrayList<>();
 
+    // metrics of components that are built outside of this builder, such as the geoip database provider
+    private final Map<String, MetricsSource> additionalMetricsSources = new LinkedHashMap<>();
+
+    private final List<BatchScope> batchScopes = new ArrayList<>();
+
     public synchronized EventProcessorBuilder setPipelineConfigurationResolver(final PipelineConfigurationResolver pipelineConfigurationResolver) {
         if (Objects.nonNull(this.pipelineConfigurationResolver)) {
             throw new IllegalStateException("pipelineConfigurationResolver already set");
@@ -200,6 +265,66 @@ public class EventProcessorBuilder {
         return this;
     }
 
+    public synchronized EventProcessorBuilder setPipelineWarmup(final PipelineWarmup pipelineWarmup) {
+        if (Objects.nonNull(this.pipelineWarmup)) {
+            throw new IllegalStateException("pipelineWarmup already set");
+        }
+        this.pipelineWarmup = pipelineWarmup;
+        return this;
+    }
+
+    public EventProcessorBuilder setIngestPipelineWarmupIterations(final int iterations) {
+        return this.setIngestPipelineWarmer(new IngestPipelineWarmer(iterations));
+    }
+
+    public synchronized EventProcessorBuilder setIngestPipelineWarmer(final IngestPipelineWarmer ingestPipelineWarmer) {
+        if (Objects.nonNull(this.ingestPipelineWarmer)) {
+            throw new IllegalStateException("ingestPipelineWarmer already set");
+        }
+        this.ingestPipelineWarmer = ingestPipelineWarmer;
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder setPluginMetric(final NamespacedMetric pluginMetric) {
+        if (Objects.nonNull(this.pluginMetric)) {
+            throw new IllegalStateException("pluginMetric already set");
+        }
+        this.pluginMetric = pluginMetric;
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder setMaxTrackedPipelineMetrics(final int maxTrackedPipelineMetrics) {
+        this.maxTrackedPipelineMetrics = maxTrackedPipelineMetrics;
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder setProcessorProfilingEnabled(final boolean processorProfilingEnabled) {
+        this.processorProfiler = processorProfilingEnabled ? new ProcessorProfiler() : null;
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder setProcessorProfiler(final ProcessorProfiler processorProfiler) {
+        this.processorProfiler = processorProfiler;
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder setSlowEventLogConfiguration(final SlowEventLog.Configuration slowEventLogConfiguration) {
+        this.slowEventLogConfiguration = slowEventLogConfiguration;
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder addMetricsSource(final String name, final MetricsSource metricsSource) {
+        if (Objects.nonNull(this.additionalMetricsSources.putIfAbsent(name, metricsSource))) {
+            throw new IllegalStateException(String.format("metrics source `%s` already added", name));
+        }
+        return this;
+    }
+
+    public synchronized EventProcessorBuilder addBatchScope(final BatchScope batchScope) {
+        this.batchScopes.add(Objects.requireNonNull(batchScope, "batchScope"));
+        return this;
+    }
+
     public EventProcessorBuilder addProcessor(final String type, final Supplier<ProcessorFactoryBridge> processorFactorySupplier) {
         return this.addProcessorsFromPlugin(SingleProcessorIngestPlugin.of(type, processorFactorySupplier));
     }
@@ -249,11 +374,24 @@ public class EventProcessorBuilder {
                 ingestPipelineFactory = ingestPipelineFactory.withProcessors(processorFactories);
             }
 
+            final ProcessorProfiler processorProfiler = this.processorProfiler;
+            if (Objects.nonNull(processorProfiler)) {
+                ingestPipelineFactory = ingestPipelineFactory.withProcessorProfiler(processorProfiler);
+                services.add(processorProfiler.newManagedReportingService(pluginContext, PROCESSOR_PROFILE_REPORT_FREQUENCY, ProcessorProfiler.DEFAULT_REPORT_SIZE));
+            }
+
+            final Map<String, MetricsSource> cacheMetrics = new LinkedHashMap<>();
+
             final ResolverCache<String, IngestPipeline> ingestPipelineCache = Optional.ofNullable(ingestPipelineResolverCacheSupplier)
                     .orElse(defaultCacheSupplier("ingest-pipeline"))
                     .get();
+            cacheMetrics.put("ingest_pipeline", ingestPipelineCache.getMetrics());
+            // when warming up, pipeline definitions that are fetched in bulk are consumed by the first load of each pipeline
+            final PipelineConfigurationResolver pipelineConfigurationResolver = Objects.isNull(this.pipelineWarmup)
+                    ? this.pipelineConfigurationResolver
+                    : this.pipelineWarmup.prefetching(this.pipelineConfigurationResolver);
             final SimpleCachingIngestPipelineResolver cachingInternalPipelineResolver =
-                    new SimpleIngestPipelineResolver(this.pipelineConfigurationResolver, ingestPipelineFactory).withCache(ingestPipelineCache);
+                    new SimpleIngestPipelineResolver(pipelineConfigurationResolver, ingestPipelineFactory, this.ingestPipelineWarmer).withCache(ingestPipelineCache);
             services.add(CacheReloadService.newManaged(pluginContext, cachingInternalPipelineResolver.getReloader(), newFixedRateSchedule(CACHE_RELOAD_FREQUENCY, CACHE_RELOAD_FREQUENCY)));
 
             final FilterMatchListener filterMatchListener = Objects.requireNonNullElse(this.filterMatchListener, (event) -> {});
@@ -261,6 +399,7 @@ public class EventProcessorBuilder {
             final IndexNameToPipelineNameResolver indexNameToPipelineNameResolver;
             if (this.indexNameToPipelineNameResolver instanceof IndexNameToPipelineNameResolver.Cacheable cacheable) {
                 final ResolverCache<String, String> pipelineNameCache = Optional.ofNullable(pipelineNameResolverCacheSupplier).orElse(defaultCacheSupplier("pipeline-name")).get();
+                cacheMetrics.put("pipeline_name", pipelineNameCache.getMetrics());
                 final CachingResolver<String, String> cachingPipelineNameResolver = cacheable.withCache(pipelineNameCache);
                 services.add(CacheReloadService.newManaged(pluginContext, cachingPipelineNameResolver.getReloader(), newFixedRateSchedule(CACHE_RELOAD_FREQUENCY, CACHE_RELOAD_FREQUENCY)));
                 indexNameToPipelineNameResolver = cachingPipelineNameResolver::resolve;
@@ -268,7 +407,27 @@ public class EventProcessorBuilder {
                 indexNameToPipelineNameResolver = this.indexNameToPipelineNameResolver;
             }
 
-            // start the reload services for our resolvers
+            if (Objects.nonNull(this.pipelineWarmup)) {
+                this.pipelineWarmup.run(pluginContext, indexNameToPipelineNameResolver, pipelineConfigurationResolver, cachingInternalPipelineResolver, this.ingestPipelineWarmer);
+            }
+
+            final EventProcessorMetrics eventProcessorMetrics = new EventProcessorMetrics(this.maxTrackedPipelineMetrics);
+
+            final FailureReporter failureReporter = new FailureReporter();
+            services.add(failureReporter.newManagedReportingService(pluginContext));
+
+            if (Objects.nonNull(this.pluginMetric)) {
+                final Map<String, MetricsSource> metricsSources = new LinkedHashMap<>();
+                metricsSources.put("processing", eventProcessorMetrics);
+                metricsSources.put("caches", (namespacedMetric) -> cacheMetrics.forEach((cacheName, metrics) -> metrics.publishTo(namespacedMetric.namespace(cacheName))));
+                if (Objects.nonNull(processorProfiler)) {
+                    metricsSources.put("processors", processorProfiler);
+                }
+                this.additionalMetricsSources.forEach(metricsSources::putIfAbsent);
+                services.add(MetricsPublishingService.newManaged(pluginContext, this.pluginMetric, metricsSources, newFixedRateSchedule(METRICS_PUBLISH_FREQUENCY, METRICS_PUBLISH_FREQUENCY)));
+            }
+
+            // start the reload services for our resolvers, the failure reporter, and the metrics publisher
             final ServiceManager serviceManager = new ServiceManager(services);
             serviceManager.startAsync();
             resourcesToClose.add(() -> {
@@ -281,6 +440,10 @@ public class EventProcessorBuilder {
                                       eventToPipelineNameResolver,
                                       eventToIndexNameResolver,
                                       indexNameToPipelineNameResolver,
+                                      eventProcessorMetrics,
+                                      Optional.ofNullable(this.slowEventLogConfiguration).map(SlowEventLog::new).orElse(null),
+                                      failureReporter,
+                                      batchScopes,
                                       resourcesToClose);
         } catch (Exception e) {
             IOUtilsBridge.closeWhileHandlingException(resourcesToClose);
@@ -0,0 +1,116 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link EventProcessorMetrics} records how many events pass through each {@link Stage} of an
+ * {@link EventProcessor} and each ingest pipeline that it executes, how many of them fail, and
+ * how long they take.
+ *
+ * <p>Pipelines are tracked by their resolved id, but only up to a configured number of distinct
+ * pipelines; the executions of any pipeline beyond that limit are combined into a single
+ * {@value OTHER_PIPELINES} entry, so that the number of published metrics remains bounded
+ * regardless of how many pipelines are routed to.</p>
+ */
+public final class EventProcessorMetrics implements MetricsSource {
+
+    public static final int DEFAULT_MAX_TRACKED_PIPELINES = 100;
+    static final String OTHER_PIPELINES = "_other";
+
+    /**
+     * The stages that an event passes through. Because a rerouted event executes more than one
+     * pipeline, {@link Stage#EXECUTE_PIPELINE} counts pipeline executions rather than events.
+     */
+    public enum Stage {
+        RESOLVE_INDEX_NAME,
+        RESOLVE_PIPELINE_NAME,
+        RESOLVE_PIPELINE,
+        TO_INGEST_DOCUMENT,
+        EXECUTE_PIPELINE,
+        TO_LOGSTASH_EVENT;
+
+        final String metricName = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final Map<Stage, OperationMetrics> stages = new EnumMap<>(Stage.class);
+
+    private final int maxTrackedPipelines;
+    private final Map<String, OperationMetrics> pipelines = new ConcurrentHashMap<>();
+    private final AtomicInteger trackedPipelines = new AtomicInteger();
+    private final OperationMetrics otherPipelines = new OperationMetrics();
+
+    public EventProcessorMetrics() {
+        this(DEFAULT_MAX_TRACKED_PIPELINES);
+    }
+
+    public EventProcessorMetrics(final int maxTrackedPipelines) {
+        if (maxTrackedPipelines < 0) {
+            throw new IllegalArgumentException("maxTrackedPipelines must not be negative");
+        }
+        this.maxTrackedPipelines = maxTrackedPipelines;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new OperationMetrics());
+        }
+    }
+
+    public OperationMetrics stage(final Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * @param pipelineId the id of an executed pipeline
+     * @return the metrics for the pipeline, which are shared with other untracked
+     *         pipelines once the limit of tracked pipelines has been reached
+     */
+    public OperationMetrics pipeline(final String pipelineId) {
+        final OperationMetrics existing = pipelines.get(pipelineId);
+        if (Objects.nonNull(existing)) {
+            return existing;
+        }
+        if (trackedPipelines.get() >= maxTrackedPipelines) {
+            return otherPipelines;
+        }
+        final OperationMetrics tracked = pipelines.computeIfAbsent(pipelineId, (id) -> {
+            // claim a slot atomically, so that concurrent first executions
+            // of distinct pipelines cannot exceed the limit
+            if (trackedPipelines.getAndIncrement() >= maxTrackedPipelines) {
+                trackedPipelines.decrementAndGet();
+                return null;
+            }
+            return new OperationMetrics();
+        });
+        return Objects.requireNonNullElse(tracked, otherPipelines);
+    }
+
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        final NamespacedMetric stagesMetric = namespacedMetric.namespace("stages");
+        stages.forEach((stage, metrics) -> metrics.publishTo(stagesMetric.namespace(stage.metricName)));
+
+        final NamespacedMetric pipelinesMetric = namespacedMetric.namespace("pipelines");
+        pipelines.forEach((pipelineId, metrics) -> metrics.publishTo(pipelinesMetric.namespace(pipelineId)));
+        if (otherPipelines.count() > 0) {
+            otherPipelines.publishTo(pipelinesMetric.namespace(OTHER_PIPELINES));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventProcessorMetrics{stages=%s, pipelines=%s, otherPipelines=%s}", stages, pipelines.size(), otherPipelines);
+    }
+}
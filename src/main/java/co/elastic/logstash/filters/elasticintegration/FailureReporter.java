@@ -0,0 +1,155 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.filters.elasticintegration.util.PeriodicTaskService;
+import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link FailureReporter} aggregates the failures that occur while processing events, so
+ * that a failure that affects every event (such as a pipeline that no longer matches the shape
+ * of its input) does not produce a log entry and a stack trace for each of them.
+ *
+ * <p>Failures are grouped by their source (such as a pipeline) and their exception class.
+ * The first failure of each group in an interval is logged immediately with its stack trace,
+ * and the remaining failures of that group are counted and summarized once per interval by
+ * {@link #flush()}, along with the message of the most recent of them.</p>
+ */
+public final class FailureReporter {
+
+    public static final Duration DEFAULT_REPORT_INTERVAL = Duration.ofSeconds(10);
+    public static final int DEFAULT_MAX_TRACKED_GROUPS = 1000;
+    static final String OTHER = "_other";
+
+    private static final Logger DEFAULT_LOGGER = LogManager.getLogger(FailureReporter.class);
+
+    record Group(String source, String exceptionClass) {
+        @Override
+        public String toString() {
+            return String.format("%s (%s)", source, exceptionClass);
+        }
+    }
+
+    private final Logger logger;
+    private final Duration interval;
+    private final int maxTrackedGroups;
+
+    private final Map<Group, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicInteger trackedGroups = new AtomicInteger();
+    private final Window otherWindow = new Window(new Group(OTHER, OTHER));
+
+    public FailureReporter() {
+        this(DEFAULT_REPORT_INTERVAL, DEFAULT_MAX_TRACKED_GROUPS);
+    }
+
+    public FailureReporter(final Duration interval, final int maxTrackedGroups) {
+        this(DEFAULT_LOGGER, interval, maxTrackedGroups);
+    }
+
+    FailureReporter(final Logger logger, final Duration interval, final int maxTrackedGroups) {
+        this.logger = logger;
+        this.interval = interval;
+        this.maxTrackedGroups = maxTrackedGroups;
+    }
+
+    /**
+     * Reports a single failure.
+     *
+     * @param level the level at which failures of this kind are logged
+     * @param source a description of where the failure occurred, such as {@code ingest pipeline `my-pipeline`}
+     * @param failure the cause of the failure
+     */
+    public void report(final Level level, final String source, final Throwable failure) {
+        final Window window = windowFor(new Group(source, failure.getClass().getName()));
+        window.failures.increment();
+        window.level = level;
+        window.lastSource = source;
+        window.lastFailure = failure;
+        if (window.sampled.compareAndSet(false, true)) {
+            logger.log(level, () -> String.format("%s failed: %s (similar failures will be summarized every %ss)",
+                    source, failure.getMessage(), interval.toSeconds()), failure);
+        }
+    }
+
+    /**
+     * Logs a summary of the failures of each group since the previous flush, other than
+     * the first of each that was already logged, and resets their counts.
+     */
+    public void flush() {
+        windows.values().forEach(this::flush);
+        flush(otherWindow);
+    }
+
+    private void flush(final Window window) {
+        // the flag is reset before the count, so that a failure that is reported in between is either
+        // sampled anew or included in this summary, rather than being counted in a window that is never summarized
+        final boolean sampled = window.sampled.getAndSet(false);
+        final long failures = window.failures.sumThenReset();
+        if (sampled && failures > 1) {
+            final String lastSource = window.lastSource;
+            final Throwable lastFailure = window.lastFailure;
+            logger.log(Objects.requireNonNullElse(window.level, Level.WARN), () -> String.format("%s failed %s more times in the last %ss; most recent: %s failed with %s",
+                    window.group, failures - 1, interval.toSeconds(), lastSource, lastFailure));
+        }
+    }
+
+    private Window windowFor(final Group group) {
+        final Window existing = windows.get(group);
+        if (Objects.nonNull(existing)) {
+            return existing;
+        }
+        if (trackedGroups.get() >= maxTrackedGroups) {
+            return otherWindow;
+        }
+        final Window tracked = windows.computeIfAbsent(group, (key) -> {
+            if (trackedGroups.getAndIncrement() >= maxTrackedGroups) {
+                trackedGroups.decrementAndGet();
+                return null;
+            }
+            return new Window(key);
+        });
+        return Objects.requireNonNullElse(tracked, otherWindow);
+    }
+
+    /**
+     * Creates a new service that periodically flushes this reporter, wholly managing
+     * the lifecycle of its internal scheduled executor service. The reporter is flushed
+     * one last time when the service is stopped.
+     *
+     * @param pluginContext the context of the plugin whose failures are being reported
+     * @return a new, unstarted service
+     */
+    public Service newManagedReportingService(final PluginContext pluginContext) {
+        return PeriodicTaskService.newManaged(pluginContext, "failure-reporter", Scheduler.newFixedRateSchedule(interval, interval), this::flush, true);
+    }
+
+    private static class Window {
+        private final Group group;
+        private final LongAdder failures = new LongAdder();
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private volatile Level level;
+        private volatile String lastSource;
+        private volatile Throwable lastFailure;
+
+        Window(final Group group) {
+            this.group = group;
+        }
+    }
+}
@@ -7,6 +7,7 @@
 package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.filters.elasticintegration.ingest.PipelineProcessor;
+import co.elastic.logstash.filters.elasticintegration.ingest.ProcessorProfiler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.logstashbridge.ingest.PipelineBridge;
@@ -17,6 +18,7 @@ import org.elasticsearch.logstashbridge.script.ScriptServiceBridge;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -26,28 +28,42 @@ import java.util.Optional;
 public class IngestPipelineFactory {
     private final ScriptServiceBridge scriptService;
     private final Map<String, ProcessorFactoryBridge> processorFactories;
+    private final ProcessorProfiler processorProfiler;
 
     private static final Logger LOGGER = LogManager.getLogger(IngestPipelineFactory.class);
 
     public IngestPipelineFactory(final ScriptServiceBridge scriptService) {
-        this(scriptService, Map.of());
+        this(scriptService, Map.of(), null);
     }
 
     private IngestPipelineFactory(final ScriptServiceBridge scriptService,
-                                  final Map<String, ProcessorFactoryBridge> processorFactories) {
+                                  final Map<String, ProcessorFactoryBridge> processorFactories,
+                                  final ProcessorProfiler processorProfiler) {
         this.scriptService = scriptService;
         this.processorFactories = Map.copyOf(processorFactories);
+        this.processorProfiler = processorProfiler;
     }
 
     public IngestPipelineFactory withProcessors(final Map<String, ProcessorFactoryBridge> processorFactories) {
         final Map<String, ProcessorFactoryBridge> intermediate = new HashMap<>(this.processorFactories);
         intermediate.putAll(processorFactories);
-        return new IngestPipelineFactory(scriptService, intermediate);
+        return new IngestPipelineFactory(scriptService, intermediate, processorProfiler);
+    }
+
+    /**
+     * @param processorProfiler the {@link ProcessorProfiler} to profile the processors of created pipelines with
+     * @return a <em>copy</em> of this {@code IngestPipelineFactory} whose pipelines' processors are each profiled
+     */
+    public IngestPipelineFactory withProcessorProfiler(final ProcessorProfiler processorProfiler) {
+        return new IngestPipelineFactory(scriptService, processorFactories, processorProfiler);
     }
 
     public Optional<IngestPipeline> create(final PipelineConfigurationBridge pipelineConfiguration) {
         try {
-            final PipelineBridge pipeline = PipelineBridge.create(pipelineConfiguration.getId(), pipelineConfiguration.getConfig(false), processorFactories, scriptService);
+            final Map<String, ProcessorFactoryBridge> pipelineProcessorFactories = Objects.isNull(processorProfiler)
+                    ? processorFactories
+                    : processorProfiler.profiling(pipelineConfiguration.getId(), processorFactories);
+            final PipelineBridge pipeline = PipelineBridge.create(pipelineConfiguration.getId(), pipelineConfiguration.getConfig(false), pipelineProcessorFactories, scriptService);
             final IngestPipeline ingestPipeline = new IngestPipeline(pipelineConfiguration, pipeline);
             LOGGER.debug(() -> String.format("successfully created ingest pipeline `%s` from pipeline configuration", pipelineConfiguration.getId()));
             return Optional.of(ingestPipeline);
@@ -66,6 +82,6 @@ public class IngestPipelineFactory {
     public IngestPipelineFactory withIngestPipelineResolver(final IngestPipelineResolver ingestPipelineResolver) {
         final Map<String, ProcessorFactoryBridge> modifiedProcessorFactories = new HashMap<>(this.processorFactories);
         modifiedProcessorFactories.put(PipelineProcessor.TYPE, new PipelineProcessor.Factory(ingestPipelineResolver, this.scriptService));
-        return new IngestPipelineFactory(scriptService, modifiedProcessorFactories);
+        return new IngestPipelineFactory(scriptService, modifiedProcessorFactories, processorProfiler);
     }
 }
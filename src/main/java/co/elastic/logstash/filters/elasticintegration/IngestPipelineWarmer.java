@@ -0,0 +1,153 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.filters.elasticintegration.ingest.ProcessorProfiler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
+import org.logstash.plugins.BasicEventFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An {@link IngestPipelineWarmer} executes an {@link IngestPipeline} against a number of
+ * sample documents and discards the results, so that its processors' code paths (including
+ * painless scripts, grok, and dissect) have been exercised and JIT-compiled <em>before</em>
+ * the pipeline is used to process events.
+ *
+ * <p>Warming is performed on the calling thread, and is bounded by both a number of
+ * iterations and a time budget. Failures of the pipeline are expected and ignored,
+ * since sample documents rarely have every field that a pipeline expects. Because its
+ * executions are not of events, they are not {@link ProcessorProfiler profiled}, and they
+ * bypass the {@link EventProcessor} and so its metrics and failure reporting. Components that
+ * record or learn from the work of processors, such as the geoip databases' metrics and caches,
+ * can exclude the executions of a warmer with {@link #isWarming()}.</p>
+ *
+ * <p>Unless other sample documents are provided (with the {@code warmup_document} setting),
+ * a synthetic access-log document is used.</p>
+ */
+public final class IngestPipelineWarmer {
+
+    public static final Duration DEFAULT_TIME_BUDGET = Duration.ofSeconds(10);
+
+    // a representative-enough document for the code paths that most pipelines guard by field presence
+    static final Map<String, Object> SYNTHETIC_DOCUMENT = Map.of(
+            "@timestamp", "2024-01-01T00:00:00.000Z",
+            "message", "127.0.0.1 - - [01/Jan/2024:00:00:00 +0000] \"GET /index.html HTTP/1.1\" 200 1234 \"-\" \"Mozilla/5.0\"",
+            "event", Map.of("original", "127.0.0.1 - - [01/Jan/2024:00:00:00 +0000] \"GET /index.html HTTP/1.1\" 200 1234 \"-\" \"Mozilla/5.0\""),
+            "host", Map.of("name", "warmup", "ip", List.of("127.0.0.1")),
+            "source", Map.of("ip", "127.0.0.1"),
+            "data_stream", Map.of("type", "logs", "dataset", "generic", "namespace", "default"));
+
+    private static final Logger LOGGER = LogManager.getLogger(IngestPipelineWarmer.class);
+
+    private static final ThreadLocal<Boolean> WARMING = ThreadLocal.withInitial(() -> false);
+
+    private final int iterations;
+    private final List<Map<String, Object>> sampleDocuments;
+    private final Duration timeBudget;
+    private final IngestDuplexMarshaller eventMarshaller = IngestDuplexMarshaller.defaultInstance();
+
+    public IngestPipelineWarmer(final int iterations) {
+        this(iterations, List.of(SYNTHETIC_DOCUMENT), DEFAULT_TIME_BUDGET);
+    }
+
+    public IngestPipelineWarmer(final int iterations,
+                                final List<Map<String, Object>> sampleDocuments,
+                                final Duration timeBudget) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        if (sampleDocuments.isEmpty()) {
+            throw new IllegalArgumentException("sampleDocuments must not be empty");
+        }
+        this.iterations = iterations;
+        this.sampleDocuments = List.copyOf(sampleDocuments);
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Executes the provided pipeline against this warmer's sample documents, cycling through
+     * them until the configured number of iterations or the time budget is exhausted.
+     *
+     * @param ingestPipeline the pipeline to warm
+     */
+    public void warm(final IngestPipeline ingestPipeline) {
+        final boolean previous = WARMING.get();
+        WARMING.set(true);
+        try {
+            ProcessorProfiler.runUnprofiled(() -> warmUnprofiled(ingestPipeline));
+        } finally {
+            WARMING.set(previous);
+        }
+    }
+
+    /**
+     * @return whether the calling thread is executing a pipeline to warm it, rather than to process an event
+     */
+    public static boolean isWarming() {
+        return WARMING.get();
+    }
+
+    private void warmUnprofiled(final IngestPipeline ingestPipeline) {
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + timeBudget.toNanos();
+
+        int completed = 0;
+        int failed = 0;
+        try {
+            for (; completed < iterations; completed++) {
+                final long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                if (!executeOnce(ingestPipeline, sampleDocuments.get(completed % sampleDocuments.size()), remainingNanos)) {
+                    failed++;
+                }
+            }
+        } catch (TimeoutException e) {
+            // an individual execution outlived the budget; the pipeline is as warm as it is going to get
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final int executions = completed;
+        final int failures = failed;
+        LOGGER.debug(() -> String.format("warmed pipeline `%s` with %s of %s executions (%s failed) in %s",
+                ingestPipeline.getId(), executions, iterations, failures, Duration.ofNanos(System.nanoTime() - startNanos)));
+    }
+
+    private boolean executeOnce(final IngestPipeline ingestPipeline,
+                                final Map<String, Object> sampleDocument,
+                                final long timeoutNanos) throws InterruptedException, TimeoutException {
+        final Event event = BasicEventFactory.INSTANCE.newEvent(sampleDocument);
+        final IngestDocumentBridge ingestDocument = eventMarshaller.toIngestDocument(event);
+
+        final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        try {
+            ingestPipeline.execute(ingestDocument, (resultIngestDocument, exception) -> outcome.complete(Objects.isNull(exception)));
+            return outcome.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | RuntimeException e) {
+            LOGGER.trace(() -> String.format("warmup execution of pipeline `%s` threw", ingestPipeline.getId()), e);
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IngestPipelineWarmer{iterations=%s, sampleDocuments=%s, timeBudget=%s}", iterations, sampleDocuments.size(), timeBudget);
+    }
+}
@@ -9,6 +9,9 @@ package co.elastic.logstash.filters.elasticintegration;
 import co.elastic.logstash.filters.elasticintegration.resolver.UncacheableResolver;
 import org.elasticsearch.logstashbridge.ingest.PipelineConfigurationBridge;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -20,4 +23,22 @@ import java.util.function.Consumer;
 public interface PipelineConfigurationResolver extends UncacheableResolver<String, PipelineConfigurationBridge> {
     @Override
     Optional<PipelineConfigurationBridge> resolve(String pipelineName, Consumer<Exception> exceptionHandler);
+
+    /**
+     * Resolves many pipeline names at once. Implementations backed by a remote source of truth
+     * should override this default, which resolves each pipeline name individually.
+     *
+     * @param pipelineNames the names of the pipelines to resolve
+     * @param exceptionHandler a handler that will receive any exceptions encountered while resolving
+     * @return a map of pipeline names to the configurations that could be resolved; names that could not
+     *         be resolved are omitted
+     */
+    default Map<String, PipelineConfigurationBridge> resolveAll(final Collection<String> pipelineNames,
+                                                                final Consumer<Exception> exceptionHandler) {
+        final Map<String, PipelineConfigurationBridge> resolved = new LinkedHashMap<>();
+        for (String pipelineName : pipelineNames) {
+            resolve(pipelineName, exceptionHandler).ifPresent((pc) -> resolved.put(pipelineName, pc));
+        }
+        return resolved;
+    }
 }
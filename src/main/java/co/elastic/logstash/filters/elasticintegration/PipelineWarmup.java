@@ -0,0 +1,308 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.logstashbridge.ingest.PipelineConfigurationBridge;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link PipelineWarmup} populates the caches of an {@link EventProcessor} while it is being built,
+ * so that the first events for well-known data streams and pipelines do not need to wait for their
+ * pipelines to be fetched and compiled inline:
+ * <ol>
+ *     <li>each index name (whether configured or discovered) is resolved to its default pipeline name,</li>
+ *     <li>the definitions of the resulting pipelines are fetched in bulk,</li>
+ *     <li>the pipelines are compiled in parallel <em>through</em> the pipeline cache, and</li>
+ *     <li>when an {@link IngestPipelineWarmer} is provided, the compiled pipelines are executed
+ *         against sample documents so that their code paths are JIT-compiled.</li>
+ * </ol>
+ * Warm-up is best-effort: failures are logged, and any work that remains when the timeout
+ * elapses is abandoned so that it can instead be performed on demand.
+ */
+public final class PipelineWarmup {
+
+    /**
+     * An {@link IndexNameDiscoverer} discovers the names of indices whose pipelines should be warmed up.
+     */
+    @FunctionalInterface
+    public interface IndexNameDiscoverer {
+        Collection<String> discoverIndexNames() throws Exception;
+    }
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
+    private static final Logger LOGGER = LogManager.getLogger(PipelineWarmup.class);
+
+    private final Set<String> indexNames;
+    private final Set<String> pipelineNames;
+    private final List<IndexNameDiscoverer> indexNameDiscoverers;
+    private final Duration timeout;
+    private final int parallelism;
+
+    // definitions fetched in bulk, each of which is consumed by the first attempt to resolve it
+    private final ConcurrentMap<String, PipelineConfigurationBridge> prefetched = new ConcurrentHashMap<>();
+
+    private PipelineWarmup(final Builder builder) {
+        this.indexNames = Set.copyOf(builder.indexNames);
+        this.pipelineNames = Set.copyOf(builder.pipelineNames);
+        this.indexNameDiscoverers = List.copyOf(builder.indexNameDiscoverers);
+        this.timeout = builder.timeout;
+        this.parallelism = builder.parallelism;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param pipelineConfigurationResolver the resolver to wrap
+     * @return a {@link PipelineConfigurationResolver} that first consults the definitions that have
+     *         been fetched in bulk by this warm-up, falling through to the provided resolver
+     */
+    PipelineConfigurationResolver prefetching(final PipelineConfigurationResolver pipelineConfigurationResolver) {
+        return new PipelineConfigurationResolver() {
+            @Override
+            public Optional<PipelineConfigurationBridge> resolve(final String pipelineName,
+                                                                 final Consumer<Exception> exceptionHandler) {
+                final PipelineConfigurationBridge prefetchedConfiguration = prefetched.remove(pipelineName);
+                if (Objects.nonNull(prefetchedConfiguration)) {
+                    return Optional.of(prefetchedConfiguration);
+                }
+                return pipelineConfigurationResolver.resolve(pipelineName, exceptionHandler);
+            }
+
+            @Override
+            public Map<String, PipelineConfigurationBridge> resolveAll(final Collection<String> pipelineNames,
+                                                                       final Consumer<Exception> exceptionHandler) {
+                return pipelineConfigurationResolver.resolveAll(pipelineNames, exceptionHandler);
+            }
+        };
+    }
+
+    /**
+     * Performs the warm-up, returning when it is complete or when its timeout has elapsed.
+     *
+     * @param pluginContext the context used to name the warm-up threads
+     * @param indexNameToPipelineNameResolver a resolver that populates the pipeline-name cache
+     * @param pipelineConfigurationResolver the resolver to fetch pipeline definitions in bulk with
+     * @param ingestPipelineResolver a resolver that populates the pipeline cache
+     * @param ingestPipelineWarmer an optional warmer, which warms each of the compiled pipelines
+     * @return true if the warm-up completed within its timeout
+     */
+    boolean run(final PluginContext pluginContext,
+                final IndexNameToPipelineNameResolver indexNameToPipelineNameResolver,
+                final PipelineConfigurationResolver pipelineConfigurationResolver,
+                final IngestPipelineResolver ingestPipelineResolver,
+                final IngestPipelineWarmer ingestPipelineWarmer) {
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + timeout.toNanos();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, pluginContext.newNamedThreadFactory("warmup"));
+        try {
+            final Set<String> indexNames = new LinkedHashSet<>(this.indexNames);
+            for (IndexNameDiscoverer indexNameDiscoverer : indexNameDiscoverers) {
+                try {
+                    indexNames.addAll(indexNameDiscoverer.discoverIndexNames());
+                } catch (Exception e) {
+                    LOGGER.warn(String.format("warmup: failed to discover index names (%s)", e.getMessage()), e);
+                }
+            }
+            LOGGER.info(() -> String.format("warmup: starting with %s index names and %s pipeline names (timeout: %s)",
+                    indexNames.size(), this.pipelineNames.size(), timeout));
+
+            final Set<String> pipelineNames = new LinkedHashSet<>(this.pipelineNames);
+            final Map<String, Optional<String>> indexPipelineNames = runAll("resolve-pipeline-names", indexNames, executor, deadlineNanos,
+                    (indexName, exceptionHandler) -> indexNameToPipelineNameResolver.resolve(indexName, exceptionHandler));
+            indexPipelineNames.values().forEach((pipelineName) -> pipelineName
+                    .filter((name) -> !name.equals(EventProcessor.PIPELINE_MAGIC_NONE))
+                    .ifPresent(pipelineNames::add));
+
+            if (pipelineNames.isEmpty()) {
+                LOGGER.info("warmup: no pipelines to warm up");
+                return true;
+            }
+
+            final Map<String, PipelineConfigurationBridge> fetched = pipelineConfigurationResolver.resolveAll(pipelineNames,
+                    (e) -> LOGGER.warn(String.format("warmup: failed to fetch pipelines (%s)", e.getMessage())));
+            prefetched.putAll(fetched);
+            LOGGER.info(() -> String.format("warmup: fetched %s of %s pipelines", fetched.size(), pipelineNames.size()));
+            throwIfElapsed("fetch-pipelines", deadlineNanos);
+
+            final Map<String, Optional<IngestPipeline>> compiled = runAll("compile-pipelines", fetched.keySet(), executor, deadlineNanos,
+                    (pipelineName, exceptionHandler) -> ingestPipelineResolver.resolve(pipelineName, exceptionHandler));
+            final long compiledCount = compiled.values().stream().filter(Optional::isPresent).count();
+
+            if (Objects.nonNull(ingestPipelineWarmer)) {
+                // the pipelines are already cached, but warming them before we report
+                // ready keeps the first events away from their cold code paths
+                final Set<String> compiledPipelineNames = compiled.entrySet().stream()
+                        .filter((entry) -> entry.getValue().isPresent())
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                runAll("warm-pipelines", compiledPipelineNames, executor, deadlineNanos, (pipelineName, exceptionHandler) -> {
+                    compiled.get(pipelineName).ifPresent(ingestPipelineWarmer::warm);
+                    return Optional.of(pipelineName);
+                });
+            }
+            LOGGER.info(() -> String.format("warmup: completed in %s; %s of %s pipelines are ready",
+                    Duration.ofNanos(System.nanoTime() - startNanos), compiledCount, pipelineNames.size()));
+            return true;
+        } catch (TimeoutException e) {
+            LOGGER.warn(() -> String.format("warmup: %s; remaining pipelines will be loaded on demand", e.getMessage()));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("warmup: interrupted; remaining pipelines will be loaded on demand");
+            return false;
+        } finally {
+            // loads that are already in flight are left to finish in the background and populate
+            // the caches, since interrupting them would only waste the work they have already done
+            executor.shutdown();
+            prefetched.clear();
+        }
+    }
+
+    @FunctionalInterface
+    private interface WarmupTask<V> {
+        Optional<V> run(String key, Consumer<Exception> exceptionHandler);
+    }
+
+    /**
+     * Runs the provided task for each key in parallel, periodically logging progress until
+     * every task has completed or the deadline has elapsed.
+     */
+    private <V> Map<String, Optional<V>> runAll(final String phase,
+                                                final Collection<String> keys,
+                                                final ExecutorService executor,
+                                                final long deadlineNanos,
+                                                final WarmupTask<V> task) throws TimeoutException, InterruptedException {
+        final Map<String, Optional<V>> results = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return results;
+        }
+
+        final AtomicInteger failures = new AtomicInteger();
+        final CompletionService<Map.Entry<String, Optional<V>>> completionService = new ExecutorCompletionService<>(executor);
+        final List<Future<Map.Entry<String, Optional<V>>>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(completionService.submit(() -> {
+                final Optional<V> result = task.run(key, (e) -> {
+                    failures.incrementAndGet();
+                    LOGGER.debug(() -> String.format("warmup(%s): `%s` failed (%s)", phase, key, e.getMessage()), e);
+                });
+                return Map.entry(key, result);
+            }));
+        }
+
+        try {
+            while (results.size() < keys.size()) {
+                final long remainingNanos = deadlineNanos - System.nanoTime();
+                throwIfElapsed(phase, deadlineNanos);
+                final Future<Map.Entry<String, Optional<V>>> completed = completionService.poll(Math.min(remainingNanos, PROGRESS_INTERVAL.toNanos()), TimeUnit.NANOSECONDS);
+                if (Objects.isNull(completed)) {
+                    LOGGER.info(() -> String.format("warmup(%s): %s of %s complete", phase, results.size(), keys.size()));
+                    continue;
+                }
+                try {
+                    final Map.Entry<String, Optional<V>> entry = completed.get();
+                    results.put(entry.getKey(), entry.getValue());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(String.format("warmup(%s) task failed unexpectedly", phase), e.getCause());
+                }
+            }
+        } finally {
+            // tasks that have not yet started are skipped, but those in flight are not interrupted
+            futures.forEach((future) -> future.cancel(false));
+        }
+
+        LOGGER.info(() -> String.format("warmup(%s): %s of %s complete (%s failed)", phase, results.size(), keys.size(), failures.get()));
+        return results;
+    }
+
+    private void throwIfElapsed(final String phase, final long deadlineNanos) throws TimeoutException {
+        if (deadlineNanos - System.nanoTime() <= 0) {
+            throw new TimeoutException(String.format("timed out after %s during %s", timeout, phase));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PipelineWarmup{indexNames=%s, pipelineNames=%s, discoverers=%s, timeout=%s, parallelism=%s}",
+                indexNames, pipelineNames, indexNameDiscoverers.size(), timeout, parallelism);
+    }
+
+    public static class Builder {
+        private final Set<String> indexNames = new LinkedHashSet<>();
+        private final Set<String> pipelineNames = new LinkedHashSet<>();
+        private final List<IndexNameDiscoverer> indexNameDiscoverers = new ArrayList<>();
+        private Duration timeout = DEFAULT_TIMEOUT;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {}
+
+        public Builder addIndexNames(final Collection<String> indexNames) {
+            this.indexNames.addAll(indexNames);
+            return this;
+        }
+
+        public Builder addPipelineNames(final Collection<String> pipelineNames) {
+            this.pipelineNames.addAll(pipelineNames);
+            return this;
+        }
+
+        public Builder addIndexNameDiscoverer(final IndexNameDiscoverer indexNameDiscoverer) {
+            this.indexNameDiscoverers.add(Objects.requireNonNull(indexNameDiscoverer, "indexNameDiscoverer"));
+            return this;
+        }
+
+        public Builder setTimeout(final Duration timeout) {
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder setParallelism(final int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public PipelineWarmup build() {
+            return new PipelineWarmup(this);
+        }
+    }
+}
@@ -12,15 +12,20 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 /**
  * A {@link PluginConfiguration} is an immutable view of the subset of a plugin's configuration
  * that is needed by the Java internals of this plugin, as-provided and without any further validation.
- * We expect configuration to be pre-validated by the ruby plugin, and for fields to be {@code null}
+ * We expect configuration to be pre-validated by the ruby plugin or {@link ElasticIntegrationFilter}, and for fields to be {@code null}
  * when they are semantically meaningless.
  */
 public final class PluginConfiguration {
@@ -55,6 +60,16 @@ public final class PluginConfiguration {
 
     private final String       pipelineNameTemplate;
 
+    // pipeline warmup:
+    private final List<String> warmupDatastreams;
+    private final List<String> warmupPipelines;
+    private final Boolean      warmupDiscoverDatastreams;
+    private final Long         warmupTimeoutMillis;
+    private final Integer      warmupIterations;
+    private final Map<String, Object> warmupDocument;
+    private final Boolean      processorProfiling;
+    private final Long         slowlogThresholdMicros;
+    private final Integer      slowlogMaxEventLength;
 
     private PluginConfiguration(final Builder builder) {
         this.id = builder.id;
@@ -81,6 +96,16 @@ public final class PluginConfiguration {
         // pipeline name resolver
         this.pipelineNameTemplate = builder.pipelineNameTemplate;
         this.proxy = builder.proxy;
+        // pipeline warmup
+        this.warmupDatastreams = copyOfNullableList(builder.warmupDatastreams);
+        this.warmupPipelines = copyOfNullableList(builder.warmupPipelines);
+        this.warmupDiscoverDatastreams = builder.warmupDiscoverDatastreams;
+        this.warmupTimeoutMillis = builder.warmupTimeoutMillis;
+        this.warmupIterations = builder.warmupIterations;
+        this.warmupDocument = copyOfNullableMap(builder.warmupDocument);
+        this.processorProfiling = builder.processorProfiling;
+        this.slowlogThresholdMicros = builder.slowlogThresholdMicros;
+        this.slowlogMaxEventLength = builder.slowlogMaxEventLength;
     }
 
     private static <T> List<T> copyOfNullableList(final List<T> source) {
@@ -89,6 +114,13 @@ public final class PluginConfiguration {
         return List.copyOf(source);
     }
 
+    private static <K, V> Map<K, V> copyOfNullableMap(final Map<K, V> source) {
+        if (Objects.isNull(source)) { return null; }
+
+        // unlike Map#copyOf, this permits the null values that a configured hash may contain
+        return Collections.unmodifiableMap(new LinkedHashMap<>(source));
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -171,6 +203,42 @@ public final class PluginConfiguration {
         return Optional.ofNullable(pipelineNameTemplate);
     }
 
+    public Optional<List<String>> warmupDatastreams() {
+        return Optional.ofNullable(warmupDatastreams);
+    }
+
+    public Optional<List<String>> warmupPipelines() {
+        return Optional.ofNullable(warmupPipelines);
+    }
+
+    public Optional<Boolean> warmupDiscoverDatastreams() {
+        return Optional.ofNullable(warmupDiscoverDatastreams);
+    }
+
+    public Optional<Duration> warmupTimeout() {
+        return Optional.ofNullable(warmupTimeoutMillis).map(Duration::ofMillis);
+    }
+
+    public Optional<Integer> warmupIterations() {
+        return Optional.ofNullable(warmupIterations);
+    }
+
+    public Optional<Map<String, Object>> warmupDocument() {
+        return Optional.ofNullable(warmupDocument);
+    }
+
+    public Optional<Boolean> processorProfiling() {
+        return Optional.ofNullable(processorProfiling);
+    }
+
+    public Optional<Duration> slowlogThreshold() {
+        return Optional.ofNullable(slowlogThresholdMicros).map((micros) -> Duration.of(micros, ChronoUnit.MICROS));
+    }
+
+    public Optional<Integer> slowlogMaxEventLength() {
+        return Optional.ofNullable(slowlogMaxEventLength);
+    }
+
     @Override
     public String toString() {
         final List<String> config = new ArrayList<>();
@@ -193,6 +261,15 @@ public final class PluginConfiguration {
         if (Objects.nonNull(cloudAuth)) { config.add(String.format("cloudAuth=%s", cloudAuth)); }
         if (Objects.nonNull(apiKey)) { config.add(String.format("sslKeyPassphrase=%s", apiKey)); }
         if (Objects.nonNull(pipelineNameTemplate)) { config.add(String.format("pipelineNameTemplate=%s", pipelineNameTemplate)); }
+        if (Objects.nonNull(warmupDatastreams)) { config.add(String.format("warmupDatastreams=%s", warmupDatastreams)); }
+        if (Objects.nonNull(warmupPipelines)) { config.add(String.format("warmupPipelines=%s", warmupPipelines)); }
+        if (Objects.nonNull(warmupDiscoverDatastreams)) { config.add(String.format("warmupDiscoverDatastreams=%s", warmupDiscoverDatastreams)); }
+        if (Objects.nonNull(warmupTimeoutMillis)) { config.add(String.format("warmupTimeoutMillis=%s", warmupTimeoutMillis)); }
+        if (Objects.nonNull(warmupIterations)) { config.add(String.format("warmupIterations=%s", warmupIterations)); }
+        if (Objects.nonNull(warmupDocument)) { config.add(String.format("warmupDocument=%s", warmupDocument)); }
+        if (Objects.nonNull(processorProfiling)) { config.add(String.format("processorProfiling=%s", processorProfiling)); }
+        if (Objects.nonNull(slowlogThresholdMicros)) { config.add(String.format("slowlogThresholdMicros=%s", slowlogThresholdMicros)); }
+        if (Objects.nonNull(slowlogMaxEventLength)) { config.add(String.format("slowlogMaxEventLength=%s", slowlogMaxEventLength)); }
 
         return String.format("PluginConfiguration{%s}", String.join(", ", config));
     }
@@ -226,6 +303,15 @@ public final class PluginConfiguration {
         Password cloudAuth;
         Password apiKey;
         String pipelineNameTemplate;
+        List<String> warmupDatastreams;
+        List<String> warmupPipelines;
+        Boolean warmupDiscoverDatastreams;
+        Long warmupTimeoutMillis;
+        Integer warmupIterations;
+        Map<String, Object> warmupDocument;
+        Boolean processorProfiling;
+        Long slowlogThresholdMicros;
+        Integer slowlogMaxEventLength;
 
         public PluginConfiguration build() {
             return new PluginConfiguration(this);
@@ -331,5 +417,54 @@ public final class PluginConfiguration {
             this.pipelineNameTemplate = pipelineNameTemplate;
             return this;
         }
+
+        public Builder setWarmupDatastreams(final List<String> warmupDatastreams) {
+            if (Objects.nonNull(warmupDatastreams)) {
+                this.warmupDatastreams = List.copyOf(warmupDatastreams);
+            }
+            return this;
+        }
+
+        public Builder setWarmupPipelines(final List<String> warmupPipelines) {
+            if (Objects.nonNull(warmupPipelines)) {
+                this.warmupPipelines = List.copyOf(warmupPipelines);
+            }
+            return this;
+        }
+
+        public Builder setWarmupDiscoverDatastreams(final Boolean warmupDiscoverDatastreams) {
+            this.warmupDiscoverDatastreams = warmupDiscoverDatastreams;
+            return this;
+        }
+
+        public Builder setWarmupTimeoutMillis(final Long warmupTimeoutMillis) {
+            this.warmupTimeoutMillis = warmupTimeoutMillis;
+            return this;
+        }
+
+        public Builder setWarmupIterations(final Integer warmupIterations) {
+            this.warmupIterations = warmupIterations;
+            return this;
+        }
+
+        public Builder setWarmupDocument(final Map<String, Object> warmupDocument) {
+            this.warmupDocument = warmupDocument;
+            return this;
+        }
+
+        public Builder setProcessorProfiling(final Boolean processorProfiling) {
+            this.processorProfiling = processorProfiling;
+            return this;
+        }
+
+        public Builder setSlowlogThresholdMicros(final Long slowlogThresholdMicros) {
+            this.slowlogThresholdMicros = slowlogThresholdMicros;
+            return this;
+        }
+
+        public Builder setSlowlogMaxEventLength(final Integer slowlogMaxEventLength) {
+            this.slowlogMaxEventLength = slowlogMaxEventLength;
+            return this;
+        }
     }
 }
@@ -8,6 +8,7 @@ package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.filters.elasticintegration.resolver.CacheableResolver;
 import co.elastic.logstash.filters.elasticintegration.resolver.ResolverCache;
+import co.elastic.logstash.filters.elasticintegration.resolver.ResolverHandle;
 import co.elastic.logstash.filters.elasticintegration.resolver.SimpleCachingResolver;
 
 import java.util.Objects;
@@ -24,17 +25,32 @@ final class SimpleIngestPipelineResolver
 
     private final PipelineConfigurationResolver pipelineConfigurationResolver;
     private final IngestPipelineFactory ingestPipelineFactory;
+    private final IngestPipelineWarmer ingestPipelineWarmer;
 
     public SimpleIngestPipelineResolver(final PipelineConfigurationResolver pipelineConfigurationResolver,
                                         final IngestPipelineFactory ingestPipelineFactory) {
-        this(pipelineConfigurationResolver, ingestPipelineFactory, null);
+        this(pipelineConfigurationResolver, ingestPipelineFactory, (IngestPipelineWarmer) null);
+    }
+
+    /**
+     * @param pipelineConfigurationResolver the resolver to resolve pipeline configurations with
+     * @param ingestPipelineFactory the factory to create pipelines with
+     * @param ingestPipelineWarmer an optional warmer, which warms each pipeline that is about
+     *                             to replace a different pipeline in the cache
+     */
+    public SimpleIngestPipelineResolver(final PipelineConfigurationResolver pipelineConfigurationResolver,
+                                        final IngestPipelineFactory ingestPipelineFactory,
+                                        final IngestPipelineWarmer ingestPipelineWarmer) {
+        this(pipelineConfigurationResolver, ingestPipelineFactory, ingestPipelineWarmer, null);
     }
 
     private SimpleIngestPipelineResolver(final PipelineConfigurationResolver pipelineConfigurationResolver,
                                          final IngestPipelineFactory ingestPipelineFactory,
+                                         final IngestPipelineWarmer ingestPipelineWarmer,
                                          final IngestPipelineResolver binding) {
         this.pipelineConfigurationResolver = pipelineConfigurationResolver;
         this.ingestPipelineFactory = ingestPipelineFactory.withIngestPipelineResolver(Objects.requireNonNullElse(binding, this));
+        this.ingestPipelineWarmer = ingestPipelineWarmer;
     }
 
     /**
@@ -47,9 +63,36 @@ final class SimpleIngestPipelineResolver
      */
     @Override
     public Ephemeral<String, IngestPipeline> withCachingResolverBinding(final SimpleCachingResolver<String, IngestPipeline> cachingResolver) {
-        final IngestPipelineResolver boundCacheableResolver = new SimpleIngestPipelineResolver(pipelineConfigurationResolver, ingestPipelineFactory, cachingResolver::resolve);
+        final IngestPipelineResolver throughCache = new IngestPipelineResolver() {
+            @Override
+            public Optional<IngestPipeline> resolve(final String pipelineName, final Consumer<Exception> exceptionHandler) {
+                return cachingResolver.resolve(pipelineName, exceptionHandler);
+            }
 
-        return boundCacheableResolver::resolve;
+            @Override
+            public ResolverHandle<IngestPipeline> bind(final String pipelineName) {
+                return cachingResolver.bind(pipelineName);
+            }
+        };
+        final IngestPipelineResolver boundCacheableResolver = new SimpleIngestPipelineResolver(pipelineConfigurationResolver, ingestPipelineFactory, ingestPipelineWarmer, throughCache);
+
+        if (Objects.isNull(ingestPipelineWarmer)) {
+            return boundCacheableResolver::resolve;
+        }
+
+        return new Ephemeral<>() {
+            @Override
+            public Optional<IngestPipeline> resolve(final String pipelineName, final Consumer<Exception> exceptionHandler) {
+                return boundCacheableResolver.resolve(pipelineName, exceptionHandler);
+            }
+
+            @Override
+            public void prepare(final String pipelineName, final IngestPipeline ingestPipeline) {
+                // a reloaded pipeline is warmed before it replaces its predecessor, so that
+                // the events that use it do not run through cold code paths
+                ingestPipelineWarmer.warm(ingestPipeline);
+            }
+        };
     }
 
     @Override
@@ -0,0 +1,208 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.filters.elasticintegration.EventProcessorMetrics.Stage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import static co.elastic.logstash.filters.elasticintegration.util.EventUtil.eventAsMap;
+
+/**
+ * A {@link SlowEventLog} reports each event whose end-to-end processing took longer than a
+ * configured threshold, along with the chain of pipelines that it was routed through,
+ * the time it spent in each {@link Stage}, and optionally a truncated copy of the event
+ * as it was received.
+ *
+ * <p>Requests are traced by wrapping them with {@link #tracing(IntegrationRequest)}; a trace
+ * is reported when the request completes, at most {@link Configuration#maxEntriesPerMinute}
+ * times per minute. Entries that are suppressed by this limit are counted, and the count is
+ * included in the next entry that is logged.</p>
+ */
+public final class SlowEventLog {
+
+    public record Configuration(long thresholdNanos,
+                                int maxEntriesPerMinute,
+                                int maxEventLength) {
+        public static final int DEFAULT_MAX_ENTRIES_PER_MINUTE = 10;
+        public static final int DEFAULT_MAX_EVENT_LENGTH = 0;
+
+        public Configuration {
+            if (thresholdNanos <= 0) { throw new IllegalArgumentException("threshold must be positive"); }
+            if (maxEntriesPerMinute < 1) { throw new IllegalArgumentException("maxEntriesPerMinute must be positive"); }
+            if (maxEventLength < 0) { throw new IllegalArgumentException("maxEventLength must not be negative"); }
+        }
+
+        public Configuration(final Duration threshold,
+                             final int maxEntriesPerMinute,
+                             final int maxEventLength) {
+            this(threshold.toNanos(), maxEntriesPerMinute, maxEventLength);
+        }
+
+        public Configuration(final Duration threshold) {
+            this(threshold, DEFAULT_MAX_ENTRIES_PER_MINUTE, DEFAULT_MAX_EVENT_LENGTH);
+        }
+    }
+
+    private static final Logger DEFAULT_LOGGER = LogManager.getLogger(SlowEventLog.class);
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Configuration configuration;
+    private final Logger logger;
+    private final LongSupplier nanoTimeSupplier;
+
+    // guarded by this; only used for slow events
+    private long windowStartNanos;
+    private int windowEntries;
+    private long suppressedEntries;
+
+    public SlowEventLog(final Configuration configuration) {
+        this(configuration, DEFAULT_LOGGER, System::nanoTime);
+    }
+
+    SlowEventLog(final Configuration configuration,
+                 final Logger logger,
+                 final LongSupplier nanoTimeSupplier) {
+        this.configuration = configuration;
+        this.logger = logger;
+        this.nanoTimeSupplier = nanoTimeSupplier;
+        this.windowStartNanos = nanoTimeSupplier.getAsLong();
+    }
+
+    /**
+     * @param request the request to trace, which has not yet begun processing
+     * @return a request that delegates to the provided request, recording its progress
+     *         and reporting it to this log when it completes, if it is slow
+     */
+    TracedRequest tracing(final IntegrationRequest request) {
+        return new TracedRequest(request, nanoTimeSupplier.getAsLong());
+    }
+
+    private synchronized boolean tryAcquireEntry(final long nowNanos) {
+        if (nowNanos - windowStartNanos >= WINDOW_NANOS) {
+            windowStartNanos = nowNanos;
+            windowEntries = 0;
+        }
+        if (windowEntries < configuration.maxEntriesPerMinute()) {
+            windowEntries++;
+            return true;
+        }
+        suppressedEntries++;
+        return false;
+    }
+
+    private synchronized long takeSuppressedEntries() {
+        final long suppressed = suppressedEntries;
+        suppressedEntries = 0;
+        return suppressed;
+    }
+
+    private void report(final TracedRequest trace, final long elapsedNanos, final String eventSnapshot) {
+        final long suppressed = takeSuppressedEntries();
+
+        final StringJoiner pipelines = new StringJoiner(" -> ", "[", "]");
+        trace.pipelines.forEach(pipelines::add);
+
+        final StringJoiner stages = new StringJoiner(", ", "{", "}");
+        for (Stage stage : Stage.values()) {
+            if (trace.stageNanos[stage.ordinal()] > 0) {
+                stages.add(String.format("%s=%s", stage.metricName, formatNanos(trace.stageNanos[stage.ordinal()])));
+            }
+        }
+
+        logger.warn(() -> String.format("slow event took %s (threshold: %s) pipelines: %s stages: %s%s%s",
+                formatNanos(elapsedNanos),
+                formatNanos(configuration.thresholdNanos()),
+                pipelines,
+                stages,
+                Objects.isNull(eventSnapshot) ? "" : String.format(" event: %s", eventSnapshot),
+                suppressed == 0 ? "" : String.format(" (%s slow events not logged since previous entry)", suppressed)));
+    }
+
+    private String snapshot(final Event event) {
+        final String serialized = eventAsMap(event).toString();
+        if (serialized.length() <= configuration.maxEventLength()) {
+            return serialized;
+        }
+        return String.format("%s...(%s more characters)", serialized.substring(0, configuration.maxEventLength()), serialized.length() - configuration.maxEventLength());
+    }
+
+    private static String formatNanos(final long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.0);
+    }
+
+    /**
+     * A {@link TracedRequest} records the progress of a single {@link IntegrationRequest}.
+     * A request's stages are performed sequentially, so its trace is not shared between threads
+     * without a happens-before relationship.
+     */
+    final class TracedRequest implements IntegrationRequest {
+        private final IntegrationRequest delegate;
+        private final long startNanos;
+        private final long[] stageNanos = new long[Stage.values().length];
+        private final List<String> pipelines = new ArrayList<>(2);
+
+        private TracedRequest(final IntegrationRequest delegate, final long startNanos) {
+            this.delegate = delegate;
+            this.startNanos = startNanos;
+        }
+
+        void recordStage(final Stage stage, final long elapsedNanos) {
+            stageNanos[stage.ordinal()] += elapsedNanos;
+        }
+
+        void recordPipeline(final String pipelineId, final String index, final long elapsedNanos) {
+            pipelines.add(String.format("%s(index: %s, took: %s)", pipelineId, index, formatNanos(elapsedNanos)));
+        }
+
+        private boolean isSlow(final long nowNanos) {
+            return nowNanos - startNanos >= configuration.thresholdNanos();
+        }
+
+        @Override
+        public Event event() {
+            return delegate.event();
+        }
+
+        @Override
+        public void complete(final UnaryOperator<Event> eventSwapper) {
+            delegate.complete((sourceEvent) -> {
+                // the source event is captured before it is swapped whenever the event is already slow,
+                // and always before the batch that holds it is released by the completion of this request.
+                final long swapStartNanos = nanoTimeSupplier.getAsLong();
+                boolean reporting = isSlow(swapStartNanos) && tryAcquireEntry(swapStartNanos);
+                String eventSnapshot = (reporting && configuration.maxEventLength() > 0) ? snapshot(sourceEvent) : null;
+
+                final Event resultEvent = eventSwapper.apply(sourceEvent);
+
+                // converting the result is part of processing the event, so it can become slow
+                // while it is swapped; by then the swap has only cancelled or annotated the source event
+                final long completedNanos = nanoTimeSupplier.getAsLong();
+                if (!reporting && isSlow(completedNanos) && tryAcquireEntry(completedNanos)) {
+                    reporting = true;
+                    eventSnapshot = (configuration.maxEventLength() > 0) ? snapshot(sourceEvent) : null;
+                }
+
+                if (reporting) {
+                    report(this, completedNanos - startNanos, eventSnapshot);
+                }
+                return resultEvent;
+            });
+        }
+    }
+}
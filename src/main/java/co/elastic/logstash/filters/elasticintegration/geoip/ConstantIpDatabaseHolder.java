@@ -9,6 +9,7 @@ public class ConstantIpDatabaseHolder implements IpDatabaseHolder, Closeable {
 
     public ConstantIpDatabaseHolder(final IpDatabaseAdapter ipDatabase) {
         this.ipDatabase = Objects.requireNonNull(ipDatabase);
+        this.ipDatabase.getMetrics().recordSwap();
     }
 
     @Override
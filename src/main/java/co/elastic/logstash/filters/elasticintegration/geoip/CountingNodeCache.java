@@ -0,0 +1,77 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.CacheKey;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.DecodedValue;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.NodeCache;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CountingNodeCache} is a reader's node cache that counts its hits and misses, so that
+ * an undersized cache can be detected. Nodes that are decoded because they were not cached
+ * are misses; all others are hits.
+ *
+ * <p>Like the reader's own {@code CHMCache}, it holds at most {@code capacity} nodes, and stops
+ * caching once it is full. It is a cache of its own rather than a wrapper of one, so that a miss
+ * can be counted without wrapping the loader of each node on the lookup path.</p>
+ */
+final class CountingNodeCache implements NodeCache, MetricsSource {
+    private final ConcurrentHashMap<CacheKey<?>, DecodedValue> cache;
+    private final int capacity;
+    private volatile boolean cacheFull;
+
+    private final LongAdder gets = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    CountingNodeCache(final int capacity) {
+        if (capacity <= 0) { throw new IllegalArgumentException("capacity must be positive"); }
+        this.capacity = capacity;
+        this.cache = new ConcurrentHashMap<>(capacity);
+    }
+
+    @Override
+    public DecodedValue get(final CacheKey<?> key, final Loader loader) throws IOException {
+        gets.increment();
+        final DecodedValue cached = cache.get(key);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+        misses.increment();
+        final DecodedValue loaded = loader.load(key);
+        if (!cacheFull) {
+            if (cache.size() < capacity) {
+                cache.put(key, loaded);
+            } else {
+                cacheFull = true;
+            }
+        }
+        return loaded;
+    }
+
+    long hits() {
+        return gets.sum() - misses.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        // misses are read first, so that a concurrent miss is never published as a negative hit count
+        final long misses = misses();
+        namespacedMetric.gauge("hits", gets.sum() - misses);
+        namespacedMetric.gauge("misses", misses);
+    }
+}
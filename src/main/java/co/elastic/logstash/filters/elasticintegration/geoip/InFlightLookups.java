@@ -0,0 +1,114 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link InFlightLookups} counts the lookups that are using a database's reader, so that a retired
+ * reader is closed only once they have drained.
+ *
+ * <p>Lookups are counted in per-thread stripes that are each on a cache line of their own, and while
+ * the reader is open a lookup only reads the shared state; the stripes are summed only once the reader
+ * has been retired. After retirement, acquisitions and releases fall back to a lock, so that a lookup
+ * can never begin on a reader that has been closed.</p>
+ */
+final class InFlightLookups {
+    private static final int OPEN = 0;
+    private static final int RETIRED = 1;
+    private static final int CLOSED = 2;
+
+    // each stripe is spaced 128 bytes from the next, so that no two share a cache line
+    private static final int STRIPE_SPACING = 16;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray stripes;
+    private final int stripeMask;
+
+    private final Object lock = new Object();
+    private volatile int state = OPEN;
+
+    InFlightLookups() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    // visible for test
+    InFlightLookups(final int minStripes) {
+        final int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1);
+        this.stripes = new AtomicLongArray(stripeCount * STRIPE_SPACING);
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * @return the stripe to pass to {@link #release}, or {@code -1} if the reader has been closed
+     */
+    int acquire() {
+        final int stripe = (int) (Thread.currentThread().threadId() & stripeMask) * STRIPE_SPACING;
+        stripes.getAndIncrement(stripe);
+        if (state == OPEN) {
+            // a retirement that begins after this read will see the increment when it sums the stripes
+            return stripe;
+        }
+        synchronized (lock) {
+            if (state == CLOSED) {
+                stripes.getAndDecrement(stripe);
+                return -1;
+            }
+            return stripe;
+        }
+    }
+
+    /**
+     * @param stripe the stripe that was returned by {@link #acquire}
+     * @return true if this was the last lookup of a retired reader, which the caller must now close
+     */
+    boolean release(final int stripe) {
+        stripes.getAndDecrement(stripe);
+        if (state == OPEN) {
+            return false;
+        }
+        return closeIfDrained();
+    }
+
+    /**
+     * Retires the reader, so that it is closed when its in-flight lookups have drained.
+     *
+     * @return true if no lookups were in flight, and the caller must now close the reader
+     */
+    boolean retire() {
+        synchronized (lock) {
+            if (state != OPEN) {
+                return false;
+            }
+            state = RETIRED;
+        }
+        return closeIfDrained();
+    }
+
+    boolean isRetired() {
+        return state != OPEN;
+    }
+
+    private boolean closeIfDrained() {
+        synchronized (lock) {
+            if (state != RETIRED || inFlight() != 0) {
+                return false;
+            }
+            state = CLOSED;
+            return true;
+        }
+    }
+
+    // visible for test
+    long inFlight() {
+        long inFlight = 0;
+        for (int stripe = 0; stripe < stripes.length(); stripe += STRIPE_SPACING) {
+            inFlight += stripes.get(stripe);
+        }
+        return inFlight;
+    }
+}
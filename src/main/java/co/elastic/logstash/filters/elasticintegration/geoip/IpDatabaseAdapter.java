@@ -6,31 +6,116 @@
  */
 package co.elastic.logstash.filters.elasticintegration.geoip;
 
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.IngestPipelineWarmer;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+import com.google.common.net.InetAddresses;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.logstashbridge.core.CheckedBiFunctionBridge;
 import org.elasticsearch.logstashbridge.geoip.AbstractExternalIpDatabaseBridge;
 import org.elasticsearch.iplocation.shaded.com.maxmind.db.CHMCache;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.DatabaseRecord;
 import org.elasticsearch.iplocation.shaded.com.maxmind.db.NoCache;
 import org.elasticsearch.iplocation.shaded.com.maxmind.db.NodeCache;
 import org.elasticsearch.iplocation.shaded.com.maxmind.db.Reader;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-public class IpDatabaseAdapter extends AbstractExternalIpDatabaseBridge {
+/**
+ * An {@link IpDatabaseAdapter} adapts a MaxMind {@link Reader} to the geoip processor.
+ *
+ * <p>Its reader can be closed with {@link #closeReader()} while lookups are in flight on other
+ * threads, such as when a {@link ManagedIpDatabaseHolder} replaces it with a newer database.
+ * The in-flight lookups are counted by {@link InFlightLookups} without writing any state that is shared
+ * between threads, and closing the reader is deferred until the last of them completes. Because a lookup
+ * may obtain this adapter before it is replaced and only reach its reader after it has been closed, such a
+ * lookup is answered by the database that {@link #closeReaderReplacedBy replaced} it; only lookups
+ * of a database that was closed without a replacement fail.</p>
+ *
+ * <p>A sample of its lookups is retained, so that a newer version of the same database can
+ * be {@link #prewarmFrom pre-warmed} with the most frequent of them before it replaces this one.</p>
+ *
+ * <p>When built with a {@link Builder#setLookupCache lookup cache}, the results of its lookups are
+ * cached by an {@link IpLookupCache}, in front of the reader's own node cache.</p>
+ *
+ * <p>When built with {@link Builder#setSharedReaders shared readers}, its reader may also be used by
+ * other adapters of the same database file, and closing it only releases this adapter's lease of it.</p>
+ *
+ * <p>While an {@link IpLookupBatchMemo} is bound to the current thread, its lookups are memoized for the
+ * rest of the batch, before the lookup cache is consulted.</p>
+ *
+ * <p>When built with an {@link Builder#setEmptyRangeIndex empty range index}, the IPv4 networks in which
+ * its lookups find no data are indexed by an {@link Ipv4EmptyRangeIndex}, and later lookups of addresses
+ * in those networks are answered from it before anything else is consulted.</p>
+ *
+ * <p>Its lookups are recorded to the {@link IpDatabaseMetrics} with which it was built, which are typically
+ * shared by each version of a held database, and it publishes them along with the metrics of the caches and
+ * index of this version.</p>
+ *
+ * <p>Lookups that are made while an {@link IngestPipelineWarmer} is {@link IngestPipelineWarmer#isWarming() warming}
+ * a pipeline are not of events, so they go straight to the reader: they are neither recorded nor sampled, and
+ * they neither consult nor populate its lookup cache, empty range index or batch memo.</p>
+ */
+public class IpDatabaseAdapter extends AbstractExternalIpDatabaseBridge implements MetricsSource {
     private static final Logger LOGGER = LogManager.getLogger(IpDatabaseAdapter.class);
 
+    // one in every LOOKUP_SAMPLE_RATE lookups replaces a random one of the retained samples
+    static final int LOOKUP_SAMPLE_RATE = 16;
+    static final int LOOKUP_SAMPLE_CAPACITY = 4096;
+
     private final Reader databaseReader;
+    private final Closeable databaseReaderRelease;
     private final String databaseType;
 
+    private final InFlightLookups inFlightLookups = new InFlightLookups();
     private volatile boolean isReaderClosed = false;
+    // the database that replaced this one, which answers lookups that reach this one after its reader is closed
+    private volatile IpDatabaseAdapter replacement;
+
+    private final AtomicReferenceArray<SampledLookup<?>> sampledLookups = new AtomicReferenceArray<>(LOOKUP_SAMPLE_CAPACITY);
+
+    private final IpDatabaseMetrics metrics;
+    private final CountingNodeCache nodeCache;
+    private final IpLookupCache lookupCache;
+    private final Ipv4EmptyRangeIndex emptyRangeIndex;
 
     public IpDatabaseAdapter(final Reader databaseReader) {
+        this(databaseReader, databaseReader, new IpDatabaseMetrics(), null, null, null);
+    }
+
+    /**
+     * @param databaseReader the reader of the database
+     * @param databaseReaderRelease releases the reader once this adapter no longer uses it
+     * @param metrics the metrics to record lookups to
+     * @param nodeCache the reader's node cache, if its hits and misses are counted, or {@code null}
+     * @param lookupCache a cache of lookup results, or {@code null} to not cache them
+     * @param emptyRangeIndex an index of the IPv4 networks without data, or {@code null} to not index them
+     */
+    IpDatabaseAdapter(final Reader databaseReader,
+                      final Closeable databaseReaderRelease,
+                      final IpDatabaseMetrics metrics,
+                      final CountingNodeCache nodeCache,
+                      final IpLookupCache lookupCache,
+                      final Ipv4EmptyRangeIndex emptyRangeIndex) {
         this.databaseReader = databaseReader;
+        this.databaseReaderRelease = databaseReaderRelease;
         this.databaseType = databaseReader.getMetadata().getDatabaseType();
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.nodeCache = nodeCache;
+        this.lookupCache = lookupCache;
+        this.emptyRangeIndex = emptyRangeIndex;
     }
 
     @Override
@@ -38,12 +123,195 @@ public class IpDatabaseAdapter extends AbstractExternalIpDatabaseBridge {
         return this.databaseType;
     }
 
+    public IpDatabaseMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Publishes this database's {@link IpDatabaseMetrics}, along with the metrics of its
+     * node cache, lookup cache, and empty range index, when it has them.
+     */
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        metrics.publishTo(namespacedMetric);
+        if (Objects.nonNull(nodeCache)) {
+            nodeCache.publishTo(namespacedMetric.namespace("node_cache"));
+        }
+        if (Objects.nonNull(lookupCache)) {
+            lookupCache.getMetrics().publishTo(namespacedMetric.namespace("lookup_cache"));
+        }
+        if (Objects.nonNull(emptyRangeIndex)) {
+            final NamespacedMetric emptyRangeIndexMetric = namespacedMetric.namespace("empty_range_index");
+            emptyRangeIndexMetric.gauge("networks", emptyRangeIndex.size());
+            emptyRangeIndexMetric.gauge("hits", emptyRangeIndex.hits());
+        }
+    }
+
     @Override
     public <RESPONSE> RESPONSE getResponse(String ipAddress, CheckedBiFunctionBridge<Reader, String, RESPONSE, Exception> responseProvider) {
+        if (IngestPipelineWarmer.isWarming()) {
+            return lookup(ipAddress, responseProvider, false);
+        }
+        metrics.recordLookup();
+        sample(ipAddress, responseProvider);
+        return resolve(ipAddress, responseProvider);
+    }
+
+    private <RESPONSE> RESPONSE resolve(final String ipAddress,
+                                        final CheckedBiFunctionBridge<Reader, String, RESPONSE, Exception> responseProvider) {
+        if (Objects.nonNull(lookupCache) && lookupCache.isShortCircuited(ipAddress)) {
+            return null;
+        }
+        if (Objects.nonNull(emptyRangeIndex)) {
+            final long ipv4Address = Ipv4EmptyRangeIndex.parseIpv4(ipAddress);
+            if (ipv4Address >= 0 && emptyRangeIndex.contains((int) ipv4Address)) {
+                return null;
+            }
+        }
+        final IpLookupBatchMemo batchMemo = IpLookupBatchMemo.current();
+        if (Objects.nonNull(batchMemo)) {
+            return batchMemo.getResponse(this, ipAddress, responseProvider.getClass(), () -> getCachedResponse(ipAddress, responseProvider));
+        }
+        return getCachedResponse(ipAddress, responseProvider);
+    }
+
+    private <RESPONSE> RESPONSE getCachedResponse(final String ipAddress,
+                                                  final CheckedBiFunctionBridge<Reader, String, RESPONSE, Exception> responseProvider) {
+        if (Objects.isNull(lookupCache)) {
+            return lookup(ipAddress, responseProvider, true);
+        }
+        final IpLookupCache.Key key = new IpLookupCache.Key(ipAddress, responseProvider.getClass());
+        final Object cached = lookupCache.get(key);
+        if (Objects.nonNull(cached)) {
+            @SuppressWarnings("unchecked") final RESPONSE cachedResponse = IpLookupCache.isEmptyResponse(cached) ? null : (RESPONSE) cached;
+            return cachedResponse;
+        }
+        final RESPONSE response = lookup(ipAddress, responseProvider, true);
+        lookupCache.put(key, response);
+        return response;
+    }
+
+    // lookups that are not recorded, such as those of warmup executions, are neither timed nor indexed as empty ranges
+    private <RESPONSE> RESPONSE lookup(final String ipAddress,
+                                       final CheckedBiFunctionBridge<Reader, String, RESPONSE, Exception> responseProvider,
+                                       final boolean recorded) {
+        final int stripe = inFlightLookups.acquire();
+        if (stripe < 0) {
+            // the lookup obtained this database before it was replaced, but reached it only once it was closed
+            final IpDatabaseAdapter replacement = this.replacement;
+            if (Objects.nonNull(replacement)) {
+                return replacement.lookup(ipAddress, responseProvider, recorded);
+            }
+            throw new IllegalStateException(String.format("the `%s` database has been closed", databaseType));
+        }
+        // only lookups that reach the reader are timed; those answered without it are just counted
+        final long startNanos = recorded ? System.nanoTime() : 0L;
         try {
-            return responseProvider.apply(this.databaseReader, ipAddress);
+            final RESPONSE response = responseProvider.apply(this.databaseReader, ipAddress);
+            if (recorded) {
+                metrics.readerLookups().recordSuccess(startNanos);
+                if (Objects.isNull(response) && Objects.nonNull(emptyRangeIndex) && !emptyRangeIndex.isFull()) {
+                    indexEmptyRange(ipAddress);
+                }
+            }
+            return response;
         } catch (Exception e) {
+            if (recorded) {
+                metrics.readerLookups().recordFailure(startNanos);
+            }
             throw convertToRuntime(e);
+        } finally {
+            release(stripe);
+        }
+    }
+
+    // must only be called while the reader is acquired
+    private void indexEmptyRange(final String ipAddress) {
+        final long ipv4Address = Ipv4EmptyRangeIndex.parseIpv4(ipAddress);
+        if (ipv4Address >= 0 && emptyRangeIndex.offer((int) ipv4Address)) {
+            emptyRangeIndex.indexCandidates(this::emptyNetworkPrefixLength);
+        }
+    }
+
+    // must only be called while the reader is acquired
+    private int emptyNetworkPrefixLength(final int address) {
+        try {
+            final InetAddress inetAddress = InetAddress.getByAddress(new byte[]{(byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address});
+            // a response provider may return null for reasons of its own, so the database is the authority on whether the network has data
+            final DatabaseRecord<Map> record = this.databaseReader.getRecord(inetAddress, Map.class);
+            if (Objects.isNull(record) || Objects.nonNull(record.getData()) || Objects.isNull(record.getNetwork())
+                    || record.getNetwork().getNetworkAddress().getAddress().length != 4) {
+                return -1;
+            }
+            return record.getNetwork().getPrefixLength();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug(() -> String.format("failed to index the network of `%s` in the `%s` database: %s", InetAddresses.fromInteger(address).getHostAddress(), databaseType, e.getMessage()));
+            return -1;
+        }
+    }
+
+    private <RESPONSE> void sample(final String ipAddress,
+                                   final CheckedBiFunctionBridge<Reader, String, RESPONSE, Exception> responseProvider) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(LOOKUP_SAMPLE_RATE) == 0) {
+            sampledLookups.lazySet(random.nextInt(LOOKUP_SAMPLE_CAPACITY), new SampledLookup<>(ipAddress, responseProvider));
+        }
+    }
+
+    /**
+     * Pre-warms this database's node cache by replaying the most frequent of the lookups that
+     * were sampled from another database, typically a previous version of this one that this
+     * one is about to replace. Lookups that fail are skipped.
+     *
+     * @param outgoing the database whose sampled lookups are replayed
+     * @param maxLookups the maximum number of distinct lookups to replay
+     * @return the number of lookups that were replayed
+     */
+    public int prewarmFrom(final IpDatabaseAdapter outgoing, final int maxLookups) {
+        // the lookups of a single kind share their provider's class, even when each is a new instance
+        final Map<IpLookupCache.Key, Integer> frequencies = new HashMap<>();
+        final Map<IpLookupCache.Key, SampledLookup<?>> lookups = new HashMap<>();
+        for (int i = 0; i < outgoing.sampledLookups.length(); i++) {
+            final SampledLookup<?> sampledLookup = outgoing.sampledLookups.get(i);
+            if (Objects.nonNull(sampledLookup)) {
+                final IpLookupCache.Key sampleKey = new IpLookupCache.Key(sampledLookup.ipAddress(), sampledLookup.responseProvider().getClass());
+                frequencies.merge(sampleKey, 1, Integer::sum);
+                lookups.putIfAbsent(sampleKey, sampledLookup);
+            }
+        }
+
+        final int[] replayed = new int[1];
+        frequencies.entrySet().stream()
+                .sorted(Map.Entry.<IpLookupCache.Key, Integer>comparingByValue(Comparator.reverseOrder()))
+                .limit(maxLookups)
+                .forEach((entry) -> {
+                    try {
+                        replay(lookups.get(entry.getKey()));
+                        replayed[0]++;
+                    } catch (RuntimeException e) {
+                        LOGGER.trace(() -> String.format("failed to pre-warm `%s` database with `%s`: %s", databaseType, entry.getKey().ipAddress(), e.getMessage()));
+                    }
+                });
+        return replayed[0];
+    }
+
+    private <RESPONSE> void replay(final SampledLookup<RESPONSE> sampledLookup) {
+        // replayed lookups are neither sampled nor recorded as lookups of this database
+        resolve(sampledLookup.ipAddress(), sampledLookup.responseProvider());
+    }
+
+    private record SampledLookup<RESPONSE>(String ipAddress,
+                                           CheckedBiFunctionBridge<Reader, String, RESPONSE, Exception> responseProvider) {
+    }
+
+    private void release(final int stripe) {
+        if (inFlightLookups.release(stripe)) {
+            // the reader was retired during this lookup, which was the last in flight
+            try {
+                doCloseReader();
+            } catch (IOException e) {
+                LOGGER.warn(() -> String.format("failed to close the `%s` database after its last lookup: %s", databaseType, e.getMessage()), e);
+            }
         }
     }
 
@@ -61,9 +329,41 @@ public class IpDatabaseAdapter extends AbstractExternalIpDatabaseBridge {
         // use closeReader() instead
     }
 
+    /**
+     * Closes the reader once all in-flight lookups have completed, immediately if there are none.
+     * Lookups that begin after this method has been called may still use the reader until it is closed.
+     *
+     * @throws IOException if the reader is closed immediately and fails to close
+     */
     public void closeReader() throws IOException {
+        closeReaderReplacedBy(null);
+    }
+
+    /**
+     * Closes the reader as {@link #closeReader()}, once this database has been replaced by the provided one,
+     * which then answers any lookups that obtained this database but reach it only after its reader is closed.
+     *
+     * @param replacement the database that replaced this one, or {@code null} if it was not replaced
+     * @throws IOException if the reader is closed immediately and fails to close
+     */
+    void closeReaderReplacedBy(final IpDatabaseAdapter replacement) throws IOException {
+        // published before retiring, so that a lookup that finds the reader closed also finds its replacement
+        if (Objects.nonNull(replacement)) {
+            this.replacement = replacement;
+        }
+        if (inFlightLookups.isRetired()) {
+            return;
+        }
+        if (inFlightLookups.retire()) {
+            doCloseReader();
+        } else {
+            LOGGER.debug(() -> String.format("deferring the closing of the `%s` database until its in-flight lookups complete", databaseType));
+        }
+    }
+
+    private void doCloseReader() throws IOException {
         LOGGER.debug("Closing the database adapter");
-        this.databaseReader.close();
+        this.databaseReaderRelease.close();
         this.isReaderClosed = true;
     }
 
@@ -73,12 +373,18 @@ public class IpDatabaseAdapter extends AbstractExternalIpDatabaseBridge {
     }
 
     public static IpDatabaseAdapter defaultForPath(final Path database) throws IOException {
-        return new Builder(database.toFile()).setCache(new CHMCache(10_000)).build();
+        return new Builder(database.toFile()).setCache(new CHMCache(IpDatabaseOptions.DEFAULT_NODE_CACHE_SIZE)).build();
     }
 
     public static class Builder {
         private File databasePath;
         private NodeCache nodeCache;
+        private Reader.FileMode fileMode = Reader.FileMode.MEMORY_MAPPED;
+        private SharedIpDatabaseReaders sharedReaders;
+        private int sharedNodeCacheSize;
+        private int lookupCacheSize;
+        private IpDatabaseMetrics metrics;
+        private int emptyRangeIndexSize;
 
         public Builder(final File databasePath) {
             this.databasePath = databasePath;
@@ -89,10 +395,87 @@ public class IpDatabaseAdapter extends AbstractExternalIpDatabaseBridge {
             return this;
         }
 
+        public Builder setFileMode(final Reader.FileMode fileMode) {
+            this.fileMode = Objects.requireNonNull(fileMode, "fileMode");
+            return this;
+        }
+
+        /**
+         * Acquires the reader from the provided registry, so that it is shared with the other adapters of
+         * the same version of the same database file. A shared reader has its own node cache, so this is
+         * exclusive with {@link #setCache}.
+         *
+         * @param sharedReaders the registry of shared readers
+         * @param nodeCacheSize the number of entries of the shared reader's node cache, or {@code 0} for none
+         * @return this builder
+         */
+        Builder setSharedReaders(final SharedIpDatabaseReaders sharedReaders, final int nodeCacheSize) {
+            this.sharedReaders = sharedReaders;
+            this.sharedNodeCacheSize = nodeCacheSize;
+            return this;
+        }
+
+        /**
+         * @param metrics the metrics to record lookups to, including those of the lookup cache
+         * @return this builder
+         */
+        public Builder setMetrics(final IpDatabaseMetrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics, "metrics");
+            return this;
+        }
+
+        /**
+         * @param lookupCacheSize the maximum number of lookup results to cache, or {@code 0} to not cache them
+         * @return this builder
+         */
+        public Builder setLookupCache(final int lookupCacheSize) {
+            if (lookupCacheSize < 0) { throw new IllegalArgumentException("lookupCacheSize must not be negative"); }
+            this.lookupCacheSize = lookupCacheSize;
+            return this;
+        }
+
+        /**
+         * @param maxRanges the maximum number of IPv4 networks without data to index, or {@code 0} to not index them
+         * @return this builder
+         */
+        public Builder setEmptyRangeIndex(final int maxRanges) {
+            if (maxRanges < 0) { throw new IllegalArgumentException("maxRanges must not be negative"); }
+            this.emptyRangeIndexSize = maxRanges;
+            return this;
+        }
+
         public IpDatabaseAdapter build() throws IOException {
-            final NodeCache nodeCache = Optional.ofNullable(this.nodeCache).orElseGet(NoCache::getInstance);
-            final Reader databaseReader = new Reader(this.databasePath, nodeCache);
-            return new IpDatabaseAdapter(databaseReader);
+            final Reader databaseReader;
+            final Closeable databaseReaderRelease;
+            final CountingNodeCache countingNodeCache;
+            if (Objects.nonNull(this.sharedReaders)) {
+                if (Objects.nonNull(this.nodeCache)) {
+                    throw new IllegalStateException("a shared reader cannot use a node cache of its own");
+                }
+                final SharedIpDatabaseReaders.Lease lease = this.sharedReaders.acquire(this.databasePath.toPath(), this.fileMode, this.sharedNodeCacheSize);
+                databaseReader = lease.reader();
+                databaseReaderRelease = lease;
+                countingNodeCache = lease.nodeCache();
+            } else {
+                final NodeCache nodeCache = Optional.ofNullable(this.nodeCache).orElseGet(NoCache::getInstance);
+                databaseReader = new Reader(this.databasePath, this.fileMode, nodeCache);
+                databaseReaderRelease = databaseReader;
+                countingNodeCache = null;
+            }
+
+            final IpDatabaseMetrics metrics = Objects.requireNonNullElseGet(this.metrics, IpDatabaseMetrics::new);
+            final Ipv4EmptyRangeIndex emptyRangeIndex = emptyRangeIndexSize == 0 ? null : new Ipv4EmptyRangeIndex(emptyRangeIndexSize);
+            if (lookupCacheSize == 0) {
+                return new IpDatabaseAdapter(databaseReader, databaseReaderRelease, metrics, countingNodeCache, null, emptyRangeIndex);
+            }
+            final String databaseType = databaseReader.getMetadata().getDatabaseType();
+            final IpLookupCache lookupCache = new IpLookupCache(lookupCacheSize, isMaxMindDatabaseType(databaseType), metrics.lookupCache());
+            return new IpDatabaseAdapter(databaseReader, databaseReaderRelease, metrics, countingNodeCache, lookupCache, emptyRangeIndex);
+        }
+
+        // MaxMind's own databases never contain private or reserved addresses, but custom databases may
+        private static boolean isMaxMindDatabaseType(final String databaseType) {
+            return databaseType.startsWith("GeoLite2-") || databaseType.startsWith("GeoIP2-");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link IpDatabaseDirectoryWatcher} watches the directories that hold database files that
+ * were discovered by {@link IpDatabaseProvider.Builder#discoverAndWatchDatabases}, and updates
+ * the holder of each file that is replaced.
+ *
+ * <p>Only files that are created in a directory, which includes those that are renamed into it,
+ * are reloaded; a file that is modified in place is not, because it may be read while it is only
+ * partially written. Database files must therefore be replaced atomically, by writing the new
+ * version to another file in the same directory and renaming it over the old one.</p>
+ *
+ * <p>Because several files are often replaced together, a file is only reloaded once its directory
+ * has been quiet for a short period, but never later than a maximum delay after it was replaced, so
+ * that a directory that changes continuously cannot defer reloads indefinitely. A file that cannot be
+ * loaded as a database of the same type is ignored, and its holder continues to use its current
+ * database. Files that were not present when the databases were discovered are not made available
+ * until the pipeline is restarted.</p>
+ */
+final class IpDatabaseDirectoryWatcher implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger(IpDatabaseDirectoryWatcher.class);
+
+    static final Duration DEFAULT_QUIET_PERIOD = Duration.ofSeconds(2);
+    static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(10);
+
+    /**
+     * An {@link Updatable} holder can be updated with a new version of its database file.
+     */
+    interface Updatable {
+        boolean updateDatabasePath(String newDatabasePath);
+    }
+
+    private final Map<Path, Updatable> holders;
+    private final Duration quietPeriod;
+    private final Duration maxDelay;
+    private final WatchService watchService;
+    private final Thread watchThread;
+
+    private IpDatabaseDirectoryWatcher(final Map<Path, ? extends Updatable> holders,
+                                       final Duration quietPeriod,
+                                       final Duration maxDelay,
+                                       final WatchService watchService,
+                                       final ThreadFactory threadFactory) {
+        this.holders = Map.copyOf(holders);
+        this.quietPeriod = quietPeriod;
+        this.maxDelay = maxDelay;
+        this.watchService = watchService;
+        this.watchThread = threadFactory.newThread(this::run);
+    }
+
+    /**
+     * Starts watching the directories of the provided database files.
+     *
+     * @param holders the holder of each database file, by the path of that file
+     * @param threadFactory a factory for the thread that reloads updated files
+     * @return a started watcher, which must be closed to release its thread
+     * @throws IOException if the directories cannot be watched
+     */
+    static IpDatabaseDirectoryWatcher start(final Map<Path, ? extends Updatable> holders,
+                                            final ThreadFactory threadFactory) throws IOException {
+        return start(holders, DEFAULT_QUIET_PERIOD, DEFAULT_MAX_DELAY, threadFactory);
+    }
+
+    // visible for test
+    static IpDatabaseDirectoryWatcher start(final Map<Path, ? extends Updatable> holders,
+                                            final Duration quietPeriod,
+                                            final Duration maxDelay,
+                                            final ThreadFactory threadFactory) throws IOException {
+        if (maxDelay.compareTo(quietPeriod) < 0) { throw new IllegalArgumentException("maxDelay must not be shorter than quietPeriod"); }
+        final WatchService watchService = holders.keySet().iterator().next().getFileSystem().newWatchService();
+        try {
+            for (Path directory : Set.copyOf(holders.keySet().stream().map(Path::getParent).toList())) {
+                // files that are modified in place may be partially written, so only those that are created or renamed into the directory are reloaded
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+                LOGGER.debug(() -> String.format("watching `%s` for database updates", directory));
+            }
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        final IpDatabaseDirectoryWatcher watcher = new IpDatabaseDirectoryWatcher(holders, quietPeriod, maxDelay, watchService, threadFactory);
+        watcher.watchThread.start();
+        return watcher;
+    }
+
+    private void run() {
+        final Set<Path> pendingUpdates = new HashSet<>();
+        long updateDeadlineNanos = 0;
+        try {
+            while (true) {
+                final WatchKey watchKey;
+                if (pendingUpdates.isEmpty()) {
+                    watchKey = watchService.take();
+                } else {
+                    final long untilDeadlineNanos = updateDeadlineNanos - System.nanoTime();
+                    watchKey = untilDeadlineNanos <= 0 ? null : watchService.poll(Math.min(quietPeriod.toNanos(), untilDeadlineNanos), TimeUnit.NANOSECONDS);
+                }
+                if (Objects.isNull(watchKey)) {
+                    pendingUpdates.forEach(this::update);
+                    pendingUpdates.clear();
+                    continue;
+                }
+                if (pendingUpdates.isEmpty()) {
+                    updateDeadlineNanos = System.nanoTime() + maxDelay.toNanos();
+                }
+
+                final Path directory = (Path) watchKey.watchable();
+                for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+                    if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // some events were lost, so every database in the directory may have changed
+                        holders.keySet().stream().filter((path) -> directory.equals(path.getParent())).forEach(pendingUpdates::add);
+                        continue;
+                    }
+                    final Path changedPath = directory.resolve((Path) watchEvent.context());
+                    if (holders.containsKey(changedPath)) {
+                        pendingUpdates.add(changedPath);
+                    } else if (changedPath.getFileName().toString().endsWith(".mmdb")) {
+                        LOGGER.info(() -> String.format("new database file `%s` will not be available until the pipeline is restarted", changedPath));
+                    }
+                }
+                if (!watchKey.reset()) {
+                    LOGGER.warn(() -> String.format("no longer watching `%s` for database updates, because it is no longer accessible", directory));
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("stopped watching for database updates");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void update(final Path databasePath) {
+        try {
+            holders.get(databasePath).updateDatabasePath(databasePath.toString());
+        } catch (RuntimeException e) {
+            LOGGER.warn(() -> String.format("failed to update database from `%s`: %s", databasePath, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        try {
+            watchThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,6 +5,13 @@ public interface IpDatabaseHolder {
 
     IpDatabaseAdapter getDatabase();
 
+    /**
+     * @return the current database, or {@code null} if there is none, without opening it if it has not been opened
+     */
+    default IpDatabaseAdapter peekDatabase() {
+        return isValid() ? getDatabase() : null;
+    }
+
     String getTypeIdentifier();
 
     String info();
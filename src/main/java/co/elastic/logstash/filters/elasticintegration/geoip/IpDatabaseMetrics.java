@@ -0,0 +1,94 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link IpDatabaseMetrics} of a database describe the lookups that are made in it, and when
+ * it was last swapped:
+ *
+ * <ul>
+ *     <li>{@code lookups} counts all lookups made by the geoip processor;</li>
+ *     <li>{@code reader_lookups} are the lookups that were not answered by the empty range index, the batch memo,
+ *         or the lookup cache, and reached the database's reader, including their failures and latency. Only these
+ *         are timed, so that a lookup that is answered without the reader costs no more than a counter increment;</li>
+ *     <li>{@code swaps} count the versions of the database that have been made current, including the first, and
+ *         {@code last_swap_timestamp_in_millis} and {@code seconds_since_last_swap} describe when the current
+ *         version was.</li>
+ * </ul>
+ *
+ * <p>Like its {@link IpLookupCacheMetrics}, a holder's metrics are shared by each version of its database.</p>
+ */
+public final class IpDatabaseMetrics implements MetricsSource {
+    private final LongAdder lookups = new LongAdder();
+    private final OperationMetrics readerLookups = new OperationMetrics();
+    private final IpLookupCacheMetrics lookupCacheMetrics = new IpLookupCacheMetrics();
+
+    private final LongAdder swaps = new LongAdder();
+    private volatile long lastSwapMillis;
+
+    void recordLookup() {
+        lookups.increment();
+    }
+
+    OperationMetrics readerLookups() {
+        return readerLookups;
+    }
+
+    void recordSwap() {
+        lastSwapMillis = System.currentTimeMillis();
+        swaps.increment();
+    }
+
+    /**
+     * @return the metrics of the lookup caches of this database's versions
+     */
+    public IpLookupCacheMetrics lookupCache() {
+        return lookupCacheMetrics;
+    }
+
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    public long swaps() {
+        return swaps.sum();
+    }
+
+    /**
+     * @return the time at which the current version of the database was swapped in, in milliseconds since
+     *         the epoch, or {@code 0} if none has been
+     */
+    public long lastSwapMillis() {
+        return lastSwapMillis;
+    }
+
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        namespacedMetric.gauge("lookups", lookups());
+        readerLookups.publishTo(namespacedMetric.namespace("reader_lookups"));
+        namespacedMetric.gauge("swaps", swaps());
+
+        final long lastSwapMillis = lastSwapMillis();
+        if (lastSwapMillis > 0) {
+            namespacedMetric.gauge("last_swap_timestamp_in_millis", lastSwapMillis);
+            namespacedMetric.gauge("seconds_since_last_swap", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - lastSwapMillis));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IpDatabaseMetrics{lookups=%s, readerLookups=%s, swaps=%s, lastSwapMillis=%s}",
+                lookups(), readerLookups, swaps(), lastSwapMillis());
+    }
+}
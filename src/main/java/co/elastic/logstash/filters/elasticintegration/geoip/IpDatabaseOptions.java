@@ -0,0 +1,78 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.Reader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The {@link IpDatabaseOptions} determine how the databases of an {@link IpDatabaseProvider} are opened,
+ * including each version of a database that is loaded by a {@link ManagedIpDatabaseHolder}.
+ *
+ * <p>Databases are opened through the JVM-wide {@link SharedIpDatabaseReaders}, so that the same version of
+ * a database file that is opened with the same file mode and node cache size is only mapped or loaded once,
+ * however many plugin instances use it.</p>
+ *
+ * @param lookupCacheSize the maximum number of lookup results to cache per database (see {@link IpLookupCache}),
+ *                        or {@code 0} to not cache lookup results
+ * @param nodeCacheSize the number of entries in the node cache of each database's reader, or {@code 0} for none
+ * @param fileMode whether each database is memory-mapped or loaded onto the heap
+ * @param emptyRangeIndexSize the maximum number of IPv4 networks without data to index per database
+ *                            (see {@link Ipv4EmptyRangeIndex}), or {@code 0} to not index them
+ */
+public record IpDatabaseOptions(int lookupCacheSize, int nodeCacheSize, FileMode fileMode, int emptyRangeIndexSize) {
+    public static final int DEFAULT_NODE_CACHE_SIZE = 10_000;
+
+    public static final IpDatabaseOptions DEFAULT = new IpDatabaseOptions(0, DEFAULT_NODE_CACHE_SIZE, FileMode.MEMORY_MAPPED, 0);
+
+    public enum FileMode {
+        /**
+         * the database file is mapped into memory, and its pages are shared with the OS page cache
+         */
+        MEMORY_MAPPED(Reader.FileMode.MEMORY_MAPPED),
+
+        /**
+         * the database file is read onto the heap, so that lookups never fault on pages that are not resident
+         */
+        HEAP(Reader.FileMode.MEMORY),
+        ;
+
+        private final Reader.FileMode readerFileMode;
+
+        FileMode(final Reader.FileMode readerFileMode) {
+            this.readerFileMode = readerFileMode;
+        }
+    }
+
+    public IpDatabaseOptions {
+        if (lookupCacheSize < 0) { throw new IllegalArgumentException("lookupCacheSize must not be negative"); }
+        if (nodeCacheSize < 0) { throw new IllegalArgumentException("nodeCacheSize must not be negative"); }
+        Objects.requireNonNull(fileMode, "fileMode");
+        if (emptyRangeIndexSize < 0) { throw new IllegalArgumentException("emptyRangeIndexSize must not be negative"); }
+    }
+
+    /**
+     * Opens the database at the provided path.
+     *
+     * @param databasePath the path to the database
+     * @param metrics the metrics to record the database's lookups to
+     * @return a new, open database
+     * @throws IOException if the database cannot be opened
+     */
+    IpDatabaseAdapter open(final Path databasePath, final IpDatabaseMetrics metrics) throws IOException {
+        return new IpDatabaseAdapter.Builder(databasePath.toFile())
+                .setFileMode(fileMode.readerFileMode)
+                .setSharedReaders(SharedIpDatabaseReaders.getInstance(), nodeCacheSize)
+                .setMetrics(metrics)
+                .setLookupCache(lookupCacheSize)
+                .setEmptyRangeIndex(emptyRangeIndexSize)
+                .build();
+    }
+}
@@ -6,6 +6,9 @@
  */
 package co.elastic.logstash.filters.elasticintegration.geoip;
 
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.BatchScope;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.logstashbridge.core.IOUtilsBridge;
@@ -18,25 +21,44 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
 
-public class IpDatabaseProvider extends AbstractExternalIpDatabaseProviderBridge implements Closeable {
+public class IpDatabaseProvider extends AbstractExternalIpDatabaseProviderBridge implements Closeable, MetricsSource {
 
     private static final Logger LOGGER = LogManager.getLogger(IpDatabaseProvider.class);
 
     private final Map<String, IpDatabaseHolder> databaseMap;
+    private final List<Closeable> watchers;
+
+    // the geoip processor skips enrichment when a database is invalid, so each time it finds one is counted
+    private final Map<String, LongAdder> invalidChecks = new ConcurrentHashMap<>();
 
     public IpDatabaseProvider(Map<String, IpDatabaseHolder> databaseMap) {
+        this(databaseMap, List.of());
+    }
+
+    IpDatabaseProvider(final Map<String, IpDatabaseHolder> databaseMap, final List<Closeable> watchers) {
         this.databaseMap = Map.copyOf(databaseMap);
+        this.watchers = List.copyOf(watchers);
     }
 
     @Override
     public Boolean isValid(String databaseIdentifierFileName) {
         final IpDatabaseHolder holder = getDatabaseHolder(databaseIdentifierFileName);
-        return Objects.nonNull(holder) && holder.isValid();
+        final boolean isValid = Objects.nonNull(holder) && holder.isValid();
+        if (!isValid) {
+            invalidChecks.computeIfAbsent(databaseIdentifierFileName, (identifier) -> new LongAdder()).increment();
+        }
+        return isValid;
     }
 
     @Override
@@ -54,8 +76,50 @@ public class IpDatabaseProvider extends AbstractExternalIpDatabaseProviderBridge
         return databaseMap.get(databaseIdentifierFileName);
     }
 
+    // visible for test
+    long invalidChecks(final String databaseIdentifierFileName) {
+        final LongAdder invalid = invalidChecks.get(databaseIdentifierFileName);
+        return Objects.isNull(invalid) ? 0L : invalid.sum();
+    }
+
+    /**
+     * @return a scope that memoizes the lookups in this provider's databases for the duration of each batch
+     *         (see {@link IpLookupBatchMemo}), which is shared by every provider
+     */
+    public BatchScope getBatchScope() {
+        return IpLookupBatchMemo.SCOPE;
+    }
+
+    /**
+     * Publishes the metrics of each database (see {@link IpDatabaseAdapter#publishTo}), along with the number
+     * of times that it was found to be invalid, namespaced by the database's file name without its extension.
+     * Databases that are not registered but were checked for validity are published with their invalid counts only.
+     */
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        final Set<String> identifierFileNames = new TreeSet<>(databaseMap.keySet());
+        identifierFileNames.addAll(invalidChecks.keySet());
+        for (String identifierFileName : identifierFileNames) {
+            final String databaseName = identifierFileName.endsWith(".mmdb")
+                    ? identifierFileName.substring(0, identifierFileName.length() - ".mmdb".length())
+                    : identifierFileName;
+            final NamespacedMetric databaseMetric = namespacedMetric.namespace(databaseName);
+
+            databaseMetric.gauge("invalid_checks", invalidChecks(identifierFileName));
+
+            // databases that have not been opened yet are not opened to publish their metrics
+            final IpDatabaseHolder holder = databaseMap.get(identifierFileName);
+            final IpDatabaseAdapter database = Objects.isNull(holder) ? null : holder.peekDatabase();
+            if (Objects.nonNull(database)) {
+                database.publishTo(databaseMetric);
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
+        // watchers are closed first, so that they do not update databases that are being closed
+        watchers.forEach(IOUtilsBridge::closeWhileHandlingException);
         databaseMap.forEach((name, holder) -> {
             if (holder instanceof Closeable) {
                 IOUtilsBridge.closeWhileHandlingException((Closeable) holder);
@@ -65,6 +129,17 @@ public class IpDatabaseProvider extends AbstractExternalIpDatabaseProviderBridge
 
     public static class Builder {
         private final Map<String, IpDatabaseHolder> databaseMap = new HashMap<>();
+        private final List<Closeable> watchers = new ArrayList<>();
+        private IpDatabaseOptions databaseOptions = IpDatabaseOptions.DEFAULT;
+
+        /**
+         * @param databaseOptions the options with which to open the databases that are discovered after this is set
+         * @return this builder
+         */
+        public synchronized Builder setDatabaseOptions(final IpDatabaseOptions databaseOptions) {
+            this.databaseOptions = Objects.requireNonNull(databaseOptions, "databaseOptions");
+            return this;
+        }
 
         public synchronized Builder setDatabaseHolder(final String identifierFileName, final IpDatabaseHolder holder) {
             final IpDatabaseHolder previous = databaseMap.put(identifierFileName, holder);
@@ -77,25 +152,63 @@ public class IpDatabaseProvider extends AbstractExternalIpDatabaseProviderBridge
             return this;
         }
 
+        /**
+         * Discovers the databases in the provided directory and its subdirectories, by file name.
+         * Only their paths are recorded; each database is opened when it is first used, and one
+         * that fails to open is reported as invalid rather than failing the build.
+         *
+         * @param directory the directory in which to discover databases
+         * @return this builder
+         * @throws IOException if the directory cannot be searched
+         */
         public Builder discoverDatabases(final File directory) throws IOException {
+            final IpDatabaseOptions databaseOptions = this.databaseOptions;
+            discover(directory, (database) -> new ConstantIpDatabaseHolder(databaseOptions.open(database, new IpDatabaseMetrics())));
+            return this;
+        }
+
+        /**
+         * Discovers databases as {@link #discoverDatabases}, and watches their directories so that
+         * each database that has been opened is reloaded when its file is atomically replaced, by a file
+         * that is created or moved into the directory; files that are modified in place are not reloaded.
+         *
+         * @param directory the directory in which to discover databases
+         * @param threadFactory a factory for the thread that reloads updated databases
+         * @return this builder
+         * @throws IOException if the directory cannot be searched
+         */
+        public Builder discoverAndWatchDatabases(final File directory, final ThreadFactory threadFactory) throws IOException {
+            final IpDatabaseOptions databaseOptions = this.databaseOptions;
+            final Map<Path, LazyIpDatabaseHolder> watchedHolders = discover(directory,
+                    (database) -> new ManagedIpDatabaseHolder(databaseOptions.open(database, new IpDatabaseMetrics()), databaseOptions));
+
+            if (!watchedHolders.isEmpty()) {
+                try {
+                    this.watchers.add(IpDatabaseDirectoryWatcher.start(watchedHolders, threadFactory));
+                } catch (IOException | UnsupportedOperationException e) {
+                    LOGGER.warn(String.format("Failed to watch `%s` for database updates; updated databases will not be used until the pipeline is restarted: %s", directory, e.getMessage()));
+                }
+            }
+            return this;
+        }
+
+        private Map<Path, LazyIpDatabaseHolder> discover(final File directory,
+                                                         final LazyIpDatabaseHolder.Opener opener) throws IOException {
             //noinspection resource immediately consumed to list
             final List<Path> databases = Files.find(directory.toPath(), 3, Builder::isMaxMindDatabase).toList();
 
+            final Map<Path, LazyIpDatabaseHolder> holders = new HashMap<>();
             if (databases.isEmpty()) {
                 LOGGER.warn(String.format("Failed to find Maxmind DB files in `%s`", directory));
             } else {
                 for (Path database : databases) {
-                    try {
-                        final IpDatabaseAdapter adapter = IpDatabaseAdapter.defaultForPath(database);
-                        final IpDatabaseHolder holder = new ConstantIpDatabaseHolder(adapter);
-                        this.setDatabaseHolder(database.getFileName().toString(), holder);
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+                    final LazyIpDatabaseHolder holder = new LazyIpDatabaseHolder(database, opener);
+                    this.setDatabaseHolder(database.getFileName().toString(), holder);
+                    holders.put(database, holder);
                 }
+                LOGGER.debug(() -> String.format("discovered %s databases in `%s`, which will be opened on first use", databases.size(), directory));
             }
-
-            return this;
+            return holders;
         }
 
         private static boolean isMaxMindDatabase(final Path path, final BasicFileAttributes basicFileAttributes) {
@@ -103,7 +216,7 @@ public class IpDatabaseProvider extends AbstractExternalIpDatabaseProviderBridge
         }
 
         public final IpDatabaseProvider build() {
-            return new IpDatabaseProvider(this.databaseMap);
+            return new IpDatabaseProvider(this.databaseMap, this.watchers);
         }
     }
 }
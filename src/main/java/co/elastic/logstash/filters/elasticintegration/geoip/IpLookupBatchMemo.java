@@ -0,0 +1,84 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import co.elastic.logstash.filters.elasticintegration.BatchScope;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * An {@link IpLookupBatchMemo} holds the results of the lookups made by a single thread while it
+ * processes a batch of events, so that an address that appears in many events of the batch (such as
+ * the source or destination of firewall events) is only looked up once per database.
+ *
+ * <p>Results are keyed by the database they were looked up in, so a database that is replaced
+ * during a batch is never answered from the memo of its predecessor, and by the class of the
+ * lookup's response provider, like the {@link IpLookupCache}. The geoip processor selects the
+ * properties that it adds from each response, so processors that select different properties
+ * share a result. Lookups that fail are not memoized.</p>
+ *
+ * <p>A memo is bound to the processing thread by the {@link #SCOPE batch scope}, and is discarded
+ * when the batch ends. Lookups that are made on other threads, or outside of a batch, bypass it.</p>
+ */
+final class IpLookupBatchMemo {
+    private static final Object NO_RESPONSE = new Object();
+
+    // a single event can hold an unbounded number of addresses, so a batch's memo is bounded too
+    static final int MAX_ENTRIES = 10_000;
+
+    private static final ThreadLocal<IpLookupBatchMemo> CURRENT = new ThreadLocal<>();
+
+    static final BatchScope SCOPE = new BatchScope() {
+        @Override
+        public void begin() {
+            CURRENT.set(new IpLookupBatchMemo());
+        }
+
+        @Override
+        public void end() {
+            CURRENT.remove();
+        }
+    };
+
+    private record Key(IpDatabaseAdapter database, String ipAddress, Class<?> responseProviderClass) {
+    }
+
+    private final Map<Key, Object> responses = new HashMap<>();
+
+    /**
+     * @return the memo of the batch that the current thread is processing, or {@code null} if it is not processing one
+     */
+    static IpLookupBatchMemo current() {
+        return CURRENT.get();
+    }
+
+    <RESPONSE> RESPONSE getResponse(final IpDatabaseAdapter database,
+                                    final String ipAddress,
+                                    final Class<?> responseProviderClass,
+                                    final Supplier<RESPONSE> lookup) {
+        final Key key = new Key(database, ipAddress, responseProviderClass);
+        final Object memoized = responses.get(key);
+        if (Objects.nonNull(memoized)) {
+            @SuppressWarnings("unchecked") final RESPONSE memoizedResponse = memoized == NO_RESPONSE ? null : (RESPONSE) memoized;
+            return memoizedResponse;
+        }
+
+        final RESPONSE response = lookup.get();
+        if (responses.size() < MAX_ENTRIES) {
+            responses.put(key, Objects.requireNonNullElse(response, NO_RESPONSE));
+        }
+        return response;
+    }
+
+    // visible for test
+    int size() {
+        return responses.size();
+    }
+}
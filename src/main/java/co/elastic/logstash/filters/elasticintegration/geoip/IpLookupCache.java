@@ -0,0 +1,312 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link IpLookupCache} holds the results of the lookups in a single version of a database,
+ * so that lookups of addresses that recur frequently only cost a hash lookup.
+ *
+ * <p>Results are keyed by address and by the class of the response provider that produced them,
+ * which is specific to the kind of lookup (such as a city or an ASN lookup) but not to the
+ * processor that performed it. Lookups that fail are not cached.</p>
+ *
+ * <p>The cache is bounded by frequency rather than by recency: once it is full, the result of a
+ * lookup only replaces a cached result if its address has been looked up more often recently,
+ * as estimated by a small {@link FrequencySketch}. A burst of addresses that are each seen once,
+ * such as from a scan, therefore does not displace the addresses that are looked up constantly.
+ * Concurrent insertions may briefly exceed the bound.</p>
+ *
+ * <p>When enabled, lookups of private and reserved addresses short-circuit to an empty result
+ * before reaching the database, which is only appropriate for databases (such as MaxMind's own)
+ * that are known not to contain them.</p>
+ */
+final class IpLookupCache {
+    private static final Object NO_RESPONSE = new Object();
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    record Key(String ipAddress, Class<?> responseProviderClass) {
+    }
+
+    private final int maxEntries;
+    private final boolean shortCircuitReservedAddresses;
+    private final IpLookupCacheMetrics metrics;
+
+    private final ConcurrentHashMap<Key, Object> entries = new ConcurrentHashMap<>();
+    private final FrequencySketch frequencies;
+
+    // guarded by this; a cursor that visits the cached entries in turn when looking for an eviction victim
+    private Iterator<Key> evictionCursor;
+
+    IpLookupCache(final int maxEntries,
+                  final boolean shortCircuitReservedAddresses,
+                  final IpLookupCacheMetrics metrics) {
+        if (maxEntries < 1) { throw new IllegalArgumentException("maxEntries must be positive"); }
+        this.maxEntries = maxEntries;
+        this.shortCircuitReservedAddresses = shortCircuitReservedAddresses;
+        this.metrics = metrics;
+        this.frequencies = new FrequencySketch(maxEntries);
+        metrics.bind(entries::size);
+    }
+
+    /**
+     * @param ipAddress the address about to be looked up
+     * @return true if the address is private or reserved, and the lookup should short-circuit to an empty result
+     */
+    boolean isShortCircuited(final String ipAddress) {
+        if (shortCircuitReservedAddresses && isReservedAddress(ipAddress)) {
+            metrics.recordShortCircuit();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param key the key of a lookup
+     * @return the cached result of the lookup, which may be {@link #isEmptyResponse empty}, or {@code null} when not cached
+     */
+    Object get(final Key key) {
+        frequencies.record(key.hashCode());
+        final Object cached = entries.get(key);
+        if (Objects.nonNull(cached)) {
+            metrics.recordHit();
+        } else {
+            metrics.recordMiss();
+        }
+        return cached;
+    }
+
+    static boolean isEmptyResponse(final Object cached) {
+        return cached == NO_RESPONSE;
+    }
+
+    void put(final Key key, final Object response) {
+        final Object value = Objects.requireNonNullElse(response, NO_RESPONSE);
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            // a miss is already paying for a database lookup, so it also brings the frequency estimates up to date
+            frequencies.drain();
+            final Key victim = selectVictim();
+            if (Objects.nonNull(victim) && frequencies.frequency(key.hashCode()) <= frequencies.frequency(victim.hashCode())) {
+                metrics.recordRejection();
+                return;
+            }
+            if (Objects.nonNull(victim) && Objects.nonNull(entries.remove(victim))) {
+                metrics.recordEviction();
+            }
+        }
+        entries.put(key, value);
+    }
+
+    /**
+     * @return the least frequent of a small sample of the cached keys, or {@code null} if none are cached
+     */
+    private synchronized Key selectVictim() {
+        Key victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+            if (Objects.isNull(evictionCursor) || !evictionCursor.hasNext()) {
+                evictionCursor = entries.keySet().iterator();
+                if (!evictionCursor.hasNext()) {
+                    break;
+                }
+            }
+            final Key candidate = evictionCursor.next();
+            final int candidateFrequency = frequencies.frequency(candidate.hashCode());
+            if (candidateFrequency < victimFrequency) {
+                victim = candidate;
+                victimFrequency = candidateFrequency;
+            }
+        }
+        return victim;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    IpLookupCacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    static boolean isReservedAddress(final String ipAddress) {
+        final InetAddress address;
+        try {
+            address = InetAddresses.forString(ipAddress);
+        } catch (IllegalArgumentException e) {
+            // not an address literal; the database lookup reports it
+            return false;
+        }
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        final byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            // 0.0.0.0/8, 100.64.0.0/10 (shared address space), and 240.0.0.0/4 (reserved, including broadcast)
+            final int firstOctet = bytes[0] & 0xFF;
+            return firstOctet == 0 || (firstOctet == 100 && (bytes[1] & 0xC0) == 64) || firstOctet >= 240;
+        }
+        if (address instanceof Inet6Address) {
+            // fc00::/7 (unique local addresses)
+            return (bytes[0] & 0xFE) == 0xFC;
+        }
+        return false;
+    }
+
+    /**
+     * A {@link FrequencySketch} is a count-min sketch of small counters that estimates how often
+     * each key has been seen recently. Its counters are halved periodically, so that the estimates
+     * favor recent activity.
+     *
+     * <p>Lookups do not update the counters themselves. Each {@link #record}s its key's hash in one of
+     * a few per-thread ring buffers with a single compare-and-set, and the record is dropped when that
+     * buffer is contended, in the manner of Caffeine's read buffers. The buffers are drained into the
+     * counters by one thread at a time, under a lock that lookups never wait for, so the counters and
+     * their halving are only ever touched by the thread that holds it. A dropped record makes an estimate
+     * slightly low, which only makes admission slightly less precise.</p>
+     */
+    static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97CB3127, 0xB7E15163, 0x9E3779B9, 0xC2B2AE35};
+        private static final int MAX_COUNT = 15;
+
+        private static final int BUFFER_SIZE = 64;
+        private static final int MAX_BUFFERS = 16;
+        // each buffer's read and write counts are spaced 128 bytes from the next, so that no two share a cache line
+        private static final int COUNT_SPACING = 16;
+        // a recorded hash is stored with this bit set, so that a slot that has not yet been written reads as zero
+        private static final long RECORDED = 1L << 32;
+
+        private final int bufferMask;
+        private final AtomicLongArray buffers;
+        private final AtomicLongArray writeCounts;
+        private final AtomicLongArray readCounts;
+        private final ReentrantLock drainLock = new ReentrantLock();
+
+        // guarded by drainLock
+        private final int[] counters;
+        private final int rowMask;
+        private final int rowWidth;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(final int maxEntries) {
+            this.rowWidth = Integer.highestOneBit(Math.max(maxEntries, 16) - 1) << 1;
+            this.rowMask = rowWidth - 1;
+            this.counters = new int[rowWidth * SEEDS.length];
+            this.sampleSize = Math.max(maxEntries, 16) * 10;
+
+            final int bufferCount = Math.min(MAX_BUFFERS, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+            this.bufferMask = bufferCount - 1;
+            this.buffers = new AtomicLongArray(bufferCount * BUFFER_SIZE);
+            this.writeCounts = new AtomicLongArray(bufferCount * COUNT_SPACING);
+            this.readCounts = new AtomicLongArray(bufferCount * COUNT_SPACING);
+        }
+
+        /**
+         * Records that the key with the given hash has been seen, unless its buffer is contended.
+         */
+        void record(final int hash) {
+            final int buffer = (int) (Thread.currentThread().threadId() & bufferMask);
+            final int countIndex = buffer * COUNT_SPACING;
+            long writeCount = writeCounts.get(countIndex);
+            if (writeCount - readCounts.get(countIndex) >= BUFFER_SIZE) {
+                // a full buffer is drained by whichever thread finds it so, unless another is already draining
+                if (!drainLock.tryLock()) {
+                    return;
+                }
+                try {
+                    drainBuffers();
+                } finally {
+                    drainLock.unlock();
+                }
+                writeCount = writeCounts.get(countIndex);
+                if (writeCount - readCounts.get(countIndex) >= BUFFER_SIZE) {
+                    return;
+                }
+            }
+            if (writeCounts.compareAndSet(countIndex, writeCount, writeCount + 1)) {
+                buffers.lazySet((buffer * BUFFER_SIZE) + (int) (writeCount & (BUFFER_SIZE - 1)), RECORDED | (hash & 0xFFFFFFFFL));
+            }
+        }
+
+        /**
+         * Drains the recorded hashes into the counters, so that the estimates reflect them.
+         */
+        void drain() {
+            drainLock.lock();
+            try {
+                drainBuffers();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+
+        int frequency(final int hash) {
+            drainLock.lock();
+            try {
+                int frequency = MAX_COUNT;
+                for (int row = 0; row < SEEDS.length; row++) {
+                    frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+                }
+                return frequency;
+            } finally {
+                drainLock.unlock();
+            }
+        }
+
+        // must only be called while holding the drain lock
+        private void drainBuffers() {
+            for (int buffer = 0; buffer <= bufferMask; buffer++) {
+                final int countIndex = buffer * COUNT_SPACING;
+                final long writeCount = writeCounts.get(countIndex);
+                long readCount = readCounts.get(countIndex);
+                for (; readCount < writeCount; readCount++) {
+                    final int slot = (buffer * BUFFER_SIZE) + (int) (readCount & (BUFFER_SIZE - 1));
+                    final long recorded = buffers.get(slot);
+                    if (recorded == 0) {
+                        // claimed but not yet written; it is drained next time
+                        break;
+                    }
+                    buffers.lazySet(slot, 0);
+                    increment((int) recorded);
+                }
+                readCounts.set(countIndex, readCount);
+            }
+        }
+
+        private void increment(final int hash) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                final int index = indexOf(hash, row);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                additions = 0;
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>>= 1;
+                }
+            }
+        }
+
+        private int indexOf(final int hash, final int row) {
+            int spread = hash * SEEDS[row];
+            spread ^= spread >>> 16;
+            return (row * rowWidth) + (spread & rowMask);
+        }
+    }
+}
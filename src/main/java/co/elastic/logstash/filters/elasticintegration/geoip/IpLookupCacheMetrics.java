@@ -0,0 +1,101 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The {@link IpLookupCacheMetrics} of a database's {@link IpLookupCache} describe how effective
+ * the cache is at avoiding lookups in the database itself:
+ *
+ * <ul>
+ *     <li>{@code hits} are resolved from the cache, while {@code misses} are looked up in the database;</li>
+ *     <li>{@code short_circuits} are lookups of private and reserved addresses, which are never in the database;</li>
+ *     <li>{@code evictions} count entries that were removed to make room for more frequent addresses, and
+ *         {@code rejections} count the results that were not cached because their addresses were less frequent
+ *         than those already cached.</li>
+ * </ul>
+ *
+ * <p>A holder's metrics are shared by each version of its database, so that they are not reset by updates.</p>
+ */
+public final class IpLookupCacheMetrics implements MetricsSource {
+    private volatile IntSupplier entryCountSupplier = () -> 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    void bind(final IntSupplier entryCountSupplier) {
+        this.entryCountSupplier = entryCountSupplier;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordShortCircuit() {
+        shortCircuits.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    public int entries() {
+        return entryCountSupplier.getAsInt();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long shortCircuits() {
+        return shortCircuits.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        namespacedMetric.gauge("entries", entries());
+        namespacedMetric.gauge("hits", hits());
+        namespacedMetric.gauge("misses", misses());
+        namespacedMetric.gauge("short_circuits", shortCircuits());
+        namespacedMetric.gauge("evictions", evictions());
+        namespacedMetric.gauge("rejections", rejections());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IpLookupCacheMetrics{entries=%s, hits=%s, misses=%s, shortCircuits=%s, evictions=%s, rejections=%s}",
+                entries(), hits(), misses(), shortCircuits(), evictions(), rejections());
+    }
+}
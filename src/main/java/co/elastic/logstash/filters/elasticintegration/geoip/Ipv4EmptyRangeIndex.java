@@ -0,0 +1,276 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link Ipv4EmptyRangeIndex} is a compact index of the IPv4 networks for which a single version of
+ * a database has no data, so that lookups of addresses in those networks cost a binary search over an
+ * {@code int[]} instead of a walk of the database's tree.
+ *
+ * <p>Only networks <em>without</em> data are indexed, because the responses of lookups that do find data
+ * are specific to the address that was looked up (they include it), and so cannot be reused for other
+ * addresses in the same network. Sparse databases (such as anonymous IP or connection type databases)
+ * have no data for most addresses, in a small number of large networks.</p>
+ *
+ * <p>The index is populated adaptively, with the networks of the addresses that are looked up and found
+ * to have no data, up to a maximum number of networks. Its ranges are held in sorted, disjoint arrays that
+ * are replaced as a whole, so that lookups never take a lock.</p>
+ *
+ * <p>Addresses without data are {@link #offer}ed as candidates into a small lossy buffer, and are indexed in
+ * batches by {@link #indexCandidates}, which one thread at a time resolves to their networks and merges into
+ * a single replacement of the arrays. Each batch is an eighth of the size of the index, so the cost of the
+ * replacements stays proportional to the number of networks indexed, while the first networks are indexed
+ * as soon as they are found.</p>
+ */
+final class Ipv4EmptyRangeIndex {
+
+    // ranges are stored with their sign bit flipped, so that signed comparison orders them as unsigned addresses
+    private record Ranges(int[] starts, int[] ends) {
+        static final Ranges EMPTY = new Ranges(new int[0], new int[0]);
+    }
+
+    /**
+     * Resolves an address without data to the network that contains it.
+     */
+    @FunctionalInterface
+    interface NetworkResolver {
+        /**
+         * @param address an IPv4 address that was found to have no data
+         * @return the prefix length of the address's network, or {@code -1} if it is not a network without data
+         */
+        int emptyNetworkPrefixLength(int address);
+    }
+
+    private static final int MAX_CANDIDATES = 256;
+    private static final int BATCH_DIVISOR = 8;
+    // a candidate is stored with this bit set, so that a slot that has not yet been written reads as zero
+    private static final long CANDIDATE = 1L << 32;
+
+    private final int maxRanges;
+    private volatile Ranges ranges = Ranges.EMPTY;
+
+    private final AtomicLongArray candidates = new AtomicLongArray(MAX_CANDIDATES);
+    private final AtomicInteger candidateCount = new AtomicInteger();
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    Ipv4EmptyRangeIndex(final int maxRanges) {
+        if (maxRanges < 1) { throw new IllegalArgumentException("maxRanges must be positive"); }
+        this.maxRanges = maxRanges;
+    }
+
+    /**
+     * @param address an IPv4 address, as parsed by {@link #parseIpv4}
+     * @return true if the address is in a network that is known to have no data
+     */
+    boolean contains(final int address) {
+        if (containsKey(this.ranges, address ^ Integer.MIN_VALUE)) {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Offers an address that was found to have no data as a candidate for indexing. Candidates that
+     * arrive while the buffer is full are dropped, since their networks will be found again.
+     *
+     * @param address an IPv4 address, as parsed by {@link #parseIpv4}
+     * @return true if enough candidates are buffered that they should now be {@link #indexCandidates indexed}
+     */
+    boolean offer(final int address) {
+        if (candidateCount.get() >= MAX_CANDIDATES) {
+            return false;
+        }
+        final int slot = candidateCount.getAndIncrement();
+        if (slot >= MAX_CANDIDATES) {
+            return false;
+        }
+        candidates.lazySet(slot, CANDIDATE | (address & 0xFFFFFFFFL));
+        return slot + 1 >= Math.min(MAX_CANDIDATES, Math.max(1, size() / BATCH_DIVISOR));
+    }
+
+    /**
+     * Resolves the buffered candidates to their networks, and indexes those networks in a single replacement
+     * of the index's arrays. Candidates are resolved in order, so that those in a network that was already
+     * resolved are skipped. Only one thread indexes at a time; others return immediately.
+     *
+     * @param networkResolver resolves each distinct candidate to its network
+     * @return the number of networks that were indexed
+     */
+    int indexCandidates(final NetworkResolver networkResolver) {
+        if (!indexLock.tryLock()) {
+            return 0;
+        }
+        try {
+            final int count = Math.min(MAX_CANDIDATES, candidateCount.get());
+            final int[] addresses = new int[count];
+            int buffered = 0;
+            for (int slot = 0; slot < count; slot++) {
+                final long candidate = candidates.getAndSet(slot, 0L);
+                // a slot that was claimed but not yet written is dropped
+                if (candidate != 0L) {
+                    addresses[buffered++] = ((int) candidate) ^ Integer.MIN_VALUE;
+                }
+            }
+            candidateCount.set(0);
+            Arrays.sort(addresses, 0, buffered);
+
+            final int[] starts = new int[buffered];
+            final int[] ends = new int[buffered];
+            int resolved = 0;
+            for (int i = 0; i < buffered; i++) {
+                final int key = addresses[i];
+                if ((resolved > 0 && key <= ends[resolved - 1]) || containsKey(this.ranges, key)) {
+                    continue;
+                }
+                final int address = key ^ Integer.MIN_VALUE;
+                final int prefixLength = networkResolver.emptyNetworkPrefixLength(address);
+                if (prefixLength < 0 || prefixLength > 32) {
+                    continue;
+                }
+                final int mask = prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+                final int start = (address & mask) ^ Integer.MIN_VALUE;
+                // a network that starts at or before the end of the previous one would overlap it
+                if (resolved > 0 && start <= ends[resolved - 1]) {
+                    continue;
+                }
+                starts[resolved] = start;
+                ends[resolved++] = (address | ~mask) ^ Integer.MIN_VALUE;
+            }
+            return merge(starts, ends, resolved);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Indexes a network that has no data.
+     *
+     * @param networkAddress any IPv4 address in the network
+     * @param prefixLength the length of the network's prefix
+     * @return true if the network was added; it is not if it overlaps an indexed network, or the index is full
+     */
+    boolean add(final int networkAddress, final int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 32) { throw new IllegalArgumentException("prefixLength must be between 0 and 32"); }
+        final int mask = prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+        indexLock.lock();
+        try {
+            return merge(new int[]{(networkAddress & mask) ^ Integer.MIN_VALUE}, new int[]{(networkAddress | ~mask) ^ Integer.MIN_VALUE}, 1) == 1;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Merges sorted, disjoint ranges into the index in a single replacement of its arrays. Ranges that overlap
+     * an indexed range are skipped, as are those beyond the index's maximum size.
+     *
+     * @return the number of ranges that were added
+     */
+    // must only be called while holding the index lock
+    private int merge(final int[] newStarts, final int[] newEnds, final int newCount) {
+        final Ranges current = this.ranges;
+        final int currentCount = current.starts().length;
+        final int capacity = Math.min(maxRanges, currentCount + newCount);
+        if (newCount == 0 || currentCount >= capacity) {
+            return 0;
+        }
+        final int[] starts = new int[capacity];
+        final int[] ends = new int[capacity];
+        int size = 0;
+        int added = 0;
+        int c = 0;
+        for (int n = 0; n < newCount; n++) {
+            while (c < currentCount && current.starts()[c] < newStarts[n]) {
+                starts[size] = current.starts()[c];
+                ends[size++] = current.ends()[c++];
+            }
+            final boolean overlapsPrevious = size > 0 && ends[size - 1] >= newStarts[n];
+            final boolean overlapsNext = c < currentCount && current.starts()[c] <= newEnds[n];
+            if (!overlapsPrevious && !overlapsNext && (currentCount + added) < capacity) {
+                starts[size] = newStarts[n];
+                ends[size++] = newEnds[n];
+                added++;
+            }
+        }
+        while (c < currentCount) {
+            starts[size] = current.starts()[c];
+            ends[size++] = current.ends()[c++];
+        }
+        if (added > 0) {
+            this.ranges = new Ranges(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+        }
+        return added;
+    }
+
+    private static boolean containsKey(final Ranges ranges, final int key) {
+        // the last range that starts at or before the key is the only one that can contain it
+        int index = Arrays.binarySearch(ranges.starts(), key);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index >= 0 && key <= ranges.ends()[index];
+    }
+
+    int size() {
+        return ranges.starts().length;
+    }
+
+    boolean isFull() {
+        return size() >= maxRanges;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address without allocating. Anything else, including addresses whose
+     * octets have leading zeros (which the database lookup rejects), is left to the database lookup.
+     *
+     * @param ipAddress an address
+     * @return the address as an unsigned int in the low bits of a long, or {@code -1} if it is not a plain IPv4 address
+     */
+    static long parseIpv4(final String ipAddress) {
+        final int length = ipAddress.length();
+        if (length < 7 || length > 15) {
+            return -1;
+        }
+        long address = 0;
+        int octet = 0;
+        int digits = 0;
+        int octets = 0;
+        for (int i = 0; i <= length; i++) {
+            final char c = i < length ? ipAddress.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0 || octet > 255 || ++octets > 4) {
+                    return -1;
+                }
+                address = (address << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (digits > 0 && octet == 0) {
+                    return -1;
+                }
+                octet = (octet * 10) + (c - '0');
+                digits++;
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? address : -1;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.logstashbridge.core.IOUtilsBridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A {@link LazyIpDatabaseHolder} holds a database that was discovered by an {@link IpDatabaseProvider},
+ * and only opens it when it is first used, so that databases that no pipeline references cost nothing.
+ *
+ * <p>The database is opened on the first thread to check its validity or to get it, which is typically
+ * while a pipeline that uses it is being created. A database that fails to open is reported as invalid,
+ * and the failure is retained as this holder's state rather than thrown; if the file is later updated,
+ * the next use makes another attempt.</p>
+ */
+final class LazyIpDatabaseHolder implements IpDatabaseHolder, IpDatabaseDirectoryWatcher.Updatable, Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(LazyIpDatabaseHolder.class);
+
+    @FunctionalInterface
+    interface Opener {
+        IpDatabaseHolder open(Path databasePath) throws IOException;
+    }
+
+    private final Path databasePath;
+    private final Opener opener;
+
+    // guarded by this; the delegate is also published for lock-free reads
+    private volatile IpDatabaseHolder delegate;
+    private Exception failure;
+    private boolean closed;
+
+    LazyIpDatabaseHolder(final Path databasePath, final Opener opener) {
+        this.databasePath = databasePath;
+        this.opener = opener;
+    }
+
+    @Override
+    public boolean isValid() {
+        final IpDatabaseHolder holder = open();
+        return Objects.nonNull(holder) && holder.isValid();
+    }
+
+    @Override
+    public IpDatabaseAdapter getDatabase() {
+        final IpDatabaseHolder holder = open();
+        return Objects.isNull(holder) ? null : holder.getDatabase();
+    }
+
+    @Override
+    public IpDatabaseAdapter peekDatabase() {
+        final IpDatabaseHolder holder = this.delegate;
+        return Objects.isNull(holder) ? null : holder.peekDatabase();
+    }
+
+    @Override
+    public String getTypeIdentifier() {
+        final IpDatabaseHolder holder = this.delegate;
+        return Objects.isNull(holder) ? null : holder.getTypeIdentifier();
+    }
+
+    @Override
+    public synchronized String info() {
+        if (Objects.nonNull(delegate)) {
+            return String.format("LazyIpDatabaseHolder{path=%s, state=open, holder=%s}", databasePath, delegate.info());
+        } else if (Objects.nonNull(failure)) {
+            return String.format("LazyIpDatabaseHolder{path=%s, state=failed, failure=%s}", databasePath, failure.getMessage());
+        } else {
+            return String.format("LazyIpDatabaseHolder{path=%s, state=%s}", databasePath, closed ? "closed" : "unopened");
+        }
+    }
+
+    private IpDatabaseHolder open() {
+        final IpDatabaseHolder holder = this.delegate;
+        if (Objects.nonNull(holder)) {
+            return holder;
+        }
+        synchronized (this) {
+            if (Objects.nonNull(delegate) || Objects.nonNull(failure) || closed) {
+                return delegate;
+            }
+            try {
+                final long startNanos = System.nanoTime();
+                delegate = opener.open(databasePath);
+                LOGGER.debug(() -> String.format("opened database `%s` on first use in %sms", databasePath, (System.nanoTime() - startNanos) / 1_000_000));
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                LOGGER.warn(() -> String.format("failed to open database `%s`; it will be unavailable until the file is updated: %s", databasePath, e.getMessage()), e);
+            }
+            return delegate;
+        }
+    }
+
+    /**
+     * Updates the database from the provided path if it has been opened, or clears a failure
+     * to open it so that its next use makes another attempt.
+     *
+     * @param newDatabasePath the path to a new version of this holder's database
+     * @return true if the opened database was replaced
+     */
+    @Override
+    public boolean updateDatabasePath(final String newDatabasePath) {
+        final IpDatabaseDirectoryWatcher.Updatable updatable;
+        synchronized (this) {
+            if (Objects.isNull(delegate)) {
+                if (Objects.nonNull(failure)) {
+                    LOGGER.info(() -> String.format("database `%s` was updated, and will be opened again on its next use", databasePath));
+                    failure = null;
+                }
+                return false;
+            }
+            if (!(delegate instanceof IpDatabaseDirectoryWatcher.Updatable)) {
+                return false;
+            }
+            updatable = (IpDatabaseDirectoryWatcher.Updatable) delegate;
+        }
+        return updatable.updateDatabasePath(newDatabasePath);
+    }
+
+    @Override
+    public void close() throws IOException {
+        final IpDatabaseHolder holder;
+        synchronized (this) {
+            closed = true;
+            holder = delegate;
+            delegate = null;
+        }
+        if (holder instanceof Closeable closeable) {
+            IOUtilsBridge.closeWhileHandlingException(closeable);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package co.elastic.logstash.filters.elasticintegration.geoip;
 
+import co.elastic.logstash.filters.elasticintegration.jfr.IpDatabaseSwapEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.logstashbridge.core.IOUtilsBridge;
@@ -10,31 +11,98 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.Supplier;
-
-public class ManagedIpDatabaseHolder implements IpDatabaseHolder, Closeable {
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ManagedIpDatabaseHolder} holds the current version of a database whose path is
+ * managed externally, and can be replaced at any time with {@link #setDatabasePath}.
+ *
+ * <p>The current database is published through an atomic reference, so that lookups never
+ * take a lock. A replaced database is retired with {@link IpDatabaseAdapter#closeReaderReplacedBy},
+ * which defers closing its reader until the lookups that are in flight on it have completed, and hands
+ * any lookup that obtained it but reaches it only after it was closed to the database that replaced it.</p>
+ *
+ * <p>A new database is opened and validated on the thread that sets its path, which is not a
+ * pipeline worker, while lookups continue to use the current database. Before it is published,
+ * its node cache is pre-warmed with the most frequent lookups of the current database, so that
+ * lookups do not all miss the node cache immediately after an update.</p>
+ *
+ * <p>Each version of the database is opened with the holder's {@link IpDatabaseOptions}. When those
+ * enable a lookup cache, every version has a cache of its own, but they all share the holder's metrics.</p>
+ *
+ * <p>Every version also records its lookups to the holder's {@link IpDatabaseMetrics}, to which each
+ * swap is recorded when it is published.</p>
+ */
+public class ManagedIpDatabaseHolder implements IpDatabaseHolder, IpDatabaseDirectoryWatcher.Updatable, Closeable {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
-    private IpDatabaseAdapter currentDatabase;
+    public static final int DEFAULT_PREWARM_LOOKUPS = 1000;
+
+    private final AtomicReference<IpDatabaseAdapter> currentDatabase = new AtomicReference<>();
     private final String databaseTypeIdentifier;
+    private final int prewarmLookups;
+    private final IpDatabaseOptions options;
+    private final IpDatabaseMetrics metrics;
 
-    private final ReentrantReadWriteLock.ReadLock readLock;
-    private final ReentrantReadWriteLock.WriteLock writeLock;
-    {
-        final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-        readLock = readWriteLock.readLock();
-        writeLock = readWriteLock.writeLock();
+    public ManagedIpDatabaseHolder(final String databaseTypeIdentifier) {
+        this(databaseTypeIdentifier, DEFAULT_PREWARM_LOOKUPS);
     }
 
-    public ManagedIpDatabaseHolder(final String databaseTypeIdentifier) {
-        this(databaseTypeIdentifier, null);
+    /**
+     * @param databaseTypeIdentifier the type of database to hold
+     * @param options the options with which to open each version of the database
+     */
+    public ManagedIpDatabaseHolder(final String databaseTypeIdentifier, final IpDatabaseOptions options) {
+        this(databaseTypeIdentifier, DEFAULT_PREWARM_LOOKUPS, options, new IpDatabaseMetrics(), null);
+    }
+
+    /**
+     * @param databaseTypeIdentifier the type of database to hold
+     * @param prewarmLookups the maximum number of distinct lookups with which to pre-warm
+     *                       a new database, or {@code 0} to not pre-warm new databases
+     */
+    public ManagedIpDatabaseHolder(final String databaseTypeIdentifier, final int prewarmLookups) {
+        this(databaseTypeIdentifier, prewarmLookups, IpDatabaseOptions.DEFAULT, new IpDatabaseMetrics(), null);
     }
 
     ManagedIpDatabaseHolder(final String databaseTypeIdentifier, final Path databaseLocation) {
+        this(databaseTypeIdentifier, DEFAULT_PREWARM_LOOKUPS, databaseLocation);
+    }
+
+    /**
+     * @param initialDatabase an already-loaded database, whose type this holder holds
+     */
+    ManagedIpDatabaseHolder(final IpDatabaseAdapter initialDatabase) {
+        this(initialDatabase, IpDatabaseOptions.DEFAULT);
+    }
+
+    /**
+     * @param initialDatabase an already-loaded database, whose type this holder holds, and whose
+     *                        metrics are shared with later versions
+     * @param options the options with which to open later versions of the database
+     */
+    ManagedIpDatabaseHolder(final IpDatabaseAdapter initialDatabase, final IpDatabaseOptions options) {
+        this(initialDatabase.getDatabaseType(), DEFAULT_PREWARM_LOOKUPS, options, initialDatabase.getMetrics(), null);
+        this.currentDatabase.set(initialDatabase);
+        this.metrics.recordSwap();
+    }
+
+    ManagedIpDatabaseHolder(final String databaseTypeIdentifier, final int prewarmLookups, final Path databaseLocation) {
+        this(databaseTypeIdentifier, prewarmLookups, IpDatabaseOptions.DEFAULT, new IpDatabaseMetrics(), databaseLocation);
+    }
+
+    ManagedIpDatabaseHolder(final String databaseTypeIdentifier,
+                            final int prewarmLookups,
+                            final IpDatabaseOptions options,
+                            final IpDatabaseMetrics metrics,
+                            final Path databaseLocation) {
+        if (prewarmLookups < 0) { throw new IllegalArgumentException("prewarmLookups must not be negative"); }
         this.databaseTypeIdentifier = databaseTypeIdentifier;
+        this.prewarmLookups = prewarmLookups;
+        this.options = Objects.requireNonNull(options, "options");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
         if (Objects.nonNull(databaseLocation)) {
             setDatabasePath(databaseLocation.toAbsolutePath().toString());
         }
@@ -42,12 +110,12 @@ public class ManagedIpDatabaseHolder implements IpDatabaseHolder, Closeable {
 
     @Override
     public boolean isValid() {
-        return withLock(readLock, () -> Objects.nonNull(this.currentDatabase));
+        return Objects.nonNull(this.currentDatabase.get());
     }
 
     @Override
     public IpDatabaseAdapter getDatabase() {
-        return withLock(readLock, () -> this.currentDatabase);
+        return this.currentDatabase.get();
     }
 
     @Override
@@ -57,68 +125,107 @@ public class ManagedIpDatabaseHolder implements IpDatabaseHolder, Closeable {
 
     @Override
     public String info() {
-        return withLock(readLock, () -> String.format("ManagedIpDatabase{type=%s, valid=%s}", getTypeIdentifier(), isValid()));
+        return String.format("ManagedIpDatabase{type=%s, valid=%s}", getTypeIdentifier(), isValid());
     }
 
     public void setDatabasePath(final String newDatabasePath) {
-        final IpDatabaseAdapter previousDatabase = withLock(writeLock, () -> {
-            final IpDatabaseAdapter localPreviousDatabase = this.currentDatabase;
-            this.currentDatabase = Optional.ofNullable(newDatabasePath)
-                    .map(Paths::get)
-                    .map(this::loadDatabase)
-                    .orElse(null);
-            return localPreviousDatabase;
-        });
-
-        if (previousDatabase != null) {
-            IOUtilsBridge.closeWhileHandlingException(previousDatabase::closeReader);
+        final IpDatabaseSwapEvent ipDatabaseSwapEvent = new IpDatabaseSwapEvent();
+        ipDatabaseSwapEvent.begin();
+
+        // the new database is loaded before it is published, so that lookups continue
+        // to use the previous database in the meantime
+        final IpDatabaseAdapter newDatabase = Optional.ofNullable(newDatabasePath)
+                .map(Paths::get)
+                .map(this::loadDatabase)
+                .orElse(null);
+        publish(newDatabase, newDatabasePath, ipDatabaseSwapEvent);
+    }
+
+    /**
+     * Replaces the current database with the one at the provided path, <em>only</em> if it
+     * can be loaded and is of this holder's type. Otherwise, the current database remains in use.
+     *
+     * @param newDatabasePath the path to a new version of this holder's database
+     * @return true if the database was replaced
+     */
+    @Override
+    public boolean updateDatabasePath(final String newDatabasePath) {
+        final IpDatabaseSwapEvent ipDatabaseSwapEvent = new IpDatabaseSwapEvent();
+        ipDatabaseSwapEvent.begin();
+
+        final IpDatabaseAdapter newDatabase;
+        try {
+            newDatabase = loadDatabase(Paths.get(newDatabasePath));
+        } catch (IllegalStateException e) {
+            LOGGER.warn(() -> String.format("ignoring update of `%s` database from path `%s`: %s", databaseTypeIdentifier, newDatabasePath, e.getMessage()));
+            return false;
+        }
+        if (Objects.isNull(newDatabase)) {
+            LOGGER.warn(() -> String.format("ignoring update of `%s` database from path `%s`; the current database remains in use", databaseTypeIdentifier, newDatabasePath));
+            return false;
+        }
+        publish(newDatabase, newDatabasePath, ipDatabaseSwapEvent);
+        LOGGER.info(() -> String.format("updated `%s` database from path `%s`", databaseTypeIdentifier, newDatabasePath));
+        return true;
+    }
+
+    private void publish(final IpDatabaseAdapter newDatabase,
+                         final String newDatabasePath,
+                         final IpDatabaseSwapEvent ipDatabaseSwapEvent) {
+        prewarm(newDatabase, this.currentDatabase.get());
+        final IpDatabaseAdapter previousDatabase = this.currentDatabase.getAndSet(newDatabase);
+        if (Objects.nonNull(newDatabase)) {
+            this.metrics.recordSwap();
+        }
+
+        if (Objects.nonNull(previousDatabase)) {
+            IOUtilsBridge.closeWhileHandlingException(() -> previousDatabase.closeReaderReplacedBy(newDatabase));
+        }
+
+        ipDatabaseSwapEvent.end();
+        if (ipDatabaseSwapEvent.shouldCommit()) {
+            ipDatabaseSwapEvent.databaseType = databaseTypeIdentifier;
+            ipDatabaseSwapEvent.databasePath = newDatabasePath;
+            ipDatabaseSwapEvent.valid = Objects.nonNull(newDatabase);
+            ipDatabaseSwapEvent.commit();
         }
     }
 
     @Override
     public void close() throws IOException {
-        withLock(writeLock, () -> {
-            if (Objects.nonNull(this.currentDatabase)) {
-                try {
-                    this.currentDatabase.closeReader();
-                } catch (IOException e) {
-                    this.currentDatabase = null;
-                    throw new RuntimeException(e);
-                }
-                this.currentDatabase = null;
+        final IpDatabaseAdapter previousDatabase = this.currentDatabase.getAndSet(null);
+        if (Objects.nonNull(previousDatabase)) {
+            try {
+                previousDatabase.closeReader();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-        });
+        }
+    }
+
+    private void prewarm(final IpDatabaseAdapter newDatabase, final IpDatabaseAdapter outgoingDatabase) {
+        if (prewarmLookups == 0 || Objects.isNull(newDatabase) || Objects.isNull(outgoingDatabase)) {
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        final int replayed = newDatabase.prewarmFrom(outgoingDatabase, prewarmLookups);
+        LOGGER.debug(() -> String.format("pre-warmed `%s` database with %s lookups in %sms",
+                databaseTypeIdentifier, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
     }
 
     private IpDatabaseAdapter loadDatabase(final Path databasePath) {
+        final IpDatabaseAdapter candidate;
         try {
-            final IpDatabaseAdapter candidate = IpDatabaseAdapter.defaultForPath(databasePath);
-            final String candidateType = candidate.getDatabaseType();
-            if (!Objects.equals(candidateType, this.databaseTypeIdentifier)) {
-                throw new IllegalStateException(String.format("Incompatible database type `%s` (expected `%s`)", candidateType, this.databaseTypeIdentifier));
-            }
-            return candidate;
+            candidate = options.open(databasePath, metrics);
         } catch (IOException e) {
             LOGGER.warn(() -> String.format("failed to load database from path `%s`: %s", databasePath, e));
             return null;
         }
-    }
-
-    private <T> T withLock(final Lock lock,
-                           final Supplier<T> handler) {
-        lock.lock();
-        try {
-            return handler.get();
-        } finally {
-            lock.unlock();
+        final String candidateType = candidate.getDatabaseType();
+        if (!Objects.equals(candidateType, this.databaseTypeIdentifier)) {
+            IOUtilsBridge.closeWhileHandlingException(candidate::closeReader);
+            throw new IllegalStateException(String.format("Incompatible database type `%s` (expected `%s`)", candidateType, this.databaseTypeIdentifier));
         }
+        return candidate;
     }
-    private void withLock(final Lock lock,
-                          final Runnable runnable) {
-        this.<Void>withLock(lock, () -> {
-            runnable.run();
-            return null;
-        });
-    }
-
 }
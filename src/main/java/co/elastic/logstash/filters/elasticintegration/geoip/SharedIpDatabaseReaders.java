@@ -0,0 +1,172 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.NoCache;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.NodeCache;
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.Reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link SharedIpDatabaseReaders} are a registry of the database {@link Reader}s that are open
+ * in this JVM, so that every plugin instance and every database holder that opens the same version
+ * of the same database file shares a single mapping (or heap copy) of it, and a single node cache.
+ *
+ * <p>A version of a file is identified by its real path along with its file key, modification time,
+ * and size, so that a file that is replaced or modified is opened anew rather than sharing a reader
+ * of its previous contents. Each {@link #acquire acquisition} returns a {@link Lease} that must be
+ * closed, and a reader is closed when the last of its leases is.</p>
+ *
+ * <p>The hits and misses of each shared node cache are counted by a {@link CountingNodeCache}.</p>
+ */
+final class SharedIpDatabaseReaders {
+    private static final Logger LOGGER = LogManager.getLogger(SharedIpDatabaseReaders.class);
+
+    private static final SharedIpDatabaseReaders INSTANCE = new SharedIpDatabaseReaders();
+
+    private record Key(Path realPath, Object fileKey, FileTime lastModifiedTime, long size,
+                       Reader.FileMode fileMode, int nodeCacheSize) {
+    }
+
+    // guarded by this
+    private final Map<Key, SharedReader> readers = new HashMap<>();
+
+    static SharedIpDatabaseReaders getInstance() {
+        return INSTANCE;
+    }
+
+    // visible for test
+    SharedIpDatabaseReaders() {
+    }
+
+    /**
+     * Acquires a reader of the current version of the database file at the provided path,
+     * opening it if it is not already open with the same file mode and node cache size.
+     *
+     * @param databasePath the path to a database file
+     * @param fileMode whether the database is memory-mapped or loaded onto the heap
+     * @param nodeCacheSize the number of entries of the reader's node cache, or {@code 0} for none
+     * @return a lease of the reader, which must be closed when the reader is no longer used
+     * @throws IOException if the database cannot be opened
+     */
+    Lease acquire(final Path databasePath, final Reader.FileMode fileMode, final int nodeCacheSize) throws IOException {
+        if (nodeCacheSize < 0) { throw new IllegalArgumentException("nodeCacheSize must not be negative"); }
+        final Path realPath = databasePath.toRealPath();
+        final BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+        final Key key = new Key(realPath, attributes.fileKey(), attributes.lastModifiedTime(), attributes.size(), fileMode, nodeCacheSize);
+
+        final SharedReader sharedReader;
+        synchronized (this) {
+            sharedReader = readers.computeIfAbsent(key, SharedReader::new);
+            sharedReader.leases++;
+        }
+        // the reader is opened outside the registry's lock, so that opening a large
+        // database in heap mode does not hold up the acquisition of other databases
+        try {
+            return new Lease(sharedReader, sharedReader.open());
+        } catch (IOException | RuntimeException e) {
+            release(sharedReader);
+            throw e;
+        }
+    }
+
+    private void release(final SharedReader sharedReader) {
+        synchronized (this) {
+            if (--sharedReader.leases > 0) {
+                return;
+            }
+            readers.remove(sharedReader.key, sharedReader);
+        }
+        try {
+            sharedReader.close();
+        } catch (IOException e) {
+            LOGGER.warn(() -> String.format("failed to close the shared reader of `%s`: %s", sharedReader.key.realPath(), e.getMessage()), e);
+        }
+    }
+
+    // visible for test
+    synchronized int size() {
+        return readers.size();
+    }
+
+    private static final class SharedReader {
+        private final Key key;
+        private final CountingNodeCache nodeCache;
+
+        // guarded by the registry
+        private int leases;
+
+        // guarded by this
+        private Reader reader;
+
+        private SharedReader(final Key key) {
+            this.key = key;
+            this.nodeCache = key.nodeCacheSize() == 0 ? null : new CountingNodeCache(key.nodeCacheSize());
+        }
+
+        synchronized Reader open() throws IOException {
+            if (Objects.isNull(reader)) {
+                final NodeCache nodeCache = Objects.isNull(this.nodeCache) ? NoCache.getInstance() : this.nodeCache;
+                reader = new Reader(key.realPath().toFile(), key.fileMode(), nodeCache);
+                LOGGER.debug(() -> String.format("opened shared reader of `%s` (%s)", key.realPath(), key.fileMode()));
+            }
+            return reader;
+        }
+
+        synchronized void close() throws IOException {
+            if (Objects.nonNull(reader)) {
+                LOGGER.debug(() -> String.format("closing shared reader of `%s`", key.realPath()));
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+
+    /**
+     * A {@link Lease} of a shared reader, which releases it when closed.
+     */
+    final class Lease implements Closeable {
+        private final SharedReader sharedReader;
+        private final Reader reader;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(final SharedReader sharedReader, final Reader reader) {
+            this.sharedReader = sharedReader;
+            this.reader = reader;
+        }
+
+        Reader reader() {
+            return reader;
+        }
+
+        /**
+         * @return the reader's node cache, or {@code null} if it has none
+         */
+        CountingNodeCache nodeCache() {
+            return sharedReader.nodeCache;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(sharedReader);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ package co.elastic.logstash.filters.elasticintegration.ingest;
 
 import co.elastic.logstash.filters.elasticintegration.IngestPipeline;
 import co.elastic.logstash.filters.elasticintegration.IngestPipelineResolver;
+import co.elastic.logstash.filters.elasticintegration.resolver.ResolverHandle;
 import org.elasticsearch.logstashbridge.common.ProjectIdBridge;
 import org.elasticsearch.logstashbridge.ingest.AbstractExternalProcessorBridge;
 import org.elasticsearch.logstashbridge.ingest.AbstractExternalProcessorFactoryBridge;
@@ -30,6 +31,7 @@ public class PipelineProcessor extends AbstractExternalProcessorBridge {
 
     private final TemplateScriptFactoryBridge pipelineTemplate;
     private final IngestPipelineResolver pipelineProvider;
+    private final ResolverHandle<IngestPipeline> boundPipeline;
     private final boolean ignoreMissingPipeline;
 
     private PipelineProcessor(String tag,
@@ -37,13 +39,22 @@ public class PipelineProcessor extends AbstractExternalProcessorBridge {
                               TemplateScriptFactoryBridge pipelineTemplate,
                               String pipelineName,
                               boolean ignoreMissingPipeline,
-                              IngestPipelineResolver pipelineProvider) {
+                              IngestPipelineResolver pipelineProvider,
+                              ResolverHandle<IngestPipeline> boundPipeline) {
         this.tag = tag;
         this.description = description;
         this.pipelineTemplate = pipelineTemplate;
         this.pipelineName = pipelineName;
         this.pipelineProvider = pipelineProvider;
         this.ignoreMissingPipeline = ignoreMissingPipeline;
+        this.boundPipeline = boundPipeline;
+    }
+
+    /**
+     * Mirrors the constant-template detection in {@link ConfigurationUtilsBridge#compileTemplate}
+     */
+    private static boolean isTemplated(final String pipelineName) {
+        return pipelineName.contains("{{");
     }
 
     public String getPipelineName() {
@@ -73,8 +84,15 @@ public class PipelineProcessor extends AbstractExternalProcessorBridge {
 
     @Override
     public void execute(IngestDocumentBridge ingestDocument, BiConsumer<IngestDocumentBridge, Exception> handler) {
-        String pipelineName = ingestDocument.renderTemplate(this.pipelineTemplate);
-        IngestPipeline pipeline = pipelineProvider.resolve(pipelineName).orElse(null);
+        final String pipelineName;
+        final IngestPipeline pipeline;
+        if (boundPipeline != null) {
+            pipelineName = this.pipelineName;
+            pipeline = boundPipeline.resolve().orElse(null);
+        } else {
+            pipelineName = ingestDocument.renderTemplate(this.pipelineTemplate);
+            pipeline = pipelineProvider.resolve(pipelineName).orElse(null);
+        }
         if (pipeline != null) {
             pipeline.execute(ingestDocument, handler);
         } else {
@@ -109,7 +127,10 @@ public class PipelineProcessor extends AbstractExternalProcessorBridge {
             String pipeline = ConfigurationUtilsBridge.readStringProperty(TYPE, processorTag, config, "name");
             TemplateScriptFactoryBridge pipelineTemplate = ConfigurationUtilsBridge.compileTemplate(TYPE, processorTag, "name", pipeline, scriptService);
             boolean ignoreMissingPipeline = ConfigurationUtilsBridge.readBooleanProperty(TYPE, processorTag, config, "ignore_missing_pipeline", false);
-            return new PipelineProcessor(processorTag, description, pipelineTemplate, pipeline, ignoreMissingPipeline, pipelineProvider);
+            // when the pipeline name is not a template, it renders to itself for every document,
+            // so we bind to the named pipeline once to skip rendering and full lookups on each execution.
+            final ResolverHandle<IngestPipeline> boundPipeline = isTemplated(pipeline) ? null : pipelineProvider.bind(pipeline);
+            return new PipelineProcessor(processorTag, description, pipelineTemplate, pipeline, ignoreMissingPipeline, pipelineProvider, boundPipeline);
         }
 
     }
@@ -0,0 +1,311 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.ingest;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
+import co.elastic.logstash.filters.elasticintegration.util.PeriodicTaskService;
+import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.logstashbridge.common.ProjectIdBridge;
+import org.elasticsearch.logstashbridge.ingest.AbstractExternalProcessorBridge;
+import org.elasticsearch.logstashbridge.ingest.AbstractExternalProcessorFactoryBridge;
+import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
+import org.elasticsearch.logstashbridge.ingest.ProcessorBridge;
+import org.elasticsearch.logstashbridge.ingest.ProcessorFactoryBridge;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ProcessorProfiler} decorates the processor factories that are used to create a pipeline,
+ * so that each processor they create records how many times it is executed, how many of those
+ * executions fail, and how long they take, keyed by the id of its pipeline, its type, and its tag.
+ *
+ * <p>Processors without a tag are identified by their position in the order in which the pipeline's
+ * processors were created (e.g., {@code #3}), which is stable across reloads of an unchanged pipeline.
+ * Because a processor that contains other processors (such as {@code foreach} or {@code pipeline})
+ * is timed as a whole, its time includes the time of the processors it contains.</p>
+ *
+ * <p>Profiled processors present themselves as sync or async just as the processors they wrap do, but
+ * timing each execution adds a small amount of overhead to it; profiling is therefore intended to be
+ * enabled while investigating performance. Executions that are not of events, such as those of a
+ * pipeline that is being warmed, can be excluded with {@link #runUnprofiled}.</p>
+ */
+public final class ProcessorProfiler implements MetricsSource {
+
+    public static final int DEFAULT_MAX_TRACKED_PROCESSORS = 1000;
+    public static final int DEFAULT_REPORT_SIZE = 10;
+
+    private static final Logger LOGGER = LogManager.getLogger(ProcessorProfiler.class);
+
+    private static final ThreadLocal<Boolean> UNPROFILED = ThreadLocal.withInitial(() -> false);
+
+    public record ProcessorKey(String pipelineId, String type, String tag) {
+        @Override
+        public String toString() {
+            return String.format("%s/%s:%s", pipelineId, type, tag);
+        }
+    }
+
+    private final int maxTrackedProcessors;
+    private final Map<ProcessorKey, OperationMetrics> processors = new ConcurrentHashMap<>();
+    private final AtomicInteger trackedProcessors = new AtomicInteger();
+    private final OperationMetrics otherProcessors = new OperationMetrics();
+
+    // guarded by this; only used when reporting
+    private final Map<ProcessorKey, Long> lastReportedDurationNanos = new HashMap<>();
+
+    public ProcessorProfiler() {
+        this(DEFAULT_MAX_TRACKED_PROCESSORS);
+    }
+
+    public ProcessorProfiler(final int maxTrackedProcessors) {
+        this.maxTrackedProcessors = maxTrackedProcessors;
+    }
+
+    /**
+     * @param pipelineId the id of the pipeline that is being created
+     * @param processorFactories the processor factories that will be used to create the pipeline
+     * @return a copy of the provided factories, each of which produces processors that
+     *         are profiled under the provided pipeline id
+     */
+    public Map<String, ProcessorFactoryBridge> profiling(final String pipelineId,
+                                                        final Map<String, ProcessorFactoryBridge> processorFactories) {
+        // processors are created sequentially for a single pipeline, including nested processors
+        final AtomicInteger processorOrdinal = new AtomicInteger();
+        final Map<String, ProcessorFactoryBridge> profilingFactories = new HashMap<>();
+        processorFactories.forEach((type, factory) -> profilingFactories.put(type, new ProfilingFactory(pipelineId, type, factory, processorOrdinal)));
+        return Map.copyOf(profilingFactories);
+    }
+
+    /**
+     * Runs the provided action without profiling the processors that it executes on the calling thread,
+     * so that executions that are not of events do not skew the profiles of the processors.
+     *
+     * @param action the action to run
+     */
+    public static void runUnprofiled(final Runnable action) {
+        final boolean previous = UNPROFILED.get();
+        UNPROFILED.set(true);
+        try {
+            action.run();
+        } finally {
+            UNPROFILED.set(previous);
+        }
+    }
+
+    OperationMetrics metricsFor(final ProcessorKey processorKey) {
+        final OperationMetrics existing = processors.get(processorKey);
+        if (Objects.nonNull(existing)) {
+            return existing;
+        }
+        if (trackedProcessors.get() >= maxTrackedProcessors) {
+            return otherProcessors;
+        }
+        final OperationMetrics tracked = processors.computeIfAbsent(processorKey, (key) -> {
+            if (trackedProcessors.getAndIncrement() >= maxTrackedProcessors) {
+                trackedProcessors.decrementAndGet();
+                return null;
+            }
+            return new OperationMetrics();
+        });
+        return Objects.requireNonNullElse(tracked, otherProcessors);
+    }
+
+    /**
+     * @param processorKey the key of a profiled processor
+     * @return the metrics of the processor, if it is tracked on its own
+     */
+    public Optional<OperationMetrics> metrics(final ProcessorKey processorKey) {
+        return Optional.ofNullable(processors.get(processorKey));
+    }
+
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        processors.forEach((key, metrics) -> metrics.publishTo(namespacedMetric.namespace(key.pipelineId(), key.type(), key.tag())));
+        if (otherProcessors.count() > 0) {
+            otherProcessors.publishTo(namespacedMetric.namespace("_other"));
+        }
+    }
+
+    /**
+     * Logs the processors that spent the most time executing since the previous report.
+     *
+     * @param size the maximum number of processors to include
+     */
+    public void reportSlowest(final int size) {
+        describeSlowest(size).ifPresent((report) -> LOGGER.info(() -> String.format("slowest processors since last report: %s", report)));
+    }
+
+    /**
+     * @param size the maximum number of processors to include
+     * @return a description of the processors that spent the most time executing since the previous
+     *         description, or empty if none have executed since then
+     */
+    synchronized Optional<String> describeSlowest(final int size) {
+        final Map<ProcessorKey, Long> intervalDurationNanos = new HashMap<>();
+        processors.forEach((key, metrics) -> {
+            final long durationNanos = metrics.durationNanos();
+            final long previousDurationNanos = Objects.requireNonNullElse(lastReportedDurationNanos.put(key, durationNanos), 0L);
+            if (durationNanos > previousDurationNanos) {
+                intervalDurationNanos.put(key, durationNanos - previousDurationNanos);
+            }
+        });
+        if (intervalDurationNanos.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(intervalDurationNanos.entrySet().stream()
+                .sorted(Map.Entry.<ProcessorKey, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(size)
+                .map((entry) -> {
+                    final OperationMetrics metrics = processors.get(entry.getKey());
+                    final long meanMicros = metrics.count() == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(metrics.durationNanos()) / metrics.count();
+                    return String.format("{ %s: %sms (cumulative: count=%s failures=%s mean=%sµs) }",
+                            entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue()), metrics.count(), metrics.failures(), meanMicros);
+                })
+                .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Creates a new service that periodically logs this profiler's slowest processors, wholly
+     * managing the lifecycle of its internal scheduled executor service.
+     *
+     * @param pluginContext the context of the plugin whose processors are being profiled
+     * @param interval the interval between reports
+     * @param size the maximum number of processors to include in each report
+     * @return a new, unstarted service
+     */
+    public Service newManagedReportingService(final PluginContext pluginContext,
+                                              final Duration interval,
+                                              final int size) {
+        return PeriodicTaskService.newManaged(pluginContext, "processor-profiler", Scheduler.newFixedRateSchedule(interval, interval), () -> reportSlowest(size), false);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProcessorProfiler{processors=%s, otherProcessors=%s}", processors.size(), otherProcessors);
+    }
+
+    private class ProfilingFactory extends AbstractExternalProcessorFactoryBridge {
+        private final String pipelineId;
+        private final String type;
+        private final ProcessorFactoryBridge delegate;
+        private final AtomicInteger processorOrdinal;
+
+        ProfilingFactory(final String pipelineId,
+                         final String type,
+                         final ProcessorFactoryBridge delegate,
+                         final AtomicInteger processorOrdinal) {
+            this.pipelineId = pipelineId;
+            this.type = type;
+            this.delegate = delegate;
+            this.processorOrdinal = processorOrdinal;
+        }
+
+        @Override
+        public ProcessorBridge create(final Map<String, ProcessorFactoryBridge> registry,
+                                      final String processorTag,
+                                      final String description,
+                                      final Map<String, Object> config,
+                                      final ProjectIdBridge projectIdBridge) throws Exception {
+            final int ordinal = processorOrdinal.incrementAndGet();
+            final ProcessorBridge processor = delegate.create(registry, processorTag, description, config, projectIdBridge);
+            final String tag = Objects.requireNonNullElse(processorTag, "#" + ordinal);
+            return new ProfiledProcessor(processor, metricsFor(new ProcessorKey(pipelineId, type, tag)));
+        }
+    }
+
+    private static class ProfiledProcessor extends AbstractExternalProcessorBridge {
+        private final ProcessorBridge delegate;
+        private final OperationMetrics metrics;
+
+        ProfiledProcessor(final ProcessorBridge delegate,
+                          final OperationMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String getType() {
+            return delegate.getType();
+        }
+
+        @Override
+        public String getTag() {
+            return delegate.getTag();
+        }
+
+        @Override
+        public String getDescription() {
+            return delegate.getDescription();
+        }
+
+        @Override
+        public boolean isAsync() {
+            return delegate.isAsync();
+        }
+
+        @Override
+        public IngestDocumentBridge execute(final IngestDocumentBridge ingestDocument) throws Exception {
+            if (UNPROFILED.get()) {
+                return delegate.execute(ingestDocument);
+            }
+            final long startNanos = System.nanoTime();
+            final IngestDocumentBridge result;
+            try {
+                result = delegate.execute(ingestDocument);
+            } catch (Exception e) {
+                metrics.recordFailure(startNanos);
+                throw e;
+            }
+            metrics.recordSuccess(startNanos);
+            return result;
+        }
+
+        @Override
+        public void execute(final IngestDocumentBridge ingestDocument, final BiConsumer<IngestDocumentBridge, Exception> handler) {
+            if (UNPROFILED.get()) {
+                delegate.execute(ingestDocument, handler);
+                return;
+            }
+            final long startNanos = System.nanoTime();
+            final AtomicBoolean completed = new AtomicBoolean();
+            try {
+                delegate.execute(ingestDocument, (resultIngestDocument, exception) -> {
+                    if (completed.compareAndSet(false, true)) {
+                        metrics.record(startNanos, Objects.isNull(exception));
+                    }
+                    handler.accept(resultIngestDocument, exception);
+                });
+            } catch (Exception e) {
+                // processors report failures through the handler; one that throws instead has
+                // not completed, unless the exception escaped from a downstream handler
+                if (!completed.compareAndSet(false, true)) {
+                    throw (e instanceof RuntimeException runtimeException) ? runtimeException : new RuntimeException(e);
+                }
+                metrics.recordFailure(startNanos);
+                handler.accept(null, e);
+            }
+        }
+    }
+}
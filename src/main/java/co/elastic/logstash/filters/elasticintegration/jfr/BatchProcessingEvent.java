@@ -0,0 +1,27 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(BatchProcessingEvent.NAME)
+@Label("Batch Processing")
+@Category({"Logstash", "Elastic Integration"})
+@Description("A batch of events processed by an EventProcessor, including work that completed asynchronously")
+public class BatchProcessingEvent extends Event {
+    public static final String NAME = "co.elastic.logstash.filters.elasticintegration.BatchProcessing";
+
+    @Label("Event Count")
+    public int eventCount;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(CacheLoadEvent.NAME)
+@Label("Resolver Cache Load")
+@Category({"Logstash", "Elastic Integration"})
+@Description("A load from the source of truth, caused by a resolver cache miss")
+public class CacheLoadEvent extends Event {
+    public static final String NAME = "co.elastic.logstash.filters.elasticintegration.CacheLoad";
+
+    @Label("Cache")
+    public String cacheType;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Outcome")
+    public String outcome;
+}
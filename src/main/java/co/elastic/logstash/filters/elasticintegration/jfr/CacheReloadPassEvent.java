@@ -0,0 +1,27 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(CacheReloadPassEvent.NAME)
+@Label("Resolver Cache Reload Pass")
+@Category({"Logstash", "Elastic Integration"})
+@Description("A scheduled pass that reloads the entries of a resolver cache")
+public class CacheReloadPassEvent extends Event {
+    public static final String NAME = "co.elastic.logstash.filters.elasticintegration.CacheReloadPass";
+
+    @Label("Cache")
+    public String cacheType;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(IpDatabaseSwapEvent.NAME)
+@Label("GeoIP Database Swap")
+@Category({"Logstash", "Elastic Integration"})
+@Description("The replacement of a managed GeoIP database, including loading the new database and closing the previous one")
+public class IpDatabaseSwapEvent extends Event {
+    public static final String NAME = "co.elastic.logstash.filters.elasticintegration.IpDatabaseSwap";
+
+    @Label("Database Type")
+    public String databaseType;
+
+    @Label("Database Path")
+    public String databasePath;
+
+    @Label("Valid")
+    public boolean valid;
+}
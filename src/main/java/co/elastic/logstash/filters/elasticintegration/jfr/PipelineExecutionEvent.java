@@ -0,0 +1,32 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name(PipelineExecutionEvent.NAME)
+@Label("Ingest Pipeline Execution")
+@Category({"Logstash", "Elastic Integration"})
+@Description("The execution of an ingest pipeline for a single event, including any nested pipelines")
+@Threshold("1 ms")
+public class PipelineExecutionEvent extends Event {
+    public static final String NAME = "co.elastic.logstash.filters.elasticintegration.PipelineExecution";
+
+    @Label("Pipeline")
+    public String pipelineId;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Exception")
+    public String exceptionClass;
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+
+/**
+ * Custom Java Flight Recorder events, which make the work of this plugin visible in recordings.
+ *
+ * <p>Each event is created and timed at its call site, but its fields are only populated when
+ * {@link jdk.jfr.Event#shouldCommit()} indicates that it will be recorded, so that the events
+ * cost next to nothing when no recording is in progress.</p>
+ */
+package co.elastic.logstash.filters.elasticintegration.jfr;
@@ -0,0 +1,137 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link LatencyHistogram} is a lock-free histogram of nanosecond durations, whose buckets
+ * are laid out in the manner of an HDR histogram: each power-of-two range is divided into
+ * {@value SUB_BUCKET_COUNT} linear sub-buckets, so that any recorded value can be reported
+ * with a relative error of at most {@code 1/}{@value SUB_BUCKET_COUNT}, while the histogram
+ * remains small and of fixed size.
+ *
+ * <p>Each bucket is a {@link LongAdder}, so that recording is safe to perform from any number of threads
+ * without them contending on a shared counter when their durations fall in the same bucket; the cost of
+ * summing the buckets is paid only when a {@link #snapshot} is taken. Durations longer than ~68 seconds
+ * are recorded in the highest bucket.</p>
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_TRACKABLE_NANOS = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+
+    private final LongAdder[] counts = new LongAdder[BUCKET_COUNT];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(final long durationNanos) {
+        counts[bucketIndex(Math.min(Math.max(durationNanos, 0L), MAX_TRACKABLE_NANOS))].increment();
+    }
+
+    /**
+     * @return a point-in-time copy of this histogram's counts. Because recording continues
+     *         concurrently, the copy is not guaranteed to be atomic with respect to in-flight records.
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts[i].sum();
+        }
+        return new Snapshot(copy);
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    static long highestEquivalentValue(final int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+        final int shift = (bucketIndex >>> SUB_BUCKET_BITS) - 1;
+        final long subBucket = bucketIndex & (SUB_BUCKET_COUNT - 1);
+        final long lowestEquivalentValue = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowestEquivalentValue + (1L << shift) - 1;
+    }
+
+    /**
+     * An immutable copy of a {@link LatencyHistogram}'s counts, which can be subtracted
+     * from a later snapshot to describe the values recorded in the interval between them.
+     */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT]);
+
+        private final long[] counts;
+        private final long totalCount;
+
+        private Snapshot(final long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+        }
+
+        public long count() {
+            return totalCount;
+        }
+
+        /**
+         * @param percentile a percentile in the range {@code (0, 100]}
+         * @return the highest value that is equivalent to the value at the given percentile,
+         *         or zero if this snapshot is empty
+         */
+        public long valueAtPercentile(final double percentile) {
+            if (totalCount == 0) {
+                return 0L;
+            }
+            final long targetCount = Math.max(1L, (long) Math.ceil((percentile / 100.0) * totalCount));
+            long cumulativeCount = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulativeCount += counts[i];
+                if (cumulativeCount >= targetCount) {
+                    return highestEquivalentValue(i);
+                }
+            }
+            return highestEquivalentValue(counts.length - 1);
+        }
+
+        public long maxValue() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestEquivalentValue(i);
+                }
+            }
+            return 0L;
+        }
+
+        /**
+         * @param earlier a snapshot of the same histogram that was taken before this one
+         * @return a snapshot of the values that were recorded between the two snapshots
+         */
+        public Snapshot since(final Snapshot earlier) {
+            final long[] difference = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                difference[i] = Math.max(0L, counts[i] - earlier.counts[i]);
+            }
+            return new Snapshot(difference);
+        }
+    }
+}
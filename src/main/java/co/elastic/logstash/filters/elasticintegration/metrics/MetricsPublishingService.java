@@ -0,0 +1,67 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.metrics;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.util.PeriodicTaskService;
+import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link MetricsPublishingService} periodically publishes each of its named {@link MetricsSource}s
+ * to its own namespace of the plugin's {@link NamespacedMetric}, so that the cost of updating
+ * Logstash's metrics store is paid once per interval instead of once per event.
+ */
+public final class MetricsPublishingService {
+
+    private static final Logger LOGGER = LogManager.getLogger(MetricsPublishingService.class);
+
+    /**
+     * Creates a new metrics publishing service, which publishes one last time when it is stopped
+     * so that the final state of short-lived pipelines is not lost.
+     *
+     * @param pluginContext the context of the plugin whose metrics are being published
+     * @param pluginMetric the plugin's metric namespace
+     * @param sources the sources to publish, keyed by the namespace to publish each to
+     * @param scheduler the schedule on which to publish
+     * @return a new, unstarted service
+     * @see PeriodicTaskService#newManaged
+     */
+    public static Service newManaged(final PluginContext pluginContext,
+                                     final NamespacedMetric pluginMetric,
+                                     final Map<String, MetricsSource> sources,
+                                     final Scheduler scheduler) {
+        final MetricsPublishingService publisher = new MetricsPublishingService(pluginMetric, sources);
+        return PeriodicTaskService.newManaged(pluginContext, "metrics-publisher", scheduler, publisher::publishOnce, true);
+    }
+
+    private final NamespacedMetric pluginMetric;
+    private final List<Map.Entry<String, MetricsSource>> sources;
+
+    private MetricsPublishingService(final NamespacedMetric pluginMetric,
+                                     final Map<String, MetricsSource> sources) {
+        this.pluginMetric = pluginMetric;
+        this.sources = List.copyOf(sources.entrySet());
+    }
+
+    private void publishOnce() {
+        for (Map.Entry<String, MetricsSource> source : sources) {
+            // a source that fails to publish must not prevent the others from publishing
+            try {
+                source.getValue().publishTo(pluginMetric.namespace(source.getKey()));
+            } catch (RuntimeException e) {
+                LOGGER.warn(() -> String.format("metrics-publish-failure(%s) %s", source.getKey(), e.getMessage()), e);
+            }
+        }
+    }
+}
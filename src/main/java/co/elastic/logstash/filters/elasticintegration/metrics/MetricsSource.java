@@ -0,0 +1,24 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.metrics;
+
+import co.elastic.logstash.api.NamespacedMetric;
+
+/**
+ * A {@link MetricsSource} holds metrics that are recorded in-process and are periodically
+ * published to Logstash's metrics store by a {@link MetricsPublishingService}.
+ */
+@FunctionalInterface
+public interface MetricsSource {
+    /**
+     * Publishes the current state of this source's metrics. Implementations are expected
+     * to publish a bounded set of metrics, regardless of the number of values they have observed.
+     *
+     * @param namespacedMetric the namespace to publish to
+     */
+    void publishTo(NamespacedMetric namespacedMetric);
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.metrics;
+
+import co.elastic.logstash.api.NamespacedMetric;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link OperationMetrics} tracks the number of times an operation was performed, how many of
+ * those times it failed, and how long it took, in a way that is cheap enough to record on every event.
+ *
+ * <p>When published, the counts and total duration are cumulative, while the latency percentiles
+ * describe only the operations that completed since the previous publication.</p>
+ */
+public final class OperationMetrics implements MetricsSource {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder durationNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // guarded by this; only used when publishing
+    private LatencyHistogram.Snapshot lastPublishedLatency = LatencyHistogram.Snapshot.EMPTY;
+
+    /**
+     * Records a single successful operation that began at the provided nano time.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the operation began
+     * @return the current nano time, which may be used as the start of a subsequent operation
+     */
+    public long recordSuccess(final long startNanos) {
+        return record(startNanos, true);
+    }
+
+    /**
+     * Records a single failed operation that began at the provided nano time.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the operation began
+     * @return the current nano time, which may be used as the start of a subsequent operation
+     */
+    public long recordFailure(final long startNanos) {
+        return record(startNanos, false);
+    }
+
+    public long record(final long startNanos, final boolean isSuccess) {
+        final long endNanos = System.nanoTime();
+        recordDuration(endNanos - startNanos, isSuccess);
+        return endNanos;
+    }
+
+    public void recordDuration(final long elapsedNanos, final boolean isSuccess) {
+        count.increment();
+        if (!isSuccess) {
+            failures.increment();
+        }
+        durationNanos.add(elapsedNanos);
+        latency.record(elapsedNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long durationNanos() {
+        return durationNanos.sum();
+    }
+
+    /**
+     * @return a snapshot of the latencies of all operations recorded so far
+     */
+    public LatencyHistogram.Snapshot latency() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public synchronized void publishTo(final NamespacedMetric namespacedMetric) {
+        final LatencyHistogram.Snapshot currentLatency = latency.snapshot();
+        final LatencyHistogram.Snapshot intervalLatency = currentLatency.since(lastPublishedLatency);
+        lastPublishedLatency = currentLatency;
+
+        namespacedMetric.gauge("count", count());
+        namespacedMetric.gauge("failures", failures());
+        namespacedMetric.gauge("duration_in_millis", TimeUnit.NANOSECONDS.toMillis(durationNanos()));
+
+        final NamespacedMetric latencyMetric = namespacedMetric.namespace("latency_in_micros");
+        latencyMetric.gauge("p50", TimeUnit.NANOSECONDS.toMicros(intervalLatency.valueAtPercentile(50)));
+        latencyMetric.gauge("p90", TimeUnit.NANOSECONDS.toMicros(intervalLatency.valueAtPercentile(90)));
+        latencyMetric.gauge("p99", TimeUnit.NANOSECONDS.toMicros(intervalLatency.valueAtPercentile(99)));
+        latencyMetric.gauge("max", TimeUnit.NANOSECONDS.toMicros(intervalLatency.maxValue()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OperationMetrics{count=%s, failures=%s, duration=%sms}",
+                count(), failures(), TimeUnit.NANOSECONDS.toMillis(durationNanos()));
+    }
+}
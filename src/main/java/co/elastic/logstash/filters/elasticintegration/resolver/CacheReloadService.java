@@ -6,10 +6,13 @@
  */
 package co.elastic.logstash.filters.elasticintegration.resolver;
 
+import co.elastic.logstash.filters.elasticintegration.jfr.CacheReloadPassEvent;
 import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -18,6 +21,8 @@ import java.util.concurrent.ScheduledExecutorService;
  */
 public class CacheReloadService extends AbstractScheduledService {
 
+    private static final Logger LOGGER = LogManager.getLogger(CacheReloadService.class);
+
     /**
      * Creates a new cache reload service, wholly managing the lifecycle of the internal
      * scheduled executor service to ensure that it is shut down when this service is terminated
@@ -63,7 +68,24 @@ public class CacheReloadService extends AbstractScheduledService {
 
     @Override
     protected void runOneIteration() throws Exception {
-        reloader.reloadOnce();
+        // an exception escaping an iteration would permanently fail this service,
+        // so we log it and allow the next scheduled iteration to proceed normally.
+        final CacheReloadPassEvent cacheReloadPassEvent = new CacheReloadPassEvent();
+        cacheReloadPassEvent.begin();
+        String outcome = "failure";
+        try {
+            reloader.reloadOnce();
+            outcome = "success";
+        } catch (RuntimeException e) {
+            LOGGER.warn(() -> String.format("reload-pass-failure(%s) %s", reloader.type(), e.getMessage()), e);
+        } finally {
+            cacheReloadPassEvent.end();
+            if (cacheReloadPassEvent.shouldCommit()) {
+                cacheReloadPassEvent.cacheType = reloader.type();
+                cacheReloadPassEvent.outcome = outcome;
+                cacheReloadPassEvent.commit();
+            }
+        }
     }
 
     @Override
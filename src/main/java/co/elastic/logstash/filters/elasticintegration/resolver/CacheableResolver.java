@@ -32,5 +32,15 @@ public interface CacheableResolver<K, V> extends Resolver<K, V> {
      * @param <V> the type of the resolved value
      */
     @FunctionalInterface public // @api private
-    interface Ephemeral<K, V> extends Resolver<K, V> {}
+    interface Ephemeral<K, V> extends Resolver<K, V> {
+        /**
+         * Prepares a value that has been freshly resolved by a reload, before it replaces
+         * a different cached value. This is invoked on the reloading thread, <em>outside</em> of
+         * any locks held by the cache, so it may safely resolve other keys through the same cache.
+         *
+         * @param resolveKey the key that was reloaded
+         * @param value the value that is about to be published
+         */
+        default void prepare(final K resolveKey, final V value) {}
+    }
 }
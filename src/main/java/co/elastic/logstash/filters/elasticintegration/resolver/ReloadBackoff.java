@@ -0,0 +1,204 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.resolver;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link ReloadBackoff} tracks the outcomes of reloading individual cache entries, so that a
+ * {@link CacheReloader} can avoid adding load to a struggling source of truth:
+ *
+ * <ul>
+ *     <li>a key whose reload fails is not eligible to be reloaded again until an exponentially-growing,
+ *         jittered backoff has elapsed, and returns to normal cadence after its next successful reload;</li>
+ *     <li>each reload pass is limited to {@link Configuration#maxReloadsPerPass} keys, preferring
+ *         the keys that have gone the longest without a reload attempt;</li>
+ *     <li>a reload pass that fails {@link Configuration#maxFailuresPerPass} times is aborted,
+ *         and <em>all</em> keys back off until a subsequent pass is able to reload without
+ *         exhausting its failure budget.</li>
+ * </ul>
+ *
+ * @param <K> the type of the cache key
+ */
+public class ReloadBackoff<K> {
+
+    public record Configuration(long initialBackoffNanos,
+                                long maxBackoffNanos,
+                                int maxReloadsPerPass,
+                                int maxFailuresPerPass) {
+        public Configuration(final Duration initialBackoff,
+                             final Duration maxBackoff,
+                             final int maxReloadsPerPass,
+                             final int maxFailuresPerPass) {
+            this(initialBackoff.toNanos(), maxBackoff.toNanos(), maxReloadsPerPass, maxFailuresPerPass);
+        }
+
+        // reloads are scheduled every minute, and equal jitter keeps at least half of the initial backoff,
+        // so starting at twice the reload interval ensures that a failed key always skips at least one pass
+        public static final Configuration DEFAULT = new Configuration(Duration.ofMinutes(2), Duration.ofMinutes(30), 100, 5);
+    }
+
+    private final LongSupplier nanoTimeSupplier;
+    private final DoubleSupplier jitterSupplier;
+    private final Configuration configuration;
+
+    // guarded by this
+    private final Map<K, FailureState> keyStates = new HashMap<>();
+    private final FailureState passState = new FailureState();
+
+    public ReloadBackoff(final LongSupplier nanoTimeSupplier,
+                         final Configuration configuration) {
+        this(nanoTimeSupplier, () -> ThreadLocalRandom.current().nextDouble(), configuration);
+    }
+
+    ReloadBackoff(final LongSupplier nanoTimeSupplier,
+                  final DoubleSupplier jitterSupplier,
+                  final Configuration configuration) {
+        this.nanoTimeSupplier = nanoTimeSupplier;
+        this.jitterSupplier = jitterSupplier;
+        this.configuration = configuration;
+    }
+
+    public Configuration configuration() {
+        return configuration;
+    }
+
+    /**
+     * Selects the keys that are eligible to be reloaded in a new pass, forgetting the state
+     * of any keys that are no longer present.
+     *
+     * @param presentKeys the keys currently present in the cache
+     * @return an ordered and bounded list of keys to reload, which is empty while <em>all</em> keys are backing off
+     */
+    public synchronized List<K> eligibleKeys(final Collection<K> presentKeys) {
+        keyStates.keySet().retainAll(presentKeys);
+
+        final long nowNanos = nanoTimeSupplier.getAsLong();
+        if (passState.isBackingOff(nowNanos)) {
+            return List.of();
+        }
+
+        return presentKeys.stream()
+                .filter((key) -> !stateOf(key).isBackingOff(nowNanos))
+                .sorted(Comparator.comparingLong((K key) -> stateOf(key).lastAttemptNanos))
+                .limit(configuration.maxReloadsPerPass())
+                .toList();
+    }
+
+    /**
+     * @param key the key to inspect
+     * @return the number of consecutive failed reloads of the key
+     */
+    public synchronized int consecutiveFailures(final K key) {
+        return stateOf(key).consecutiveFailures;
+    }
+
+    /**
+     * @param key the key whose reload succeeded
+     * @return the number of consecutive failures that preceded this success
+     */
+    public synchronized int recordSuccess(final K key) {
+        return stateOf(key).recordSuccess(nanoTimeSupplier.getAsLong());
+    }
+
+    /**
+     * @param key the key whose reload failed
+     * @return the nanoseconds until the key becomes eligible to be reloaded again
+     */
+    public synchronized long recordFailure(final K key) {
+        return stateOf(key).recordFailure(nanoTimeSupplier.getAsLong());
+    }
+
+    /**
+     * @param failures the number of failures observed so far in the current pass
+     * @return true if the current pass should be aborted
+     */
+    public boolean isFailureBudgetExhausted(final int failures) {
+        return failures >= configuration.maxFailuresPerPass();
+    }
+
+    /**
+     * Records the outcome of a pass as a whole.
+     *
+     * @param attempted the number of reloads attempted in the pass
+     * @param failures the number of reloads that failed in the pass
+     * @return the nanoseconds until the next pass is permitted to reload anything,
+     *         which is zero unless the pass exhausted its failure budget
+     */
+    public synchronized long recordPass(final int attempted, final int failures) {
+        final long nowNanos = nanoTimeSupplier.getAsLong();
+        if (isFailureBudgetExhausted(failures)) {
+            return passState.recordFailure(nowNanos);
+        } else if (attempted > 0) {
+            passState.recordSuccess(nowNanos);
+        }
+        return 0L;
+    }
+
+    private FailureState stateOf(final K key) {
+        return keyStates.computeIfAbsent(key, (k) -> new FailureState());
+    }
+
+    private long backoffNanos(final int consecutiveFailures) {
+        long backoffNanos = configuration.initialBackoffNanos();
+        for (int i = 1; i < consecutiveFailures && backoffNanos < configuration.maxBackoffNanos(); i++) {
+            backoffNanos = backoffNanos > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : backoffNanos * 2;
+        }
+        backoffNanos = Math.min(backoffNanos, configuration.maxBackoffNanos());
+
+        // "equal jitter": keep at least half of the backoff so that retries stay meaningfully
+        // spaced, and randomize the rest so that many failing keys do not retry in lockstep.
+        final long halfBackoffNanos = backoffNanos / 2;
+        return halfBackoffNanos + (long) (jitterSupplier.getAsDouble() * (backoffNanos - halfBackoffNanos));
+    }
+
+    private class FailureState {
+        private int consecutiveFailures;
+        private long lastAttemptNanos = Long.MIN_VALUE;
+        private long eligibleAfterNanos;
+
+        boolean isBackingOff(final long nowNanos) {
+            return consecutiveFailures > 0 && nowNanos - eligibleAfterNanos < 0;
+        }
+
+        int recordSuccess(final long nowNanos) {
+            final int previousFailures = this.consecutiveFailures;
+            this.lastAttemptNanos = nowNanos;
+            this.consecutiveFailures = 0;
+            return previousFailures;
+        }
+
+        long recordFailure(final long nowNanos) {
+            this.lastAttemptNanos = nowNanos;
+            this.consecutiveFailures++;
+            final long backoffNanos = backoffNanos(this.consecutiveFailures);
+            this.eligibleAfterNanos = nowNanos + backoffNanos;
+            return backoffNanos;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        final long failingKeys = keyStates.values().stream().filter((state) -> state.consecutiveFailures > 0).count();
+        return String.format("ReloadBackoff{failingKeys=%s, consecutiveFailedPasses=%s}", failingKeys, passState.consecutiveFailures);
+    }
+
+    // visible for test
+    synchronized boolean isBackingOff(final K key) {
+        final FailureState state = keyStates.get(key);
+        return Objects.nonNull(state) && state.isBackingOff(nanoTimeSupplier.getAsLong());
+    }
+}
@@ -63,4 +63,14 @@ public interface Resolver<K, V> {
         return this.resolve(resolveKey, (e) -> {});
     }
 
+    /**
+     * Binds this resolver to a single constant key. Implementations that cache their results
+     * <em>MAY</em> override this method to provide a handle that avoids a full lookup on each use.
+     *
+     * @param resolveKey the constant key to bind to
+     * @return a {@code ResolverHandle} that resolves the provided key
+     */
+    default ResolverHandle<V> bind(K resolveKey) {
+        return (exceptionHandler) -> this.resolve(resolveKey, exceptionHandler);
+    }
 }
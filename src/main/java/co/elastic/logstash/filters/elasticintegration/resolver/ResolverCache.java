@@ -6,6 +6,8 @@
  */
 package co.elastic.logstash.filters.elasticintegration.resolver;
 
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -27,6 +29,23 @@ public interface ResolverCache<K, V> {
 
     Set<K> keys();
 
+    /**
+     * @param resolveKey the constant key to bind to
+     * @param cacheMissResolver the resolver to use when the bound key is not cached
+     * @return a {@link ResolverHandle} that resolves the provided key <em>through</em> this cache
+     */
+    default ResolverHandle<V> bind(K resolveKey,
+                                   CacheableResolver.Ephemeral<K, V> cacheMissResolver) {
+        return (exceptionHandler) -> this.resolve(resolveKey, cacheMissResolver, exceptionHandler);
+    }
+
+    /**
+     * @return the metrics of this cache, which publish nothing for caches that do not record any
+     */
+    default MetricsSource getMetrics() {
+        return (namespacedMetric) -> {};
+    }
+
     // API: internal
     void reload(final K resolveKey, CacheableResolver.Ephemeral<K, V> resolver);
 
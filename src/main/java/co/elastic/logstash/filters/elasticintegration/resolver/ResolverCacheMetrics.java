@@ -0,0 +1,152 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.resolver;
+
+import co.elastic.logstash.api.NamespacedMetric;
+import co.elastic.logstash.filters.elasticintegration.metrics.MetricsSource;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The {@link ResolverCacheMetrics} of a {@link ResolverCache} describe how effective the cache is
+ * at avoiding loads from its source of truth, how expensive those loads are, and how much work
+ * its {@link CacheReloader} performs:
+ *
+ * <ul>
+ *     <li>{@code fast_hits} are resolved without locking, while {@code slow_hits} are resolved while
+ *         holding the key's lock, typically because a concurrent load of the same key was in progress;</li>
+ *     <li>{@code misses} require a {@code load} from the source of truth, whose latency and failures are tracked;</li>
+ *     <li>{@code expirations} count entries that were evicted because they outlived their TTL;</li>
+ *     <li>each {@code reload.pass} is timed, and the outcome of each entry it reloads is counted
+ *         as {@code modified}, {@code unchanged}, {@code removed}, or {@code failed}.</li>
+ * </ul>
+ */
+public final class ResolverCacheMetrics implements MetricsSource {
+    private final IntSupplier entryCountSupplier;
+
+    private final LongAdder fastHits = new LongAdder();
+    private final LongAdder slowHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final OperationMetrics loads = new OperationMetrics();
+
+    private final OperationMetrics reloadPasses = new OperationMetrics();
+    private final LongAdder reloadsModified = new LongAdder();
+    private final LongAdder reloadsUnchanged = new LongAdder();
+    private final LongAdder reloadsRemoved = new LongAdder();
+    private final LongAdder reloadsFailed = new LongAdder();
+
+    ResolverCacheMetrics(final IntSupplier entryCountSupplier) {
+        this.entryCountSupplier = entryCountSupplier;
+    }
+
+    void recordFastHit() {
+        fastHits.increment();
+    }
+
+    void recordSlowHit() {
+        slowHits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordExpiration() {
+        expirations.increment();
+    }
+
+    void recordLoad(final long elapsedNanos, final boolean isSuccess) {
+        loads.recordDuration(elapsedNanos, isSuccess);
+    }
+
+    void recordReloadPass(final long elapsedNanos) {
+        reloadPasses.recordDuration(elapsedNanos, true);
+    }
+
+    void recordReloadModified() {
+        reloadsModified.increment();
+    }
+
+    void recordReloadUnchanged() {
+        reloadsUnchanged.increment();
+    }
+
+    void recordReloadRemoved() {
+        reloadsRemoved.increment();
+    }
+
+    void recordReloadFailed() {
+        reloadsFailed.increment();
+    }
+
+    public long fastHits() {
+        return fastHits.sum();
+    }
+
+    public long slowHits() {
+        return slowHits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long expirations() {
+        return expirations.sum();
+    }
+
+    public OperationMetrics loads() {
+        return loads;
+    }
+
+    public OperationMetrics reloadPasses() {
+        return reloadPasses;
+    }
+
+    public long reloadsModified() {
+        return reloadsModified.sum();
+    }
+
+    public long reloadsUnchanged() {
+        return reloadsUnchanged.sum();
+    }
+
+    public long reloadsRemoved() {
+        return reloadsRemoved.sum();
+    }
+
+    public long reloadsFailed() {
+        return reloadsFailed.sum();
+    }
+
+    @Override
+    public void publishTo(final NamespacedMetric namespacedMetric) {
+        namespacedMetric.gauge("entries", entryCountSupplier.getAsInt());
+        namespacedMetric.gauge("fast_hits", fastHits());
+        namespacedMetric.gauge("slow_hits", slowHits());
+        namespacedMetric.gauge("misses", misses());
+        namespacedMetric.gauge("expirations", expirations());
+        loads.publishTo(namespacedMetric.namespace("load"));
+
+        final NamespacedMetric reloadMetric = namespacedMetric.namespace("reload");
+        reloadPasses.publishTo(reloadMetric.namespace("pass"));
+        reloadMetric.gauge("modified", reloadsModified());
+        reloadMetric.gauge("unchanged", reloadsUnchanged());
+        reloadMetric.gauge("removed", reloadsRemoved());
+        reloadMetric.gauge("failed", reloadsFailed());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResolverCacheMetrics{entries=%s, fastHits=%s, slowHits=%s, misses=%s, expirations=%s, loads=%s, reloadPasses=%s, modified=%s, unchanged=%s, removed=%s, failed=%s}",
+                entryCountSupplier.getAsInt(), fastHits(), slowHits(), misses(), expirations(), loads,
+                reloadPasses, reloadsModified(), reloadsUnchanged(), reloadsRemoved(), reloadsFailed());
+    }
+}
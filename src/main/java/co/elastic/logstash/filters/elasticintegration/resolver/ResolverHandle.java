@@ -0,0 +1,38 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.resolver;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A {@link ResolverHandle} is a {@link Resolver} that has been bound to a single constant key
+ * with {@link Resolver#bind}, allowing implementations that are aware of their own caching
+ * to avoid repeated lookups of the same key.
+ *
+ * @param <V> the type of the resolved value
+ */
+@FunctionalInterface
+public interface ResolverHandle<V> {
+    /**
+     * @see Resolver#resolve(Object, Consumer)
+     *
+     * @param exceptionHandler a handler, which has the opportunity to throw
+     *                         the exception to prevent an empty value from being emitted.
+     * @return an {@code Optional} describing the resolved value
+     */
+    Optional<V> resolve(Consumer<Exception> exceptionHandler);
+
+    /**
+     * @see Resolver#resolve(Object)
+     *
+     * @return an {@code Optional} describing the resolved value
+     */
+    default Optional<V> resolve() {
+        return this.resolve((e) -> {});
+    }
+}
@@ -37,6 +37,11 @@ public class SimpleCachingResolver<K,V> implements CachingResolver<K,V> {
         return cache.resolve(resolveKey, cacheMissResolver, exceptionHandler);
     }
 
+    @Override
+    public ResolverHandle<V> bind(final K resolveKey) {
+        return cache.bind(resolveKey, cacheMissResolver);
+    }
+
     @Override
     public CacheReloader getReloader() {
         return cache.getReloader(cacheMissResolver);
@@ -6,17 +6,21 @@
  */
 package co.elastic.logstash.filters.elasticintegration.resolver;
 
+import co.elastic.logstash.filters.elasticintegration.jfr.CacheLoadEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.LongSupplier;
@@ -61,6 +65,8 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
 
     private final ConcurrentMap<K,CacheResult> persistentCache = new ConcurrentHashMap<>();
     private final SimpleMultiLock<K> loadLock = new SimpleMultiLock<>();
+    private final ConcurrentMap<K,AtomicReference<CacheResult>> bindings = new ConcurrentHashMap<>();
+    private final ResolverCacheMetrics metrics = new ResolverCacheMetrics(persistentCache::size);
 
     public SimpleResolverCache(final String type) {
         this(type, Configuration.PERMANENT);
@@ -82,31 +88,99 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
     public Optional<V> resolve(final K resolveKey,
                                final CacheableResolver.Ephemeral<K, V> cacheMissResolver,
                                final Consumer <Exception> exceptionHandler) {
+        return Optional.ofNullable(resolveCacheResult(resolveKey, cacheMissResolver, exceptionHandler))
+                .map(CacheResult::getCachedValue);
+    }
+
+    /**
+     * Binds the provided key to a {@link ResolverHandle} whose current value is <em>published</em>
+     * to it whenever the key's cache entry is loaded or reloaded, so that using the handle only
+     * requires a full lookup when the published entry is missing or has expired.
+     *
+     * @param resolveKey the constant key to bind to
+     * @param cacheMissResolver the resolver to use when the bound key is not cached
+     * @return a {@link ResolverHandle} that resolves the provided key <em>through</em> this cache
+     */
+    @Override
+    public ResolverHandle<V> bind(final K resolveKey,
+                                  final CacheableResolver.Ephemeral<K, V> cacheMissResolver) {
+        final AtomicReference<CacheResult> binding = bindings.computeIfAbsent(resolveKey, (k) -> new AtomicReference<>());
+        return (exceptionHandler) -> {
+            final CacheResult published = binding.get();
+            if (Objects.nonNull(published) && !published.isExpired()) {
+                metrics.recordFastHit();
+                LOGGER.trace(() -> String.format("cached-hit(%s:bound){ %s -> %s }", type, resolveKey, published.getCachedValue()));
+                return Optional.ofNullable(published.getCachedValue());
+            }
+            final CacheResult cacheResult = resolveCacheResult(resolveKey, cacheMissResolver, exceptionHandler);
+            if (Objects.nonNull(cacheResult)) {
+                // only publish when a concurrent load or reload has not already done so
+                binding.compareAndSet(published, cacheResult);
+            }
+            return Optional.ofNullable(cacheResult).map(CacheResult::getCachedValue);
+        };
+    }
+
+    private CacheResult resolveCacheResult(final K resolveKey,
+                                           final CacheableResolver.Ephemeral<K, V> cacheMissResolver,
+                                           final Consumer <Exception> exceptionHandler) {
         final CacheResult cacheResult = pruningFastResolveFromCache(resolveKey);
         if (Objects.nonNull(cacheResult)) {
+            metrics.recordFastHit();
             LOGGER.trace(() -> String.format("cached-hit(%s:fast){ %s -> %s }", type, resolveKey, cacheResult.getCachedValue()));
-            return Optional.ofNullable(cacheResult.getCachedValue());
+            return cacheResult;
         }
-        return Optional.ofNullable(persistentCache.compute(resolveKey, (rKey, existing) -> {
+        return publishingCompute(resolveKey, (rKey, existing) -> {
             if (Objects.nonNull(existing) && !existing.isExpired()) {
+                metrics.recordSlowHit();
                 LOGGER.trace(() -> String.format("cached-hit(%s:slow){ %s -> %s }", type, resolveKey, existing.getCachedValue()));
                 return existing;
             }
+            metrics.recordMiss();
             return loadLock.withLock(resolveKey, () -> {
+                final CacheLoadEvent cacheLoadEvent = new CacheLoadEvent();
+                cacheLoadEvent.begin();
+                final long loadStartNanos = nanoTimeSupplier.getAsLong();
+                final boolean[] loadFailed = new boolean[1];
+                String outcome = "failure";
                 try {
-                    final CacheResult retrieved = doGet(rKey, cacheMissResolver, exceptionHandler);
+                    final CacheResult retrieved = doGet(rKey, cacheMissResolver, (e) -> {
+                        loadFailed[0] = true;
+                        exceptionHandler.accept(e);
+                    });
+                    metrics.recordLoad(nanoTimeSupplier.getAsLong() - loadStartNanos, !loadFailed[0]);
+                    outcome = loadFailed[0] ? "failure" : (retrieved.isHit() ? "hit" : "miss");
                     LOGGER.trace(() -> String.format("uncached-load(%s){ %s -> %s }", type, resolveKey, retrieved.getCachedValue()));
                     return (retrieved.isHit() || !retrieved.isExpired()) ? retrieved : null;
                 } catch (Exception e) {
+                    metrics.recordLoad(nanoTimeSupplier.getAsLong() - loadStartNanos, false);
                     LOGGER.debug(() -> String.format("uncached-load-exception(%s){ %s !> %s }", type, resolveKey, e.getMessage()), e);
                     throw e;
+                } finally {
+                    cacheLoadEvent.end();
+                    if (cacheLoadEvent.shouldCommit()) {
+                        cacheLoadEvent.cacheType = type;
+                        cacheLoadEvent.key = String.valueOf(resolveKey);
+                        cacheLoadEvent.outcome = outcome;
+                        cacheLoadEvent.commit();
+                    }
                 }
             });
-        })).map(CacheResult::getCachedValue);
+        });
     }
 
     public CacheReloader getReloader(final CacheableResolver.Ephemeral<K,V> innerResolver) {
-        return new Reloader(innerResolver);
+        return getReloader(innerResolver, ReloadBackoff.Configuration.DEFAULT);
+    }
+
+    public CacheReloader getReloader(final CacheableResolver.Ephemeral<K,V> innerResolver,
+                                     final ReloadBackoff.Configuration backoffConfiguration) {
+        return new Reloader(innerResolver, new ReloadBackoff<>(nanoTimeSupplier, backoffConfiguration));
+    }
+
+    @Override
+    public ResolverCacheMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
@@ -117,6 +191,7 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
     @Override
     public void clear() {
         persistentCache.clear();
+        bindings.values().forEach((binding) -> binding.set(null));
     }
 
     @Override
@@ -127,6 +202,19 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
     @Override
     public void reload(final K resolveKey,
                        final CacheableResolver.Ephemeral<K, V> resolver) {
+        reload(resolveKey, resolver, false);
+    }
+
+    /**
+     * @param resolveKey the key to reload
+     * @param resolver the resolver to reload the key's value with
+     * @param isRepeatedFailure when true, a failure is logged without its stack trace because
+     *                          the preceding reload of the same key already logged one
+     * @return false if the reload failed, leaving the cached entry unmodified
+     */
+    private boolean reload(final K resolveKey,
+                           final CacheableResolver.Ephemeral<K, V> resolver,
+                           final boolean isRepeatedFailure) {
         final CacheResult initialCacheResult = pruningFastResolveFromCache(resolveKey);
         if (Objects.isNull(initialCacheResult)) {
             LOGGER.warn(() -> String.format("reload-gone(%s) { %s } the entry disappeared from the cache", type, resolveKey));
@@ -139,7 +227,7 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
 
         final Exception resolveException = exceptionHolder[0];
         if (Objects.nonNull(resolveException)) {
-            LOGGER.warn(() -> {
+            final Supplier<String> failureMessage = () -> {
                 if (Objects.nonNull(initialCacheResult)) {
                     final String ttlRemainingDesc = humanReadableDuration(initialCacheResult.getRemainingNanos());
                     final String cachedResultDesc = initialCacheResult.isHit() ? "non-empty value" : "empty value";
@@ -149,22 +237,39 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
                 } else {
                     return String.format("reload-failure(%s) { %s } there is no existing cached value", type, resolveKey);
                 }
-            }, resolveException);
-            return;
+            };
+            metrics.recordReloadFailed();
+            if (isRepeatedFailure) {
+                LOGGER.warn(() -> String.format("%s (%s)", failureMessage.get(), resolveException.getMessage()));
+                LOGGER.debug(failureMessage::get, resolveException);
+            } else {
+                LOGGER.warn(failureMessage::get, resolveException);
+            }
+            return false;
         }
 
-        persistentCache.compute(resolveKey, (k, currentCacheResult) -> {
+        resolveResult.ifPresent((resolvedValue) -> {
+            final CacheResult currentCacheResult = persistentCache.get(resolveKey);
+            if (Objects.isNull(currentCacheResult) || !Objects.equals(resolvedValue, currentCacheResult.getCachedValue())) {
+                resolver.prepare(resolveKey, resolvedValue);
+            }
+        });
+
+        publishingCompute(resolveKey, (k, currentCacheResult) -> {
             if (Objects.nonNull(currentCacheResult)
                     && currentCacheResult.isHit()
                     && resolveResult.isPresent()
                     && Objects.equals(resolveResult.get(), currentCacheResult.getCachedValue())) {
+                metrics.recordReloadUnchanged();
                 LOGGER.debug(() -> String.format("reload-unchanged(%s) { %s }", type, resolveKey));
                 // when unchanged, we return new cache entry containing old value
                 return new CacheHit(currentCacheResult.getCachedValue());
             } else if (resolveResult.isPresent()) {
+                metrics.recordReloadModified();
                 LOGGER.info(() -> String.format("reload-modified(%s) { %s }", type, resolveKey));
                 return new CacheHit(resolveResult.get());
             } else if (Objects.nonNull(currentCacheResult) && currentCacheResult.isHit()) {
+                metrics.recordReloadRemoved();
                 LOGGER.info(() -> String.format("reload-removed(%s) { %s }", type, resolveKey));
                 return new CacheMiss();
             } else {
@@ -172,6 +277,23 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
                 return currentCacheResult;
             }
         });
+        return true;
+    }
+
+    /**
+     * Computes a new cache result for the given key as {@link ConcurrentMap#compute}, publishing
+     * the result to any {@link #bind bound} handle while the key's entry is still locked.
+     */
+    private CacheResult publishingCompute(final K resolveKey,
+                                          final BiFunction<K, CacheResult, CacheResult> remappingFunction) {
+        return persistentCache.compute(resolveKey, (k, existing) -> {
+            final CacheResult computed = remappingFunction.apply(k, existing);
+            final AtomicReference<CacheResult> binding = bindings.get(k);
+            if (Objects.nonNull(binding)) {
+                binding.set(computed);
+            }
+            return computed;
+        });
     }
 
     /**
@@ -184,6 +306,7 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
         CacheResult cacheResult = persistentCache.get(resolveKey);
         if (Objects.nonNull(cacheResult) && cacheResult.isExpired()) {
             if (persistentCache.remove(resolveKey, cacheResult)) {
+                metrics.recordExpiration();
                 LOGGER.debug(() -> String.format("expired(%s) { %s }", type, resolveKey));
             }
             cacheResult = null;
@@ -311,11 +434,26 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
         }
     }
 
+    /**
+     * A {@link Reloader} reloads the entries of its cache, backing off from keys whose reloads
+     * are failing and from the cache as a whole when a pass exhausts its failure budget.
+     * A cache's reloads are performed serially by its single {@link CacheReloadService} thread,
+     * so each pass sends at most one request at a time to the source of truth.
+     *
+     * @see ReloadBackoff
+     */
     class Reloader implements CacheReloader {
         private final CacheableResolver.Ephemeral<K,V> innerResolver;
+        private final ReloadBackoff<K> backoff;
 
         public Reloader(CacheableResolver.Ephemeral<K, V> innerResolver) {
+            this(innerResolver, new ReloadBackoff<>(nanoTimeSupplier, ReloadBackoff.Configuration.DEFAULT));
+        }
+
+        Reloader(final CacheableResolver.Ephemeral<K, V> innerResolver,
+                 final ReloadBackoff<K> backoff) {
             this.innerResolver = innerResolver;
+            this.backoff = backoff;
         }
 
         @Override
@@ -325,11 +463,60 @@ public class SimpleResolverCache<K, V> implements ResolverCache<K, V> {
 
         @Override
         public void reloadOnce() {
-            persistentCache.keySet().forEach(this::reloadSingleEntry);
+            final long passStartNanos = nanoTimeSupplier.getAsLong();
+            try {
+                doReloadOnce();
+            } finally {
+                metrics.recordReloadPass(nanoTimeSupplier.getAsLong() - passStartNanos);
+            }
         }
 
-        private void reloadSingleEntry(final K resolveKey) {
-            SimpleResolverCache.this.reload(resolveKey, this.innerResolver);
+        private void doReloadOnce() {
+            final Set<K> presentKeys = Set.copyOf(persistentCache.keySet());
+            final List<K> eligibleKeys = backoff.eligibleKeys(presentKeys);
+            if (eligibleKeys.isEmpty()) {
+                if (!presentKeys.isEmpty()) {
+                    LOGGER.debug(() -> String.format("reload-skipped(%s) all %s entries are backing off (%s)", type, presentKeys.size(), backoff));
+                }
+                return;
+            }
+
+            int attempted = 0;
+            int failures = 0;
+            for (K resolveKey : eligibleKeys) {
+                attempted++;
+                if (!reloadSingleEntry(resolveKey)) {
+                    failures++;
+                    if (backoff.isFailureBudgetExhausted(failures)) {
+                        break;
+                    }
+                }
+            }
+
+            final int deferred = presentKeys.size() - attempted;
+            final long passBackoffNanos = backoff.recordPass(attempted, failures);
+            if (passBackoffNanos > 0) {
+                final int passFailures = failures;
+                LOGGER.warn(() -> String.format("reload-aborted(%s) %s of %s attempted reloads failed; reloading of all %s entries will resume in ~%s",
+                        type, passFailures, eligibleKeys.size(), presentKeys.size(), humanReadableDuration(passBackoffNanos)));
+            } else if (deferred > 0) {
+                LOGGER.debug(() -> String.format("reload-deferred(%s) %s of %s entries were not reloaded in this pass", type, deferred, presentKeys.size()));
+            }
+        }
+
+        private boolean reloadSingleEntry(final K resolveKey) {
+            final int previousFailures = backoff.consecutiveFailures(resolveKey);
+            final boolean reloaded = SimpleResolverCache.this.reload(resolveKey, this.innerResolver, previousFailures > 0);
+            if (reloaded) {
+                if (backoff.recordSuccess(resolveKey) > 0) {
+                    LOGGER.info(() -> String.format("reload-recovered(%s) { %s } after %s consecutive failures", type, resolveKey, previousFailures));
+                }
+            } else {
+                final long backoffNanos = backoff.recordFailure(resolveKey);
+                LOGGER.debug(() -> String.format("reload-backoff(%s) { %s } %s consecutive failures; next attempt in ~%s",
+                        type, resolveKey, previousFailures + 1, humanReadableDuration(backoffNanos)));
+            }
+            return reloaded;
         }
     }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A {@link CircuitBreaker} guards calls to a remote dependency, tracking the failure rate of
+ * its most-recent calls and <em>failing fast</em> with an {@link OpenException} while that
+ * failure rate is above the configured threshold.
+ *
+ * <ul>
+ *     <li>{@link State#CLOSED}: calls are permitted and their outcomes are recorded in a sliding window;
+ *         when the window holds at least {@link Configuration#minimumCalls} outcomes and the ratio of
+ *         failures reaches {@link Configuration#failureRateThreshold}, the breaker opens.</li>
+ *     <li>{@link State#OPEN}: calls are rejected without being attempted until
+ *         {@link Configuration#openDuration} has elapsed, after which the breaker is half-open.</li>
+ *     <li>{@link State#HALF_OPEN}: up to {@link Configuration#halfOpenProbes} calls are permitted as probes
+ *         and all others are rejected; the breaker closes once every probe succeeds, or re-opens on
+ *         the first failed probe.</li>
+ * </ul>
+ *
+ * <p>Only the outcomes of calls that were permitted in the breaker's current state are recorded, so
+ * that a late result from a call that was permitted before the breaker opened cannot close it
+ * while it is half-open.</p>
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public record Configuration(int slidingWindowSize,
+                                int minimumCalls,
+                                double failureRateThreshold,
+                                long openDurationNanos,
+                                int halfOpenProbes) {
+        public Configuration {
+            if (slidingWindowSize < 1) { throw new IllegalArgumentException("slidingWindowSize must be positive"); }
+            if (minimumCalls < 1 || minimumCalls > slidingWindowSize) { throw new IllegalArgumentException("minimumCalls must be between 1 and slidingWindowSize"); }
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1) { throw new IllegalArgumentException("failureRateThreshold must be in (0,1]"); }
+            if (halfOpenProbes < 1) { throw new IllegalArgumentException("halfOpenProbes must be positive"); }
+        }
+
+        public Configuration(final int slidingWindowSize,
+                             final int minimumCalls,
+                             final double failureRateThreshold,
+                             final Duration openDuration,
+                             final int halfOpenProbes) {
+            this(slidingWindowSize, minimumCalls, failureRateThreshold, openDuration.toNanos(), halfOpenProbes);
+        }
+
+        public static final Configuration DEFAULT = new Configuration(20, 10, 0.5, Duration.ofSeconds(30), 1);
+    }
+
+    /**
+     * An {@link Action} is a call to be guarded by a {@link CircuitBreaker}.
+     *
+     * @param <T> the type of the result
+     * @param <E> the type of checked exception that the action may throw
+     */
+    @FunctionalInterface
+    public interface Action<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * An {@link OpenException} is thrown in place of performing a call while a {@link CircuitBreaker} is open.
+     * It does not capture a stack trace, so that rejecting a call remains cheap.
+     */
+    public static class OpenException extends RuntimeException {
+        OpenException(final String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(CircuitBreaker.class);
+
+    private final String name;
+    private final Configuration configuration;
+    private final LongSupplier nanoTimeSupplier;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAtNanos;
+
+    // guarded by this
+    private final boolean[] outcomeWindow;
+    private int outcomeWindowCursor;
+    private int outcomeCount;
+    private int failureCount;
+    private int halfOpenPermitsIssued;
+    private int halfOpenSuccesses;
+    // incremented on each transition, so that outcomes can be attributed to the state that permitted their calls
+    private long generation;
+
+    public CircuitBreaker(final String name, final Configuration configuration) {
+        this(System::nanoTime, name, configuration);
+    }
+
+    CircuitBreaker(final LongSupplier nanoTimeSupplier,
+                   final String name,
+                   final Configuration configuration) {
+        this.nanoTimeSupplier = nanoTimeSupplier;
+        this.name = name;
+        this.configuration = configuration;
+        this.outcomeWindow = new boolean[configuration.slidingWindowSize()];
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Performs the provided action if this breaker permits it, recording its outcome.
+     *
+     * @param action the action to perform
+     * @param isFailure determines whether an exception thrown by the action counts as a failure
+     *                  of the guarded dependency (as opposed to a well-formed negative response);
+     *                  an {@link Error} thrown by the action always counts as a failure
+     * @return the result of the action
+     * @param <T> the type of the result
+     * @param <E> the type of checked exception that the action may throw
+     * @throws E when the action throws
+     * @throws OpenException when this breaker rejects the call
+     */
+    public <T, E extends Exception> T execute(final Action<T, E> action,
+                                              final Predicate<Exception> isFailure) throws E {
+        final long permitGeneration = acquirePermission();
+        final T result;
+        try {
+            result = action.call();
+        } catch (Exception e) {
+            if (isFailure.test(e)) {
+                onFailure(permitGeneration);
+            } else {
+                onSuccess(permitGeneration);
+            }
+            throw e;
+        } catch (Error e) {
+            // an error must still record an outcome, or a half-open probe's permit is never returned
+            onFailure(permitGeneration);
+            throw e;
+        }
+        onSuccess(permitGeneration);
+        return result;
+    }
+
+    /**
+     * @return the generation of the state in which the call was permitted
+     */
+    private long acquirePermission() {
+        // lock-free rejection while open keeps fail-fast cheap under contention
+        if (state == State.OPEN && !isOpenDurationElapsed()) {
+            throw rejection();
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (!isOpenDurationElapsed()) {
+                    throw rejection();
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermitsIssued >= configuration.halfOpenProbes()) {
+                    throw rejection();
+                }
+                halfOpenPermitsIssued++;
+            }
+            return generation;
+        }
+    }
+
+    private synchronized void onSuccess(final long permitGeneration) {
+        if (permitGeneration != generation) {
+            // a late result from a call that was permitted before the most recent transition
+            return;
+        }
+        switch (state) {
+            case CLOSED -> recordOutcome(false);
+            case HALF_OPEN -> {
+                halfOpenSuccesses++;
+                if (halfOpenSuccesses >= configuration.halfOpenProbes()) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case OPEN -> { /* no calls are permitted while open */ }
+        }
+    }
+
+    private synchronized void onFailure(final long permitGeneration) {
+        if (permitGeneration != generation) {
+            // a late result from a call that was permitted before the most recent transition
+            return;
+        }
+        switch (state) {
+            case CLOSED -> {
+                recordOutcome(true);
+                if (outcomeCount >= configuration.minimumCalls()
+                        && ((double) failureCount / outcomeCount) >= configuration.failureRateThreshold()) {
+                    transitionTo(State.OPEN);
+                }
+            }
+            case HALF_OPEN -> transitionTo(State.OPEN);
+            case OPEN -> { /* no calls are permitted while open */ }
+        }
+    }
+
+    private void recordOutcome(final boolean failure) {
+        if (outcomeCount == outcomeWindow.length) {
+            if (outcomeWindow[outcomeWindowCursor]) {
+                failureCount--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomeWindow[outcomeWindowCursor] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        outcomeWindowCursor = (outcomeWindowCursor + 1) % outcomeWindow.length;
+    }
+
+    private void transitionTo(final State newState) {
+        final State previousState = this.state;
+        switch (newState) {
+            case OPEN -> {
+                openedAtNanos = nanoTimeSupplier.getAsLong();
+                LOGGER.warn(() -> String.format("circuit-breaker(%s) %s -> OPEN; calls will fail fast for the next %s",
+                        name, previousState, Duration.ofNanos(configuration.openDurationNanos())));
+            }
+            case HALF_OPEN -> {
+                halfOpenPermitsIssued = 0;
+                halfOpenSuccesses = 0;
+                LOGGER.info(() -> String.format("circuit-breaker(%s) %s -> HALF_OPEN; probing with up to %s calls",
+                        name, previousState, configuration.halfOpenProbes()));
+            }
+            case CLOSED -> {
+                outcomeWindowCursor = 0;
+                outcomeCount = 0;
+                failureCount = 0;
+                LOGGER.info(() -> String.format("circuit-breaker(%s) %s -> CLOSED", name, previousState));
+            }
+        }
+        this.generation++;
+        this.state = newState;
+    }
+
+    private boolean isOpenDurationElapsed() {
+        return nanoTimeSupplier.getAsLong() - openedAtNanos >= configuration.openDurationNanos();
+    }
+
+    private OpenException rejection() {
+        return new OpenException(String.format("circuit-breaker(%s) is %s; call rejected", name, state));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitBreaker{name=%s, state=%s}", name, state);
+    }
+}
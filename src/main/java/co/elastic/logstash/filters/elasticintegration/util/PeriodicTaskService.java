@@ -0,0 +1,113 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.util;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Service;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A {@link PeriodicTaskService} is a service that runs a single task on a schedule, on a thread of its own.
+ *
+ * <p>An exception that escapes the task is logged and the next scheduled run proceeds normally,
+ * since an exception escaping an iteration of an {@link AbstractScheduledService} would permanently
+ * fail it.</p>
+ */
+public final class PeriodicTaskService extends AbstractScheduledService {
+
+    private static final Logger LOGGER = LogManager.getLogger(PeriodicTaskService.class);
+
+    /**
+     * Creates a new periodic task service, wholly managing the lifecycle of the internal
+     * scheduled executor service to ensure that it is shut down when this service is terminated
+     * or transitions into a failed state.
+     *
+     * @param pluginContext the context of the plugin that the task is run for
+     * @param purpose the purpose of the task, which is included in its thread's name and in its log entries
+     * @param scheduler the schedule on which to run the task
+     * @param task the task to run
+     * @param runOnShutDown whether the task is run one last time when the service is stopped
+     * @return a new, unstarted service
+     */
+    public static PeriodicTaskService newManaged(final PluginContext pluginContext,
+                                                 final String purpose,
+                                                 final Scheduler scheduler,
+                                                 final Runnable task,
+                                                 final boolean runOnShutDown) {
+        final ScheduledExecutorService executor = pluginContext.newSingleThreadScheduledExecutor(purpose);
+
+        final PeriodicTaskService periodicTaskService = new PeriodicTaskService(purpose, scheduler, task, runOnShutDown, executor);
+        periodicTaskService.addListener(new Service.Listener() {
+            public void terminated(Service.State from) {
+                executor.shutdown();
+            }
+
+            public void failed(Service.State from, Throwable failure) {
+                executor.shutdown();
+            }
+        }, MoreExecutors.directExecutor());
+
+        return periodicTaskService;
+    }
+
+    private final String purpose;
+    private final Scheduler scheduler;
+    private final Runnable task;
+    private final boolean runOnShutDown;
+    private final ScheduledExecutorService executor;
+
+    private PeriodicTaskService(final String purpose,
+                                final Scheduler scheduler,
+                                final Runnable task,
+                                final boolean runOnShutDown,
+                                final ScheduledExecutorService executor) {
+        this.purpose = purpose;
+        this.scheduler = scheduler;
+        this.task = task;
+        this.runOnShutDown = runOnShutDown;
+        this.executor = executor;
+    }
+
+    @Override
+    protected void runOneIteration() {
+        runTask();
+    }
+
+    @Override
+    protected void shutDown() {
+        if (runOnShutDown) {
+            runTask();
+        }
+    }
+
+    private void runTask() {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOGGER.warn(() -> String.format("periodic-task-failure(%s) %s", purpose, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return scheduler;
+    }
+
+    @Override
+    protected ScheduledExecutorService executor() {
+        return executor;
+    }
+
+    @Override
+    protected String serviceName() {
+        return String.format("PeriodicTaskService(%s)", purpose);
+    }
+}
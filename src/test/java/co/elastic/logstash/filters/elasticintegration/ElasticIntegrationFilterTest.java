@@ -0,0 +1,105 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.filters.elasticintegration.geoip.IpDatabaseOptions;
+import org.junit.jupiter.api.Test;
+import org.logstash.plugins.ConfigurationImpl;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ElasticIntegrationFilterTest {
+
+    @Test
+    void hostsWithoutSchemeAreNormalizedForSsl() {
+        final PluginConfiguration pluginConfiguration = extract(Map.of(
+                "hosts", List.of("127.0.0.1", "es.example.com:9201"),
+                "api_key", "abc123"));
+
+        assertThat(pluginConfiguration.sslEnabled().orElseThrow(), is(true));
+        assertThat(pluginConfiguration.sslVerificationMode().orElseThrow(), is(equalTo("full")));
+        assertThat(pluginConfiguration.hosts().orElseThrow().stream().map(URL::toString).toList(),
+                is(equalTo(List.of("https://127.0.0.1:9200/", "https://es.example.com:9201/"))));
+        assertThat(pluginConfiguration.warmupTimeout().orElseThrow(), is(equalTo(Duration.ofSeconds(60))));
+    }
+
+    @Test
+    void httpHostsDisableSsl() {
+        final PluginConfiguration pluginConfiguration = extract(Map.of(
+                "hosts", List.of("http://localhost/proxied", "http://otherhost:9201/proxied")));
+
+        assertThat(pluginConfiguration.sslEnabled().orElseThrow(), is(false));
+        assertThat(pluginConfiguration.hosts().orElseThrow().stream().map(URL::toString).toList(),
+                is(equalTo(List.of("http://localhost:9200/proxied", "http://otherhost:9201/proxied"))));
+    }
+
+    @Test
+    void invalidConfigurationsAreRejected() {
+        assertRejected(Map.of(), "Either `hosts` or `cloud_id` is required");
+        assertRejected(Map.of("hosts", List.of("localhost"), "cloud_id", "my-cloud:abc"), "`hosts` and `cloud_id` cannot be used together.");
+        assertRejected(Map.of("hosts", List.of("http://one", "https://two")), "mixed protocols");
+        assertRejected(Map.of("hosts", List.of("one/a", "two/b")), "All hosts must use same path.");
+        assertRejected(Map.of("hosts", List.of("https://localhost"), "ssl_enabled", false), "All hosts must agree with http schema when NOT using `ssl_enabled`.");
+        assertRejected(Map.of("hosts", List.of("http://localhost"), "ssl_verification_mode", "none"), "When SSL is disabled, the following provided parameters are not allowed: [ssl_verification_mode]");
+        assertRejected(Map.of("hosts", List.of("localhost"), "ssl_verification_mode", "sometimes"), "`ssl_verification_mode` must be one of");
+        assertRejected(Map.of("hosts", List.of("localhost"), "ssl_key_passphrase", "secret"), "`ssl_key_passphrase` is not allowed unless `ssl_key` is specified");
+        assertRejected(Map.of("hosts", List.of("localhost"), "username", "elastic"), "`username` requires `password`");
+        assertRejected(Map.of("hosts", List.of("localhost"), "username", "elastic", "password", "changeme", "api_key", "abc123"),
+                "Multiple authentication [api_key, password] options cannot be used together.");
+        assertRejected(Map.of("hosts", List.of("localhost"), "api_key", ""), "Empty `api_key` is not allowed");
+        assertRejected(Map.of("hosts", List.of("localhost"), "warmup_timeout", 0L), "`warmup_timeout` must be a positive number of seconds");
+        assertRejected(Map.of("hosts", List.of("localhost"), "warmup_document", Map.of()), "Empty `warmup_document` is not allowed");
+        assertRejected(Map.of("hosts", List.of("localhost"), "slowlog_max_event_length", -1L), "`slowlog_max_event_length` must be a non-negative integer");
+        assertRejected(Map.of("hosts", List.of("localhost"), "slowlog_threshold", 0.0000001), "`slowlog_threshold` must be 0 or at least 1 microsecond");
+    }
+
+    @Test
+    void subMillisecondSlowlogThresholdsArePreserved() {
+        final PluginConfiguration pluginConfiguration = extract(Map.of(
+                "hosts", List.of("localhost"),
+                "slowlog_threshold", 0.0005));
+
+        assertThat(pluginConfiguration.slowlogThreshold().orElseThrow(), is(equalTo(Duration.ofNanos(500_000))));
+    }
+
+    @Test
+    void geoipDatabaseOptionsAreExtracted() {
+        assertThat(ElasticIntegrationFilter.extractGeoipDatabaseOptions(new ConfigurationImpl(Map.of())), is(equalTo(IpDatabaseOptions.DEFAULT)));
+        assertThat(ElasticIntegrationFilter.extractGeoipDatabaseOptions(new ConfigurationImpl(Map.of(
+                        "geoip_lookup_cache_size", 1000L,
+                        "geoip_database_file_mode", "heap",
+                        "geoip_node_cache_size", 0L,
+                        "geoip_empty_range_index_size", 64L))),
+                is(equalTo(new IpDatabaseOptions(1000, 0, IpDatabaseOptions.FileMode.HEAP, 64))));
+
+        final IllegalArgumentException fileModeException = assertThrows(IllegalArgumentException.class,
+                () -> ElasticIntegrationFilter.extractGeoipDatabaseOptions(new ConfigurationImpl(Map.of("geoip_database_file_mode", "disk"))));
+        assertThat(fileModeException.getMessage(), containsString("`geoip_database_file_mode` must be one of [memory_mapped, heap]"));
+
+        final IllegalArgumentException sizeException = assertThrows(IllegalArgumentException.class,
+                () -> ElasticIntegrationFilter.extractGeoipDatabaseOptions(new ConfigurationImpl(Map.of("geoip_lookup_cache_size", -1L))));
+        assertThat(sizeException.getMessage(), containsString("`geoip_lookup_cache_size` must be a non-negative integer"));
+    }
+
+    private static PluginConfiguration extract(final Map<String, Object> config) {
+        return ElasticIntegrationFilter.extractPluginConfiguration("elastic-integration-test", new ConfigurationImpl(config));
+    }
+
+    private static void assertRejected(final Map<String, Object> config, final String expectedMessage) {
+        final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> extract(config));
+        assertThat(exception.getMessage(), containsString(expectedMessage));
+    }
+}
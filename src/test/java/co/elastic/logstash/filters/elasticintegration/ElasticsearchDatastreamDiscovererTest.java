@@ -0,0 +1,63 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static co.elastic.logstash.filters.elasticintegration.util.ResourcesUtil.readResource;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ElasticsearchDatastreamDiscovererTest {
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort()).build();
+
+    @Test void discoversDatastreamsFromIndexTemplates() throws Exception {
+        withWiremockBackedDiscoverer((discoverer) -> {
+            wireMock.stubFor(get(urlPathMatching("/_index_template/logs-(\\*|%2A)"))
+                    .willReturn(okJson(getMockResponseBody("get-index-template-(logs-*).json"))));
+            wireMock.stubFor(get(urlPathMatching("/_index_template/metrics-(\\*|%2A)"))
+                    .willReturn(aResponse().withStatus(404)));
+
+            assertThat(discoverer.discoverIndexNames(), contains("logs-nginx.access-default"));
+        });
+    }
+
+    @Test void datastreamNameFromIndexPattern() {
+        assertThat(ElasticsearchDatastreamDiscoverer.datastreamName("logs-nginx.access-*"), is(equalTo("logs-nginx.access-default")));
+        assertThat(ElasticsearchDatastreamDiscoverer.datastreamName("metrics-system.cpu-*"), is(equalTo("metrics-system.cpu-default")));
+        assertThat(ElasticsearchDatastreamDiscoverer.datastreamName("logs-*-*"), is(nullValue()));
+        assertThat(ElasticsearchDatastreamDiscoverer.datastreamName("logs-*"), is(nullValue()));
+        assertThat(ElasticsearchDatastreamDiscoverer.datastreamName("logs-nginx.access-production"), is(nullValue()));
+    }
+
+    @FunctionalInterface
+    private interface DiscovererHandler {
+        void accept(ElasticsearchDatastreamDiscoverer discoverer) throws Exception;
+    }
+
+    private void withWiremockBackedDiscoverer(final DiscovererHandler handler) throws Exception {
+        final URL wiremockElasticsearch = new URL("http", "127.0.0.1", wireMock.getRuntimeInfo().getHttpPort(), "/");
+        try (RestClient restClient = ElasticsearchRestClientBuilder.forURLs(Collections.singletonList(wiremockElasticsearch)).build()) {
+            handler.accept(new ElasticsearchDatastreamDiscoverer(ElasticsearchRequestExecutor.direct(restClient)));
+        }
+    }
+
+    static String getMockResponseBody(final String name) {
+        return readResource(ElasticsearchRestClientWireMockTest.class, Path.of("elasticsearch-mock-responses", name).toString());
+    }
+}
@@ -111,6 +111,50 @@ class ElasticsearchPipelineConfigurationResolverTest {
         });
     }
 
+    @Test
+    void testLoadManyConfigurations() throws Exception {
+        withPipelineConfigurationResolver((resolver) -> {
+            wireMock.stubFor(get("/_ingest/pipeline/my-pipeline-id,special%20char%20pipeline,where-are-you")
+                    .willReturn(okJson(getMockResponseBody("get-ingest-pipeline-(my-pipeline-id,special char pipeline).json"))));
+
+            final AtomicReference<Exception> lastException = new AtomicReference<>();
+            final Map<String, PipelineConfigurationBridge> resolvedPipelineConfigurations = resolver.resolveAll(List.of("my-pipeline-id", "special char pipeline", "where-are-you"), lastException::set);
+            assertThat(lastException.get(), is(nullValue()));
+            assertThat(resolvedPipelineConfigurations.keySet(), containsInAnyOrder("my-pipeline-id", "special char pipeline"));
+            resolvedPipelineConfigurations.values().forEach(pipelineConfiguration -> {
+                assertThat(pipelineConfiguration.getConfig(), is(equalTo(EXPECTED_MY_PIPELINE_ID_CONFIG_MAP)));
+            });
+        });
+    }
+
+    @Test
+    void testLoadManyConfigurationsNoneFound() throws Exception {
+        withPipelineConfigurationResolver((resolver) -> {
+            wireMock.stubFor(get("/_ingest/pipeline/where-are-you,who-are-you")
+                    .willReturn(aResponse().withStatus(404)));
+
+            final AtomicReference<Exception> lastException = new AtomicReference<>();
+            final Map<String, PipelineConfigurationBridge> resolvedPipelineConfigurations = resolver.resolveAll(List.of("where-are-you", "who-are-you"), lastException::set);
+            assertThat(lastException.get(), is(nullValue())); // not found is not an exception
+            assertThat(resolvedPipelineConfigurations, is(anEmptyMap()));
+        });
+    }
+
+    @Test
+    void testLoadManyConfigurationsIgnoresPipelinesThatWereNotRequested() throws Exception {
+        withPipelineConfigurationResolver((resolver) -> {
+            // a wildcard name is resolved on its own, and what it matches is not what was asked for
+            wireMock.stubFor(get("/_ingest/pipeline/special*")
+                    .willReturn(okJson(getMockResponseBody("get-ingest-pipeline-(special char pipeline).json"))));
+            wireMock.stubFor(get("/_ingest/pipeline/my-pipeline-id")
+                    .willReturn(okJson(getMockResponseBody("get-ingest-pipeline-(my-pipeline-id,special char pipeline).json"))));
+
+            final AtomicReference<Exception> lastException = new AtomicReference<>();
+            final Map<String, PipelineConfigurationBridge> resolvedPipelineConfigurations = resolver.resolveAll(List.of("my-pipeline-id", "special*"), lastException::set);
+            assertThat(lastException.get(), is(nullValue()));
+            assertThat(resolvedPipelineConfigurations.keySet(), contains("my-pipeline-id"));
+        });
+    }
 
     private void withWiremockElasticsearch(final Consumer<RestClient> handler) throws Exception{
         final URL wiremockElasticsearch = new URL("http", "127.0.0.1", wireMock.getRuntimeInfo().getHttpPort(),"/");
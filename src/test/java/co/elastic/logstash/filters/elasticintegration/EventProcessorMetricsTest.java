@@ -0,0 +1,110 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.filters.elasticintegration.EventProcessorMetrics.Stage;
+import co.elastic.logstash.filters.elasticintegration.metrics.LatencyHistogram;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static co.elastic.logstash.filters.elasticintegration.SmokeTest.getPreparedPipelinesResourcePath;
+import static co.elastic.logstash.filters.elasticintegration.SmokeTest.newEvent;
+import static co.elastic.logstash.filters.elasticintegration.SmokeTest.withEventProcessor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class EventProcessorMetricsTest {
+
+    @Test
+    void pipelineCardinalityIsBounded() {
+        final EventProcessorMetrics metrics = new EventProcessorMetrics(2);
+
+        final OperationMetrics first = metrics.pipeline("first");
+        final OperationMetrics second = metrics.pipeline("second");
+        final OperationMetrics third = metrics.pipeline("third");
+        final OperationMetrics fourth = metrics.pipeline("fourth");
+
+        assertAll(() -> {
+            assertThat(metrics.pipeline("first"), is(sameInstance(first)));
+            assertThat(metrics.pipeline("second"), is(sameInstance(second)));
+            assertThat(second, is(not(sameInstance(first))));
+
+            assertThat(third, is(not(sameInstance(first))));
+            assertThat(third, is(not(sameInstance(second))));
+            assertThat(fourth, is(sameInstance(third)));
+            assertThat(metrics.pipeline("third"), is(sameInstance(third)));
+        });
+    }
+
+    @Test
+    void failuresAreCounted() {
+        final EventProcessorMetrics metrics = new EventProcessorMetrics();
+        final OperationMetrics execute = metrics.stage(EventProcessorMetrics.Stage.EXECUTE_PIPELINE);
+
+        execute.recordDuration(1_000L, true);
+        execute.recordDuration(3_000L, false);
+
+        assertAll(() -> {
+            assertThat(execute.count(), is(equalTo(2L)));
+            assertThat(execute.failures(), is(equalTo(1L)));
+            assertThat(execute.durationNanos(), is(equalTo(4_000L)));
+            assertThat(metrics.stage(EventProcessorMetrics.Stage.TO_LOGSTASH_EVENT).count(), is(equalTo(0L)));
+        });
+    }
+
+    @Test
+    void processingABatchRecordsEachStage() {
+        final EventProcessorBuilder eventProcessorBuilder = EventProcessor.builder()
+                .setEventPipelineNameResolver((event, exceptionConsumer) -> Optional.of("simple-mutate"))
+                .setEventIndexNameResolver((event, handler) -> Optional.empty()) // no index name
+                .setIndexNamePipelineNameResolver(((indexName, handler) -> Optional.empty())) // no default pipeline
+                .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath("simple-mutate-pipelines")));
+
+        // the second event lacks a field that the pipeline requires, and fails in it
+        final List<Event> inputEvents = List.of(
+                newEvent(Map.of("id", "first", "required-field-to-remove", "present", "nested", Map.of("field-to-lowercase", "sIlLyCaSe3")), Map.of()),
+                newEvent(Map.of("id", "second", "nested", Map.of("field-to-lowercase", "sIlLyCaSe3")), Map.of()),
+                newEvent(Map.of("id", "third", "required-field-to-remove", "present", "nested", Map.of("field-to-keep", "ok")), Map.of())
+        );
+
+        withEventProcessor(eventProcessorBuilder, (eventProcessor) -> {
+            eventProcessor.processEvents(inputEvents);
+            final EventProcessorMetrics metrics = eventProcessor.getMetrics();
+
+            assertAll(() -> {
+                for (Stage stage : List.of(Stage.RESOLVE_INDEX_NAME, Stage.RESOLVE_PIPELINE_NAME, Stage.RESOLVE_PIPELINE, Stage.TO_INGEST_DOCUMENT)) {
+                    assertStageRecorded(metrics.stage(stage), 3L, 0L);
+                }
+                assertStageRecorded(metrics.stage(Stage.EXECUTE_PIPELINE), 3L, 1L);
+                // only the events that were transformed are converted back
+                assertStageRecorded(metrics.stage(Stage.TO_LOGSTASH_EVENT), 2L, 0L);
+
+                final OperationMetrics pipeline = metrics.pipeline("simple-mutate");
+                assertStageRecorded(pipeline, 3L, 1L);
+                assertThat(pipeline.latency().maxValue(), is(greaterThan(0L)));
+                assertThat(pipeline.durationNanos(), is(greaterThanOrEqualTo(pipeline.latency().valueAtPercentile(50))));
+            });
+        });
+    }
+
+    private static void assertStageRecorded(final OperationMetrics operationMetrics, final long count, final long failures) {
+        assertThat(operationMetrics.count(), is(equalTo(count)));
+        assertThat(operationMetrics.failures(), is(equalTo(failures)));
+
+        // every recorded operation is in the latency histogram too
+        final LatencyHistogram.Snapshot latency = operationMetrics.latency();
+        assertThat(latency.count(), is(equalTo(count)));
+        assertThat(latency.maxValue(), is(greaterThanOrEqualTo(latency.valueAtPercentile(50))));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.filters.elasticintegration.util.TestCapturingLogger;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static co.elastic.logstash.filters.elasticintegration.util.TestCapturingLogger.hasLogEntry;
+import static org.apache.logging.log4j.Level.ERROR;
+import static org.apache.logging.log4j.Level.WARN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class FailureReporterTest {
+
+    private final TestCapturingLogger logger = new TestCapturingLogger();
+    private final FailureReporter failureReporter = new FailureReporter(logger, Duration.ofSeconds(10), 2);
+
+    @Test
+    void firstFailureOfEachGroupIsLoggedAndOthersAreSummarized() {
+        for (int i = 0; i < 5; i++) {
+            failureReporter.report(WARN, "ingest pipeline `one`", new IllegalArgumentException("bad value " + i));
+        }
+        failureReporter.report(ERROR, "processing event (stage: resolve_pipeline)", new IllegalStateException("unavailable"));
+
+        assertAll(() -> {
+            assertThat(logger, hasLogEntry(WARN, equalTo("ingest pipeline `one` failed: bad value 0 (similar failures will be summarized every 10s)")));
+            assertThat(logger, not(hasLogEntry(WARN, containsString("bad value 1"))));
+            assertThat(logger, hasLogEntry(ERROR, equalTo("processing event (stage: resolve_pipeline) failed: unavailable (similar failures will be summarized every 10s)")));
+        });
+
+        failureReporter.flush();
+
+        assertAll(() -> {
+            assertThat(logger, hasLogEntry(WARN, equalTo("ingest pipeline `one` (java.lang.IllegalArgumentException) failed 4 more times in the last 10s; " +
+                    "most recent: ingest pipeline `one` failed with java.lang.IllegalArgumentException: bad value 4")));
+            assertThat(logger, not(hasLogEntry(ERROR, containsString("more times"))));
+        });
+
+        // after a flush, the next failure of a group is logged again
+        failureReporter.report(WARN, "ingest pipeline `one`", new IllegalArgumentException("bad value 5"));
+        assertThat(logger, hasLogEntry(WARN, startsWith("ingest pipeline `one` failed: bad value 5")));
+    }
+
+    @Test
+    void groupCardinalityIsBounded() {
+        failureReporter.report(WARN, "ingest pipeline `one`", new IllegalArgumentException("one"));
+        failureReporter.report(WARN, "ingest pipeline `two`", new IllegalArgumentException("two"));
+        failureReporter.report(WARN, "ingest pipeline `three`", new IllegalArgumentException("three"));
+        failureReporter.report(WARN, "ingest pipeline `four`", new IllegalStateException("four"));
+
+        failureReporter.flush();
+
+        assertAll(() -> {
+            assertThat(logger, hasLogEntry(WARN, startsWith("ingest pipeline `three` failed: three")));
+            assertThat(logger, not(hasLogEntry(WARN, startsWith("ingest pipeline `four` failed: four"))));
+            assertThat(logger, hasLogEntry(WARN, equalTo("_other (_other) failed 1 more times in the last 10s; " +
+                    "most recent: ingest pipeline `four` failed with java.lang.IllegalStateException: four")));
+        });
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IngestPipelineWarmerTest {
+
+    @Test
+    void pipelinesAreExecutedForTheConfiguredIterations() {
+        final CountingPipeline pipeline = new CountingPipeline((ingestDocument, handler) -> handler.accept(ingestDocument, null));
+
+        new IngestPipelineWarmer(7, List.of(Map.of("message", "one"), Map.of("message", "two")), Duration.ofSeconds(10)).warm(pipeline);
+
+        assertThat(pipeline.executions.get(), is(equalTo(7)));
+    }
+
+    @Test
+    void warmingStopsWhenTheTimeBudgetIsExhausted() {
+        final CountingPipeline pipeline = new CountingPipeline((ingestDocument, handler) -> {
+            sleepQuietly(20);
+            handler.accept(ingestDocument, null);
+        });
+
+        final long startNanos = System.nanoTime();
+        new IngestPipelineWarmer(1_000, List.of(IngestPipelineWarmer.SYNTHETIC_DOCUMENT), Duration.ofMillis(200)).warm(pipeline);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertAll(() -> {
+            assertThat(pipeline.executions.get(), is(both(greaterThan(0)).and(lessThan(1_000))));
+            assertThat(elapsedMillis, is(lessThan(5_000L)));
+        });
+    }
+
+    @Test
+    void anExecutionThatNeverCompletesIsBoundedByTheTimeBudget() {
+        final CountingPipeline pipeline = new CountingPipeline((ingestDocument, handler) -> { });
+
+        final long startNanos = System.nanoTime();
+        new IngestPipelineWarmer(10, List.of(IngestPipelineWarmer.SYNTHETIC_DOCUMENT), Duration.ofMillis(200)).warm(pipeline);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertAll(() -> {
+            assertThat(pipeline.executions.get(), is(equalTo(1)));
+            assertThat(elapsedMillis, is(lessThan(5_000L)));
+        });
+    }
+
+    @Test
+    void failingExecutionsDoNotStopWarming() {
+        final AtomicInteger attempt = new AtomicInteger();
+        final CountingPipeline pipeline = new CountingPipeline((ingestDocument, handler) -> {
+            switch (attempt.incrementAndGet() % 3) {
+                case 0 -> throw new IllegalStateException("thrown");
+                case 1 -> handler.accept(null, new IllegalArgumentException("reported"));
+                default -> handler.accept(ingestDocument, null);
+            }
+        });
+
+        new IngestPipelineWarmer(9, List.of(IngestPipelineWarmer.SYNTHETIC_DOCUMENT), Duration.ofSeconds(10)).warm(pipeline);
+
+        assertThat(pipeline.executions.get(), is(equalTo(9)));
+    }
+
+    @Test
+    void executionsAreMarkedAsWarming() {
+        final AtomicInteger warmingExecutions = new AtomicInteger();
+        final CountingPipeline pipeline = new CountingPipeline((ingestDocument, handler) -> {
+            if (IngestPipelineWarmer.isWarming()) {
+                warmingExecutions.incrementAndGet();
+            }
+            handler.accept(ingestDocument, null);
+        });
+
+        new IngestPipelineWarmer(3, List.of(IngestPipelineWarmer.SYNTHETIC_DOCUMENT), Duration.ofSeconds(10)).warm(pipeline);
+
+        assertAll(() -> {
+            assertThat(warmingExecutions.get(), is(equalTo(3)));
+            assertThat(IngestPipelineWarmer.isWarming(), is(false));
+        });
+    }
+
+    @Test
+    void invalidWarmersAreRejected() {
+        assertAll(() -> {
+            assertThrows(IllegalArgumentException.class, () -> new IngestPipelineWarmer(0));
+            assertThrows(IllegalArgumentException.class, () -> new IngestPipelineWarmer(1, List.of(), Duration.ofSeconds(1)));
+        });
+    }
+
+    private static void sleepQuietly(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CountingPipeline extends IngestPipeline {
+        private final BiConsumer<IngestDocumentBridge, BiConsumer<IngestDocumentBridge, Exception>> execution;
+        final AtomicInteger executions = new AtomicInteger();
+
+        CountingPipeline(final BiConsumer<IngestDocumentBridge, BiConsumer<IngestDocumentBridge, Exception>> execution) {
+            super(null, null);
+            this.execution = execution;
+        }
+
+        @Override
+        public String getId() {
+            return "counting";
+        }
+
+        @Override
+        public void execute(final IngestDocumentBridge ingestDocument, final BiConsumer<IngestDocumentBridge, Exception> handler) {
+            executions.incrementAndGet();
+            execution.accept(ingestDocument, handler);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.filters.elasticintegration.EventProcessorMetrics.Stage;
+import co.elastic.logstash.filters.elasticintegration.util.TestCapturingLogger;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import static co.elastic.logstash.filters.elasticintegration.util.EventTestUtil.eventFromMap;
+import static co.elastic.logstash.filters.elasticintegration.util.TestCapturingLogger.hasLogEntry;
+import static org.apache.logging.log4j.Level.WARN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class SlowEventLogTest {
+
+    private final TestCapturingLogger logger = new TestCapturingLogger();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void fastEventsAreNotLogged() {
+        final SlowEventLog slowEventLog = new SlowEventLog(new SlowEventLog.Configuration(Duration.ofMillis(100)), logger, nanoTime::get);
+
+        final SlowEventLog.TracedRequest request = slowEventLog.tracing(new SimpleRequest(eventFromMap(Map.of("message", "fast"))));
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        request.complete();
+
+        assertThat(logger, not(hasLogEntry(WARN, containsString("slow event"))));
+    }
+
+    @Test
+    void slowEventsAreLoggedWithTheirPipelinesAndStages() {
+        final SlowEventLog slowEventLog = new SlowEventLog(new SlowEventLog.Configuration(Duration.ofMillis(100), 10, 20), logger, nanoTime::get);
+
+        final SimpleRequest simpleRequest = new SimpleRequest(eventFromMap(Map.of("message", "this message is longer than twenty characters")));
+        final SlowEventLog.TracedRequest request = slowEventLog.tracing(simpleRequest);
+        request.recordStage(Stage.RESOLVE_PIPELINE_NAME, TimeUnit.MILLISECONDS.toNanos(2));
+        request.recordPipeline("logs-default", "logs-generic-default", TimeUnit.MILLISECONDS.toNanos(30));
+        request.recordPipeline("logs-rerouted", "logs-rerouted-default", TimeUnit.MILLISECONDS.toNanos(120));
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+        request.complete((event) -> { event.tag("completed"); });
+
+        assertAll(() -> {
+            assertThat(simpleRequest.completed.get(), is(notNullValue()));
+            assertThat(logger, hasLogEntry(WARN, allOf(
+                    containsString("slow event took 150.000ms (threshold: 100.000ms)"),
+                    containsString("[logs-default(index: logs-generic-default, took: 30.000ms) -> logs-rerouted(index: logs-rerouted-default, took: 120.000ms)]"),
+                    containsString("resolve_pipeline_name=2.000ms"),
+                    containsString("more characters)"),
+                    not(containsString("completed")))));
+        });
+    }
+
+    @Test
+    void eventsThatBecomeSlowWhileCompletingAreLogged() {
+        final SlowEventLog slowEventLog = new SlowEventLog(new SlowEventLog.Configuration(Duration.ofMillis(100)), logger, nanoTime::get);
+
+        final SimpleRequest simpleRequest = new SimpleRequest(eventFromMap(Map.of("message", "slow to convert")));
+        final SlowEventLog.TracedRequest request = slowEventLog.tracing(simpleRequest);
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        request.complete((event) -> {
+            // converting the result of the pipeline takes the event over the threshold
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+            return event;
+        });
+
+        assertAll(() -> {
+            assertThat(simpleRequest.completed.get(), is(notNullValue()));
+            assertThat(logger, hasLogEntry(WARN, containsString("slow event took 120.000ms (threshold: 100.000ms)")));
+        });
+    }
+
+    @Test
+    void slowEventsAreRateLimited() {
+        final SlowEventLog slowEventLog = new SlowEventLog(new SlowEventLog.Configuration(Duration.ofMillis(100), 2, 0), logger, nanoTime::get);
+
+        for (int i = 0; i < 5; i++) {
+            final SlowEventLog.TracedRequest request = slowEventLog.tracing(new SimpleRequest(eventFromMap(Map.of("message", "slow"))));
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+            request.complete();
+        }
+        assertThat(logger, not(hasLogEntry(WARN, containsString("not logged since previous entry"))));
+
+        // once a minute has elapsed, entries are logged again and report those that were suppressed
+        nanoTime.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        final SlowEventLog.TracedRequest request = slowEventLog.tracing(new SimpleRequest(eventFromMap(Map.of("message", "slow"))));
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        request.complete();
+
+        assertThat(logger, hasLogEntry(WARN, containsString("(3 slow events not logged since previous entry)")));
+    }
+
+    private static class SimpleRequest implements IntegrationRequest {
+        private final Event event;
+        private final AtomicReference<Event> completed = new AtomicReference<>();
+
+        SimpleRequest(final Event event) {
+            this.event = event;
+        }
+
+        @Override
+        public Event event() {
+            return event;
+        }
+
+        @Override
+        public void complete(final UnaryOperator<Event> eventSwapper) {
+            completed.set(eventSwapper.apply(event));
+        }
+    }
+}
@@ -7,6 +7,8 @@
 package co.elastic.logstash.filters.elasticintegration;
 
 import co.elastic.logstash.api.Event;
+import co.elastic.logstash.filters.elasticintegration.ingest.ProcessorProfiler;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
 import co.elastic.logstash.filters.elasticintegration.util.PluginContext;
 import org.junit.jupiter.api.Test;
 import org.logstash.plugins.BasicEventFactory;
@@ -159,6 +161,138 @@ public class SmokeTest {
     }
 
 
+    @Test
+    public void testSinglePipelineMutatingEventsNotifiesTheBatchFilterMatchListener() {
+        final List<Event> defaultMatchedEvents = new ArrayList<>();
+        final EventProcessorBuilder eventProcessorBuilder = EventProcessor.builder()
+                .setEventPipelineNameResolver((event, exceptionConsumer) -> Optional.of("simple-mutate"))
+                .setEventIndexNameResolver((event, handler) -> Optional.empty()) // no index name
+                .setIndexNamePipelineNameResolver(((indexName, handler) -> Optional.empty())) // no default pipeline
+                .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath("simple-mutate-pipelines")))
+                .setFilterMatchListener(defaultMatchedEvents::add);
+
+        final List<Event> inputEvents = List.of(
+                newEvent(Map.of("toplevel", "ok", "id", "first","required-field-to-remove","present","nested", Map.of("field-to-lowercase", "sIlLyCaSe3", "field-to-remove", "nope", "field-to-keep", "ok")), Map.of("meta", "ok")),
+                newEvent(Map.of("toplevel", "ok", "id", "second", "nested", Map.of("field-to-lowercase", "sIlLyCaSe3", "field-to-remove", "nope", "field-to-keep", "ok")), Map.of("meta", "ok"))
+        );
+
+        withEventProcessor(eventProcessorBuilder, (eventProcessor) -> {
+            // the java plugin hands Logstash's listener for each batch straight to the processor
+            final List<Event> batchMatchedEvents = new ArrayList<>();
+            final Collection<Event> outputEvents = eventProcessor.processEvents(inputEvents, batchMatchedEvents::add);
+            assertThat("event count is unchanged", outputEvents, hasSize(inputEvents.size()));
+
+            validateEvent(outputEvents, eventWithId("first"), (firstEvent) -> {
+                assertThat(firstEvent, includesField("[my-long-field]").withValue(equalTo(10L)));
+                assertThat(firstEvent, is(in(batchMatchedEvents)));
+            });
+            validateEvent(outputEvents, eventWithId("second"), (secondEvent) -> {
+                assertThat(secondEvent, isTagged("_ingest_pipeline_failure"));
+                assertThat(secondEvent, is(not(in(batchMatchedEvents))));
+            });
+            assertAll("only the batch listener is notified", () -> {
+                assertThat(batchMatchedEvents, hasSize(1));
+                assertThat(defaultMatchedEvents, is(empty()));
+            });
+        });
+    }
+
+    @Test void testSinglePipelineMutatingEventsWithProcessorProfiling() {
+        final List<Event> matchedEvents = new ArrayList<>();
+        final ProcessorProfiler processorProfiler = new ProcessorProfiler();
+        final EventProcessorBuilder eventProcessorBuilder = EventProcessor.builder()
+                .setEventPipelineNameResolver((event, exceptionConsumer) -> Optional.of("simple-mutate"))
+                .setEventIndexNameResolver((event, handler) -> Optional.empty()) // no index name
+                .setIndexNamePipelineNameResolver(((indexName, handler) -> Optional.empty())) // no default pipeline
+                .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath("simple-mutate-pipelines")))
+                .setProcessorProfiler(processorProfiler)
+                .setFilterMatchListener(matchedEvents::add);
+
+        final List<Event> inputEvents = List.of(
+                newEvent(Map.of("toplevel", "ok", "id", "first","required-field-to-remove","present","nested", Map.of("field-to-lowercase", "sIlLyCaSe3", "field-to-remove", "nope", "field-to-keep", "ok")), Map.of("meta", "ok")),
+                newEvent(Map.of("toplevel", "ok", "id", "second", "nested", Map.of("field-to-lowercase", "sIlLyCaSe3", "field-to-remove", "nope", "field-to-keep", "ok")), Map.of("meta", "ok"))
+        );
+
+        withEventProcessor(eventProcessorBuilder, (eventProcessor) -> {
+            final Collection<Event> outputEvents = eventProcessor.processEvents(inputEvents);
+            assertThat("event count is unchanged", outputEvents, hasSize(inputEvents.size()));
+
+            validateEvent(outputEvents, eventWithId("first"), (firstEvent) -> {
+                assertAll("pipeline effects applied through profiled processors", () -> {
+                    assertThat(firstEvent, includesField("[my-long-field]").withValue(equalTo(10L)));
+                    assertThat(firstEvent, excludesField("[required-field-to-remove]"));
+                    assertThat(firstEvent, includesField("[nested][field-to-lowercase]").withValue(equalTo("sillycase3")));
+                    assertThat(firstEvent, is(in(matchedEvents)));
+                });
+            });
+
+            validateEvent(outputEvents, eventWithId("second"), (secondEvent) -> {
+                assertAll("profiled processor failures are reported as normal", () -> {
+                    assertThat(secondEvent, isTagged("_ingest_pipeline_failure"));
+                    assertThat(secondEvent, includesField("[@metadata][_ingest_pipeline_failure][message]").withValue(containsString("field [required-field-to-remove] not present")));
+                    assertThat(secondEvent, excludesField("[my-long-field]"));
+                    assertThat(secondEvent, is(not(in(matchedEvents))));
+                });
+            });
+
+            // the pipeline's processors are untagged, so they are profiled by the order in which they were created
+            assertAll("each processor's executions are profiled", () -> {
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("simple-mutate", "set", "#1"), 2L, 0L);
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("simple-mutate", "set", "#2"), 2L, 0L);
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("simple-mutate", "lowercase", "#3"), 2L, 0L);
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("simple-mutate", "remove", "#4"), 2L, 1L);
+                // the second event failed before reaching the last processor
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("simple-mutate", "remove", "#5"), 1L, 0L);
+            });
+        });
+    }
+
+    @Test void testNestedAndConditionalProcessorsWithProcessorProfiling() {
+        final ProcessorProfiler processorProfiler = new ProcessorProfiler();
+        final EventProcessorBuilder eventProcessorBuilder = EventProcessor.builder()
+                .setEventPipelineNameResolver((event, exceptionConsumer) -> Optional.of("nested-conditional"))
+                .setEventIndexNameResolver((event, handler) -> Optional.empty()) // no index name
+                .setIndexNamePipelineNameResolver(((indexName, handler) -> Optional.empty())) // no default pipeline
+                .setPipelineConfigurationResolver(new LocalDirectoryPipelineConfigurationResolver(getPreparedPipelinesResourcePath("profiled-pipelines")))
+                .setProcessorProfiler(processorProfiler);
+
+        final List<Event> inputEvents = List.of(
+                newEvent(Map.of("id", "first", "values", List.of("a", "b")), Map.of()),
+                newEvent(Map.of("id", "second", "values", List.of("c")), Map.of())
+        );
+
+        withEventProcessor(eventProcessorBuilder, (eventProcessor) -> {
+            final Collection<Event> outputEvents = eventProcessor.processEvents(inputEvents);
+
+            validateEvent(outputEvents, eventWithId("first"), (firstEvent) -> {
+                assertThat(firstEvent, includesField("[values]").withValue(equalTo(List.of("A", "B"))));
+                assertThat(firstEvent, includesField("[conditional-field]").withValue(equalTo(true)));
+            });
+            validateEvent(outputEvents, eventWithId("second"), (secondEvent) -> {
+                assertThat(secondEvent, includesField("[values]").withValue(equalTo(List.of("C"))));
+                assertThat(secondEvent, excludesField("[conditional-field]"));
+            });
+
+            assertAll("nested and conditional processors are profiled", () -> {
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("nested-conditional", "set", "greeting"), 2L, 0L);
+                // a conditional processor is only profiled when its condition holds
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("nested-conditional", "set", "conditional"), 1L, 0L);
+                // a nested processor is profiled for each of its executions, and within its parent
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("nested-conditional", "foreach", "each-value"), 2L, 0L);
+                assertProfiled(processorProfiler, new ProcessorProfiler.ProcessorKey("nested-conditional", "uppercase", "uppercase-value"), 3L, 0L);
+            });
+        });
+    }
+
+    private static void assertProfiled(final ProcessorProfiler processorProfiler,
+                                       final ProcessorProfiler.ProcessorKey processorKey,
+                                       final long count,
+                                       final long failures) {
+        final OperationMetrics metrics = processorProfiler.metrics(processorKey).orElseThrow(() -> new AssertionError(String.format("`%s` was not profiled", processorKey)));
+        assertThat(processorKey.toString(), metrics.count(), is(equalTo(count)));
+        assertThat(processorKey.toString(), metrics.failures(), is(equalTo(failures)));
+    }
+
     @Test void testMultiplePipelinesMutatingEvents() {
 
         final List<Event> matchedEvents = new ArrayList<>();
@@ -0,0 +1,95 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+class InFlightLookupsTest {
+
+    @Test
+    void retiringWithoutLookupsInFlightClosesImmediately() {
+        final InFlightLookups inFlightLookups = new InFlightLookups(4);
+        inFlightLookups.release(inFlightLookups.acquire());
+
+        assertThat(inFlightLookups.retire(), is(true));
+        assertThat(inFlightLookups.retire(), is(false));
+        assertThat(inFlightLookups.acquire(), is(-1));
+        assertThat(inFlightLookups.inFlight(), is(0L));
+    }
+
+    @Test
+    void retiringWithLookupsInFlightClosesOnTheLastRelease() {
+        final InFlightLookups inFlightLookups = new InFlightLookups(4);
+        final int first = inFlightLookups.acquire();
+        final int second = inFlightLookups.acquire();
+
+        assertThat(inFlightLookups.retire(), is(false));
+        assertThat(inFlightLookups.isRetired(), is(true));
+
+        // lookups that begin after retirement but before the close are still counted
+        final int late = inFlightLookups.acquire();
+        assertThat(late, greaterThanOrEqualTo(0));
+
+        assertThat(inFlightLookups.release(first), is(false));
+        assertThat(inFlightLookups.release(late), is(false));
+        assertThat(inFlightLookups.release(second), is(true));
+        assertThat(inFlightLookups.acquire(), is(-1));
+    }
+
+    @Test
+    void concurrentLookupsNeverBeginOnAClosedReader() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            final InFlightLookups inFlightLookups = new InFlightLookups(4);
+            final AtomicBoolean closed = new AtomicBoolean();
+            final AtomicInteger closes = new AtomicInteger();
+            final AtomicInteger lookupsOnClosedReader = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(8);
+
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Thread thread = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 10_000; i++) {
+                        final int stripe = inFlightLookups.acquire();
+                        if (stripe < 0) {
+                            return;
+                        }
+                        if (closed.get()) {
+                            lookupsOnClosedReader.incrementAndGet();
+                        }
+                        if (inFlightLookups.release(stripe) && closed.compareAndSet(false, true)) {
+                            closes.incrementAndGet();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            started.await();
+            if (inFlightLookups.retire() && closed.compareAndSet(false, true)) {
+                closes.incrementAndGet();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(closes.get(), is(1));
+            assertThat(lookupsOnClosedReader.get(), is(0));
+            assertThat(inFlightLookups.inFlight(), is(0L));
+        }
+    }
+}
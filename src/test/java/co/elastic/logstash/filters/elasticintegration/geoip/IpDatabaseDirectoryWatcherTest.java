@@ -0,0 +1,72 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+class IpDatabaseDirectoryWatcherTest {
+
+    @Test
+    void onlyFilesThatAreReplacedAreUpdated(@TempDir final Path directory) throws Exception {
+        final Path databasePath = Files.writeString(directory.resolve("GeoLite2-City.mmdb"), "v1", StandardCharsets.UTF_8);
+        final List<String> updates = new CopyOnWriteArrayList<>();
+
+        try (IpDatabaseDirectoryWatcher ignored = IpDatabaseDirectoryWatcher.start(Map.of(databasePath, updatedPath -> updates.add(updatedPath)),
+                Duration.ofMillis(100), Duration.ofSeconds(1), Thread::new)) {
+            // a file that is modified in place may be partially written, and is not reloaded
+            Files.writeString(databasePath, "v2", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            Thread.sleep(500);
+            assertThat(updates, is(equalTo(List.of())));
+
+            Files.move(Files.writeString(directory.resolve("GeoLite2-City.tmp"), "v3", StandardCharsets.UTF_8), databasePath, StandardCopyOption.REPLACE_EXISTING);
+            awaitUpdates(updates, 1);
+            assertThat(updates, is(equalTo(List.of(databasePath.toString()))));
+        }
+    }
+
+    @Test
+    void continuousChangesDoNotDeferUpdatesBeyondTheMaximumDelay(@TempDir final Path directory) throws Exception {
+        final Path databasePath = Files.writeString(directory.resolve("GeoLite2-City.mmdb"), "v1", StandardCharsets.UTF_8);
+        final List<String> updates = new CopyOnWriteArrayList<>();
+
+        try (IpDatabaseDirectoryWatcher ignored = IpDatabaseDirectoryWatcher.start(Map.of(databasePath, updatedPath -> updates.add(updatedPath)),
+                Duration.ofSeconds(1), Duration.ofSeconds(2), Thread::new)) {
+            Files.move(Files.writeString(directory.resolve("GeoLite2-City.tmp"), "v2", StandardCharsets.UTF_8), databasePath, StandardCopyOption.REPLACE_EXISTING);
+
+            // other files keep being created more often than the quiet period
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            for (int i = 0; updates.isEmpty() && System.nanoTime() < deadline; i++) {
+                Files.writeString(directory.resolve("unrelated-" + i + ".txt"), "noise", StandardCharsets.UTF_8);
+                Thread.sleep(200);
+            }
+            assertThat(updates, is(equalTo(List.of(databasePath.toString()))));
+        }
+    }
+
+    private static void awaitUpdates(final List<String> updates, final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (updates.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+}
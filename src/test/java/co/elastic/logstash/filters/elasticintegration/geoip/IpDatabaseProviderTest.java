@@ -13,9 +13,13 @@ import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
 import org.elasticsearch.logstashbridge.ingest.ProcessorBridge;
 import org.elasticsearch.logstashbridge.geoip.GeoIpProcessorFactoryBridge;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,8 +30,14 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class IpDatabaseProviderTest {
 
@@ -112,6 +122,88 @@ class IpDatabaseProviderTest {
         });
     }
 
+    @Test
+    void watchedDatabasesAreReloadedWhenTheyAreValid(@TempDir final Path directory) throws Exception {
+        final Path vendoredCityDatabase = ResourcesUtil.getResourcePath(IpDatabaseProviderTest.class, "databases").orElseThrow().resolve("GeoLite2-City.mmdb");
+        final Path cityDatabase = directory.resolve("GeoLite2-City.mmdb");
+        Files.copy(vendoredCityDatabase, cityDatabase);
+
+        withGeoIpDatabaseProvider(() -> new IpDatabaseProvider.Builder().discoverAndWatchDatabases(directory.toFile(), Thread::new).build(), geoIpDatabaseProvider -> {
+            final IpDatabaseHolder holder = geoIpDatabaseProvider.getDatabaseHolder("GeoLite2-City.mmdb");
+            final IpDatabaseAdapter original = holder.getDatabase();
+
+            // a file that is not a valid database is ignored, and the current database remains in use;
+            // files are replaced rather than overwritten in place, because the current database is memory-mapped
+            Files.move(Files.writeString(directory.resolve("invalid.tmp"), "not a database", StandardCharsets.UTF_8), cityDatabase, StandardCopyOption.REPLACE_EXISTING);
+            Thread.sleep(IpDatabaseDirectoryWatcher.DEFAULT_QUIET_PERIOD.multipliedBy(3).toMillis());
+            assertThat(holder.isValid(), is(true));
+            assertThat(holder.getDatabase(), is(sameInstance(original)));
+
+            // a valid database replaces it
+            Files.move(Files.copy(vendoredCityDatabase, directory.resolve("valid.tmp")), cityDatabase, StandardCopyOption.REPLACE_EXISTING);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (holder.getDatabase() == original && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            assertThat(holder.getDatabase(), is(not(sameInstance(original))));
+            assertThat(holder.isValid(), is(true));
+            assertThat(original.isReaderClosed(), is(true));
+        });
+    }
+
+    @Test
+    void discoveredDatabasesAreOpenedOnFirstUse(@TempDir final Path directory) throws Exception {
+        final Path vendoredCityDatabase = ResourcesUtil.getResourcePath(IpDatabaseProviderTest.class, "databases").orElseThrow().resolve("GeoLite2-City.mmdb");
+        Files.copy(vendoredCityDatabase, directory.resolve("GeoLite2-City.mmdb"));
+        Files.writeString(directory.resolve("Broken.mmdb"), "not a database", StandardCharsets.UTF_8);
+
+        // a database that cannot be opened does not fail discovery
+        withGeoIpDatabaseProvider(() -> new IpDatabaseProvider.Builder().discoverDatabases(directory.toFile()).build(), geoIpDatabaseProvider -> {
+            final IpDatabaseHolder cityHolder = geoIpDatabaseProvider.getDatabaseHolder("GeoLite2-City.mmdb");
+            final IpDatabaseHolder brokenHolder = geoIpDatabaseProvider.getDatabaseHolder("Broken.mmdb");
+            assertThat(cityHolder.peekDatabase(), is(nullValue()));
+            assertThat(brokenHolder.peekDatabase(), is(nullValue()));
+            assertThat(brokenHolder.info(), containsString("state=unopened"));
+
+            assertThat(geoIpDatabaseProvider.isValid("GeoLite2-City.mmdb"), is(true));
+            assertThat(cityHolder.peekDatabase(), is(notNullValue()));
+            assertThat(cityHolder.getTypeIdentifier(), is(equalTo("GeoLite2-City")));
+
+            // ...and is reported as invalid, along with the reason
+            assertThat(geoIpDatabaseProvider.isValid("Broken.mmdb"), is(false));
+            assertThat(geoIpDatabaseProvider.getDatabase("Broken.mmdb"), is(nullValue()));
+            assertThat(brokenHolder.info(), containsString("state=failed"));
+        });
+    }
+
+    @Test
+    void lookupsSwapsAndInvalidChecksAreRecorded(@TempDir final Path directory) throws Exception {
+        final Path vendoredCityDatabase = ResourcesUtil.getResourcePath(IpDatabaseProviderTest.class, "databases").orElseThrow().resolve("GeoLite2-City.mmdb");
+        Files.copy(vendoredCityDatabase, directory.resolve("GeoLite2-City.mmdb"));
+
+        withGeoIpDatabaseProvider(() -> new IpDatabaseProvider.Builder().discoverDatabases(directory.toFile()).build(), geoIpDatabaseProvider -> {
+            // databases that are not registered are counted when they are checked
+            assertThat(geoIpDatabaseProvider.isValid("GeoLite2-ASN.mmdb"), is(false));
+            assertThat(geoIpDatabaseProvider.isValid("GeoLite2-ASN.mmdb"), is(false));
+            assertThat(geoIpDatabaseProvider.invalidChecks("GeoLite2-ASN.mmdb"), is(2L));
+
+            assertThat(geoIpDatabaseProvider.isValid("GeoLite2-City.mmdb"), is(true));
+            assertThat(geoIpDatabaseProvider.invalidChecks("GeoLite2-City.mmdb"), is(0L));
+
+            final IpDatabaseAdapter cityDatabase = geoIpDatabaseProvider.getDatabaseHolder("GeoLite2-City.mmdb").getDatabase();
+            cityDatabase.getResponse(EXAMPLE_DOT_COM_INET_ADDRESS, (reader, ipAddress) -> ipAddress);
+            assertThrows(IllegalStateException.class, () -> cityDatabase.getResponse(EXAMPLE_DOT_COM_INET_ADDRESS, (reader, ipAddress) -> { throw new IllegalStateException("failed"); }));
+
+            final IpDatabaseMetrics metrics = cityDatabase.getMetrics();
+            assertThat(metrics.lookups(), is(2L));
+            assertThat(metrics.readerLookups().count(), is(2L));
+            assertThat(metrics.readerLookups().failures(), is(1L));
+            // the database was swapped in when it was first used
+            assertThat(metrics.swaps(), is(1L));
+            assertThat(metrics.lastSwapMillis(), is(greaterThan(0L)));
+        });
+    }
+
     static IpDatabaseProvider loadVendoredGeoIpDatabases() throws IOException {
         final Path databases = ResourcesUtil.getResourcePath(IpDatabaseProviderTest.class, "databases").orElseThrow();
         return new IpDatabaseProvider.Builder().discoverDatabases(databases.toFile()).build();
@@ -0,0 +1,89 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.Reader;
+import org.elasticsearch.logstashbridge.core.CheckedBiFunctionBridge;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static co.elastic.logstash.filters.elasticintegration.geoip.ManagedIpDatabaseHolderTest.GEOLITE2_CITY_MMDB_PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class IpLookupBatchMemoTest {
+
+    @Test
+    void lookupsAreMemoizedWithinABatch() throws Exception {
+        final IpDatabaseAdapter database = IpDatabaseAdapter.defaultForPath(GEOLITE2_CITY_MMDB_PATH);
+        final AtomicInteger lookups = new AtomicInteger();
+        try {
+            IpLookupBatchMemo.SCOPE.begin();
+            try {
+                for (int i = 0; i < 10; i++) {
+                    assertThat(database.getResponse("89.160.20.128", (reader, ipAddress) -> "lookup-" + lookups.incrementAndGet()), is(equalTo("lookup-1")));
+                    assertThat(database.getResponse("89.160.20.129", (reader, ipAddress) -> { lookups.incrementAndGet(); return null; }), is(nullValue()));
+                }
+                assertThat(lookups.get(), is(2));
+                assertThat(IpLookupBatchMemo.current().size(), is(2));
+            } finally {
+                IpLookupBatchMemo.SCOPE.end();
+            }
+
+            // the memo of a completed batch is discarded
+            assertThat(IpLookupBatchMemo.current(), is(nullValue()));
+            assertThat(database.getResponse("89.160.20.128", (reader, ipAddress) -> "lookup-" + lookups.incrementAndGet()), is(equalTo("lookup-3")));
+        } finally {
+            database.closeReader();
+        }
+    }
+
+    @Test
+    void memoizedLookupsAreSpecificToTheirDatabase() throws Exception {
+        final IpDatabaseAdapter first = IpDatabaseAdapter.defaultForPath(GEOLITE2_CITY_MMDB_PATH);
+        final IpDatabaseAdapter second = IpDatabaseAdapter.defaultForPath(GEOLITE2_CITY_MMDB_PATH);
+        final AtomicInteger lookups = new AtomicInteger();
+        final CheckedBiFunctionBridge<Reader, String, String, Exception> lookup = (reader, ipAddress) -> "lookup-" + lookups.incrementAndGet();
+        try {
+            IpLookupBatchMemo.SCOPE.begin();
+            try {
+                assertThat(first.getResponse("89.160.20.128", lookup), is(equalTo("lookup-1")));
+                assertThat(second.getResponse("89.160.20.128", lookup), is(equalTo("lookup-2")));
+                assertThat(first.getResponse("89.160.20.128", lookup), is(equalTo("lookup-1")));
+            } finally {
+                IpLookupBatchMemo.SCOPE.end();
+            }
+        } finally {
+            first.closeReader();
+            second.closeReader();
+        }
+    }
+
+    @Test
+    void lookupsOnOtherThreadsBypassTheMemo() throws Exception {
+        final IpDatabaseAdapter database = IpDatabaseAdapter.defaultForPath(GEOLITE2_CITY_MMDB_PATH);
+        final AtomicInteger lookups = new AtomicInteger();
+        try {
+            IpLookupBatchMemo.SCOPE.begin();
+            try {
+                database.getResponse("89.160.20.128", (reader, ipAddress) -> lookups.incrementAndGet());
+                CompletableFuture.runAsync(() -> database.getResponse("89.160.20.128", (reader, ipAddress) -> lookups.incrementAndGet()))
+                        .get(10, TimeUnit.SECONDS);
+                assertThat(lookups.get(), is(2));
+            } finally {
+                IpLookupBatchMemo.SCOPE.end();
+            }
+        } finally {
+            database.closeReader();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class IpLookupCacheTest {
+
+    private static final Class<?> CITY_LOOKUP = CityLookup.class;
+    private static final Class<?> ASN_LOOKUP = AsnLookup.class;
+
+    @Test
+    void reservedAddressesAreIdentified() {
+        for (String reserved : List.of("10.1.2.3", "172.16.0.1", "192.168.1.1", "127.0.0.1", "0.0.0.0", "100.64.0.1",
+                "169.254.1.1", "224.0.0.1", "255.255.255.255", "::1", "fd00::1", "fe80::1")) {
+            assertThat(reserved, IpLookupCache.isReservedAddress(reserved), is(true));
+        }
+        for (String routable : List.of("8.8.8.8", "100.128.0.1", "89.160.20.128", "2001:4860:4860::8888", "not-an-address")) {
+            assertThat(routable, IpLookupCache.isReservedAddress(routable), is(false));
+        }
+    }
+
+    @Test
+    void reservedAddressesShortCircuitOnlyWhenEnabled() {
+        final IpLookupCacheMetrics metrics = new IpLookupCacheMetrics();
+        final IpLookupCache shortCircuiting = new IpLookupCache(16, true, metrics);
+        assertThat(shortCircuiting.isShortCircuited("192.168.1.1"), is(true));
+        assertThat(shortCircuiting.isShortCircuited("89.160.20.128"), is(false));
+        assertThat(metrics.shortCircuits(), is(1L));
+
+        final IpLookupCache passThrough = new IpLookupCache(16, false, new IpLookupCacheMetrics());
+        assertThat(passThrough.isShortCircuited("192.168.1.1"), is(false));
+    }
+
+    @Test
+    void resultsAndEmptyResultsAreCached() {
+        final IpLookupCacheMetrics metrics = new IpLookupCacheMetrics();
+        final IpLookupCache cache = new IpLookupCache(16, true, metrics);
+
+        final IpLookupCache.Key found = new IpLookupCache.Key("89.160.20.128", CITY_LOOKUP);
+        final IpLookupCache.Key notFound = new IpLookupCache.Key("89.160.20.129", CITY_LOOKUP);
+
+        assertThat(cache.get(found), is(nullValue()));
+        cache.put(found, "Linköping");
+        cache.put(notFound, null);
+
+        assertThat(cache.get(found), is(equalTo("Linköping")));
+        assertThat(IpLookupCache.isEmptyResponse(cache.get(notFound)), is(true));
+
+        assertThat(metrics.hits(), is(2L));
+        assertThat(metrics.misses(), is(1L));
+        assertThat(metrics.entries(), is(2));
+    }
+
+    @Test
+    void resultsAreSpecificToTheKindOfLookup() {
+        final IpLookupCache cache = new IpLookupCache(16, true, new IpLookupCacheMetrics());
+        cache.put(new IpLookupCache.Key("89.160.20.128", CITY_LOOKUP), "Linköping");
+
+        assertThat(cache.get(new IpLookupCache.Key("89.160.20.128", ASN_LOOKUP)), is(nullValue()));
+    }
+
+    @Test
+    void frequentAddressesAreNotDisplacedByInfrequentAddresses() {
+        final IpLookupCacheMetrics metrics = new IpLookupCacheMetrics();
+        final IpLookupCache cache = new IpLookupCache(8, false, metrics);
+
+        // frequent enough to saturate the frequency estimates of each address
+        for (int i = 0; i < 8; i++) {
+            final IpLookupCache.Key frequent = new IpLookupCache.Key("81.2.69.%s".formatted(i), CITY_LOOKUP);
+            for (int lookup = 0; lookup < 15; lookup++) {
+                cache.get(frequent);
+            }
+            cache.put(frequent, "frequent-" + i);
+        }
+        for (int i = 0; i < 30; i++) {
+            final IpLookupCache.Key infrequent = new IpLookupCache.Key("89.160.20.%s".formatted(i), CITY_LOOKUP);
+            cache.get(infrequent);
+            cache.put(infrequent, "infrequent-" + i);
+        }
+
+        assertThat(metrics.rejections(), is(30L));
+        assertThat(metrics.evictions(), is(0L));
+        assertThat(cache.size(), is(8));
+        for (int i = 0; i < 8; i++) {
+            assertThat(cache.get(new IpLookupCache.Key("81.2.69.%s".formatted(i), CITY_LOOKUP)), is(equalTo("frequent-" + i)));
+        }
+    }
+
+    @Test
+    void infrequentAddressesAreEvictedForFrequentAddresses() {
+        final IpLookupCacheMetrics metrics = new IpLookupCacheMetrics();
+        final IpLookupCache cache = new IpLookupCache(8, false, metrics);
+
+        for (int i = 0; i < 8; i++) {
+            final IpLookupCache.Key infrequent = new IpLookupCache.Key("89.160.20.%s".formatted(i), CITY_LOOKUP);
+            cache.get(infrequent);
+            cache.put(infrequent, "infrequent-" + i);
+        }
+
+        final IpLookupCache.Key frequent = new IpLookupCache.Key("81.2.69.142", CITY_LOOKUP);
+        for (int lookup = 0; lookup < 15; lookup++) {
+            cache.get(frequent);
+        }
+        cache.put(frequent, "frequent");
+
+        assertThat(metrics.evictions(), is(1L));
+        assertThat(metrics.rejections(), is(0L));
+        assertThat(cache.size(), is(8));
+        assertThat(cache.get(frequent), is(equalTo("frequent")));
+    }
+
+    @Test
+    void frequenciesRecordedConcurrentlyAreEstimated() throws InterruptedException {
+        final IpLookupCache.FrequencySketch sketch = new IpLookupCache.FrequencySketch(64);
+        final int frequent = "81.2.69.142".hashCode();
+        final int infrequent = "89.160.20.128".hashCode();
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    sketch.record(frequent);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sketch.record(infrequent);
+        sketch.drain();
+
+        // records may be dropped under contention, but not so many that a frequent key looks infrequent
+        assertThat(sketch.frequency(frequent), is(greaterThan(sketch.frequency(infrequent))));
+        assertThat(sketch.frequency(infrequent), is(1));
+    }
+
+    // stand-ins for the response providers of distinct kinds of lookup
+    private static final class CityLookup {
+    }
+
+    private static final class AsnLookup {
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static co.elastic.logstash.filters.elasticintegration.geoip.ManagedIpDatabaseHolderTest.GEOLITE2_CITY_MMDB_PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+class Ipv4EmptyRangeIndexTest {
+
+    @Test
+    void plainIpv4AddressesAreParsed() {
+        assertThat(Ipv4EmptyRangeIndex.parseIpv4("0.0.0.0"), is(0L));
+        assertThat(Ipv4EmptyRangeIndex.parseIpv4("89.160.20.128"), is(0x59A01480L));
+        assertThat(Ipv4EmptyRangeIndex.parseIpv4("255.255.255.255"), is(0xFFFFFFFFL));
+        for (String other : List.of("", "1.2.3", "1.2.3.4.5", "1.2.3.256", "01.2.3.4", "1..3.4", "1.2.3.4.", "::1",
+                "::ffff:1.2.3.4", "2001:4860:4860::8888", "not-an-address", " 1.2.3.4")) {
+            assertThat(other, Ipv4EmptyRangeIndex.parseIpv4(other), is(-1L));
+        }
+    }
+
+    @Test
+    void addressesAreFoundInIndexedNetworks() {
+        final Ipv4EmptyRangeIndex index = new Ipv4EmptyRangeIndex(16);
+        assertThat(index.add(address("10.1.2.3"), 8), is(true));
+        // networks above 128.0.0.0 are ordered as unsigned addresses
+        assertThat(index.add(address("192.168.1.1"), 24), is(true));
+        assertThat(index.add(address("127.0.0.1"), 32), is(true));
+
+        for (String contained : List.of("10.0.0.0", "10.255.255.255", "192.168.1.0", "192.168.1.255", "127.0.0.1")) {
+            assertThat(contained, index.contains(address(contained)), is(true));
+        }
+        for (String other : List.of("9.255.255.255", "11.0.0.0", "192.168.0.255", "192.168.2.0", "127.0.0.2", "0.0.0.0", "255.255.255.255")) {
+            assertThat(other, index.contains(address(other)), is(false));
+        }
+        assertThat(index.size(), is(3));
+        assertThat(index.hits(), is(5L));
+    }
+
+    @Test
+    void overlappingNetworksAreNotAdded() {
+        final Ipv4EmptyRangeIndex index = new Ipv4EmptyRangeIndex(16);
+        assertThat(index.add(address("10.1.0.0"), 16), is(true));
+        assertThat(index.add(address("10.1.2.0"), 24), is(false));
+        assertThat(index.add(address("10.0.0.0"), 8), is(false));
+        assertThat(index.add(address("10.1.0.0"), 16), is(false));
+        assertThat(index.size(), is(1));
+    }
+
+    @Test
+    void theIndexIsBounded() {
+        final Ipv4EmptyRangeIndex index = new Ipv4EmptyRangeIndex(2);
+        assertThat(index.add(address("10.0.0.0"), 8), is(true));
+        assertThat(index.add(address("172.16.0.0"), 12), is(true));
+        assertThat(index.isFull(), is(true));
+        assertThat(index.add(address("192.168.0.0"), 16), is(false));
+        assertThat(index.contains(address("192.168.1.1")), is(false));
+    }
+
+    @Test
+    void bufferedCandidatesAreIndexedInOnePass() {
+        final Ipv4EmptyRangeIndex index = new Ipv4EmptyRangeIndex(64);
+        // fill the index enough that candidates are batched
+        for (int network = 0; network < 16; network++) {
+            assertThat(index.add(address("100.%d.0.0".formatted(network)), 16), is(true));
+        }
+        assertThat(index.offer(address("10.0.0.3")), is(false));
+        assertThat(index.offer(address("10.0.0.1")), is(true));
+
+        final Map<Integer, Integer> resolutions = new HashMap<>();
+        final Ipv4EmptyRangeIndex.NetworkResolver resolver = (address) -> {
+            resolutions.merge(address, 1, Integer::sum);
+            return 24;
+        };
+        assertThat(index.indexCandidates(resolver), is(1));
+        // both candidates are in the same network, which is resolved only once
+        assertThat(resolutions, is(equalTo(Map.of(address("10.0.0.1"), 1))));
+        assertThat(index.contains(address("10.0.0.255")), is(true));
+
+        // candidates in indexed networks are not resolved again
+        index.offer(address("10.0.0.2"));
+        index.offer(address("100.1.2.3"));
+        assertThat(index.indexCandidates(resolver), is(0));
+        assertThat(resolutions.size(), is(1));
+        assertThat(index.size(), is(17));
+    }
+
+    @Test
+    void concurrentlyOfferedCandidatesAreIndexed() throws Exception {
+        final Ipv4EmptyRangeIndex index = new Ipv4EmptyRangeIndex(1024);
+        final AtomicInteger resolutions = new AtomicInteger();
+        final Ipv4EmptyRangeIndex.NetworkResolver resolver = (address) -> {
+            resolutions.incrementAndGet();
+            return 24;
+        };
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    final int address = address("10.%d.%d.%d".formatted(thread, (i / 256) % 128, i % 256));
+                    if (!index.contains(address) && index.offer(address)) {
+                        index.indexCandidates(resolver);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        index.indexCandidates(resolver);
+
+        // each network is only indexed once, so no more than the networks offered are in the index
+        assertThat(index.size(), is(lessThanOrEqualTo(8 * 40)));
+        assertThat(index.size(), is(greaterThan(0)));
+        assertThat(resolutions.get(), is(greaterThanOrEqualTo(index.size())));
+    }
+
+    @Test
+    void lookupsInNetworksWithoutDataAreAnsweredFromTheIndex() throws Exception {
+        final IpDatabaseAdapter database = new IpDatabaseAdapter.Builder(GEOLITE2_CITY_MMDB_PATH.toFile())
+                .setEmptyRangeIndex(16)
+                .build();
+        final AtomicInteger lookups = new AtomicInteger();
+        try {
+            // private addresses are never in the database
+            assertThat(database.getResponse("10.0.0.1", (reader, ipAddress) -> { lookups.incrementAndGet(); return null; }), is(nullValue()));
+            assertThat(database.getResponse("10.0.0.2", (reader, ipAddress) -> { lookups.incrementAndGet(); return null; }), is(nullValue()));
+            assertThat(lookups.get(), is(1));
+
+            // networks with data are never indexed
+            assertThat(database.getResponse("89.160.20.128", (reader, ipAddress) -> "lookup-" + lookups.incrementAndGet()), is(equalTo("lookup-2")));
+            assertThat(database.getResponse("89.160.20.128", (reader, ipAddress) -> "lookup-" + lookups.incrementAndGet()), is(equalTo("lookup-3")));
+        } finally {
+            database.closeReader();
+        }
+    }
+
+    private static int address(final String ipAddress) {
+        return (int) Ipv4EmptyRangeIndex.parseIpv4(ipAddress);
+    }
+}
@@ -4,8 +4,16 @@ import co.elastic.logstash.filters.elasticintegration.util.ResourcesUtil;
 import org.apache.commons.io.FilenameUtils;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,6 +67,71 @@ class ManagedIpDatabaseHolderTest {
         }
     }
 
+    @Test
+    void deferCloseUntilInFlightLookupsComplete() throws Exception {
+        try (IpDatabaseProvider ipDatabaseProvider = buildIpDatabaseProvider(GEOLITE2_CITY_MMDB_PATH)) {
+            final IpDatabaseHolder cityIpDatabaseHolder = ipDatabaseProvider.getDatabaseHolder(GEOLITE2_CITY_TYPE);
+            assert cityIpDatabaseHolder instanceof ManagedIpDatabaseHolder;
+
+            final IpDatabaseAdapter first = cityIpDatabaseHolder.getDatabase();
+            final CountDownLatch lookupStarted = new CountDownLatch(1);
+            final CountDownLatch reloadCompleted = new CountDownLatch(1);
+            final CompletableFuture<Boolean> closedDuringLookup = CompletableFuture.supplyAsync(() -> first.getResponse("93.184.216.34", (reader, ipAddress) -> {
+                lookupStarted.countDown();
+                assertTrue(reloadCompleted.await(10, TimeUnit.SECONDS));
+                return first.isReaderClosed();
+            }));
+            assertTrue(lookupStarted.await(10, TimeUnit.SECONDS));
+
+            // replacing the database while a lookup is in flight retires it without closing it
+            ((ManagedIpDatabaseHolder) cityIpDatabaseHolder).setDatabasePath(GEOLITE2_CITY_MMDB_PATH.toString());
+            assertNotEquals(first, cityIpDatabaseHolder.getDatabase());
+            assertFalse(first.isReaderClosed());
+
+            // ...until the lookup completes
+            reloadCompleted.countDown();
+            assertFalse(closedDuringLookup.get(10, TimeUnit.SECONDS));
+            assertTrue(first.isReaderClosed());
+
+            // a lookup that obtained the database before it was replaced is answered by its replacement
+            final IpDatabaseAdapter second = cityIpDatabaseHolder.getDatabase();
+            final List<Object> lookupReaders = new ArrayList<>();
+            first.getResponse("93.184.216.34", (reader, ipAddress) -> lookupReaders.add(reader));
+            second.getResponse("93.184.216.34", (reader, ipAddress) -> lookupReaders.add(reader));
+            assertThat(lookupReaders, Matchers.hasSize(2));
+            assertSame(lookupReaders.get(1), lookupReaders.get(0));
+
+            // lookups cannot begin on a database that was closed without a replacement
+            ((ManagedIpDatabaseHolder) cityIpDatabaseHolder).close();
+            assertThrows(IllegalStateException.class, () -> first.getResponse("93.184.216.34", (reader, ipAddress) -> null));
+            assertThrows(IllegalStateException.class, () -> second.getResponse("93.184.216.34", (reader, ipAddress) -> null));
+        }
+    }
+
+    @Test
+    void prewarmReloadWithFrequentLookups(final @TempDir Path databaseDirectory) throws Exception {
+        try (IpDatabaseProvider ipDatabaseProvider = buildIpDatabaseProvider(GEOLITE2_CITY_MMDB_PATH)) {
+            final IpDatabaseHolder cityIpDatabaseHolder = ipDatabaseProvider.getDatabaseHolder(GEOLITE2_CITY_TYPE);
+            assert cityIpDatabaseHolder instanceof ManagedIpDatabaseHolder;
+
+            final List<Object> lookupReaders = Collections.synchronizedList(new ArrayList<>());
+            final IpDatabaseAdapter first = cityIpDatabaseHolder.getDatabase();
+            for (int i = 0; i < 1000; i++) {
+                first.getResponse("93.184.216.34", (reader, ipAddress) -> lookupReaders.add(reader));
+            }
+            assertEquals(1000, lookupReaders.size());
+
+            // a copy is loaded, because the same version of the same file would share its reader with the current database
+            final Path copy = Files.copy(GEOLITE2_CITY_MMDB_PATH, databaseDirectory.resolve(GEOLITE2_CITY_TYPE));
+            ((ManagedIpDatabaseHolder) cityIpDatabaseHolder).setDatabasePath(copy.toString());
+
+            // the sampled lookup was replayed once, against the new database's reader, before it was swapped in
+            assertEquals(1001, lookupReaders.size());
+            assertNotSame(lookupReaders.get(0), lookupReaders.get(1000));
+            assertTrue(first.isReaderClosed());
+        }
+    }
+
     @Test
     void rejectTypeChangeOnReload() throws Exception {
         try (IpDatabaseProvider ipDatabaseProvider = buildIpDatabaseProvider(GEOLITE2_CITY_MMDB_PATH)) {
@@ -0,0 +1,100 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.geoip;
+
+import org.elasticsearch.iplocation.shaded.com.maxmind.db.Reader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+
+import static co.elastic.logstash.filters.elasticintegration.geoip.ManagedIpDatabaseHolderTest.GEOLITE2_ASN_MMDB_PATH;
+import static co.elastic.logstash.filters.elasticintegration.geoip.ManagedIpDatabaseHolderTest.GEOLITE2_CITY_MMDB_PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SharedIpDatabaseReadersTest {
+
+    @Test
+    void sameVersionOfFileSharesReaderUntilLastLeaseIsClosed() throws Exception {
+        final SharedIpDatabaseReaders sharedReaders = new SharedIpDatabaseReaders();
+
+        final SharedIpDatabaseReaders.Lease first = sharedReaders.acquire(GEOLITE2_CITY_MMDB_PATH, Reader.FileMode.MEMORY_MAPPED, 100);
+        final SharedIpDatabaseReaders.Lease second = sharedReaders.acquire(GEOLITE2_CITY_MMDB_PATH, Reader.FileMode.MEMORY_MAPPED, 100);
+        assertThat(second.reader(), is(sameInstance(first.reader())));
+        assertThat(sharedReaders.size(), is(1));
+
+        // closing a lease more than once only releases it once
+        first.close();
+        first.close();
+        assertThat(sharedReaders.size(), is(1));
+        assertThat(lookup(second.reader()), is(notNullValue()));
+
+        second.close();
+        assertThat(sharedReaders.size(), is(0));
+        assertThrows(IOException.class, () -> lookup(second.reader()));
+    }
+
+    @Test
+    void readersAreSpecificToFileModeAndNodeCacheSize() throws Exception {
+        final SharedIpDatabaseReaders sharedReaders = new SharedIpDatabaseReaders();
+
+        try (SharedIpDatabaseReaders.Lease mapped = sharedReaders.acquire(GEOLITE2_ASN_MMDB_PATH, Reader.FileMode.MEMORY_MAPPED, 100);
+             SharedIpDatabaseReaders.Lease heap = sharedReaders.acquire(GEOLITE2_ASN_MMDB_PATH, Reader.FileMode.MEMORY, 100);
+             SharedIpDatabaseReaders.Lease uncached = sharedReaders.acquire(GEOLITE2_ASN_MMDB_PATH, Reader.FileMode.MEMORY_MAPPED, 0)) {
+            assertThat(heap.reader(), is(not(sameInstance(mapped.reader()))));
+            assertThat(uncached.reader(), is(not(sameInstance(mapped.reader()))));
+            assertThat(sharedReaders.size(), is(3));
+        }
+        assertThat(sharedReaders.size(), is(0));
+    }
+
+    @Test
+    void replacedFileIsOpenedAnew(final @TempDir Path databaseDirectory) throws Exception {
+        final SharedIpDatabaseReaders sharedReaders = new SharedIpDatabaseReaders();
+        final Path databasePath = databaseDirectory.resolve("GeoLite2-City.mmdb");
+        Files.copy(GEOLITE2_CITY_MMDB_PATH, databasePath);
+
+        try (SharedIpDatabaseReaders.Lease original = sharedReaders.acquire(databasePath, Reader.FileMode.MEMORY_MAPPED, 100)) {
+            // the file is replaced rather than written in place, because the original is mapped
+            final Path replacement = databaseDirectory.resolve("GeoLite2-City.mmdb.tmp");
+            Files.copy(GEOLITE2_CITY_MMDB_PATH, replacement);
+            Files.setLastModifiedTime(replacement, FileTime.from(Instant.now().plusSeconds(60)));
+            Files.move(replacement, databasePath, StandardCopyOption.REPLACE_EXISTING);
+
+            try (SharedIpDatabaseReaders.Lease replaced = sharedReaders.acquire(databasePath, Reader.FileMode.MEMORY_MAPPED, 100)) {
+                assertThat(replaced.reader(), is(not(sameInstance(original.reader()))));
+                assertThat(lookup(original.reader()), is(notNullValue()));
+                assertThat(sharedReaders.size(), is(2));
+            }
+        }
+    }
+
+    @Test
+    void missingFileIsNotRegistered(final @TempDir Path databaseDirectory) {
+        final SharedIpDatabaseReaders sharedReaders = new SharedIpDatabaseReaders();
+
+        assertThrows(IOException.class, () -> sharedReaders.acquire(databaseDirectory.resolve("missing.mmdb"), Reader.FileMode.MEMORY_MAPPED, 100));
+        assertThat(sharedReaders.size(), is(0));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map lookup(final Reader reader) throws IOException {
+        return reader.get(InetAddress.getByName("89.160.20.128"), Map.class);
+    }
+}
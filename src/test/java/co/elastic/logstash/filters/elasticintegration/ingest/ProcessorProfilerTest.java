@@ -0,0 +1,352 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.ingest;
+
+import co.elastic.logstash.filters.elasticintegration.ingest.ProcessorProfiler.ProcessorKey;
+import co.elastic.logstash.filters.elasticintegration.metrics.OperationMetrics;
+import co.elastic.logstash.filters.elasticintegration.util.IngestDocumentUtil;
+import org.elasticsearch.logstashbridge.common.ProjectIdBridge;
+import org.elasticsearch.logstashbridge.ingest.AbstractExternalProcessorBridge;
+import org.elasticsearch.logstashbridge.ingest.AbstractExternalProcessorFactoryBridge;
+import org.elasticsearch.logstashbridge.ingest.IngestDocumentBridge;
+import org.elasticsearch.logstashbridge.ingest.ProcessorBridge;
+import org.elasticsearch.logstashbridge.ingest.ProcessorFactoryBridge;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProcessorProfilerTest {
+
+    private static final Map<String, ProcessorFactoryBridge> FACTORIES = Map.of(
+            "sync", new FakeProcessor.Factory(false),
+            "async", new FakeProcessor.Factory(true),
+            "wrapper", new WrapperProcessor.Factory());
+
+    @Test
+    void executionsAreAttributedToEachProcessor() throws Exception {
+        final ProcessorProfiler profiler = new ProcessorProfiler();
+        final Map<String, ProcessorFactoryBridge> first = profiler.profiling("first", FACTORIES);
+        final Map<String, ProcessorFactoryBridge> second = profiler.profiling("second", FACTORIES);
+
+        final ProcessorBridge tagged = create(first, "sync", "my-tag", Map.of());
+        final ProcessorBridge untagged = create(first, "sync", null, Map.of());
+        create(second, "sync", null, Map.of());
+
+        execute(tagged);
+        execute(tagged);
+        execute(untagged);
+        assertThrows(IllegalStateException.class, () -> execute(create(first, "sync", "failing", Map.of("fail", true))));
+
+        assertAll(() -> {
+            assertProfiled(profiler, new ProcessorKey("first", "sync", "my-tag"), 2L, 0L);
+            // untagged processors are identified by the order in which the pipeline's processors were created
+            assertProfiled(profiler, new ProcessorKey("first", "sync", "#2"), 1L, 0L);
+            assertProfiled(profiler, new ProcessorKey("first", "sync", "failing"), 1L, 1L);
+            assertProfiled(profiler, new ProcessorKey("second", "sync", "#1"), 0L, 0L);
+        });
+    }
+
+    @Test
+    void profiledProcessorsKeepTheExecutionModeOfTheirProcessors() throws Exception {
+        final ProcessorProfiler profiler = new ProcessorProfiler();
+        final Map<String, ProcessorFactoryBridge> factories = profiler.profiling("pipeline", FACTORIES);
+
+        final ProcessorBridge sync = create(factories, "sync", "sync", Map.of());
+        final ProcessorBridge async = create(factories, "async", "async", Map.of());
+        final ProcessorBridge failingAsync = create(factories, "async", "failing-async", Map.of("fail", true));
+
+        assertThat(sync.isAsync(), is(false));
+        assertThat(async.isAsync(), is(true));
+
+        execute(sync);
+        execute(async);
+        assertThrows(IllegalStateException.class, () -> execute(failingAsync));
+
+        assertAll(() -> {
+            assertProfiled(profiler, new ProcessorKey("pipeline", "sync", "sync"), 1L, 0L);
+            assertProfiled(profiler, new ProcessorKey("pipeline", "async", "async"), 1L, 0L);
+            assertProfiled(profiler, new ProcessorKey("pipeline", "async", "failing-async"), 1L, 1L);
+        });
+    }
+
+    @Test
+    void nestedProcessorsAreProfiledOnTheirOwnAndWithinTheirParent() throws Exception {
+        final ProcessorProfiler profiler = new ProcessorProfiler();
+        final Map<String, ProcessorFactoryBridge> factories = profiler.profiling("pipeline", FACTORIES);
+
+        // the wrapper executes its nested processor twice, like a `foreach` over two values
+        final ProcessorBridge wrapper = create(factories, "wrapper", null, Map.of("processor", "sync", "times", 2));
+        // a conditional processor that is never executed is profiled, but never counted
+        create(factories, "sync", "conditional", Map.of());
+
+        execute(wrapper);
+
+        final ProcessorKey wrapperKey = new ProcessorKey("pipeline", "wrapper", "#1");
+        final ProcessorKey nestedKey = new ProcessorKey("pipeline", "sync", "#2");
+        assertAll(() -> {
+            assertProfiled(profiler, wrapperKey, 1L, 0L);
+            assertProfiled(profiler, nestedKey, 2L, 0L);
+            assertProfiled(profiler, new ProcessorKey("pipeline", "sync", "conditional"), 0L, 0L);
+            // a parent's time includes the time of the processors it contains
+            assertThat(profiler.metrics(wrapperKey).orElseThrow().durationNanos(),
+                    is(greaterThanOrEqualTo(profiler.metrics(nestedKey).orElseThrow().durationNanos())));
+        });
+    }
+
+    @Test
+    void executionsThatAreRunUnprofiledAreNotRecorded() throws Exception {
+        final ProcessorProfiler profiler = new ProcessorProfiler();
+        final Map<String, ProcessorFactoryBridge> factories = profiler.profiling("pipeline", FACTORIES);
+
+        final ProcessorBridge sync = create(factories, "sync", "sync", Map.of());
+        final ProcessorBridge async = create(factories, "async", "async", Map.of());
+        ProcessorProfiler.runUnprofiled(() -> {
+            try {
+                execute(sync);
+                execute(async);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        execute(sync);
+
+        assertAll(() -> {
+            assertProfiled(profiler, new ProcessorKey("pipeline", "sync", "sync"), 1L, 0L);
+            assertProfiled(profiler, new ProcessorKey("pipeline", "async", "async"), 0L, 0L);
+        });
+    }
+
+    @Test
+    void processorsBeyondTheTrackedLimitShareTheirMetrics() throws Exception {
+        final ProcessorProfiler profiler = new ProcessorProfiler(2);
+        final Map<String, ProcessorFactoryBridge> factories = profiler.profiling("pipeline", FACTORIES);
+
+        for (String tag : new String[]{"one", "two", "three", "four"}) {
+            execute(create(factories, "sync", tag, Map.of()));
+        }
+
+        final OperationMetrics three = profiler.metricsFor(new ProcessorKey("pipeline", "sync", "three"));
+        assertAll(() -> {
+            assertProfiled(profiler, new ProcessorKey("pipeline", "sync", "one"), 1L, 0L);
+            assertProfiled(profiler, new ProcessorKey("pipeline", "sync", "two"), 1L, 0L);
+            assertThat(profiler.metrics(new ProcessorKey("pipeline", "sync", "three")).isPresent(), is(false));
+            assertThat(profiler.metricsFor(new ProcessorKey("pipeline", "sync", "four")), is(sameInstance(three)));
+            assertThat(profiler.metricsFor(new ProcessorKey("pipeline", "sync", "one")), is(not(sameInstance(three))));
+            assertThat(three.count(), is(equalTo(2L)));
+        });
+    }
+
+    @Test
+    void reportsDescribeTheSlowestProcessorsSinceThePreviousReport() throws Exception {
+        final ProcessorProfiler profiler = new ProcessorProfiler();
+        final Map<String, ProcessorFactoryBridge> factories = profiler.profiling("pipeline", FACTORIES);
+
+        final ProcessorBridge slow = create(factories, "sync", "slow", Map.of("sleepMillis", 20L));
+        final ProcessorBridge fast = create(factories, "sync", "fast", Map.of());
+        execute(slow);
+        execute(slow);
+        execute(fast);
+
+        final String report = profiler.describeSlowest(1).orElseThrow();
+        assertAll(() -> {
+            assertThat(report, containsString("pipeline/sync:slow"));
+            assertThat(report, containsString("count=2 failures=0"));
+            assertThat(report, not(containsString("pipeline/sync:fast")));
+        });
+
+        // nothing has executed since the previous report
+        assertThat(profiler.describeSlowest(10).isPresent(), is(false));
+
+        execute(fast);
+        final String nextReport = profiler.describeSlowest(10).orElseThrow();
+        assertAll(() -> {
+            assertThat(nextReport, containsString("pipeline/sync:fast"));
+            assertThat(nextReport, not(containsString("pipeline/sync:slow")));
+        });
+    }
+
+    private static void assertProfiled(final ProcessorProfiler profiler, final ProcessorKey key, final long count, final long failures) {
+        final OperationMetrics metrics = profiler.metrics(key).orElseThrow(() -> new AssertionError(String.format("`%s` was not profiled", key)));
+        assertThat(key.toString(), metrics.count(), is(equalTo(count)));
+        assertThat(key.toString(), metrics.failures(), is(equalTo(failures)));
+    }
+
+    private static ProcessorBridge create(final Map<String, ProcessorFactoryBridge> factories,
+                                          final String type,
+                                          final String tag,
+                                          final Map<String, Object> config) throws Exception {
+        return factories.get(type).create(factories, tag, null, config, ProjectIdBridge.getDefault());
+    }
+
+    /**
+     * Executes the processor in the way that a pipeline would, according to whether it is async
+     */
+    private static IngestDocumentBridge execute(final ProcessorBridge processor) throws Exception {
+        final IngestDocumentBridge ingestDocument = IngestDocumentUtil.createIngestDocument(Map.of());
+        if (!processor.isAsync()) {
+            return processor.execute(ingestDocument);
+        }
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        processor.execute(ingestDocument, (result, exception) -> failure.set(exception));
+        if (Objects.nonNull(failure.get())) {
+            throw failure.get();
+        }
+        return ingestDocument;
+    }
+
+    private static class FakeProcessor extends AbstractExternalProcessorBridge {
+        private final String tag;
+        private final boolean async;
+        private final boolean fail;
+        private final long sleepMillis;
+
+        FakeProcessor(final String tag, final boolean async, final Map<String, Object> config) {
+            this.tag = tag;
+            this.async = async;
+            this.fail = Boolean.TRUE.equals(config.get("fail"));
+            this.sleepMillis = (Long) config.getOrDefault("sleepMillis", 0L);
+        }
+
+        @Override
+        public String getType() {
+            return async ? "async" : "sync";
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public String getDescription() {
+            return null;
+        }
+
+        @Override
+        public boolean isAsync() {
+            return async;
+        }
+
+        @Override
+        public IngestDocumentBridge execute(final IngestDocumentBridge ingestDocument) throws Exception {
+            if (async) {
+                throw new UnsupportedOperationException("async processors are not executed synchronously");
+            }
+            if (sleepMillis > 0) {
+                Thread.sleep(sleepMillis);
+            }
+            if (fail) {
+                throw new IllegalStateException("failed");
+            }
+            return ingestDocument;
+        }
+
+        @Override
+        public void execute(final IngestDocumentBridge ingestDocument, final BiConsumer<IngestDocumentBridge, Exception> handler) {
+            if (!async) {
+                throw new UnsupportedOperationException("sync processors are not executed asynchronously");
+            }
+            if (fail) {
+                handler.accept(null, new IllegalStateException("failed"));
+            } else {
+                handler.accept(ingestDocument, null);
+            }
+        }
+
+        static class Factory extends AbstractExternalProcessorFactoryBridge {
+            private final boolean async;
+
+            Factory(final boolean async) {
+                this.async = async;
+            }
+
+            @Override
+            public ProcessorBridge create(final Map<String, ProcessorFactoryBridge> registry,
+                                          final String processorTag,
+                                          final String description,
+                                          final Map<String, Object> config,
+                                          final ProjectIdBridge projectIdBridge) {
+                return new FakeProcessor(processorTag, async, config);
+            }
+        }
+    }
+
+    /**
+     * A sync processor that executes a nested processor a number of times, like a {@code foreach}
+     */
+    private static class WrapperProcessor extends AbstractExternalProcessorBridge {
+        private final String tag;
+        private final ProcessorBridge nested;
+        private final int times;
+
+        WrapperProcessor(final String tag, final ProcessorBridge nested, final int times) {
+            this.tag = tag;
+            this.nested = nested;
+            this.times = times;
+        }
+
+        @Override
+        public String getType() {
+            return "wrapper";
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public String getDescription() {
+            return null;
+        }
+
+        @Override
+        public boolean isAsync() {
+            return false;
+        }
+
+        @Override
+        public IngestDocumentBridge execute(final IngestDocumentBridge ingestDocument) throws Exception {
+            for (int i = 0; i < times; i++) {
+                ProcessorProfilerTest.execute(nested);
+            }
+            return ingestDocument;
+        }
+
+        @Override
+        public void execute(final IngestDocumentBridge ingestDocument, final BiConsumer<IngestDocumentBridge, Exception> handler) {
+            throw new UnsupportedOperationException("sync processors are not executed asynchronously");
+        }
+
+        static class Factory extends AbstractExternalProcessorFactoryBridge {
+            @Override
+            public ProcessorBridge create(final Map<String, ProcessorFactoryBridge> registry,
+                                          final String processorTag,
+                                          final String description,
+                                          final Map<String, Object> config,
+                                          final ProjectIdBridge projectIdBridge) throws Exception {
+                // nested processors are created through the registry, which is the profiling one
+                final String nestedType = (String) config.get("processor");
+                final ProcessorBridge nested = registry.get(nestedType).create(registry, null, null, Map.of(), projectIdBridge);
+                return new WrapperProcessor(processorTag, nested, (Integer) config.get("times"));
+            }
+        }
+    }
+}
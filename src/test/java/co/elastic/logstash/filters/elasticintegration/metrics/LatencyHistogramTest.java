@@ -0,0 +1,110 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsHaveBoundedRelativeError() {
+        for (long value : new long[]{0L, 1L, 15L, 16L, 17L, 1_000L, 123_456L, 9_999_999L, Duration.ofSeconds(30).toNanos()}) {
+            final long reported = LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(value));
+            assertThat(String.format("value %s", value), reported, is(both(greaterThanOrEqualTo(value)).and(lessThanOrEqualTo(value + value / 16))));
+        }
+    }
+
+    @Test
+    void bucketIndexesAreMonotonic() {
+        int previousIndex = -1;
+        for (long value = 0; value < 100_000; value++) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            assertThat(index, is(greaterThanOrEqualTo(previousIndex)));
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(Duration.ofMillis(i).toNanos());
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertAll(() -> {
+            assertThat(snapshot.count(), is(equalTo(100L)));
+            assertThat(snapshot.valueAtPercentile(50), is(both(greaterThanOrEqualTo(Duration.ofMillis(50).toNanos())).and(lessThan(Duration.ofMillis(54).toNanos()))));
+            assertThat(snapshot.valueAtPercentile(99), is(both(greaterThanOrEqualTo(Duration.ofMillis(99).toNanos())).and(lessThan(Duration.ofMillis(106).toNanos()))));
+            assertThat(snapshot.maxValue(), is(both(greaterThanOrEqualTo(Duration.ofMillis(100).toNanos())).and(lessThan(Duration.ofMillis(107).toNanos()))));
+        });
+    }
+
+    @Test
+    void intervalSnapshots() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Duration.ofSeconds(1).toNanos());
+        final LatencyHistogram.Snapshot first = histogram.snapshot();
+
+        histogram.record(Duration.ofMillis(1).toNanos());
+        histogram.record(Duration.ofMillis(1).toNanos());
+        final LatencyHistogram.Snapshot interval = histogram.snapshot().since(first);
+
+        assertAll(() -> {
+            assertThat(interval.count(), is(equalTo(2L)));
+            assertThat(interval.maxValue(), is(lessThan(Duration.ofMillis(2).toNanos())));
+            assertThat(histogram.snapshot().since(histogram.snapshot()).count(), is(equalTo(0L)));
+            assertThat(LatencyHistogram.Snapshot.EMPTY.valueAtPercentile(99), is(equalTo(0L)));
+        });
+    }
+
+    @Test
+    void outOfRangeValuesAreClamped() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1L);
+        histogram.record(Long.MAX_VALUE);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertAll(() -> {
+            assertThat(snapshot.count(), is(equalTo(2L)));
+            assertThat(snapshot.valueAtPercentile(50), is(equalTo(0L)));
+            assertThat(snapshot.maxValue(), is(greaterThan(Duration.ofSeconds(60).toNanos())));
+        });
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(1_000L);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertAll(() -> {
+            assertThat(snapshot.count(), is(equalTo(80_000L)));
+            assertThat(snapshot.valueAtPercentile(50), is(equalTo(LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(1_000L)))));
+        });
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.resolver;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class ReloadBackoffTest {
+
+    private static final ReloadBackoff.Configuration CONFIGURATION = new ReloadBackoff.Configuration(Duration.ofMinutes(1), Duration.ofMinutes(4), 2, 2);
+
+    @Test
+    void keyBacksOffExponentiallyUntilSuccess() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final ReloadBackoff<String> backoff = new ReloadBackoff<>(fakeNanosClock::get, () -> 1.0, CONFIGURATION);
+
+        assertAll("exponential and capped", () -> {
+            assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofMinutes(1).toNanos())));
+            assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofMinutes(2).toNanos())));
+            assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofMinutes(4).toNanos())));
+            assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofMinutes(4).toNanos())));
+            assertThat(backoff.consecutiveFailures("A"), is(equalTo(4)));
+        });
+
+        assertAll("ineligible while backing off", () -> {
+            assertThat(backoff.eligibleKeys(List.of("A")), is(empty()));
+            fakeNanosClock.addAndGet(Duration.ofMinutes(4).toNanos() - 1);
+            assertThat(backoff.eligibleKeys(List.of("A")), is(empty()));
+            fakeNanosClock.addAndGet(1);
+            assertThat(backoff.eligibleKeys(List.of("A")), contains("A"));
+        });
+
+        assertAll("success resets", () -> {
+            assertThat(backoff.recordSuccess("A"), is(equalTo(4)));
+            assertThat(backoff.consecutiveFailures("A"), is(equalTo(0)));
+            assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofMinutes(1).toNanos())));
+        });
+    }
+
+    @Test
+    void jitterRetainsAtLeastHalfOfBackoff() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final ReloadBackoff<String> backoff = new ReloadBackoff<>(fakeNanosClock::get, () -> 0.0, CONFIGURATION);
+
+        assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofSeconds(30).toNanos())));
+        assertThat(backoff.recordFailure("A"), is(equalTo(Duration.ofMinutes(1).toNanos())));
+    }
+
+    @Test
+    void eligibleKeysAreBoundedAndPreferLeastRecentlyAttempted() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final ReloadBackoff<String> backoff = new ReloadBackoff<>(fakeNanosClock::get, () -> 1.0, CONFIGURATION);
+
+        backoff.recordSuccess("A");
+        fakeNanosClock.addAndGet(1);
+        backoff.recordSuccess("B");
+        fakeNanosClock.addAndGet(1);
+
+        assertAll(() -> {
+            assertThat(backoff.eligibleKeys(List.of("A", "B", "C")), contains("C", "A"));
+
+            backoff.recordSuccess("C");
+            fakeNanosClock.addAndGet(1);
+            backoff.recordSuccess("A");
+            fakeNanosClock.addAndGet(1);
+            assertThat(backoff.eligibleKeys(List.of("A", "B", "C")), contains("B", "C"));
+        });
+
+        assertAll("absent keys are forgotten", () -> {
+            backoff.recordFailure("B");
+            assertThat(backoff.isBackingOff("B"), is(true));
+            assertThat(backoff.eligibleKeys(List.of("A", "C")), hasSize(2));
+            assertThat(backoff.isBackingOff("B"), is(false));
+        });
+    }
+
+    @Test
+    void exhaustedFailureBudgetBacksOffAllKeys() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final ReloadBackoff<String> backoff = new ReloadBackoff<>(fakeNanosClock::get, () -> 1.0, CONFIGURATION);
+
+        assertAll("within budget", () -> {
+            assertThat(backoff.isFailureBudgetExhausted(1), is(false));
+            assertThat(backoff.recordPass(2, 1), is(equalTo(0L)));
+            assertThat(backoff.eligibleKeys(List.of("A")), contains("A"));
+        });
+
+        assertAll("exhausted budget", () -> {
+            assertThat(backoff.isFailureBudgetExhausted(2), is(true));
+            assertThat(backoff.recordPass(2, 2), is(equalTo(Duration.ofMinutes(1).toNanos())));
+            assertThat(backoff.eligibleKeys(List.of("A")), is(empty()));
+
+            fakeNanosClock.addAndGet(Duration.ofMinutes(1).toNanos());
+            assertThat(backoff.eligibleKeys(List.of("A")), contains("A"));
+            assertThat(backoff.recordPass(2, 2), is(equalTo(Duration.ofMinutes(2).toNanos())));
+        });
+
+        assertAll("recovery", () -> {
+            fakeNanosClock.addAndGet(Duration.ofMinutes(2).toNanos());
+            assertThat(backoff.recordPass(1, 0), is(equalTo(0L)));
+            assertThat(backoff.recordPass(2, 2), is(equalTo(Duration.ofMinutes(1).toNanos())));
+        });
+    }
+}
@@ -9,8 +9,10 @@ package co.elastic.logstash.filters.elasticintegration.resolver;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -145,6 +147,143 @@ class SimpleResolverCacheTest {
         });
     }
 
+    @Test
+    void bind() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final LongSupplier nanoTimeSupplier = fakeNanosClock::get;
+        final SimpleResolverCache.Configuration cacheConfig = new SimpleResolverCache.Configuration(Duration.ofSeconds(60), Duration.ofSeconds(5));
+        final SimpleResolverCache<String,String> src = new SimpleResolverCache<>(nanoTimeSupplier, "test-value", cacheConfig);
+
+        final StringToSequencedStringTestResolver.Cacheable cacheable = new StringToSequencedStringTestResolver.Cacheable();
+        final CacheableResolver.Ephemeral<String,String> ephemeralCacheable = asEphermeral(cacheable);
+
+        final ResolverHandle<String> handle = src.bind("OK", ephemeralCacheable);
+
+        assertAll("bound handle loads lazily and retains", () -> {
+            assertThat(cacheable.lastSequenceNumber(), is(equalTo(0L)));
+            assertThat(handle.resolve(), is(equalTo(Optional.of("OK(1)"))));
+            assertThat(src.resolve("OK", ephemeralCacheable, (e) -> {}), is(equalTo(Optional.of("OK(1)"))));
+
+            fakeNanosClock.addAndGet(Duration.ofSeconds(30).toNanos());
+            assertThat(handle.resolve(), is(equalTo(Optional.of("OK(1)"))));
+            assertThat(cacheable.lastSequenceNumber(), is(equalTo(1L)));
+        });
+
+        assertAll("bound handle observes reloads", () -> {
+            src.getReloader(ephemeralCacheable).reloadOnce();
+            assertThat(cacheable.lastSequenceNumber(), is(equalTo(2L)));
+            assertThat(handle.resolve(), is(equalTo(Optional.of("OK(2)"))));
+            assertThat(cacheable.lastSequenceNumber(), is(equalTo(2L)));
+        });
+
+        assertAll("bound handle observes expiry", () -> {
+            fakeNanosClock.addAndGet(Duration.ofSeconds(61).toNanos());
+            assertThat(handle.resolve(), is(equalTo(Optional.of("OK(3)"))));
+            assertThat(src.resolve("OK", ephemeralCacheable, (e) -> {}), is(equalTo(Optional.of("OK(3)"))));
+            assertThat(cacheable.lastSequenceNumber(), is(equalTo(3L)));
+        });
+
+        assertAll("bound handle observes clear", () -> {
+            src.clear();
+            assertThat(handle.resolve(), is(equalTo(Optional.of("OK(4)"))));
+            assertThat(cacheable.lastSequenceNumber(), is(equalTo(4L)));
+        });
+    }
+
+    @Test
+    void metrics() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final LongSupplier nanoTimeSupplier = fakeNanosClock::get;
+        final SimpleResolverCache.Configuration cacheConfig = new SimpleResolverCache.Configuration(Duration.ofSeconds(60), Duration.ofSeconds(5));
+        final SimpleResolverCache<String,String> src = new SimpleResolverCache<>(nanoTimeSupplier, "test-value", cacheConfig);
+
+        final StringToSequencedStringTestResolver.Cacheable cacheable = new StringToSequencedStringTestResolver.Cacheable(Map.of(
+                "EMPTY", () -> null,
+                "EXCEPTION", () -> { throw new IllegalStateException("intentional"); }
+        ));
+        final CacheableResolver.Ephemeral<String,String> ephemeralCacheable = asEphermeral(cacheable);
+        final ResolverCacheMetrics metrics = src.getMetrics();
+
+        assertAll("hits, misses, and loads", () -> {
+            src.resolve("OK", ephemeralCacheable, (e) -> {});
+            src.resolve("OK", ephemeralCacheable, (e) -> {});
+            src.resolve("EMPTY", ephemeralCacheable, (e) -> {});
+            src.resolve("EXCEPTION", ephemeralCacheable, (e) -> {});
+
+            assertThat(metrics.fastHits(), is(equalTo(1L)));
+            assertThat(metrics.misses(), is(equalTo(3L)));
+            assertThat(metrics.loads().count(), is(equalTo(3L)));
+            assertThat(metrics.loads().failures(), is(equalTo(1L)));
+        });
+
+        assertAll("expirations", () -> {
+            fakeNanosClock.addAndGet(Duration.ofSeconds(61).toNanos());
+            src.resolve("OK", ephemeralCacheable, (e) -> {});
+
+            assertThat(metrics.expirations(), is(equalTo(1L)));
+            assertThat(metrics.misses(), is(equalTo(4L)));
+        });
+
+        assertAll("reload outcomes", () -> {
+            src.getReloader(ephemeralCacheable).reloadOnce();
+
+            assertThat(metrics.reloadPasses().count(), is(equalTo(1L)));
+            assertThat(metrics.reloadsModified(), is(equalTo(1L))); // sequenced values always differ
+            assertThat(metrics.reloadsUnchanged(), is(equalTo(0L)));
+            assertThat(metrics.reloadsFailed(), is(equalTo(1L)));
+        });
+    }
+
+    @Test
+    void reloadPreparesOnlyModifiedValues() {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final LongSupplier nanoTimeSupplier = fakeNanosClock::get;
+        final SimpleResolverCache.Configuration cacheConfig = new SimpleResolverCache.Configuration(Duration.ofSeconds(60), Duration.ofSeconds(5));
+        final SimpleResolverCache<String,String> src = new SimpleResolverCache<>(nanoTimeSupplier, "test-value", cacheConfig);
+
+        final AtomicReference<String> sourceOfTruth = new AtomicReference<>("v1");
+        final List<String> prepared = new CopyOnWriteArrayList<>();
+        final List<String> observedWhilePreparing = new CopyOnWriteArrayList<>();
+        final CacheableResolver.Ephemeral<String,String> preparingCacheable = new CacheableResolver.Ephemeral<>() {
+            @Override
+            public Optional<String> resolve(final String resolveKey, final Consumer<Exception> exceptionHandler) {
+                return Optional.ofNullable(sourceOfTruth.get());
+            }
+
+            @Override
+            public void prepare(final String resolveKey, final String value) {
+                prepared.add(value);
+                observedWhilePreparing.add(src.resolve(resolveKey, this, (e) -> {}).orElse(null));
+            }
+        };
+
+        final CacheReloader reloader = src.getReloader(preparingCacheable);
+
+        assertAll("cache misses are not prepared", () -> {
+            assertThat(src.resolve("K", preparingCacheable, (e) -> {}), is(equalTo(Optional.of("v1"))));
+            assertThat(prepared, is(empty()));
+        });
+
+        assertAll("unchanged reloads are not prepared", () -> {
+            reloader.reloadOnce();
+            assertThat(prepared, is(empty()));
+        });
+
+        assertAll("modified reloads are prepared before they are published", () -> {
+            sourceOfTruth.set("v2");
+            reloader.reloadOnce();
+            assertThat(prepared, contains("v2"));
+            assertThat(observedWhilePreparing, contains("v1"));
+            assertThat(src.resolve("K", preparingCacheable, (e) -> {}), is(equalTo(Optional.of("v2"))));
+        });
+
+        assertAll("removed values are not prepared", () -> {
+            sourceOfTruth.set(null);
+            reloader.reloadOnce();
+            assertThat(prepared, contains("v2"));
+        });
+    }
+
     static CacheableResolver.Ephemeral<String,String> asEphermeral(final CacheableResolver<String,String> cr) {
         return cr::resolve;
     }
@@ -0,0 +1,159 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+
+    private static final CircuitBreaker.Configuration CONFIG = new CircuitBreaker.Configuration(4, 4, 0.5, Duration.ofSeconds(30), 2);
+
+    @Test
+    void opensOnFailureRateAndRecoversThroughHalfOpenProbes() throws Exception {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(fakeNanosClock::get, "test", CONFIG);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        assertAll("closed breaker tolerates failures below threshold", () -> {
+            assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+            assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+            assertThat(circuitBreaker.state(), is(CircuitBreaker.State.CLOSED));
+        });
+
+        assertAll("closed breaker opens when failure rate reaches threshold", () -> {
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+            assertThat(circuitBreaker.state(), is(CircuitBreaker.State.OPEN));
+            assertThat(attempts.get(), is(equalTo(4)));
+        });
+
+        assertAll("open breaker rejects without attempting", () -> {
+            assertThrows(CircuitBreaker.OpenException.class, () -> circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure));
+            fakeNanosClock.addAndGet(Duration.ofSeconds(29).toNanos());
+            assertThrows(CircuitBreaker.OpenException.class, () -> circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure));
+            assertThat(attempts.get(), is(equalTo(4)));
+        });
+
+        assertAll("half-open breaker re-opens on a failed probe", () -> {
+            fakeNanosClock.addAndGet(Duration.ofSeconds(1).toNanos());
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+            assertThat(circuitBreaker.state(), is(CircuitBreaker.State.OPEN));
+            assertThrows(CircuitBreaker.OpenException.class, () -> circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure));
+            assertThat(attempts.get(), is(equalTo(5)));
+        });
+
+        assertAll("half-open breaker closes once all probes succeed", () -> {
+            fakeNanosClock.addAndGet(Duration.ofSeconds(30).toNanos());
+            assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+            assertThat(circuitBreaker.state(), is(CircuitBreaker.State.HALF_OPEN));
+            assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+            assertThat(circuitBreaker.state(), is(CircuitBreaker.State.CLOSED));
+            assertThat(attempts.get(), is(equalTo(7)));
+        });
+
+        assertAll("closed breaker starts with a fresh window", () -> {
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+            assertThat(circuitBreaker.state(), is(CircuitBreaker.State.CLOSED));
+        });
+    }
+
+    @Test
+    void lateResultsOfCallsPermittedBeforeOpeningDoNotDecideHalfOpenTransitions() throws Exception {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(fakeNanosClock::get, "test", CONFIG);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // each slow call is permitted while closed, and completes only once the breaker has opened and a first probe has succeeded
+        final CircuitBreaker.Action<String, IOException> slowSuccess = () -> {
+            openAndProbeOnce(circuitBreaker, fakeNanosClock, attempts);
+            return succeed(attempts);
+        };
+        assertThat(circuitBreaker.execute(slowSuccess, CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.HALF_OPEN));
+
+        // only the remaining probe decides whether the breaker closes
+        assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.CLOSED));
+
+        final CircuitBreaker.Action<String, IOException> slowFailure = () -> {
+            openAndProbeOnce(circuitBreaker, fakeNanosClock, attempts);
+            return fail(attempts);
+        };
+        assertThrows(IOException.class, () -> circuitBreaker.execute(slowFailure, CircuitBreakerTest::anyFailure));
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.HALF_OPEN));
+    }
+
+    private static void openAndProbeOnce(final CircuitBreaker circuitBreaker, final AtomicLong fakeNanosClock, final AtomicInteger attempts) throws IOException {
+        for (int i = 0; i < CONFIG.minimumCalls(); i++) {
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+        }
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.OPEN));
+        fakeNanosClock.addAndGet(CONFIG.openDurationNanos());
+        assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.HALF_OPEN));
+    }
+
+    @Test
+    void errorsThrownByHalfOpenProbesReopenTheBreaker() throws Exception {
+        final AtomicLong fakeNanosClock = new AtomicLong();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(fakeNanosClock::get, "test", CONFIG);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < CONFIG.minimumCalls(); i++) {
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), CircuitBreakerTest::anyFailure));
+        }
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.OPEN));
+
+        fakeNanosClock.addAndGet(CONFIG.openDurationNanos());
+        assertThrows(StackOverflowError.class, () -> circuitBreaker.execute(() -> { throw new StackOverflowError("intentional"); }, (e) -> false));
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.OPEN));
+
+        // the probe's permit is not leaked, so the breaker probes again once it is half-open
+        fakeNanosClock.addAndGet(CONFIG.openDurationNanos());
+        for (int i = 0; i < CONFIG.halfOpenProbes(); i++) {
+            assertThat(circuitBreaker.execute(() -> succeed(attempts), CircuitBreakerTest::anyFailure), is(equalTo("OK")));
+        }
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    void exceptionsThatAreNotFailuresCountAsSuccesses() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(() -> 0L, "test", CONFIG);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IOException.class, () -> circuitBreaker.execute(() -> fail(attempts), (e) -> false));
+        }
+        assertThat(circuitBreaker.state(), is(CircuitBreaker.State.CLOSED));
+        assertThat(attempts.get(), is(equalTo(10)));
+    }
+
+    private static String succeed(final AtomicInteger attempts) {
+        attempts.incrementAndGet();
+        return "OK";
+    }
+
+    private static String fail(final AtomicInteger attempts) throws IOException {
+        attempts.incrementAndGet();
+        throw new IOException("intentional");
+    }
+
+    private static boolean anyFailure(final Exception e) {
+        return true;
+    }
+}
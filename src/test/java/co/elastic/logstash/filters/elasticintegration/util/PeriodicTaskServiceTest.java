@@ -0,0 +1,62 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V.
+ * under one or more contributor license agreements. Licensed under the
+ * Elastic License 2.0; you may not use this file except in compliance
+ * with the Elastic License 2.0.
+ */
+package co.elastic.logstash.filters.elasticintegration.util;
+
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+class PeriodicTaskServiceTest {
+
+    private static final PluginContext PLUGIN_CONTEXT = new PluginContext("pipeline", "plugin");
+    private static final Scheduler EVERY_10_MILLIS = Scheduler.newFixedRateSchedule(Duration.ZERO, Duration.ofMillis(10));
+
+    @Test
+    void aFailingTaskDoesNotStopTheService() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch ranRepeatedly = new CountDownLatch(3);
+        final Service service = PeriodicTaskService.newManaged(PLUGIN_CONTEXT, "failing", EVERY_10_MILLIS, () -> {
+            runs.incrementAndGet();
+            ranRepeatedly.countDown();
+            throw new IllegalStateException("intentional");
+        }, false);
+
+        service.startAsync().awaitRunning();
+        assertThat(ranRepeatedly.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(service.state(), is(equalTo(Service.State.RUNNING)));
+
+        service.stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+        assertThat(runs.get(), is(greaterThanOrEqualTo(3)));
+    }
+
+    @Test
+    void theTaskIsRunOnceMoreOnShutDownWhenRequested() throws Exception {
+        final Scheduler never = Scheduler.newFixedDelaySchedule(Duration.ofHours(1), Duration.ofHours(1));
+        final AtomicInteger finalRuns = new AtomicInteger();
+        final Service finalRunning = PeriodicTaskService.newManaged(PLUGIN_CONTEXT, "final-running", never, finalRuns::incrementAndGet, true);
+        final AtomicInteger otherRuns = new AtomicInteger();
+        final Service other = PeriodicTaskService.newManaged(PLUGIN_CONTEXT, "other", never, otherRuns::incrementAndGet, false);
+
+        for (Service service : new Service[]{finalRunning, other}) {
+            service.startAsync().awaitRunning();
+            service.stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(finalRuns.get(), is(equalTo(1)));
+        assertThat(otherRuns.get(), is(equalTo(0)));
+    }
+}